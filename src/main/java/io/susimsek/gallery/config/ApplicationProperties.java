@@ -1,6 +1,16 @@
 package io.susimsek.gallery.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.redisson.api.EvictionMode;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Properties specific to Gallery.
@@ -8,5 +18,543 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * Properties are configured in the {@code application.yml} file.
  * See {@link tech.jhipster.config.JHipsterProperties} for a good example.
  */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
-public class ApplicationProperties {}
+public class ApplicationProperties {
+
+    final Storage storage = new Storage();
+
+    final Upload upload = new Upload();
+
+    final Renditions renditions = new Renditions();
+
+    final SearchIndex searchIndex = new SearchIndex();
+
+    final Reindex reindex = new Reindex();
+
+    final PhotoImport photoImport = new PhotoImport();
+
+    final Cache cache = new Cache();
+
+    final Security security = new Security();
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Storage {
+
+        /**
+         * Which {@link io.susimsek.gallery.service.storage.BlobStore} implementation holds photo bytes.
+         */
+        StorageType type = StorageType.FILESYSTEM;
+
+        final FileSystem filesystem = new FileSystem();
+
+        final S3 s3 = new S3();
+
+        /**
+         * Number of legacy {@code photo.image} rows moved into the blob store per transaction.
+         */
+        int migrationBatchSize = 20;
+
+        /**
+         * Redis lock held by the node moving the legacy images, so the nodes starting together do not move them twice.
+         */
+        String migrationLockName = "gallery:photo-image-migration";
+
+        /**
+         * Time a blob stays after the last photo or rendition stopped referencing it, and after it was last stored;
+         * an upload of the same bytes within it references the blob again instead of losing it.
+         */
+        Duration gcGracePeriod = Duration.ofHours(1);
+
+        /**
+         * When the released blobs past their grace period are deleted, {@code -} to never delete them.
+         */
+        String gcCron = "0 */15 * * * ?";
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Upload {
+
+        /**
+         * Largest photo accepted by the streaming upload endpoints.
+         */
+        DataSize maxSize = DataSize.ofMegabytes(50);
+
+        /**
+         * Most bytes of an upload held in memory while its metadata is read.
+         */
+        DataSize maxHeaderSize = DataSize.ofKilobytes(512);
+
+        /**
+         * Where the bytes of resumable uploads are kept until they are completed.
+         */
+        String directory = "./target/uploads";
+
+        /**
+         * Time after its last chunk at which an incomplete resumable upload is deleted.
+         */
+        Duration sessionTtl = Duration.ofHours(24);
+
+        /**
+         * Time after which an upload whose completion neither finished nor failed, because its node stopped, can be
+         * completed again.
+         */
+        Duration completionTimeout = Duration.ofMinutes(15);
+
+        /**
+         * Cron expression of the job deleting expired resumable uploads, {@code -} disables the schedule.
+         */
+        String cleanupCron = "-";
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Renditions {
+
+        /**
+         * Lengths of the longest side, in pixels, generated for every photo.
+         */
+        List<Integer> sizes = new ArrayList<>(List.of(160, 640, 1600));
+
+        /**
+         * Also generate WebP renditions, served to the clients which accept them.
+         */
+        boolean webp = true;
+
+        float jpegQuality = 0.85f;
+
+        int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        int queueCapacity = 500;
+
+        int backfillBatchSize = 100;
+
+        /**
+         * Cron expression of the backfill job, {@code -} disables the schedule.
+         */
+        String backfillCron = "-";
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class SearchIndex {
+
+        /**
+         * Maximum number of outbox rows sent to Elasticsearch in one bulk request.
+         */
+        int batchSize = 500;
+
+        /**
+         * Delay between two drains of the outbox.
+         */
+        Duration pollInterval = Duration.ofSeconds(1);
+
+        /**
+         * Pause after a failed bulk request, doubled on each consecutive failure up to {@code maxBackoff}.
+         */
+        Duration initialBackoff = Duration.ofSeconds(1);
+
+        Duration maxBackoff = Duration.ofMinutes(1);
+
+        /**
+         * Failed attempts after which a change is dropped, leaving its document to the next reindex.
+         */
+        int maxAttempts = 10;
+
+        /**
+         * Redis lock held by the node applying a batch of changes, so the nodes never write documents concurrently.
+         */
+        String lockName = "gallery:search-indexer";
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Reindex {
+
+        /**
+         * Number of id ranges of one index that are read and written in parallel.
+         */
+        int slices = 4;
+
+        /**
+         * Number of documents sent to Elasticsearch in one bulk request.
+         */
+        int batchSize = 500;
+
+        /**
+         * Delete the indices that were behind an alias once it points to the new index.
+         */
+        boolean deletePreviousIndices = true;
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class PhotoImport {
+
+        /**
+         * Largest request accepted by the import endpoints, a ZIP archive or all parts of a multipart batch.
+         */
+        DataSize maxSize = DataSize.ofGigabytes(2);
+
+        /**
+         * Most photos in one import.
+         */
+        int maxItems = 10000;
+
+        /**
+         * Images read and stored in parallel, {@code 0} for one per available processor.
+         */
+        int parallelism = 0;
+
+        /**
+         * Imports spooled or running at once on a node; further imports are rejected until one of them finishes.
+         */
+        int maxConcurrentJobs = 2;
+
+        /**
+         * Photos saved per transaction; keep it a multiple of {@code hibernate.jdbc.batch_size}.
+         */
+        int batchSize = 100;
+
+        /**
+         * Where the images of an import are spooled until they are stored.
+         */
+        String directory = "./target/imports";
+
+        /**
+         * How long the status of a finished import stays available.
+         */
+        Duration retention = Duration.ofHours(1);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Cache {
+
+        final NearCache near = new NearCache();
+
+        /**
+         * How often the memory used in Redis by each cache is measured for the {@code cache.redis.memory} metric.
+         */
+        Duration metricsRefreshInterval = Duration.ofMinutes(1);
+
+        /**
+         * Serialization of the values stored in Redis; the caches must be cleared when it changes.
+         */
+        CacheCodec codec = CacheCodec.COMPACT;
+
+        final CacheCompression compression = new CacheCompression();
+
+        /**
+         * Size, expiration and eviction of the caches, by cache or Hibernate second-level cache region name.
+         */
+        Map<String, CacheRegion> regions = new LinkedHashMap<>();
+
+        final CacheListings listings = new CacheListings();
+
+        final CacheStartup startup = new CacheStartup();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class CacheRegion {
+
+        /**
+         * Most entries kept in Redis, beyond which entries are evicted according to {@code eviction}; 0 for no limit.
+         * Only Hibernate second-level cache regions can be bounded.
+         */
+        int maxEntries;
+
+        EvictionMode eviction = EvictionMode.LRU;
+
+        /**
+         * Time after which an entry expires once written; {@code jhipster.cache.redis.expiration} when neither this
+         * nor {@code time-to-idle} is set.
+         */
+        Duration timeToLive;
+
+        /**
+         * Time after which an entry expires once last read or written.
+         */
+        Duration timeToIdle;
+    }
+
+    public enum CacheCodec {
+        /**
+         * Hibernate cache entries written field by field, other values with JBoss Marshalling.
+         */
+        COMPACT,
+        /**
+         * JBoss Marshalling, the Redisson default.
+         */
+        MARSHALLING,
+        /**
+         * Java serialization.
+         */
+        JAVA,
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class CacheCompression {
+
+        boolean enabled = true;
+
+        /**
+         * Encoded size from which a value is compressed with LZ4 before being stored in Redis.
+         */
+        DataSize threshold = DataSize.ofKilobytes(1);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class NearCache {
+
+        boolean enabled = true;
+
+        /**
+         * Redis topic on which nodes tell each other to drop entries from their local tier.
+         */
+        String topic = "gallery:near-cache:invalidations";
+
+        /**
+         * Hibernate second-level cache regions which get a local tier, by region name; the others, and the read-write
+         * regions, are only kept in Redis.
+         */
+        Map<String, NearCacheRegion> regions = new LinkedHashMap<>();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class CacheStartup {
+
+        /**
+         * When a starting node clears the caches shared in Redis.
+         */
+        CacheClear clear = CacheClear.VERSION_CHANGE;
+
+        /**
+         * Redis key holding the build version of the node which last cleared the caches.
+         */
+        String versionKey = "gallery:cache:version";
+
+        final CacheWarmUp warmUp = new CacheWarmUp();
+    }
+
+    public enum CacheClear {
+        /**
+         * On every start, as a new cache manager would.
+         */
+        ALWAYS,
+        /**
+         * On the start of the first node of a new build, the version of the keys of {@code PrefixedKeyGenerator}.
+         */
+        VERSION_CHANGE,
+        NEVER,
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class CacheWarmUp {
+
+        boolean enabled = true;
+
+        /**
+         * Most used tags loaded into the second-level cache.
+         */
+        int tags = 1000;
+
+        /**
+         * Most recently created albums loaded into the second-level cache, with their user.
+         */
+        int albums = 500;
+
+        /**
+         * Longest time the node waits for the warm-up before accepting traffic, the rest goes on in the background.
+         */
+        Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class CacheListings {
+
+        boolean enabled = true;
+
+        /**
+         * Redis map cache of the ids of the listed pages, the generations of their scopes are kept in the
+         * {@code <name>:generations} hash.
+         */
+        String name = "gallery:listings";
+
+        /**
+         * Most pages kept in Redis, the least recently used ones are evicted beyond it.
+         */
+        int maxEntries = 10000;
+
+        /**
+         * Time after which a page is read from the database again, pages of changed scopes are never read again and
+         * only wait for it to expire.
+         */
+        Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class NearCacheRegion {
+
+        /**
+         * Most entries of the region held in the local tier.
+         */
+        long maxSize = 10000;
+
+        /**
+         * Time after which a local entry is read from Redis again, bounding how long a missed invalidation lasts.
+         */
+        Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Security {
+
+        final TokenCache tokenCache = new TokenCache();
+
+        final TokenRevocation tokenRevocation = new TokenRevocation();
+
+        final RefreshTokens refreshTokens = new RefreshTokens();
+
+        final PasswordHashing passwordHashing = new PasswordHashing();
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class TokenCache {
+
+        /**
+         * Whether the authentication of a verified JWT is kept in memory until the token expires, so its requests skip
+         * the signature check and the parsing of its claims.
+         */
+        boolean enabled = true;
+
+        /**
+         * Most tokens kept, the least used ones are evicted beyond it.
+         */
+        long maxSize = 10000;
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class TokenRevocation {
+
+        /**
+         * Redis map cache of the ids of the revoked tokens until they expire, and topic the revocations are published on.
+         */
+        String name = "gallery:revoked-tokens";
+
+        /**
+         * How often each node reads the revoked tokens again from Redis, catching up on the revocations it missed.
+         */
+        Duration refreshInterval = Duration.ofMinutes(1);
+
+        /**
+         * Revoked tokens the local bloom filter is sized for, about 1% of the other tokens are checked in the exact set
+         * at this size.
+         */
+        int expectedRevocations = 10000;
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class RefreshTokens {
+
+        /**
+         * How long after signing in the refresh tokens of the sign in can be exchanged, rotating them does not extend it.
+         */
+        Duration validity = Duration.ofDays(7);
+
+        Duration validityForRememberMe = Duration.ofDays(30);
+
+        /**
+         * When the expired refresh tokens are deleted, {@code -} to never delete them.
+         */
+        String cleanupCron = "0 30 1 * * ?";
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class PasswordHashing {
+
+        /**
+         * Algorithm new passwords are hashed with, {@code argon2} or {@code bcrypt}; the hashes of other algorithms are
+         * upgraded when their users sign in.
+         */
+        String encodingId = "argon2";
+
+        int bcryptStrength = 10;
+
+        final Argon2 argon2 = new Argon2();
+
+        /**
+         * Threads hashing and verifying passwords, the request threads wait for them; {@code 0} for one per processor.
+         */
+        int threads = 0;
+
+        /**
+         * Hashes waiting for a thread, beyond which requests needing one are rejected with a 503 instead of holding a
+         * request thread.
+         */
+        int queueCapacity = 50;
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class Argon2 {
+
+        /**
+         * Memory each hash uses, in KiB.
+         */
+        int memory = 4096;
+
+        int iterations = 3;
+
+        int parallelism = 1;
+    }
+
+    public enum StorageType {
+        FILESYSTEM,
+        S3,
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class FileSystem {
+
+        String root = "./target/storage";
+    }
+
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    public static class S3 {
+
+        /**
+         * Endpoint override, e.g. {@code http://localhost:9000} for a local MinIO; leave empty for AWS.
+         */
+        String endpoint;
+
+        String region = "us-east-1";
+
+        String bucket = "gallery";
+
+        String accessKey;
+
+        String secretKey;
+
+        boolean pathStyleAccess = true;
+
+        String keyPrefix = "photos/";
+    }
+}
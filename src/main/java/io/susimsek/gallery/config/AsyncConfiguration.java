@@ -28,8 +28,12 @@ import tech.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
 public class AsyncConfiguration implements AsyncConfigurer {
 
 
+    public static final String RENDITION_TASK_EXECUTOR = "renditionTaskExecutor";
+
     final TaskExecutionProperties taskExecutionProperties;
 
+    final ApplicationProperties applicationProperties;
+
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
@@ -42,6 +46,21 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    /**
+     * Bounded pool for image resizing, kept apart from the general task executor so CPU heavy work cannot starve it.
+     * Tasks rejected when the queue is full are picked up again by the rendition backfill.
+     */
+    @Bean(name = RENDITION_TASK_EXECUTOR)
+    public ThreadPoolTaskExecutor renditionTaskExecutor() {
+        log.debug("Creating Rendition Task Executor");
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(applicationProperties.getRenditions().getPoolSize());
+        executor.setMaxPoolSize(applicationProperties.getRenditions().getPoolSize());
+        executor.setQueueCapacity(applicationProperties.getRenditions().getQueueCapacity());
+        executor.setThreadNamePrefix("gallery-rendition-");
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
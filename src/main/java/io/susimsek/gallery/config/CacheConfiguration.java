@@ -1,17 +1,30 @@
 package io.susimsek.gallery.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.susimsek.gallery.config.cache.CacheEntryCodec;
+import io.susimsek.gallery.config.cache.Lz4ThresholdCodec;
+import io.susimsek.gallery.config.cache.RedisCacheMetrics;
+import io.susimsek.gallery.config.cache.RedisRegionFactory;
 import java.net.URI;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.MutableConfiguration;
 import javax.cache.expiry.CreatedExpiryPolicy;
 import javax.cache.expiry.Duration;
+import javax.cache.expiry.TouchedExpiryPolicy;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
 import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.MarshallingCodec;
+import org.redisson.codec.SerializationCodec;
 import org.redisson.config.ClusterServersConfig;
 import org.redisson.config.Config;
 import org.redisson.config.SingleServerConfig;
@@ -29,6 +42,7 @@ import org.springframework.context.annotation.Configuration;
 import tech.jhipster.config.JHipsterProperties;
 import tech.jhipster.config.cache.PrefixedKeyGenerator;
 
+@Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Configuration
 @EnableCaching
@@ -37,13 +51,12 @@ public class CacheConfiguration {
     GitProperties gitProperties;
     BuildProperties buildProperties;
 
-    @Bean
-    public javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration(JHipsterProperties jHipsterProperties) {
-        MutableConfiguration<Object, Object> jcacheConfig = new MutableConfiguration<>();
-
+    @Bean(destroyMethod = "shutdown")
+    public RedissonClient redissonClient(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         URI redisUri = URI.create(jHipsterProperties.getCache().getRedis().getServer()[0]);
 
         Config config = new Config();
+        config.setCodec(cacheCodec(applicationProperties.getCache()));
         if (jHipsterProperties.getCache().getRedis().isCluster()) {
             ClusterServersConfig clusterServersConfig = config
                 .useClusterServers()
@@ -67,44 +80,121 @@ public class CacheConfiguration {
                 singleServerConfig.setPassword(redisUri.getUserInfo().substring(redisUri.getUserInfo().indexOf(':') + 1));
             }
         }
+        return Redisson.create(config);
+    }
+
+    private static Codec cacheCodec(ApplicationProperties.Cache properties) {
+        Codec codec;
+        switch (properties.getCodec()) {
+            case MARSHALLING:
+                codec = new MarshallingCodec();
+                break;
+            case JAVA:
+                codec = new SerializationCodec();
+                break;
+            default:
+                codec = new CacheEntryCodec();
+        }
+        if (properties.getCompression().isEnabled()) {
+            codec = new Lz4ThresholdCodec(codec, (int) properties.getCompression().getThreshold().toBytes());
+        }
+        return codec;
+    }
+
+    @Bean
+    public javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration(
+        JHipsterProperties jHipsterProperties,
+        RedissonClient redissonClient
+    ) {
+        MutableConfiguration<Object, Object> jcacheConfig = new MutableConfiguration<>();
         jcacheConfig.setStatisticsEnabled(true);
         jcacheConfig.setExpiryPolicyFactory(
             CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, jHipsterProperties.getCache().getRedis().getExpiration()))
         );
-        return RedissonConfiguration.fromInstance(Redisson.create(config), jcacheConfig);
+        return RedissonConfiguration.fromInstance(redissonClient, jcacheConfig);
+    }
+
+    @Bean
+    public RedisRegionFactory redisRegionFactory(
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        RedissonClient redissonClient,
+        MeterRegistry meterRegistry
+    ) {
+        return new RedisRegionFactory(
+            applicationProperties.getCache(),
+            java.time.Duration.ofSeconds(jHipsterProperties.getCache().getRedis().getExpiration()),
+            redissonClient,
+            meterRegistry
+        );
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cm, RedisRegionFactory redisRegionFactory) {
+        return hibernateProperties -> {
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cm);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, redisRegionFactory);
+        };
     }
 
     @Bean
-    public HibernatePropertiesCustomizer hibernatePropertiesCustomizer(javax.cache.CacheManager cm) {
-        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cm);
+    public RedisCacheMetrics redisCacheMetrics(
+        RedissonClient redissonClient,
+        javax.cache.CacheManager cm,
+        RedisRegionFactory redisRegionFactory
+    ) {
+        return new RedisCacheMetrics(redissonClient, cm, redisRegionFactory);
     }
 
     @Bean
-    public JCacheManagerCustomizer cacheManagerCustomizer(javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration) {
+    public JCacheManagerCustomizer cacheManagerCustomizer(
+        javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration,
+        ApplicationProperties applicationProperties
+    ) {
+        Map<String, ApplicationProperties.CacheRegion> regions = applicationProperties.getCache().getRegions();
         return cm -> {
-            createCache(cm, io.susimsek.gallery.repository.UserRepository.USERS_BY_LOGIN_CACHE, jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.repository.UserRepository.USERS_BY_EMAIL_CACHE, jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.User.class.getName(), jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.Authority.class.getName(), jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.User.class.getName() + ".authorities", jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.Album.class.getName(), jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.Photo.class.getName(), jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.Photo.class.getName() + ".tags", jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.Tag.class.getName(), jcacheConfiguration);
-            createCache(cm, io.susimsek.gallery.domain.Tag.class.getName() + ".photos", jcacheConfiguration);
+            createCache(cm, io.susimsek.gallery.repository.UserRepository.USERS_BY_LOGIN_CACHE, jcacheConfiguration, regions);
+            createCache(cm, io.susimsek.gallery.repository.UserRepository.USERS_BY_EMAIL_CACHE, jcacheConfiguration, regions);
+            // Hibernate second-level cache regions are Redisson map caches built by RedisRegionFactory
             // jhipster-needle-redis-add-entry
         };
     }
 
+    @SuppressWarnings("unchecked")
+    private void createCache(
+        javax.cache.CacheManager cm,
+        String cacheName,
+        javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration,
+        Map<String, ApplicationProperties.CacheRegion> regions
+    ) {
+        ApplicationProperties.CacheRegion region = regions.get(cacheName);
+        if (region == null || (region.getTimeToLive() == null && region.getTimeToIdle() == null)) {
+            createCache(cm, cacheName, jcacheConfiguration);
+            return;
+        }
+        if (region.getMaxEntries() > 0) {
+            log.warn("The size of cache {} cannot be bounded, only Hibernate second-level cache regions can", cacheName);
+        }
+        // JCache expires an entry either after it is written or after it is last used, the time to idle wins
+        RedissonConfiguration<Object, Object> redissonConfiguration = (RedissonConfiguration<Object, Object>) jcacheConfiguration;
+        MutableConfiguration<Object, Object> jcacheConfig = new MutableConfiguration<>(
+            (CompleteConfiguration<Object, Object>) redissonConfiguration.getJcacheConfig()
+        );
+        jcacheConfig.setExpiryPolicyFactory(
+            region.getTimeToIdle() != null
+                ? TouchedExpiryPolicy.factoryOf(new Duration(TimeUnit.MILLISECONDS, region.getTimeToIdle().toMillis()))
+                : CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.MILLISECONDS, region.getTimeToLive().toMillis()))
+        );
+        createCache(cm, cacheName, RedissonConfiguration.fromInstance(redissonConfiguration.getRedisson(), jcacheConfig));
+    }
+
     private void createCache(
         javax.cache.CacheManager cm,
         String cacheName,
         javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration
     ) {
-        javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
-        if (cache != null) {
-            cache.clear();
-        } else {
+        // the entries are kept, CacheStartupRunner clears them when the build changes
+        if (cm.getCache(cacheName) == null) {
             cm.createCache(cacheName, jcacheConfiguration);
         }
     }
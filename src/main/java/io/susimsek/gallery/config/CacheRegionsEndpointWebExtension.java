@@ -0,0 +1,94 @@
+package io.susimsek.gallery.config;
+
+import io.susimsek.gallery.config.cache.MapCacheStorageAccess;
+import io.susimsek.gallery.config.cache.RedisRegionFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import org.redisson.api.EvictionMode;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.cache.CachesEndpoint;
+import org.springframework.boot.actuate.cache.CachesEndpointWebExtension;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.annotation.EndpointWebExtension;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /management/caches} also lists the Hibernate second-level cache regions with their settings and live
+ * statistics; the regions are not Spring caches, so the endpoint would not show them otherwise.
+ * <p>
+ * Extends the web extension of Spring Boot so that it replaces it, keeping its operations on a single cache.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Component
+@ConditionalOnAvailableEndpoint(endpoint = CachesEndpoint.class)
+@EndpointWebExtension(endpoint = CachesEndpoint.class)
+public class CacheRegionsEndpointWebExtension extends CachesEndpointWebExtension {
+
+    CachesEndpoint cachesEndpoint;
+
+    RedisRegionFactory redisRegionFactory;
+
+    public CacheRegionsEndpointWebExtension(CachesEndpoint cachesEndpoint, RedisRegionFactory redisRegionFactory) {
+        super(cachesEndpoint);
+        this.cachesEndpoint = cachesEndpoint;
+        this.redisRegionFactory = redisRegionFactory;
+    }
+
+    @ReadOperation
+    public CacheRegionsReport caches() {
+        Map<String, RegionDescriptor> regions = new LinkedHashMap<>();
+        redisRegionFactory.getRegions().forEach((name, region) -> regions.put(name, describe(region)));
+        return new CacheRegionsReport(cachesEndpoint.caches().getCacheManagers(), regions);
+    }
+
+    static RegionDescriptor describe(MapCacheStorageAccess region) {
+        return new RegionDescriptor(
+            region.getSettings().getMaxEntries(),
+            region.getSettings().getMaxEntries() > 0 ? region.getSettings().getEviction() : null,
+            region.getSettings().getTimeToLive(),
+            region.getSettings().getTimeToIdle(),
+            region.getMap().size(),
+            (long) region.getHits().count(),
+            (long) region.getMisses().count(),
+            (long) region.getPuts().count()
+        );
+    }
+
+    /**
+     * The Spring cache managers, as reported by Spring Boot, and the Hibernate second-level cache regions by name.
+     */
+    @Value
+    public static class CacheRegionsReport {
+
+        Map<String, CachesEndpoint.CacheManagerDescriptor> cacheManagers;
+
+        Map<String, RegionDescriptor> regions;
+    }
+
+    /**
+     * Settings of a region, entries it holds in Redis and gets and puts on this node since it started.
+     */
+    @Value
+    public static class RegionDescriptor {
+
+        int maxEntries;
+
+        EvictionMode eviction;
+
+        Duration timeToLive;
+
+        Duration timeToIdle;
+
+        int size;
+
+        long hits;
+
+        long misses;
+
+        long puts;
+    }
+}
@@ -0,0 +1,54 @@
+package io.susimsek.gallery.config;
+
+import io.susimsek.gallery.service.storage.RangeReadableResource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Serve {@code Range} requests for {@link RangeReadableResource}s by reading only the requested bytes, where Spring
+ * reads the resource from its start and skips to the range.
+ */
+@Configuration
+public class ResourceRegionConfiguration implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(
+            converter ->
+                converter instanceof ResourceRegionHttpMessageConverter ? new RangeReadingResourceRegionHttpMessageConverter() : converter
+        );
+    }
+
+    /**
+     * Writes a single range of a {@link RangeReadableResource} from a ranged read; requests for several ranges are
+     * rare and still read the resource from its start for each.
+     */
+    static class RangeReadingResourceRegionHttpMessageConverter extends ResourceRegionHttpMessageConverter {
+
+        @Override
+        protected void writeResourceRegion(ResourceRegion region, HttpOutputMessage outputMessage) throws IOException {
+            if (!(region.getResource() instanceof RangeReadableResource)) {
+                super.writeResourceRegion(region, outputMessage);
+                return;
+            }
+            RangeReadableResource resource = (RangeReadableResource) region.getResource();
+            long start = region.getPosition();
+            long resourceLength = resource.contentLength();
+            long end = Math.min(start + region.getCount() - 1, resourceLength - 1);
+            outputMessage.getHeaders().add(HttpHeaders.CONTENT_RANGE, "bytes " + start + '-' + end + '/' + resourceLength);
+            outputMessage.getHeaders().setContentLength(end - start + 1);
+            try (InputStream in = resource.getInputStream(start, end - start + 1)) {
+                StreamUtils.copy(in, outputMessage.getBody());
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.susimsek.gallery.config;
+
+import io.susimsek.gallery.service.search.SearchReindexJob;
+import io.susimsek.gallery.service.search.SearchReindexService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /management/reindex}: {@code POST} starts rebuilding the search indices, {@code GET} reports the progress
+ * of the last rebuild.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+@Component
+@Endpoint(id = "reindex")
+public class SearchReindexEndpoint {
+
+    SearchReindexService searchReindexService;
+
+    @ReadOperation
+    public SearchReindexJob status() {
+        return searchReindexService.getCurrentJob().orElse(null);
+    }
+
+    @WriteOperation
+    public SearchReindexJob start() {
+        return searchReindexService.start();
+    }
+}
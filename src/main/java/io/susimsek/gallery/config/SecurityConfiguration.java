@@ -2,6 +2,9 @@ package io.susimsek.gallery.config;
 
 import io.susimsek.gallery.security.*;
 import io.susimsek.gallery.security.jwt.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -15,7 +18,9 @@ import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.header.writers.ReferrerPolicyHeaderWriter;
@@ -31,6 +36,10 @@ import tech.jhipster.config.JHipsterProperties;
 @Import(SecurityProblemSupport.class)
 public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
+    static final int ARGON2_SALT_LENGTH = 16;
+
+    static final int ARGON2_HASH_LENGTH = 32;
+
     final JHipsterProperties jHipsterProperties;
 
     final TokenProvider tokenProvider;
@@ -39,8 +48,32 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
     final SecurityProblemSupport problemSupport;
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.PasswordHashing properties = applicationProperties.getSecurity().getPasswordHashing();
+        return new BoundedPasswordEncoder(
+            delegatingPasswordEncoder(properties),
+            properties.getThreads(),
+            properties.getQueueCapacity(),
+            meterRegistry
+        );
+    }
+
+    /**
+     * @return an encoder hashing with the configured algorithm, and verifying the hashes of all the others; the hashes
+     * stored before they were prefixed with their algorithm are BCrypt ones.
+     */
+    static PasswordEncoder delegatingPasswordEncoder(ApplicationProperties.PasswordHashing properties) {
+        ApplicationProperties.Argon2 argon2 = properties.getArgon2();
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(properties.getBcryptStrength());
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put(
+            "argon2",
+            new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, argon2.getParallelism(), argon2.getMemory(), argon2.getIterations())
+        );
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(properties.getEncodingId(), encoders);
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return delegating;
     }
 
     @Override
@@ -82,6 +115,7 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
         .and()
             .authorizeRequests()
             .antMatchers("/api/authenticate").permitAll()
+            .antMatchers("/api/authenticate/refresh").permitAll()
             .antMatchers("/api/register").permitAll()
             .antMatchers("/api/activate").permitAll()
             .antMatchers("/api/account/reset-password/init").permitAll()
@@ -0,0 +1,36 @@
+package io.susimsek.gallery.config;
+
+import io.susimsek.gallery.service.storage.BlobStore;
+import io.susimsek.gallery.service.storage.FileSystemBlobStore;
+import io.susimsek.gallery.service.storage.S3BlobStore;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+@Slf4j
+@Configuration
+public class StorageConfiguration {
+
+    final ApplicationProperties applicationProperties;
+
+    @Bean
+    public BlobStore blobStore() {
+        ApplicationProperties.Storage storage = applicationProperties.getStorage();
+        Path root = Paths.get(storage.getFilesystem().getRoot()).toAbsolutePath();
+        if (storage.getType() == ApplicationProperties.StorageType.S3) {
+            log.debug("Storing photos in S3 bucket {}", storage.getS3().getBucket());
+            S3BlobStore s3BlobStore = new S3BlobStore(storage.getS3(), root.resolve(".tmp"));
+            s3BlobStore.createBucketIfMissing();
+            return s3BlobStore;
+        }
+        log.debug("Storing photos in {}", root);
+        return new FileSystemBlobStore(root);
+    }
+}
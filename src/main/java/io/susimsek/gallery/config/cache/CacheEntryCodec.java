@@ -0,0 +1,402 @@
+package io.susimsek.gallery.config.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+import org.redisson.codec.MarshallingCodec;
+
+/**
+ * Compact binary codec for Hibernate second-level cache entries.
+ * <p>
+ * An entity entry is its subclass name, its version and its disassembled state; a collection entry is the disassembled
+ * state of its elements. Disassembled values are ids and column values, so the common ones ({@code String},
+ * {@code Long}, {@code Integer}, {@code Boolean}, {@code Instant}, {@code LocalDate}, {@code byte[]} and arrays of them)
+ * are written as a type tag followed by a variable-length encoding. The entries of {@code READ_WRITE} regions are
+ * wrapped in an {@link AbstractReadWriteAccess.Item item}, with the version and timestamp of the entry, or replaced by
+ * a {@link AbstractReadWriteAccess.SoftLockImpl soft lock} while they change; both are written field by field as well.
+ * Anything else, such as the {@code @Cacheable} users or the near cache invalidations, is written by the fallback codec
+ * behind its own tag.
+ * <p>
+ * Values written by another codec cannot be read back: the caches must be cleared when switching codec.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CacheEntryCodec extends BaseCodec {
+
+    static final byte NULL = 0;
+
+    static final byte STRING = 1;
+
+    static final byte LONG = 2;
+
+    static final byte INTEGER = 3;
+
+    static final byte TRUE = 4;
+
+    static final byte FALSE = 5;
+
+    static final byte INSTANT = 6;
+
+    static final byte LOCAL_DATE = 7;
+
+    static final byte BYTES = 8;
+
+    static final byte ARRAY = 9;
+
+    static final byte ENTITY_ENTRY = 10;
+
+    static final byte COLLECTION_ENTRY = 11;
+
+    static final byte ITEM = 12;
+
+    static final byte SOFT_LOCK = 13;
+
+    static final byte FALLBACK = 127;
+
+    /**
+     * The entries are rebuilt through the constructors Hibernate uses when reading structured cache entries, which are
+     * not public.
+     */
+    static final Constructor<StandardCacheEntryImpl> ENTITY_ENTRY_CONSTRUCTOR = accessibleConstructor(
+        StandardCacheEntryImpl.class,
+        Serializable[].class,
+        String.class,
+        Object.class
+    );
+
+    static final Constructor<CollectionCacheEntry> COLLECTION_ENTRY_CONSTRUCTOR = accessibleConstructor(
+        CollectionCacheEntry.class,
+        Serializable.class
+    );
+
+    /**
+     * Items and soft locks have neither accessors for all their fields nor public constructors.
+     */
+    static final Constructor<AbstractReadWriteAccess.Item> ITEM_CONSTRUCTOR = accessibleConstructor(
+        AbstractReadWriteAccess.Item.class,
+        Object.class,
+        Object.class,
+        long.class
+    );
+
+    static final Field ITEM_VERSION = accessibleField(AbstractReadWriteAccess.Item.class, "version");
+
+    static final Field ITEM_TIMESTAMP = accessibleField(AbstractReadWriteAccess.Item.class, "timestamp");
+
+    static final Constructor<AbstractReadWriteAccess.SoftLockImpl> SOFT_LOCK_CONSTRUCTOR = accessibleConstructor(
+        AbstractReadWriteAccess.SoftLockImpl.class,
+        long.class,
+        UUID.class,
+        long.class,
+        Object.class
+    );
+
+    static final Field SOFT_LOCK_TIMEOUT = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "timeout");
+
+    static final Field SOFT_LOCK_SOURCE_UUID = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "sourceUuid");
+
+    static final Field SOFT_LOCK_LOCK_ID = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "lockId");
+
+    static final Field SOFT_LOCK_VERSION = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "version");
+
+    static final Field SOFT_LOCK_CONCURRENT = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "concurrent");
+
+    static final Field SOFT_LOCK_MULTIPLICITY = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "multiplicity");
+
+    static final Field SOFT_LOCK_UNLOCK_TIMESTAMP = accessibleField(AbstractReadWriteAccess.SoftLockImpl.class, "unlockTimestamp");
+
+    Codec fallback;
+
+    Encoder encoder = this::encode;
+
+    Decoder<Object> decoder = (buf, state) -> read(buf, state);
+
+    public CacheEntryCodec() {
+        this(new MarshallingCodec());
+    }
+
+    public CacheEntryCodec(ClassLoader classLoader) {
+        this(new MarshallingCodec(classLoader));
+    }
+
+    public CacheEntryCodec(ClassLoader classLoader, CacheEntryCodec codec) throws ReflectiveOperationException {
+        this(copy(classLoader, codec.fallback));
+    }
+
+    /**
+     * @param fallback the codec of the values which are not cache entries or common column values.
+     */
+    public CacheEntryCodec(Codec fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return fallback.getClassLoader();
+    }
+
+    private ByteBuf encode(Object value) throws IOException {
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer();
+        try {
+            write(out, value);
+            return out;
+        } catch (IOException | RuntimeException e) {
+            out.release();
+            throw e;
+        }
+    }
+
+    private void write(ByteBuf out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, zigZag((Integer) value));
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Instant) {
+            Instant instant = (Instant) value;
+            out.writeByte(INSTANT);
+            writeVarLong(out, zigZag(instant.getEpochSecond()));
+            writeVarLong(out, instant.getNano());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            writeVarLong(out, zigZag(((LocalDate) value).toEpochDay()));
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value.getClass() == Serializable[].class) {
+            out.writeByte(ARRAY);
+            writeArray(out, (Serializable[]) value);
+        } else if (value.getClass() == StandardCacheEntryImpl.class) {
+            CacheEntry entry = (CacheEntry) value;
+            out.writeByte(ENTITY_ENTRY);
+            writeString(out, entry.getSubclass());
+            write(out, entry.getVersion());
+            writeArray(out, entry.getDisassembledState());
+        } else if (value.getClass() == CollectionCacheEntry.class) {
+            out.writeByte(COLLECTION_ENTRY);
+            writeArray(out, ((CollectionCacheEntry) value).getState());
+        } else if (value.getClass() == AbstractReadWriteAccess.Item.class) {
+            AbstractReadWriteAccess.Item item = (AbstractReadWriteAccess.Item) value;
+            out.writeByte(ITEM);
+            write(out, item.getValue());
+            write(out, get(ITEM_VERSION, item));
+            writeVarLong(out, zigZag((Long) get(ITEM_TIMESTAMP, item)));
+        } else if (value.getClass() == AbstractReadWriteAccess.SoftLockImpl.class) {
+            AbstractReadWriteAccess.SoftLockImpl lock = (AbstractReadWriteAccess.SoftLockImpl) value;
+            UUID sourceUuid = (UUID) get(SOFT_LOCK_SOURCE_UUID, lock);
+            out.writeByte(SOFT_LOCK);
+            writeVarLong(out, zigZag((Long) get(SOFT_LOCK_TIMEOUT, lock)));
+            out.writeLong(sourceUuid.getMostSignificantBits());
+            out.writeLong(sourceUuid.getLeastSignificantBits());
+            writeVarLong(out, zigZag((Long) get(SOFT_LOCK_LOCK_ID, lock)));
+            write(out, get(SOFT_LOCK_VERSION, lock));
+            out.writeBoolean((Boolean) get(SOFT_LOCK_CONCURRENT, lock));
+            writeVarLong(out, zigZag((Integer) get(SOFT_LOCK_MULTIPLICITY, lock)));
+            writeVarLong(out, zigZag((Long) get(SOFT_LOCK_UNLOCK_TIMESTAMP, lock)));
+        } else {
+            ByteBuf encoded = fallback.getValueEncoder().encode(value);
+            try {
+                out.writeByte(FALLBACK);
+                writeVarLong(out, encoded.readableBytes());
+                out.writeBytes(encoded);
+            } finally {
+                encoded.release();
+            }
+        }
+    }
+
+    private void writeArray(ByteBuf out, Serializable[] values) throws IOException {
+        writeVarLong(out, values.length);
+        for (Serializable value : values) {
+            write(out, value);
+        }
+    }
+
+    private Object read(ByteBuf in, State state) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case LONG:
+                return unZigZag(readVarLong(in));
+            case INTEGER:
+                return (int) unZigZag(readVarLong(in));
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INSTANT:
+                return Instant.ofEpochSecond(unZigZag(readVarLong(in)), readVarLong(in));
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(unZigZag(readVarLong(in)));
+            case BYTES:
+                byte[] bytes = new byte[(int) readVarLong(in)];
+                in.readBytes(bytes);
+                return bytes;
+            case ARRAY:
+                return readArray(in, state);
+            case ENTITY_ENTRY:
+                String subclass = readString(in);
+                Object version = read(in, state);
+                return newInstance(ENTITY_ENTRY_CONSTRUCTOR, readArray(in, state), subclass, version);
+            case COLLECTION_ENTRY:
+                return newInstance(COLLECTION_ENTRY_CONSTRUCTOR, (Object) readArray(in, state));
+            case ITEM:
+                Object value = read(in, state);
+                Object itemVersion = read(in, state);
+                return newInstance(ITEM_CONSTRUCTOR, value, itemVersion, unZigZag(readVarLong(in)));
+            case SOFT_LOCK:
+                return readSoftLock(in, state);
+            case FALLBACK:
+                int length = (int) readVarLong(in);
+                ByteBuf encoded = in.readSlice(length);
+                return fallback.getValueDecoder().decode(encoded, state);
+            default:
+                throw new IOException("Unknown cache entry tag " + tag + ", the entry was not written by " + getClass().getSimpleName());
+        }
+    }
+
+    private AbstractReadWriteAccess.SoftLockImpl readSoftLock(ByteBuf in, State state) throws IOException {
+        long timeout = unZigZag(readVarLong(in));
+        UUID sourceUuid = new UUID(in.readLong(), in.readLong());
+        long lockId = unZigZag(readVarLong(in));
+        Object version = read(in, state);
+        AbstractReadWriteAccess.SoftLockImpl lock = newInstance(SOFT_LOCK_CONSTRUCTOR, timeout, sourceUuid, lockId, version);
+        set(SOFT_LOCK_CONCURRENT, lock, in.readBoolean());
+        set(SOFT_LOCK_MULTIPLICITY, lock, (int) unZigZag(readVarLong(in)));
+        set(SOFT_LOCK_UNLOCK_TIMESTAMP, lock, unZigZag(readVarLong(in)));
+        return lock;
+    }
+
+    private Serializable[] readArray(ByteBuf in, State state) throws IOException {
+        Serializable[] values = new Serializable[(int) readVarLong(in)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (Serializable) read(in, state);
+        }
+        return values;
+    }
+
+    private static void writeString(ByteBuf out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = (int) readVarLong(in);
+        String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+        in.skipBytes(length);
+        return value;
+    }
+
+    static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(ByteBuf in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed variable-length number");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static <T> Constructor<T> accessibleConstructor(Class<T> type, Class<?>... parameterTypes) {
+        try {
+            Constructor<T> constructor = type.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Unsupported Hibernate version, " + type.getName() + " cannot be rebuilt", e);
+        }
+    }
+
+    private static Field accessibleField(Class<?> type, String name) {
+        try {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("Unsupported Hibernate version, " + type.getName() + " cannot be written", e);
+        }
+    }
+
+    private static Object get(Field field, Object target) throws IOException {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IOException("Could not read " + field.getName() + " of a " + field.getDeclaringClass().getSimpleName(), e);
+        }
+    }
+
+    private static void set(Field field, Object target, Object value) throws IOException {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IOException("Could not restore " + field.getName() + " of a " + field.getDeclaringClass().getSimpleName(), e);
+        }
+    }
+
+    private static <T> T newInstance(Constructor<T> constructor, Object... arguments) throws IOException {
+        try {
+            return constructor.newInstance(arguments);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("Could not rebuild a " + constructor.getDeclaringClass().getSimpleName(), e);
+        }
+    }
+}
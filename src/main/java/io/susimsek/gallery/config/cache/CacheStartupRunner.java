@@ -0,0 +1,219 @@
+package io.susimsek.gallery.config.cache;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.repository.AlbumRepository;
+import io.susimsek.gallery.repository.AuthorityRepository;
+import io.susimsek.gallery.repository.TagRepository;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.boot.info.GitProperties;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Prepares the caches shared in Redis when the node starts, before it reports ready to accept traffic.
+ * <p>
+ * The caches are only cleared by the first node of a new build, so a rolling deploy does not empty them once per node
+ * ({@code application.cache.startup.clear}). The build is the one {@code PrefixedKeyGenerator} prefixes the keys with:
+ * the git commit, or else the time or version of the build; an unknown build clears them on every start.
+ * <p>
+ * The most used tags, the authorities and the most recent albums are then loaded into the second-level cache in
+ * parallel, for at most {@code application.cache.startup.warm-up.timeout}, so the first requests do not all miss.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CacheStartupRunner implements ApplicationRunner {
+
+    ApplicationProperties.CacheStartup properties;
+
+    RedissonClient redissonClient;
+
+    CacheManager cacheManager;
+
+    EntityManagerFactory entityManagerFactory;
+
+    TransactionTemplate transactionTemplate;
+
+    TagRepository tagRepository;
+
+    AuthorityRepository authorityRepository;
+
+    AlbumRepository albumRepository;
+
+    /**
+     * The build of this node, {@code null} if unknown.
+     */
+    String version;
+
+    @Autowired
+    public CacheStartupRunner(
+        ApplicationProperties applicationProperties,
+        RedissonClient redissonClient,
+        CacheManager cacheManager,
+        EntityManagerFactory entityManagerFactory,
+        PlatformTransactionManager transactionManager,
+        TagRepository tagRepository,
+        AuthorityRepository authorityRepository,
+        AlbumRepository albumRepository,
+        ObjectProvider<GitProperties> gitProperties,
+        ObjectProvider<BuildProperties> buildProperties
+    ) {
+        this(
+            applicationProperties,
+            redissonClient,
+            cacheManager,
+            entityManagerFactory,
+            transactionManager,
+            tagRepository,
+            authorityRepository,
+            albumRepository,
+            version(gitProperties.getIfAvailable(), buildProperties.getIfAvailable())
+        );
+    }
+
+    CacheStartupRunner(
+        ApplicationProperties applicationProperties,
+        RedissonClient redissonClient,
+        CacheManager cacheManager,
+        EntityManagerFactory entityManagerFactory,
+        PlatformTransactionManager transactionManager,
+        TagRepository tagRepository,
+        AuthorityRepository authorityRepository,
+        AlbumRepository albumRepository,
+        String version
+    ) {
+        this.properties = applicationProperties.getCache().getStartup();
+        this.redissonClient = redissonClient;
+        this.cacheManager = cacheManager;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.tagRepository = tagRepository;
+        this.authorityRepository = authorityRepository;
+        this.albumRepository = albumRepository;
+        this.version = version;
+    }
+
+    /**
+     * @return the version {@code PrefixedKeyGenerator} prefixes the keys with, {@code null} when it would be random.
+     */
+    static String version(GitProperties gitProperties, BuildProperties buildProperties) {
+        if (gitProperties != null && gitProperties.getShortCommitId() != null) {
+            return gitProperties.getShortCommitId();
+        }
+        if (buildProperties != null && buildProperties.getTime() != null) {
+            return DateTimeFormatter.ISO_INSTANT.format(buildProperties.getTime());
+        }
+        return buildProperties != null ? buildProperties.getVersion() : null;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        clearCaches();
+        warmUp();
+    }
+
+    /**
+     * Clear the Spring caches and the second-level cache if this node is the first of its build to start.
+     *
+     * @return whether the caches were cleared.
+     */
+    boolean clearCaches() {
+        switch (properties.getClear()) {
+            case NEVER:
+                return false;
+            case VERSION_CHANGE:
+                if (version == null) {
+                    log.info("Clearing the caches, the build of this node is unknown");
+                    break;
+                }
+                // atomic, so only one of the nodes of a new build starting together clears the caches
+                String previous = redissonClient.<String>getBucket(properties.getVersionKey(), StringCodec.INSTANCE).getAndSet(version);
+                if (version.equals(previous)) {
+                    log.debug("Keeping the caches of build {}", version);
+                    return false;
+                }
+                log.info("Clearing the caches of build {} for build {}", previous, version);
+                break;
+            default:
+                log.debug("Clearing the caches");
+        }
+        for (String cacheName : cacheManager.getCacheNames()) {
+            cacheManager.getCache(cacheName).clear();
+        }
+        entityManagerFactory.getCache().evictAll();
+        return true;
+    }
+
+    /**
+     * Load the hot entities into the second-level cache, returning once they are loaded or the timeout elapses.
+     */
+    void warmUp() {
+        ApplicationProperties.CacheWarmUp warmUp = properties.getWarmUp();
+        if (!warmUp.isEnabled() || !entityManagerFactory.unwrap(SessionFactory.class).getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            return;
+        }
+        Map<String, Supplier<Collection<?>>> loaders = new LinkedHashMap<>();
+        loaders.put("authorities", authorityRepository::findAll);
+        if (warmUp.getTags() > 0) {
+            loaders.put("tags", () -> tagRepository.findMostUsed(PageRequest.of(0, warmUp.getTags())));
+        }
+        if (warmUp.getAlbums() > 0) {
+            loaders.put("albums", () -> albumRepository.findAllByOrderByCreatedDesc(PageRequest.of(0, warmUp.getAlbums())));
+        }
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(loaders.size(), new CustomizableThreadFactory("gallery-cache-warm-up-"));
+        CompletableFuture<?>[] loads = loaders
+            .entrySet()
+            .stream()
+            .map(loader -> CompletableFuture.runAsync(() -> load(loader.getKey(), loader.getValue()), pool))
+            .toArray(CompletableFuture[]::new);
+        // the loads still running after the timeout finish in the background
+        pool.shutdown();
+        try {
+            CompletableFuture.allOf(loads).get(warmUp.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            log.info("Warmed up the caches in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (TimeoutException e) {
+            log.warn("Cache warm-up not finished after {}, accepting traffic while it goes on", warmUp.getTimeout());
+        } catch (ExecutionException e) {
+            log.warn("Could not warm up the caches", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void load(String name, Supplier<Collection<?>> loader) {
+        Integer count = transactionTemplate.execute(status -> loader.get().size());
+        log.debug("Loaded {} {} into the second-level cache", count, name);
+    }
+}
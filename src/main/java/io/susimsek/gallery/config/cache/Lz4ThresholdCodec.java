@@ -0,0 +1,130 @@
+package io.susimsek.gallery.config.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+/**
+ * Codec which compresses the values of another codec with LZ4 once they reach a size threshold.
+ * <p>
+ * Small values, most cache entries, are not worth the CPU and would barely shrink, so they are stored as they are
+ * behind a one byte header. Larger values are compressed, and kept compressed only when that saves space.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class Lz4ThresholdCodec extends BaseCodec {
+
+    static final byte RAW = 0;
+
+    static final byte LZ4 = 1;
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    Codec codec;
+
+    int threshold;
+
+    Encoder encoder = this::encode;
+
+    Decoder<Object> decoder = this::decode;
+
+    public Lz4ThresholdCodec(ClassLoader classLoader, Lz4ThresholdCodec codec) throws ReflectiveOperationException {
+        this(copy(classLoader, codec.codec), codec.threshold);
+    }
+
+    /**
+     * @param codec the codec of the values.
+     * @param threshold the size in bytes from which an encoded value is compressed.
+     */
+    public Lz4ThresholdCodec(Codec codec, int threshold) {
+        this.codec = codec;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return codec.getClassLoader();
+    }
+
+    private ByteBuf encode(Object value) throws IOException {
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            int length = encoded.readableBytes();
+            if (length >= threshold) {
+                ByteBuf compressed = compress(encoded, length);
+                if (compressed != null) {
+                    return compressed;
+                }
+            }
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer(1 + length);
+            out.writeByte(RAW);
+            out.writeBytes(encoded);
+            return out;
+        } finally {
+            encoded.release();
+        }
+    }
+
+    /**
+     * @return the header, the uncompressed length and the compressed value, or {@code null} if it is not smaller.
+     */
+    private static ByteBuf compress(ByteBuf encoded, int length) {
+        int maxLength = COMPRESSOR.maxCompressedLength(length);
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer(1 + Integer.BYTES + maxLength);
+        out.writeByte(LZ4);
+        out.writeInt(length);
+        ByteBuffer source = encoded.nioBuffer();
+        ByteBuffer target = out.internalNioBuffer(out.writerIndex(), maxLength);
+        int compressedLength = COMPRESSOR.compress(source, source.position(), length, target, target.position(), maxLength);
+        if (1 + Integer.BYTES + compressedLength >= 1 + length) {
+            out.release();
+            return null;
+        }
+        out.writerIndex(out.writerIndex() + compressedLength);
+        return out;
+    }
+
+    private Object decode(ByteBuf in, State state) throws IOException {
+        byte header = in.readByte();
+        if (header == RAW) {
+            return codec.getValueDecoder().decode(in, state);
+        }
+        if (header != LZ4) {
+            throw new IOException("Unknown compression header " + header + ", the value was not written by " + getClass().getSimpleName());
+        }
+        int length = in.readInt();
+        ByteBuf decompressed = ByteBufAllocator.DEFAULT.buffer(length);
+        try {
+            ByteBuffer source = in.nioBuffer();
+            ByteBuffer target = decompressed.internalNioBuffer(0, length);
+            int read = DECOMPRESSOR.decompress(source, source.position(), target, target.position(), length);
+            in.skipBytes(read);
+            decompressed.writerIndex(length);
+            return codec.getValueDecoder().decode(decompressed, state);
+        } finally {
+            decompressed.release();
+        }
+    }
+}
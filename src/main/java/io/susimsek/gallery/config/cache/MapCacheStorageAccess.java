@@ -0,0 +1,121 @@
+package io.susimsek.gallery.config.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.redisson.api.RMapCache;
+
+/**
+ * Storage of a Hibernate second-level cache region in a Redisson map cache, which supports a per-entry time to live
+ * and time to idle and a bounded size with LRU or LFU eviction.
+ * <p>
+ * Gets are counted in {@code cache.region.gets}, tagged with the region name and the result ({@code hit} or
+ * {@code miss}), and writes in {@code cache.region.puts}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MapCacheStorageAccess implements DomainDataStorageAccess {
+
+    static final String GETS = "cache.region.gets";
+
+    static final String PUTS = "cache.region.puts";
+
+    @Getter
+    String region;
+
+    @Getter
+    RMapCache<Object, Object> map;
+
+    /**
+     * The settings of the region, with the default time to live applied.
+     */
+    @Getter
+    ApplicationProperties.CacheRegion settings;
+
+    long timeToLive;
+
+    long timeToIdle;
+
+    @Getter
+    Counter hits;
+
+    @Getter
+    Counter misses;
+
+    @Getter
+    Counter puts;
+
+    /**
+     * @param region the name of the region.
+     * @param map the map cache holding the entries of the region.
+     * @param settings the size, eviction and expiration of the region.
+     * @param meterRegistry the registry of the metrics of the region.
+     */
+    MapCacheStorageAccess(
+        String region,
+        RMapCache<Object, Object> map,
+        ApplicationProperties.CacheRegion settings,
+        MeterRegistry meterRegistry
+    ) {
+        this.region = region;
+        this.map = map;
+        this.settings = settings;
+        this.timeToLive = millis(settings.getTimeToLive());
+        this.timeToIdle = millis(settings.getTimeToIdle());
+        this.hits = Counter.builder(GETS).tags("cache", region, "result", "hit").register(meterRegistry);
+        this.misses = Counter.builder(GETS).tags("cache", region, "result", "miss").register(meterRegistry);
+        this.puts = Counter.builder(PUTS).tags("cache", region).register(meterRegistry);
+        applyMaxSize();
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = map.get(key);
+        (value == null ? misses : hits).increment();
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        map.fastPut(key, value, timeToLive, TimeUnit.MILLISECONDS, timeToIdle, TimeUnit.MILLISECONDS);
+        puts.increment();
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public void evictData() {
+        map.clear();
+        // clearing the map also drops its options
+        applyMaxSize();
+    }
+
+    @Override
+    public void evictData(Object key) {
+        map.fastRemove(key);
+    }
+
+    @Override
+    public void release() {
+        // the map cache belongs to the Redisson client
+    }
+
+    private void applyMaxSize() {
+        if (settings.getMaxEntries() > 0) {
+            map.setMaxSize(settings.getMaxEntries(), settings.getEviction());
+        }
+    }
+
+    private static long millis(Duration duration) {
+        return duration == null ? 0 : duration.toMillis();
+    }
+}
@@ -0,0 +1,29 @@
+package io.susimsek.gallery.config.cache;
+
+import java.io.Serializable;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Message published when a node changes an entry of a near-cached region, telling the other nodes to drop it from
+ * their local tier.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class NearCacheInvalidation implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Node which changed the entry, which keeps its own local copy.
+     */
+    String source;
+
+    String region;
+
+    /**
+     * The changed cache key, {@code null} when the whole region was cleared.
+     */
+    Object key;
+}
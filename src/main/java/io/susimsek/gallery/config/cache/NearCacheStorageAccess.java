@@ -0,0 +1,195 @@
+package io.susimsek.gallery.config.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Storage of a Hibernate second-level cache region with a bounded local tier in front of the Redis one.
+ * <p>
+ * Reads are answered from the local tier when they can, otherwise from Redis, filling the local tier. Changes go to
+ * both tiers and are published so the other nodes drop the entry from their local tier. A local entry also expires
+ * after the time to live of the region, which bounds the staleness caused by a lost invalidation.
+ * <p>
+ * The entries of {@code READ_WRITE} regions, {@link AbstractReadWriteAccess.Lockable items and soft locks}, are never
+ * held locally: Hibernate reads them to decide whether to lock, unlock or overwrite an entry, and only Redis is shared
+ * by the nodes, so these decisions must never be taken on a stale local copy. As no node holds them, their changes are
+ * not published either, which also keeps every load from the database in such a region from broadcasting. The local
+ * tier therefore only serves {@code NONSTRICT_READ_WRITE} and {@code READ_ONLY} regions.
+ * <p>
+ * Gets are counted per tier in {@code cache.near.gets}, tagged with the region name, the tier ({@code local} or
+ * {@code remote}) and the result ({@code hit} or {@code miss}).
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+class NearCacheStorageAccess implements DomainDataStorageAccess {
+
+    static final String GETS = "cache.near.gets";
+
+    static final String SIZE = "cache.near.size";
+
+    static final String INVALIDATIONS = "cache.near.invalidations";
+
+    @Getter
+    String region;
+
+    DomainDataStorageAccess remote;
+
+    Cache<Object, Object> local;
+
+    BiConsumer<String, Object> publisher;
+
+    /**
+     * Incremented on every invalidation, so a value read from Redis is only kept locally if no invalidation happened
+     * while it was read.
+     */
+    AtomicLong invalidations = new AtomicLong();
+
+    Counter remoteHits;
+
+    Counter remoteMisses;
+
+    /**
+     * @param region the name of the region.
+     * @param remote the storage of the region in Redis.
+     * @param properties the size and time to live of the local tier.
+     * @param publisher called with the region and the key, {@code null} for all keys, when an entry changes.
+     * @param meterRegistry the registry of the metrics of the region.
+     */
+    NearCacheStorageAccess(
+        String region,
+        DomainDataStorageAccess remote,
+        ApplicationProperties.NearCacheRegion properties,
+        BiConsumer<String, Object> publisher,
+        MeterRegistry meterRegistry
+    ) {
+        this.region = region;
+        this.remote = remote;
+        this.publisher = publisher;
+        this.local = Caffeine.newBuilder().maximumSize(properties.getMaxSize()).expireAfterWrite(properties.getTimeToLive()).recordStats().build();
+
+        FunctionCounter
+            .builder(GETS, local, cache -> cache.stats().hitCount())
+            .tags("cache", region, "tier", "local", "result", "hit")
+            .register(meterRegistry);
+        FunctionCounter
+            .builder(GETS, local, cache -> cache.stats().missCount())
+            .tags("cache", region, "tier", "local", "result", "miss")
+            .register(meterRegistry);
+        remoteHits = Counter.builder(GETS).tags("cache", region, "tier", "remote", "result", "hit").register(meterRegistry);
+        remoteMisses = Counter.builder(GETS).tags("cache", region, "tier", "remote", "result", "miss").register(meterRegistry);
+        Gauge.builder(SIZE, local, Cache::estimatedSize).tags("cache", region).register(meterRegistry);
+        FunctionCounter.builder(INVALIDATIONS, invalidations, AtomicLong::get).tags("cache", region).register(meterRegistry);
+    }
+
+    @Override
+    public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+        Object value = local.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        long invalidationsBefore = invalidations.get();
+        value = remote.getFromCache(key, session);
+        if (value == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        if (invalidations.get() == invalidationsBefore && !isLockable(value)) {
+            local.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+        remote.putIntoCache(key, value, session);
+        if (isLockable(value)) {
+            local.invalidate(key);
+            return;
+        }
+        local.put(key, value);
+        publisher.accept(region, key);
+    }
+
+    /**
+     * The value was just loaded from the database, so the copies of the other nodes are not affected.
+     */
+    @Override
+    public void putFromLoad(Object key, Object value, SharedSessionContractImplementor session) {
+        remote.putFromLoad(key, value, session);
+        if (isLockable(value)) {
+            local.invalidate(key);
+            return;
+        }
+        local.put(key, value);
+    }
+
+    @Override
+    public void removeFromCache(Object key, SharedSessionContractImplementor session) {
+        remote.removeFromCache(key, session);
+        local.invalidate(key);
+        publisher.accept(region, key);
+    }
+
+    @Override
+    public void clearCache(SharedSessionContractImplementor session) {
+        remote.clearCache(session);
+        local.invalidateAll();
+        publisher.accept(region, null);
+    }
+
+    @Override
+    public boolean contains(Object key) {
+        return local.getIfPresent(key) != null || remote.contains(key);
+    }
+
+    @Override
+    public void evictData() {
+        remote.evictData();
+        local.invalidateAll();
+        publisher.accept(region, null);
+    }
+
+    @Override
+    public void evictData(Object key) {
+        remote.evictData(key);
+        local.invalidate(key);
+        publisher.accept(region, key);
+    }
+
+    @Override
+    public void release() {
+        local.invalidateAll();
+        remote.release();
+    }
+
+    private static boolean isLockable(Object value) {
+        return value instanceof AbstractReadWriteAccess.Lockable;
+    }
+
+    /**
+     * Drop an entry changed by another node from the local tier.
+     *
+     * @param key the cache key, {@code null} for all keys.
+     */
+    void invalidateLocal(Object key) {
+        invalidations.incrementAndGet();
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.susimsek.gallery.config.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import javax.cache.CacheManager;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Memory used in Redis by each cache of the {@link CacheManager} and each Hibernate second-level cache region.
+ * <p>
+ * A Redisson cache is a hash named after the cache, holding the serialized entries, and sorted sets of their
+ * expiration and access times. Their {@code MEMORY USAGE} is summed into {@code cache.redis.memory} and the number of
+ * entries of the hash is {@code cache.redis.entries}, both tagged with the cache name. Measuring costs a round trip per key, so the
+ * values are refreshed every {@code application.cache.metrics-refresh-interval} rather than when scraped.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class RedisCacheMetrics implements MeterBinder {
+
+    static final String MEMORY = "cache.redis.memory";
+
+    static final String ENTRIES = "cache.redis.entries";
+
+    RedissonClient redissonClient;
+
+    CacheManager cacheManager;
+
+    RedisRegionFactory regionFactory;
+
+    Map<String, Usage> usages = new ConcurrentHashMap<>();
+
+    @NonFinal
+    volatile MeterRegistry meterRegistry;
+
+    public RedisCacheMetrics(RedissonClient redissonClient, CacheManager cacheManager, RedisRegionFactory regionFactory) {
+        this.redissonClient = redissonClient;
+        this.cacheManager = cacheManager;
+        this.regionFactory = regionFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+    }
+
+    /**
+     * Measures every cache, registering the gauges of the caches created since the last refresh.
+     */
+    @Scheduled(fixedDelayString = "${application.cache.metrics-refresh-interval:PT1M}")
+    public void refresh() {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            return;
+        }
+        for (String cacheName : cacheManager.getCacheNames()) {
+            measure(
+                cacheName,
+                registry,
+                () -> redissonClient.getMap(cacheName).sizeInMemory() + redissonClient.getScoredSortedSet(timeoutSetName(cacheName)).sizeInMemory(),
+                () -> redissonClient.getMap(cacheName).size()
+            );
+        }
+        for (MapCacheStorageAccess region : regionFactory.getRegions().values()) {
+            measure(region.getRegion(), registry, region.getMap()::sizeInMemory, region.getMap()::size);
+        }
+    }
+
+    private void measure(String cacheName, MeterRegistry registry, LongSupplier memory, IntSupplier entries) {
+        try {
+            Usage usage = usages.computeIfAbsent(cacheName, name -> register(name, registry));
+            usage.memory.set(memory.getAsLong());
+            usage.entries.set(entries.getAsInt());
+        } catch (RuntimeException e) {
+            log.warn("Could not measure the Redis memory of cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    /**
+     * Name of the sorted set in which Redisson keeps the expiration time of the entries of a cache.
+     */
+    static String timeoutSetName(String cacheName) {
+        return "jcache_timeout_set:{" + cacheName + "}";
+    }
+
+    private static Usage register(String cacheName, MeterRegistry registry) {
+        Usage usage = new Usage();
+        Gauge
+            .builder(MEMORY, usage.memory, AtomicLong::get)
+            .tags("cache", cacheName)
+            .baseUnit("bytes")
+            .description("Memory used in Redis by the entries of the cache")
+            .register(registry);
+        Gauge
+            .builder(ENTRIES, usage.entries, AtomicLong::get)
+            .tags("cache", cacheName)
+            .description("Entries of the cache in Redis")
+            .register(registry);
+        return usage;
+    }
+
+    private static class Usage {
+
+        final AtomicLong memory = new AtomicLong();
+
+        final AtomicLong entries = new AtomicLong();
+    }
+}
@@ -0,0 +1,183 @@
+package io.susimsek.gallery.config.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.PackagePrivate;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+
+/**
+ * {@link JCacheRegionFactory} which stores the entity and collection regions in Redisson map caches sized and expired
+ * after {@code application.cache.regions}, see {@link MapCacheStorageAccess}, and puts a local tier in front of Redis
+ * for the regions configured in {@code application.cache.near.regions}, see {@link NearCacheStorageAccess}.
+ * <p>
+ * Changes are published on a Redis topic; each node drops the changed entries of the other nodes from its local tier.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RedisRegionFactory extends JCacheRegionFactory {
+
+    final ApplicationProperties.Cache cacheProperties;
+
+    final ApplicationProperties.NearCache properties;
+
+    final Duration defaultTimeToLive;
+
+    final RedissonClient redissonClient;
+
+    final RTopic topic;
+
+    final MeterRegistry meterRegistry;
+
+    final Map<String, MapCacheStorageAccess> regions = new ConcurrentSkipListMap<>();
+
+    @PackagePrivate
+    final String nodeId = UUID.randomUUID().toString();
+
+    @PackagePrivate
+    final Map<String, NearCacheStorageAccess> nearCaches = new ConcurrentHashMap<>();
+
+    volatile int listenerId = -1;
+
+    /**
+     * @param cacheProperties the settings of the regions and of their local tier.
+     * @param defaultTimeToLive the time to live of the regions without expiration settings.
+     * @param redissonClient the client holding the regions.
+     * @param meterRegistry the registry of the metrics of the regions.
+     */
+    public RedisRegionFactory(
+        ApplicationProperties.Cache cacheProperties,
+        Duration defaultTimeToLive,
+        RedissonClient redissonClient,
+        MeterRegistry meterRegistry
+    ) {
+        this.cacheProperties = cacheProperties;
+        this.properties = cacheProperties.getNear();
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.redissonClient = redissonClient;
+        this.topic = redissonClient.getTopic(properties.getTopic());
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the storage of the entity and collection regions built so far, by region name.
+     */
+    public Map<String, MapCacheStorageAccess> getRegions() {
+        return Collections.unmodifiableMap(regions);
+    }
+
+    /**
+     * @return the settings of a region, its own or the defaults, with the default time to live when no expiration is set.
+     */
+    ApplicationProperties.CacheRegion settings(String regionName) {
+        ApplicationProperties.CacheRegion configured = cacheProperties.getRegions().get(regionName);
+        ApplicationProperties.CacheRegion settings = new ApplicationProperties.CacheRegion();
+        if (configured != null) {
+            settings.setMaxEntries(configured.getMaxEntries());
+            settings.setEviction(configured.getEviction());
+            settings.setTimeToLive(configured.getTimeToLive());
+            settings.setTimeToIdle(configured.getTimeToIdle());
+        }
+        if (settings.getTimeToLive() == null && settings.getTimeToIdle() == null) {
+            settings.setTimeToLive(defaultTimeToLive);
+        }
+        return settings;
+    }
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, @SuppressWarnings("rawtypes") Map configValues) {
+        super.prepareForUse(settings, configValues);
+        if (properties.isEnabled()) {
+            listenerId = topic.addListener(NearCacheInvalidation.class, (channel, invalidation) -> onInvalidation(invalidation));
+        }
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        if (listenerId != -1) {
+            topic.removeListener(listenerId);
+            listenerId = -1;
+        }
+        nearCaches.clear();
+        regions.clear();
+        super.releaseFromUse();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(
+        DomainDataRegionConfig regionConfig,
+        DomainDataRegionBuildingContext buildingContext
+    ) {
+        String regionName = regionConfig.getRegionName();
+        ApplicationProperties.CacheRegion settings = settings(regionName);
+        log.debug("Storing the cache region {} in a Redis map cache with {}", regionName, settings);
+        MapCacheStorageAccess storageAccess = new MapCacheStorageAccess(
+            regionName,
+            redissonClient.getMapCache(regionName),
+            settings,
+            meterRegistry
+        );
+        regions.put(regionName, storageAccess);
+        ApplicationProperties.NearCacheRegion region = properties.isEnabled() ? properties.getRegions().get(regionName) : null;
+        if (region == null) {
+            return storageAccess;
+        }
+        if (hasReadWriteAccess(regionConfig)) {
+            log.warn("Cache region {} is read-write, its entries are only kept in Redis and it gets no local tier", regionName);
+            return storageAccess;
+        }
+        log.debug("Adding a local tier of {} entries to the cache region {}", region.getMaxSize(), regionName);
+        NearCacheStorageAccess nearCache = new NearCacheStorageAccess(regionName, storageAccess, region, this::publish, meterRegistry);
+        nearCaches.put(regionName, nearCache);
+        return nearCache;
+    }
+
+    /**
+     * Read-write entries are never kept in a local tier, see {@link NearCacheStorageAccess}.
+     */
+    static boolean hasReadWriteAccess(DomainDataRegionConfig regionConfig) {
+        return Stream
+            .of(regionConfig.getEntityCaching(), regionConfig.getCollectionCaching(), regionConfig.getNaturalIdCaching())
+            .flatMap(List::stream)
+            .anyMatch(caching -> caching.getAccessType() == AccessType.READ_WRITE || caching.getAccessType() == AccessType.TRANSACTIONAL);
+    }
+
+    void publish(String region, Object key) {
+        topic
+            .publishAsync(new NearCacheInvalidation(nodeId, region, key))
+            .onComplete(
+                (receivers, e) -> {
+                    if (e != null) {
+                        log.warn("Could not publish the invalidation of {} in cache region {}: {}", key, region, e.getMessage());
+                    }
+                }
+            );
+    }
+
+    void onInvalidation(NearCacheInvalidation invalidation) {
+        if (nodeId.equals(invalidation.getSource())) {
+            return;
+        }
+        NearCacheStorageAccess nearCache = nearCaches.get(invalidation.getRegion());
+        if (nearCache != null) {
+            nearCache.invalidateLocal(invalidation.getKey());
+        }
+    }
+}
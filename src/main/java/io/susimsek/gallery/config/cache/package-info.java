@@ -0,0 +1,5 @@
+/**
+ * Hibernate second-level cache in Redis: sized and expired map caches per region, a bounded local tier in front of
+ * the read-mostly ones, the codecs of the cached values, and the clearing and warm-up of the caches on startup.
+ */
+package io.susimsek.gallery.config.cache;
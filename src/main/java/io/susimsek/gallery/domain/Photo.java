@@ -12,8 +12,9 @@ import lombok.*;
 import lombok.experimental.FieldDefaults;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.Type;
-import org.springframework.data.elasticsearch.annotations.FieldType;
 
 /**
  * A Photo.
@@ -26,14 +27,21 @@ import org.springframework.data.elasticsearch.annotations.FieldType;
 @Entity
 @Table(name = "photo")
 @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
-@org.springframework.data.elasticsearch.annotations.Document(indexName = "photo")
 public class Photo implements Serializable {
 
     static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photoSequenceGenerator")
+    @GenericGenerator(
+        name = "photoSequenceGenerator",
+        strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+        parameters = {
+            @Parameter(name = "sequence_name", value = "photo_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+        }
+    )
     Long id;
 
     @NotNull
@@ -45,9 +53,24 @@ public class Photo implements Serializable {
     @Column(name = "description")
     String description;
 
-    @Lob
-    @Column(name = "image", nullable = false)
-    byte[] image;
+    /**
+     * Key of the image in the {@link io.susimsek.gallery.service.storage.BlobStore}, the bytes are not kept in this table.
+     */
+    @Column(name = "image_key", length = 64)
+    String imageKey;
+
+    @Column(name = "image_size")
+    Long imageSize;
+
+    @Column(name = "image_checksum", length = 32)
+    String imageChecksum;
+
+    /**
+     * When the current image was stored, served as its {@code Last-Modified}; unlike {@link #uploaded}, it changes
+     * with the image and cannot be set by clients.
+     */
+    @Column(name = "image_stored_date")
+    Instant imageStoredDate;
 
     @Column(name = "image_content_type", nullable = false)
     String imageContentType;
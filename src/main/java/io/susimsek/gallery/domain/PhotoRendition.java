@@ -0,0 +1,95 @@
+package io.susimsek.gallery.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * A resized copy of a {@link Photo} image, stored in the blob store next to the original.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "photo_rendition")
+public class PhotoRendition implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "photoRenditionSequenceGenerator")
+    @GenericGenerator(
+        name = "photoRenditionSequenceGenerator",
+        strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+        parameters = {
+            @Parameter(name = "sequence_name", value = "photo_rendition_seq"),
+            @Parameter(name = "increment_size", value = "100"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+        }
+    )
+    Long id;
+
+    /**
+     * Requested length of the longest side, in pixels.
+     */
+    @NotNull
+    @Column(name = "size", nullable = false)
+    Integer size;
+
+    @NotNull
+    @Column(name = "format", nullable = false, length = 16)
+    String format;
+
+    @NotNull
+    @Column(name = "image_key", nullable = false, length = 64)
+    String imageKey;
+
+    @Column(name = "image_size")
+    Long imageSize;
+
+    @NotNull
+    @Column(name = "image_content_type", nullable = false)
+    String imageContentType;
+
+    @Column(name = "width")
+    Integer width;
+
+    @Column(name = "height")
+    Integer height;
+
+    /**
+     * Key of the original image this rendition was made from, so a replaced image invalidates it.
+     */
+    @NotNull
+    @Column(name = "source_key", nullable = false, length = 64)
+    String sourceKey;
+
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "photo_id", nullable = false)
+    Photo photo;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhotoRendition)) {
+            return false;
+        }
+        return id != null && id.equals(((PhotoRendition) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+}
@@ -0,0 +1,100 @@
+package io.susimsek.gallery.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.Type;
+
+/**
+ * A resumable upload in progress: the fields of the photo it will create and how much of its image has been received.
+ * The received bytes are kept on local disk until the upload is completed or expires.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "photo_upload")
+public class PhotoUpload implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    /**
+     * Random UUID, which the client uses to address the upload.
+     */
+    @Id
+    @Column(name = "id", length = 36)
+    String id;
+
+    @NotNull
+    @Size(max = 50)
+    @Column(name = "owner", length = 50, nullable = false)
+    String owner;
+
+    @NotNull
+    @Column(name = "title", nullable = false)
+    String title;
+
+    @Lob
+    @Type(type = "org.hibernate.type.TextType")
+    @Column(name = "description")
+    String description;
+
+    @Column(name = "album_id")
+    Long albumId;
+
+    @Column(name = "image_content_type")
+    String imageContentType;
+
+    /**
+     * Size of the whole image, announced when the upload is created.
+     */
+    @NotNull
+    @Column(name = "upload_length", nullable = false)
+    Long length;
+
+    /**
+     * Number of bytes received so far.
+     */
+    @Column(name = "upload_offset", nullable = false)
+    long offset;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    Instant createdDate;
+
+    /**
+     * Pushed back by every chunk received; an expired upload is deleted with its bytes.
+     */
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+
+    /**
+     * When a request started turning the upload into a photo, {@code null} if none is doing so.
+     */
+    @Column(name = "completing_since")
+    Instant completingSince;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhotoUpload)) {
+            return false;
+        }
+        return id != null && id.equals(((PhotoUpload) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+}
@@ -0,0 +1,85 @@
+package io.susimsek.gallery.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A refresh token, exchanged once for a new access token and the next refresh token of its family. Only the hash of
+ * the token is stored. Used tokens are kept until their family expires, so that a used token presented again reveals
+ * that it was stolen.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "refresh_token")
+public class RefreshToken implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    /**
+     * SHA-256 hash of the token, base64url encoded.
+     */
+    @Id
+    @Column(name = "token_hash", length = 43)
+    String hash;
+
+    /**
+     * Random UUID shared by the tokens rotated from the same sign in.
+     */
+    @NotNull
+    @Column(name = "family", length = 36, nullable = false)
+    String family;
+
+    @NotNull
+    @ToString.Exclude
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    User user;
+
+    /**
+     * Whether the access tokens of the family are issued with the remember me validity.
+     */
+    @Column(name = "remember_me", nullable = false)
+    boolean rememberMe;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    Instant createdDate;
+
+    /**
+     * When the family expires; rotating a token does not extend it.
+     */
+    @NotNull
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+
+    /**
+     * When the token was exchanged, {@code null} while it can still be.
+     */
+    @Column(name = "used_date")
+    Instant usedDate;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RefreshToken)) {
+            return false;
+        }
+        return hash != null && hash.equals(((RefreshToken) o).hash);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+}
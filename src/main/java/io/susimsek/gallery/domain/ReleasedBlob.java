@@ -0,0 +1,66 @@
+package io.susimsek.gallery.domain;
+
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * A blob a photo or rendition stopped referencing, written in the same transaction as the change which dropped the
+ * reference. The blob is deleted once the grace period has passed, if nothing references it by then.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "released_blob")
+public class ReleasedBlob implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "releasedBlobSequenceGenerator")
+    @GenericGenerator(
+        name = "releasedBlobSequenceGenerator",
+        strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+        parameters = {
+            @Parameter(name = "sequence_name", value = "released_blob_seq"),
+            @Parameter(name = "increment_size", value = "100"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+        }
+    )
+    Long id;
+
+    @NotNull
+    @Size(max = 64)
+    @Column(name = "image_key", length = 64, nullable = false)
+    String imageKey;
+
+    @NotNull
+    @Column(name = "released_date", nullable = false)
+    Instant releasedDate;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReleasedBlob)) {
+            return false;
+        }
+        return id != null && id.equals(((ReleasedBlob) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+}
@@ -0,0 +1,82 @@
+package io.susimsek.gallery.domain;
+
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
+import java.io.Serializable;
+import java.time.Instant;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+/**
+ * A pending search index change, written in the same transaction as the entity change it records.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "search_index_outbox")
+public class SearchIndexOutbox implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "searchIndexOutboxSequenceGenerator")
+    @GenericGenerator(
+        name = "searchIndexOutboxSequenceGenerator",
+        strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+        parameters = {
+            @Parameter(name = "sequence_name", value = "search_index_outbox_seq"),
+            @Parameter(name = "increment_size", value = "100"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+        }
+    )
+    Long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false, length = 16)
+    SearchIndexEntityType entityType;
+
+    @NotNull
+    @Column(name = "entity_id", nullable = false)
+    Long entityId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 16)
+    SearchIndexOperation operation;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    Instant createdDate;
+
+    /**
+     * Number of failed attempts to apply this change.
+     */
+    @Column(name = "attempts", nullable = false)
+    int attempts;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchIndexOutbox)) {
+            return false;
+        }
+        return id != null && id.equals(((SearchIndexOutbox) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+}
@@ -51,8 +51,8 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @ToString.Exclude
     @JsonIgnore
     @NotNull
-    @Size(min = 60, max = 60)
-    @Column(name = "password_hash", length = 60, nullable = false)
+    @Size(min = 60, max = 128)
+    @Column(name = "password_hash", length = 128, nullable = false)
     String password;
 
     @Size(max = 50)
@@ -0,0 +1,11 @@
+package io.susimsek.gallery.domain.enumeration;
+
+/**
+ * The entities kept in an Elasticsearch index through the search index outbox.
+ */
+public enum SearchIndexEntityType {
+    PHOTO,
+    ALBUM,
+    TAG,
+    USER,
+}
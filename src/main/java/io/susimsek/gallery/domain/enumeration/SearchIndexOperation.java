@@ -0,0 +1,9 @@
+package io.susimsek.gallery.domain.enumeration;
+
+/**
+ * The change to apply to a search index document.
+ */
+public enum SearchIndexOperation {
+    INDEX,
+    DELETE,
+}
@@ -0,0 +1,4 @@
+/**
+ * Enumerations used by the domain model.
+ */
+package io.susimsek.gallery.domain.enumeration;
@@ -0,0 +1,130 @@
+package io.susimsek.gallery.domain.search;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+/**
+ * The searchable metadata of a {@link io.susimsek.gallery.domain.Photo}.
+ * <p>
+ * The mapping is explicit and limited to what users search and what the result list shows; image bytes,
+ * blob keys and checksums never reach the index.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(indexName = "photo")
+public class PhotoSearchDocument implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    @Id
+    Long id;
+
+    @Field(type = FieldType.Text)
+    String title;
+
+    @Field(type = FieldType.Text)
+    String description;
+
+    @Field(type = FieldType.Keyword)
+    String imageContentType;
+
+    @Field(type = FieldType.Integer)
+    Integer height;
+
+    @Field(type = FieldType.Integer)
+    Integer width;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_optional_time)
+    Instant taken;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_optional_time)
+    Instant uploaded;
+
+    @Field(type = FieldType.Object)
+    AlbumReference album;
+
+    @Builder.Default
+    @Field(type = FieldType.Object)
+    Set<TagReference> tags = new HashSet<>();
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhotoSearchDocument)) {
+            return false;
+        }
+        return id != null && id.equals(((PhotoSearchDocument) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
+    /**
+     * The album of a photo, as stored in the photo index.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AlbumReference implements Serializable {
+
+        static final long serialVersionUID = 1L;
+
+        @Field(type = FieldType.Long)
+        Long id;
+
+        @Field(type = FieldType.Text)
+        String title;
+    }
+
+    /**
+     * A tag of a photo, as stored in the photo index.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TagReference implements Serializable {
+
+        static final long serialVersionUID = 1L;
+
+        @Field(type = FieldType.Long)
+        Long id;
+
+        @Field(type = FieldType.Text)
+        String name;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TagReference)) {
+                return false;
+            }
+            return Objects.equals(id, ((TagReference) o).id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id);
+        }
+    }
+}
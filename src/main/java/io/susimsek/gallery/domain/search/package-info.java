@@ -0,0 +1,4 @@
+/**
+ * Documents stored in the Elasticsearch indices.
+ */
+package io.susimsek.gallery.domain.search;
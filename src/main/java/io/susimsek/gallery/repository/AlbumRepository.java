@@ -2,10 +2,32 @@ package io.susimsek.gallery.repository;
 
 import io.susimsek.gallery.domain.Album;
 import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 
 public interface AlbumRepository extends JpaRepository<Album, Long>, JpaSpecificationExecutor<Album> {
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<Album> findAll(@Nullable Specification<Album> spec);
+
+    @Override
+    @EntityGraph(attributePaths = "user")
+    Page<Album> findAll(@Nullable Specification<Album> spec, Pageable pageable);
+
     @Query("select album from Album album where album.user.login = ?#{principal.username}")
     List<Album> findByUserIsCurrentUser();
+
+    @Query("select album.id from Album album where album.id > :afterId and album.id <= :toId order by album.id")
+    List<Long> findIdsInRange(@Param("afterId") Long afterId, @Param("toId") Long toId, Pageable pageable);
+
+    @Query("select max(album.id) from Album album")
+    Long findMaxId();
+
+    @EntityGraph(attributePaths = "user")
+    List<Album> findAllByOrderByCreatedDesc(Pageable pageable);
 }
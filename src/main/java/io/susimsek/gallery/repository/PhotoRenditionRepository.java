@@ -0,0 +1,29 @@
+package io.susimsek.gallery.repository;
+
+import io.susimsek.gallery.domain.PhotoRendition;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Spring Data SQL repository for the PhotoRendition entity.
+ */
+public interface PhotoRenditionRepository extends JpaRepository<PhotoRendition, Long> {
+    Optional<PhotoRendition> findOneByPhotoIdAndSizeAndFormat(Long photoId, Integer size, String format);
+
+    List<PhotoRendition> findAllByPhotoId(Long photoId);
+
+    boolean existsByImageKey(String imageKey);
+
+    /**
+     * Ids of the photos, after the given one, which miss at least one up to date rendition.
+     */
+    @Query(
+        "select photo.id from Photo photo where photo.imageKey is not null and photo.id > :afterId and " +
+        "(select count(rendition) from PhotoRendition rendition where rendition.photo = photo and rendition.sourceKey = photo.imageKey) < :expected " +
+        "order by photo.id"
+    )
+    List<Long> findPhotoIdsMissingRenditions(@Param("afterId") Long afterId, @Param("expected") long expected, Pageable pageable);
+}
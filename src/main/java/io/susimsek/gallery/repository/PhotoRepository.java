@@ -1,6 +1,7 @@
 package io.susimsek.gallery.repository;
 
 import io.susimsek.gallery.domain.Photo;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -24,4 +25,18 @@ public interface PhotoRepository extends JpaRepository<Photo, Long>, JpaSpecific
 
     @Query("select photo from Photo photo left join fetch photo.tags where photo.id =:id")
     Optional<Photo> findOneWithEagerRelationships(@Param("id") Long id);
+
+    @Query(
+        "select distinct photo from Photo photo left join fetch photo.tags left join fetch photo.album album left join fetch album.user " +
+        "where photo.id in :ids"
+    )
+    List<Photo> findAllWithEagerRelationshipsByIdIn(@Param("ids") Collection<Long> ids);
+
+    boolean existsByImageKey(String imageKey);
+
+    @Query("select photo.id from Photo photo where photo.id > :afterId and photo.id <= :toId order by photo.id")
+    List<Long> findIdsInRange(@Param("afterId") Long afterId, @Param("toId") Long toId, Pageable pageable);
+
+    @Query("select max(photo.id) from Photo photo")
+    Long findMaxId();
 }
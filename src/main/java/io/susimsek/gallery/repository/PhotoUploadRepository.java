@@ -0,0 +1,72 @@
+package io.susimsek.gallery.repository;
+
+import io.susimsek.gallery.domain.PhotoUpload;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Spring Data SQL repository for the PhotoUpload entity.
+ */
+public interface PhotoUploadRepository extends JpaRepository<PhotoUpload, String> {
+    Optional<PhotoUpload> findOneByIdAndOwner(String id, String owner);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select upload from PhotoUpload upload where upload.id = :id")
+    Optional<PhotoUpload> findOneForUpdate(@Param("id") String id);
+
+    /**
+     * Record received bytes, or move the offset back to the bytes present, unless another request moved the offset
+     * meanwhile.
+     *
+     * @return {@code 1} if the offset was still {@code expectedOffset}, {@code 0} otherwise.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(
+        "update PhotoUpload upload set upload.offset = :offset, upload.expiresAt = :expiresAt " +
+        "where upload.id = :id and upload.offset = :expectedOffset"
+    )
+    int advanceOffset(
+        @Param("id") String id,
+        @Param("expectedOffset") long expectedOffset,
+        @Param("offset") long offset,
+        @Param("expiresAt") Instant expiresAt
+    );
+
+    /**
+     * Give up completing an upload, unless another request claimed it meanwhile.
+     *
+     * @return {@code 1} if the upload was still claimed since {@code completingSince}, {@code 0} otherwise.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update PhotoUpload upload set upload.completingSince = null where upload.id = :id and upload.completingSince = :completingSince")
+    int releaseClaim(@Param("id") String id, @Param("completingSince") Instant completingSince);
+
+    /**
+     * Give up completing an upload whose bytes are not all present, and move its offset back to the bytes present,
+     * unless another request claimed it meanwhile.
+     *
+     * @return {@code 1} if the upload was still claimed since {@code completingSince}, {@code 0} otherwise.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(
+        "update PhotoUpload upload set upload.offset = :offset, upload.completingSince = null " +
+        "where upload.id = :id and upload.completingSince = :completingSince"
+    )
+    int rewindClaimed(@Param("id") String id, @Param("completingSince") Instant completingSince, @Param("offset") long offset);
+
+    /**
+     * Delete a completed upload, unless another request claimed it meanwhile.
+     *
+     * @return {@code 1} if the upload was still claimed since {@code completingSince}, {@code 0} otherwise.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from PhotoUpload upload where upload.id = :id and upload.completingSince = :completingSince")
+    int deleteClaimed(@Param("id") String id, @Param("completingSince") Instant completingSince);
+
+    @Query("select upload.id from PhotoUpload upload where upload.expiresAt < :now")
+    List<String> findExpiredIds(@Param("now") Instant now);
+}
@@ -0,0 +1,34 @@
+package io.susimsek.gallery.repository;
+
+import io.susimsek.gallery.domain.RefreshToken;
+import io.susimsek.gallery.domain.User;
+import java.time.Instant;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Spring Data SQL repository for the RefreshToken entity.
+ */
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+    /**
+     * Read a token and lock it, so that concurrent exchanges of the same token are serialized.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @EntityGraph(attributePaths = "user")
+    @Query("select token from RefreshToken token where token.hash = :hash")
+    Optional<RefreshToken> findOneForUpdate(@Param("hash") String hash);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from RefreshToken token where token.family = :family")
+    int deleteByFamily(@Param("family") String family);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from RefreshToken token where token.user = :user")
+    int deleteByUser(@Param("user") User user);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from RefreshToken token where token.expiresAt < :now")
+    int deleteExpired(@Param("now") Instant now);
+}
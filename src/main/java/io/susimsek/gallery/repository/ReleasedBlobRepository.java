@@ -0,0 +1,30 @@
+package io.susimsek.gallery.repository;
+
+import io.susimsek.gallery.domain.ReleasedBlob;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Spring Data SQL repository for the ReleasedBlob entity.
+ */
+public interface ReleasedBlobRepository extends JpaRepository<ReleasedBlob, Long> {
+    /**
+     * The keys released before a time, in key order after a key, so that keys kept for a later run are not read again.
+     */
+    @Query(
+        "select distinct released.imageKey from ReleasedBlob released " +
+        "where released.releasedDate <= :releasedBefore and released.imageKey > :after order by released.imageKey"
+    )
+    List<String> findKeysReleasedBefore(@Param("releasedBefore") Instant releasedBefore, @Param("after") String after, Pageable pageable);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from ReleasedBlob released where released.imageKey = :imageKey and released.releasedDate <= :releasedBefore")
+    int deleteReleasedBefore(@Param("imageKey") String imageKey, @Param("releasedBefore") Instant releasedBefore);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from ReleasedBlob released where released.imageKey = :imageKey")
+    int deleteByImageKey(@Param("imageKey") String imageKey);
+}
@@ -0,0 +1,28 @@
+package io.susimsek.gallery.repository;
+
+import io.susimsek.gallery.domain.SearchIndexOutbox;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Spring Data SQL repository for the SearchIndexOutbox entity.
+ */
+public interface SearchIndexOutboxRepository extends JpaRepository<SearchIndexOutbox, Long> {
+    @Query("select outbox from SearchIndexOutbox outbox order by outbox.id")
+    List<SearchIndexOutbox> findOldest(Pageable pageable);
+
+    @Query("select min(outbox.createdDate) from SearchIndexOutbox outbox")
+    Instant findOldestCreatedDate();
+
+    @Modifying
+    @Query("update SearchIndexOutbox outbox set outbox.attempts = outbox.attempts + 1 where outbox.id in :ids")
+    int incrementAttempts(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("delete from SearchIndexOutbox outbox where outbox.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,11 +1,23 @@
 package io.susimsek.gallery.repository;
 
 import io.susimsek.gallery.domain.Tag;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
  * Spring Data SQL repository for the Tag entity.
  */
 @SuppressWarnings("unused")
-public interface TagRepository extends JpaRepository<Tag, Long>, JpaSpecificationExecutor<Tag> {}
+public interface TagRepository extends JpaRepository<Tag, Long>, JpaSpecificationExecutor<Tag> {
+    @Query("select tag.id from Tag tag where tag.id > :afterId and tag.id <= :toId order by tag.id")
+    List<Long> findIdsInRange(@Param("afterId") Long afterId, @Param("toId") Long toId, Pageable pageable);
+
+    @Query("select max(tag.id) from Tag tag")
+    Long findMaxId();
+
+    @Query("select tag from Tag tag order by size(tag.photos) desc, tag.id")
+    List<Tag> findMostUsed(Pageable pageable);
+}
@@ -9,6 +9,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -38,4 +40,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findOneWithAuthoritiesByEmailIgnoreCase(String email);
 
     Page<User> findAllByIdNotNullAndActivatedIsTrue(Pageable pageable);
+
+    @Query("select user.id from User user where user.id > :afterId and user.id <= :toId order by user.id")
+    List<Long> findIdsInRange(@Param("afterId") Long afterId, @Param("toId") Long toId, Pageable pageable);
+
+    @Query("select max(user.id) from User user")
+    Long findMaxId();
 }
@@ -1,9 +1,9 @@
 package io.susimsek.gallery.repository.search;
 
-import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 
 /**
- * Spring Data Elasticsearch repository for the {@link Photo} entity.
+ * Spring Data Elasticsearch repository for the {@link PhotoSearchDocument} of the {@link io.susimsek.gallery.domain.Photo} entity.
  */
-public interface PhotoSearchRepository extends ElasticsearchRepository<Photo, Long> {}
+public interface PhotoSearchRepository extends ElasticsearchRepository<PhotoSearchDocument, Long> {}
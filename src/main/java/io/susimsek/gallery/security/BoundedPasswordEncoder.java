@@ -0,0 +1,107 @@
+package io.susimsek.gallery.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Hashes and verifies passwords on a pool of its own, so a burst of sign ins cannot take all the request threads.
+ * <p>
+ * The request threads wait for the pool, at most {@code threads + queueCapacity} of them at a time; beyond that a
+ * {@link PasswordHashingBusyException} is thrown at once and the request answered with a 503. The pool is monitored as
+ * the {@code password.hashing} executor, with its queue depth in {@code executor.queued} and the rejections in
+ * {@code password.hashing.rejected}.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    static final String NAME = "password.hashing";
+
+    static final String REJECTED = "password.hashing.rejected";
+
+    PasswordEncoder delegate;
+
+    ThreadPoolExecutor pool;
+
+    ExecutorService executor;
+
+    Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.delegate = delegate;
+        this.pool =
+            new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                new CustomizableThreadFactory("gallery-password-")
+            );
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, NAME);
+        this.rejected = Counter.builder(REJECTED).description("Password hashes rejected by the full pool").register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Only reads the hash, so it runs on the calling thread.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private <T> T run(Callable<T> hashing) {
+        Future<T> hash;
+        try {
+            hash = executor.submit(hashing);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Password hashing pool is full, {} hashes queued", pool.getQueue().size());
+            throw new PasswordHashingBusyException("Too many passwords are being hashed", e);
+        }
+        try {
+            return hash.get();
+        } catch (InterruptedException e) {
+            hash.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package io.susimsek.gallery.security;
+
+/**
+ * This exception is thrown when a password cannot be hashed or verified because the hashing pool and its queue are full.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException(String message, Throwable t) {
+        super(message, t);
+    }
+}
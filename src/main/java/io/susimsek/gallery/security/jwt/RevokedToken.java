@@ -0,0 +1,26 @@
+package io.susimsek.gallery.security.jwt;
+
+import java.io.Serializable;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Message published when a node revokes a token, telling the other nodes to reject it too.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class RevokedToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The {@code jti} of the token.
+     */
+    String id;
+
+    /**
+     * When the token expires, in epoch milliseconds.
+     */
+    long expiration;
+}
@@ -1,19 +1,28 @@
 package io.susimsek.gallery.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.PackagePrivate;
 import lombok.extern.slf4j.Slf4j;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -23,6 +32,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.ObjectUtils;
 import tech.jhipster.config.JHipsterProperties;
 
+/**
+ * Creates the JWTs of the authenticated users and authenticates the requests bearing them.
+ * <p>
+ * A request is authenticated in a single pass over its token, see {@link #authenticate(String)}. The authentication of
+ * a verified token is kept, under the SHA-256 hash of the token, until the token expires
+ * ({@code application.security.token-cache}): a client sends the same token with every request, which then skip the
+ * signature check and the parsing of the claims. Invalid tokens are never kept, so they cannot fill the cache.
+ * <p>
+ * Each token has an id ({@code jti}), so it can be revoked before it expires, see {@link TokenRevocationService}; the
+ * revoked tokens are rejected even once cached.
+ */
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Component
@@ -38,7 +58,29 @@ public class TokenProvider {
 
     final long tokenValidityInMillisecondsForRememberMe;
 
+    /**
+     * Authentications of the verified tokens by hash, {@code null} when disabled.
+     */
+    @PackagePrivate
+    final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    final TokenRevocationList revocationList;
+
+    /**
+     * Clock of the expiration of the tokens, for both the parser and the cache.
+     */
+    Clock clock = Clock.systemUTC();
+
     public TokenProvider(JHipsterProperties jHipsterProperties) {
+        this(jHipsterProperties, new ApplicationProperties(), new TokenRevocationList());
+    }
+
+    @Autowired
+    public TokenProvider(
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        TokenRevocationList revocationList
+    ) {
         byte[] keyBytes;
         String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret();
         if (!ObjectUtils.isEmpty(secret)) {
@@ -53,16 +95,22 @@ public class TokenProvider {
             keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         }
         key = Keys.hmacShaKeyFor(keyBytes);
-        jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        jwtParser = Jwts.parserBuilder().setSigningKey(key).setClock(() -> Date.from(clock.instant())).build();
         this.tokenValidityInMilliseconds = 1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSeconds();
         this.tokenValidityInMillisecondsForRememberMe =
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
+        ApplicationProperties.TokenCache tokenCache = applicationProperties.getSecurity().getTokenCache();
+        this.verifiedTokens =
+            tokenCache.isEnabled() && tokenCache.getMaxSize() > 0
+                ? Caffeine.newBuilder().maximumSize(tokenCache.getMaxSize()).expireAfter(new UntilExpiration()).build()
+                : null;
+        this.revocationList = revocationList;
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
         String authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(","));
 
-        long now = (new Date()).getTime();
+        long now = clock.millis();
         Date validity;
         if (rememberMe) {
             validity = new Date(now + this.tokenValidityInMillisecondsForRememberMe);
@@ -72,6 +120,7 @@ public class TokenProvider {
 
         return Jwts
             .builder()
+            .setId(UUID.randomUUID().toString())
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
             .signWith(key, SignatureAlgorithm.HS512)
@@ -79,9 +128,39 @@ public class TokenProvider {
             .compact();
     }
 
+    /**
+     * Verify a token and return the authentication of its user, checking the signature and reading the claims once.
+     *
+     * @param token the compact JWT of a request.
+     * @return the authentication, empty if the token is invalid, expired or revoked.
+     */
+    public Optional<Authentication> authenticate(String token) {
+        if (verifiedTokens == null) {
+            return parse(token).filter(claims -> !isRevoked(claims.getId())).map(claims -> toAuthentication(claims, token));
+        }
+        ByteBuffer hash = hash(token);
+        VerifiedToken verified = verifiedTokens.getIfPresent(hash);
+        if (verified != null && verified.getExpiration() > clock.millis()) {
+            return isRevoked(verified.getId()) ? Optional.empty() : Optional.of(verified.getAuthentication());
+        }
+        Optional<Claims> claims = parse(token);
+        if (claims.isEmpty() || isRevoked(claims.get().getId())) {
+            return Optional.empty();
+        }
+        Authentication authentication = toAuthentication(claims.get(), token);
+        Date expiration = claims.get().getExpiration();
+        verifiedTokens.put(
+            hash,
+            new VerifiedToken(authentication, claims.get().getId(), expiration != null ? expiration.getTime() : Long.MAX_VALUE)
+        );
+        return Optional.of(authentication);
+    }
+
     public Authentication getAuthentication(String token) {
-        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        return toAuthentication(jwtParser.parseClaimsJws(token).getBody(), token);
+    }
 
+    private static Authentication toAuthentication(Claims claims, String token) {
         Collection<? extends GrantedAuthority> authorities = Arrays
             .stream(claims.get(AUTHORITIES_KEY).toString().split(","))
             .filter(auth -> !auth.trim().isEmpty())
@@ -94,13 +173,76 @@ public class TokenProvider {
     }
 
     public boolean validateToken(String authToken) {
+        return parse(authToken).filter(claims -> !isRevoked(claims.getId())).isPresent();
+    }
+
+    /**
+     * @return the claims of the token, empty if it is invalid or expired; whether it is revoked is not checked.
+     */
+    Optional<Claims> parse(String token) {
         try {
-            jwtParser.parseClaimsJws(authToken);
-            return true;
+            return Optional.of(jwtParser.parseClaimsJws(token).getBody());
         } catch (JwtException | IllegalArgumentException e) {
             log.info("Invalid JWT token.");
             log.trace("Invalid JWT token trace.", e);
         }
+        return Optional.empty();
+    }
+
+    private boolean isRevoked(String id) {
+        if (revocationList.isRevoked(id)) {
+            log.info("Revoked JWT token.");
+            return true;
+        }
         return false;
     }
+
+    private static ByteBuffer hash(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The authentication of a verified token, shared by all its requests.
+     */
+    @Value
+    static class VerifiedToken {
+
+        Authentication authentication;
+
+        /**
+         * The {@code jti} of the token, {@code null} if it has none.
+         */
+        String id;
+
+        /**
+         * When the token expires, in epoch milliseconds.
+         */
+        long expiration;
+    }
+
+    /**
+     * Keeps a verified token until it expires.
+     */
+    private class UntilExpiration implements Expiry<ByteBuffer, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer hash, VerifiedToken verified, long currentTime) {
+            long remaining = verified.getExpiration() - clock.millis();
+            return remaining <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(Math.min(remaining, TimeUnit.NANOSECONDS.toMillis(Long.MAX_VALUE)));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer hash, VerifiedToken verified, long currentTime, long currentDuration) {
+            return expireAfterCreate(hash, verified, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer hash, VerifiedToken verified, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,165 @@
+package io.susimsek.gallery.security.jwt;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The ids of the revoked tokens known to this node, each until its token expires, checked on every request.
+ * <p>
+ * The check does not allocate: a bloom filter rules out almost all the tokens which are not revoked, and only the
+ * others are looked up in the exact set. The bloom filter cannot forget an id, it is rebuilt from the set when the
+ * expired ids are {@link #purge(long) purged}. Revocations are rare and serialized, checks never lock.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Component
+public class TokenRevocationList {
+
+    static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    int expectedRevocations;
+
+    /**
+     * Expiration of the revoked tokens in epoch milliseconds, by token id.
+     */
+    ConcurrentMap<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @NonFinal
+    volatile BloomFilter bloomFilter;
+
+    public TokenRevocationList() {
+        this(new ApplicationProperties());
+    }
+
+    @Autowired
+    public TokenRevocationList(ApplicationProperties applicationProperties) {
+        this.expectedRevocations = Math.max(1, applicationProperties.getSecurity().getTokenRevocation().getExpectedRevocations());
+        this.bloomFilter = new BloomFilter(expectedRevocations);
+    }
+
+    /**
+     * @param id the id of a token, {@code null} if it has none.
+     * @return whether the token is revoked.
+     */
+    public boolean isRevoked(String id) {
+        return id != null && bloomFilter.mightContain(id) && revoked.containsKey(id);
+    }
+
+    /**
+     * Revoke a token until it expires.
+     *
+     * @param id the id of the token.
+     * @param expiration when the token expires, in epoch milliseconds.
+     */
+    public synchronized void revoke(String id, long expiration) {
+        revoked.merge(id, expiration, Math::max);
+        if (revoked.size() > bloomFilter.capacity) {
+            rebuildBloomFilter();
+        } else {
+            bloomFilter.put(id);
+        }
+    }
+
+    /**
+     * Revoke tokens until they expire.
+     *
+     * @param revocations the expiration of the tokens in epoch milliseconds, by token id.
+     */
+    public synchronized void revokeAll(Map<String, Long> revocations) {
+        revocations.forEach(this::revoke);
+    }
+
+    /**
+     * Forget the tokens expired at a time, they are rejected without being revoked.
+     *
+     * @param now the time in epoch milliseconds.
+     */
+    public synchronized void purge(long now) {
+        if (revoked.values().removeIf(expiration -> expiration <= now)) {
+            rebuildBloomFilter();
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    /**
+     * Replace the bloom filter with one of the ids in the set, with room for as many more; checks go on with the
+     * previous filter, which holds them all, until it is replaced.
+     */
+    private void rebuildBloomFilter() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, 2 * revoked.size()));
+        revoked.keySet().forEach(rebuilt::put);
+        bloomFilter = rebuilt;
+    }
+
+    /**
+     * Bloom filter of strings, probed with double hashing of {@link String#hashCode()}, which strings cache.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    static final class BloomFilter {
+
+        AtomicLongArray words;
+
+        /**
+         * Strings the filter holds at its false positive probability.
+         */
+        int capacity;
+
+        int bits;
+
+        int hashes;
+
+        BloomFilter(int expectedInsertions) {
+            this.capacity = expectedInsertions;
+            double ln2 = Math.log(2);
+            long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(FALSE_POSITIVE_PROBABILITY) / (ln2 * ln2));
+            this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        /**
+         * Add a string; the writers of a filter must be serialized.
+         */
+        void put(String value) {
+            int hash = value.hashCode();
+            int step = step(hash);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(hash + i * step, bits);
+                words.set(bit >>> 6, words.get(bit >>> 6) | (1L << bit));
+            }
+        }
+
+        boolean mightContain(String value) {
+            int hash = value.hashCode();
+            int step = step(hash);
+            for (int i = 0; i < hashes; i++) {
+                int bit = Math.floorMod(hash + i * step, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return a second hash derived from the first, odd so the probes do not repeat.
+         */
+        private static int step(int hash) {
+            int mixed = hash * 0x85ebca6b;
+            mixed ^= mixed >>> 13;
+            mixed *= 0xc2b2ae35;
+            mixed ^= mixed >>> 16;
+            return mixed | 1;
+        }
+    }
+}
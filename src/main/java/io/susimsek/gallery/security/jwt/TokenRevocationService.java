@@ -0,0 +1,120 @@
+package io.susimsek.gallery.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Revokes tokens before they expire, on every node.
+ * <p>
+ * A revoked token is kept in a Redis map cache until it expires, under its {@code jti}, and published on a topic of the
+ * same name; each node adds the revocations it receives to its {@link TokenRevocationList}, which {@link TokenProvider}
+ * checks on every request. Each node also reads the whole map again every
+ * {@code application.security.token-revocation.refresh-interval}, catching up on the messages it missed while
+ * disconnected, and forgets the expired tokens.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Service
+public class TokenRevocationService {
+
+    TokenProvider tokenProvider;
+
+    TokenRevocationList revocationList;
+
+    RMapCache<String, Long> revokedTokens;
+
+    RTopic topic;
+
+    @NonFinal
+    volatile int listenerId = -1;
+
+    public TokenRevocationService(
+        ApplicationProperties applicationProperties,
+        TokenProvider tokenProvider,
+        TokenRevocationList revocationList,
+        RedissonClient redissonClient
+    ) {
+        String name = applicationProperties.getSecurity().getTokenRevocation().getName();
+        this.tokenProvider = tokenProvider;
+        this.revocationList = revocationList;
+        this.revokedTokens = redissonClient.getMapCache(name, new CompositeCodec(StringCodec.INSTANCE, LongCodec.INSTANCE));
+        this.topic = redissonClient.getTopic(name);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        listenerId = topic.addListener(RevokedToken.class, (channel, revoked) -> revocationList.revoke(revoked.getId(), revoked.getExpiration()));
+        refresh();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (listenerId != -1) {
+            topic.removeListener(listenerId);
+            listenerId = -1;
+        }
+    }
+
+    /**
+     * Revoke a token until it expires.
+     *
+     * @param token the compact JWT.
+     * @return whether the token was revoked, {@code false} if it is invalid, expired or has no id.
+     * @throws RedisException if the revocation could not be stored, it is then only known to this node.
+     */
+    public boolean revoke(String token) {
+        Optional<Claims> claims = tokenProvider.parse(token);
+        if (claims.isEmpty()) {
+            return false;
+        }
+        String id = claims.get().getId();
+        if (id == null || claims.get().getExpiration() == null) {
+            log.warn("Token of {} has no id or expiration and cannot be revoked", claims.get().getSubject());
+            return false;
+        }
+        long expiration = claims.get().getExpiration().getTime();
+        long remaining = expiration - System.currentTimeMillis();
+        if (remaining <= 0) {
+            return false;
+        }
+        log.debug("Revoking token {} of {}", id, claims.get().getSubject());
+        revocationList.revoke(id, expiration);
+        revokedTokens.fastPut(id, expiration, remaining, TimeUnit.MILLISECONDS);
+        topic.publish(new RevokedToken(id, expiration));
+        return true;
+    }
+
+    /**
+     * Read the revoked tokens from Redis and forget the expired ones.
+     */
+    @Scheduled(
+        fixedDelayString = "${application.security.token-revocation.refresh-interval:PT1M}",
+        initialDelayString = "${application.security.token-revocation.refresh-interval:PT1M}"
+    )
+    public void refresh() {
+        try {
+            revocationList.revokeAll(revokedTokens.readAllMap());
+        } catch (RedisException e) {
+            log.warn("Could not read the revoked tokens from Redis: {}", e.getMessage());
+        } finally {
+            revocationList.purge(System.currentTimeMillis());
+        }
+    }
+}
@@ -6,35 +6,62 @@ import io.susimsek.gallery.repository.AlbumRepository;
 import io.susimsek.gallery.repository.search.AlbumSearchRepository;
 import io.susimsek.gallery.service.criteria.AlbumCriteria;
 import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.keyset.KeysetCursor;
+import io.susimsek.gallery.service.keyset.KeysetPage;
+import io.susimsek.gallery.service.keyset.KeysetQueryService;
+import io.susimsek.gallery.service.listing.ListingCache;
+import io.susimsek.gallery.service.listing.ListingKey;
+import io.susimsek.gallery.service.listing.ListingScopes;
 import io.susimsek.gallery.service.mapper.AlbumMapper;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.SingularAttribute;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import tech.jhipster.service.QueryService;
 
 /**
  * Service for executing complex queries for {@link Album} entities in the database.
  * The main input is a {@link AlbumCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
- * It returns a {@link List} of {@link AlbumDto} or a {@link Page} of {@link AlbumDto} which fulfills the criteria.
+ * It returns a {@link List} of {@link AlbumDto} or a {@link Page} or {@link KeysetPage} of {@link AlbumDto} which fulfills the criteria.
+ * <p>
+ * The ids of the pages are cached in the {@link ListingCache}, restricted to the users of the criteria, so a change to
+ * an album only drops the pages of its user and the unrestricted ones.
  */
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @RequiredArgsConstructor
 @Service
 @Transactional(readOnly = true)
-public class AlbumQueryService extends QueryService<Album> {
+public class AlbumQueryService extends KeysetQueryService<Album> {
+
+    private static final Sort.Order DEFAULT_KEYSET_ORDER = Sort.Order.desc(Album_.CREATED);
+
+    private static final KeysetQuery<Album, Album> KEYSET_QUERY = new AlbumKeysetQuery();
+
+    static final String LISTING = "albums";
 
     final AlbumRepository albumRepository;
 
@@ -42,6 +69,10 @@ public class AlbumQueryService extends QueryService<Album> {
 
     final AlbumSearchRepository albumSearchRepository;
 
+    final EntityManager entityManager;
+
+    final ListingCache listingCache;
+
     /**
      * Return a {@link List} of {@link AlbumDto} which matches the criteria from the database.
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -56,6 +87,8 @@ public class AlbumQueryService extends QueryService<Album> {
 
     /**
      * Return a {@link Page} of {@link AlbumDto} which matches the criteria from the database.
+     * <p>
+     * When the ids of the page are cached the albums are read by id, from the second-level cache when they are in it.
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
      * @return the matching entities.
@@ -64,7 +97,33 @@ public class AlbumQueryService extends QueryService<Album> {
     public Page<AlbumDto> findByCriteria(AlbumCriteria criteria, Pageable page) {
         log.debug("find by criteria : {}, page: {}", criteria, page);
         final Specification<Album> specification = createSpecification(criteria);
-        return albumRepository.findAll(specification, page).map(albumMapper::toDto);
+        return listingCache.findPage(
+            listingKey(criteria, page),
+            () -> albumRepository.findAll(specification, page).map(albumMapper::toDto),
+            AlbumDto::getId,
+            this::findAllById
+        );
+    }
+
+    /**
+     * Return a {@link KeysetPage} of {@link AlbumDto} which matches the criteria from the database.
+     * <p>
+     * Albums are ordered by {@code created}, then by id, albums without the date come last.
+     * The page is read by seeking past the previous one, so it costs the same however deep it is, and nothing is counted.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param sort The order of the first page, {@code created} descending if unsorted; later pages keep the order of their cursor.
+     * @param after The cursor of the previous page, {@code null} for the first page.
+     * @param size The number of albums of the page.
+     * @return the matching entities.
+     * @throws IllegalArgumentException if the albums can not be ordered by the sort or the cursor.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<AlbumDto> findAfter(AlbumCriteria criteria, Sort sort, KeysetCursor after, int size) {
+        log.debug("find by criteria : {}, sort: {}, after: {}", criteria, sort, after);
+        final Specification<Album> specification = createSpecification(criteria);
+        Sort.Order order = sort.stream().findFirst().orElse(DEFAULT_KEYSET_ORDER);
+        KeysetPage<Album> page = findPage(entityManager, KEYSET_QUERY, specification, order, after, size);
+        return new KeysetPage<>(albumMapper.toDto(page.getContent()), page.getNext().orElse(null));
     }
 
     /**
@@ -79,6 +138,30 @@ public class AlbumQueryService extends QueryService<Album> {
         return albumRepository.count(specification);
     }
 
+    private List<AlbumDto> findAllById(List<Long> ids) {
+        return entityManager
+            .unwrap(Session.class)
+            .byMultipleIds(Album.class)
+            .with(CacheMode.NORMAL)
+            .enableOrderedReturn(true)
+            .multiLoad(ids)
+            .stream()
+            .filter(Objects::nonNull)
+            .map(albumMapper::toDto)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The page is restricted to the users of the criteria, and depends on every album otherwise.
+     */
+    static ListingKey listingKey(AlbumCriteria criteria, Pageable page) {
+        Set<String> scopes = criteria == null ? Set.of() : ListingScopes.restrictedTo(criteria.getUserId(), ListingScopes::user);
+        if (scopes.isEmpty()) {
+            scopes = Set.of(ListingScopes.ALBUMS);
+        }
+        return ListingKey.builder(LISTING).criteria(criteria).page(page).scopes(scopes).build();
+    }
+
     /**
      * Function to convert {@link AlbumCriteria} to a {@link Specification}
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -105,4 +188,43 @@ public class AlbumQueryService extends QueryService<Album> {
         }
         return specification;
     }
+
+    private static class AlbumKeysetQuery implements KeysetQuery<Album, Album> {
+
+        @Override
+        public Class<Album> getEntityClass() {
+            return Album.class;
+        }
+
+        @Override
+        public Class<Album> getResultClass() {
+            return Album.class;
+        }
+
+        @Override
+        public Selection<Album> select(Root<Album> root, CriteriaBuilder builder) {
+            root.fetch(Album_.user, JoinType.LEFT);
+            return root;
+        }
+
+        @Override
+        public SingularAttribute<? super Album, Long> getIdAttribute() {
+            return Album_.id;
+        }
+
+        @Override
+        public Long getId(Album row) {
+            return row.getId();
+        }
+
+        @Override
+        public Map<String, SingularAttribute<? super Album, Instant>> getKeyAttributes() {
+            return Map.of(Album_.CREATED, Album_.created);
+        }
+
+        @Override
+        public Instant getKey(Album row, String property) {
+            return row.getCreated();
+        }
+    }
 }
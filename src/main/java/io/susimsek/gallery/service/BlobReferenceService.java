@@ -0,0 +1,128 @@
+package io.susimsek.gallery.service;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.ReleasedBlob;
+import io.susimsek.gallery.repository.PhotoRenditionRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.ReleasedBlobRepository;
+import io.susimsek.gallery.service.storage.BlobStore;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Deletes blobs once nothing references them anymore.
+ * <p>
+ * Blobs are content-addressed, so the same key may be shared by several photos or renditions, and an upload of the
+ * same bytes reuses a blob while it is still stored. Released blobs are therefore not deleted right away: the release
+ * is recorded with the change which dropped the reference, and the blob is deleted by a background job once
+ * {@code application.storage.gc-grace-period} has passed since both its release and its last store, and only if
+ * nothing references it then. Storing a blob again refreshes its last store time, so an upload which reused it is
+ * committed before the blob can be deleted.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Service
+public class BlobReferenceService {
+
+    static final int BATCH_SIZE = 100;
+
+    PhotoRepository photoRepository;
+
+    PhotoRenditionRepository photoRenditionRepository;
+
+    ReleasedBlobRepository releasedBlobRepository;
+
+    BlobStore blobStore;
+
+    TransactionTemplate transactionTemplate;
+
+    Duration gracePeriod;
+
+    public BlobReferenceService(
+        PhotoRepository photoRepository,
+        PhotoRenditionRepository photoRenditionRepository,
+        ReleasedBlobRepository releasedBlobRepository,
+        BlobStore blobStore,
+        TransactionTemplate transactionTemplate,
+        ApplicationProperties applicationProperties
+    ) {
+        this.photoRepository = photoRepository;
+        this.photoRenditionRepository = photoRenditionRepository;
+        this.releasedBlobRepository = releasedBlobRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = transactionTemplate;
+        this.gracePeriod = applicationProperties.getStorage().getGcGracePeriod();
+    }
+
+    /**
+     * Release a blob as part of the current transaction, which dropped a reference to it; once it has committed, the
+     * blob is deleted after the grace period if it is unused by then.
+     *
+     * @param key the blob key, ignored if {@code null}.
+     */
+    public void releaseAfterCommit(String key) {
+        if (key == null) {
+            return;
+        }
+        releasedBlobRepository.save(ReleasedBlob.builder().imageKey(key).releasedDate(Instant.now()).build());
+    }
+
+    /**
+     * Delete the released blobs which are past their grace period and unused.
+     */
+    @Scheduled(cron = "${application.storage.gc-cron:-}")
+    public void collectUnused() {
+        Instant releasedBefore = Instant.now().minus(gracePeriod);
+        int deleted = 0;
+        String after = "";
+        List<String> keys;
+        do {
+            keys = releasedBlobRepository.findKeysReleasedBefore(releasedBefore, after, PageRequest.of(0, BATCH_SIZE));
+            for (String key : keys) {
+                if (collect(key, releasedBefore)) {
+                    deleted++;
+                }
+                after = key;
+            }
+        } while (keys.size() == BATCH_SIZE);
+        log.debug("Deleted {} unused blobs", deleted);
+    }
+
+    /**
+     * Delete a released blob if it is unused and was last stored before the grace period.
+     *
+     * @return whether the blob was deleted.
+     */
+    boolean collect(String key, Instant releasedBefore) {
+        if (photoRepository.existsByImageKey(key) || photoRenditionRepository.existsByImageKey(key)) {
+            transactionTemplate.executeWithoutResult(status -> releasedBlobRepository.deleteReleasedBefore(key, releasedBefore));
+            return false;
+        }
+        Optional<Instant> lastModified;
+        try {
+            lastModified = blobStore.lastModified(key);
+            if (lastModified.isPresent() && lastModified.get().isAfter(releasedBefore)) {
+                // stored again by an upload which may not have committed yet, checked again on a later run
+                return false;
+            }
+            if (lastModified.isPresent()) {
+                blobStore.delete(key);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete unused blob {}: {}", key, e.getMessage());
+            return false;
+        }
+        transactionTemplate.executeWithoutResult(status -> releasedBlobRepository.deleteByImageKey(key));
+        return lastModified.isPresent();
+    }
+}
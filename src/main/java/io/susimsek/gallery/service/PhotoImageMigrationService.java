@@ -0,0 +1,102 @@
+package io.susimsek.gallery.service;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.service.storage.BlobStore;
+import io.susimsek.gallery.service.storage.StoredBlob;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.persistence.EntityManagerFactory;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves images still stored in the legacy {@code photo.image} column into the {@link BlobStore}.
+ * <p>
+ * Runs once in the background after startup and processes rows in small transactions, so it can be
+ * interrupted and resumed safely. Only the node holding the {@code application.storage.migration-lock-name} lock
+ * moves images, the nodes starting meanwhile skip the migration; rows left by a node which stopped are moved at the
+ * next startup.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+@Service
+public class PhotoImageMigrationService {
+
+    final JdbcTemplate jdbcTemplate;
+
+    final TransactionTemplate transactionTemplate;
+
+    final EntityManagerFactory entityManagerFactory;
+
+    final BlobStore blobStore;
+
+    final RedissonClient redissonClient;
+
+    final ApplicationProperties applicationProperties;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyImages() {
+        RLock lock = redissonClient.getLock(applicationProperties.getStorage().getMigrationLockName());
+        if (!lock.tryLock()) {
+            log.debug("Legacy Photo images are being moved by another node");
+            return;
+        }
+        try {
+            int batchSize = applicationProperties.getStorage().getMigrationBatchSize();
+            long total = 0;
+            Integer migrated;
+            do {
+                migrated = transactionTemplate.execute(status -> migrateBatch(batchSize));
+                total += migrated != null ? migrated : 0;
+            } while (migrated != null && migrated == batchSize);
+            if (total > 0) {
+                log.info("Moved {} legacy Photo images to the blob store", total);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int migrateBatch(int batchSize) {
+        Map<Long, StoredBlob> blobs = new LinkedHashMap<>();
+        jdbcTemplate.query(
+            "select id, image from photo where image_key is null and image is not null order by id limit ?",
+            rs -> {
+                long id = rs.getLong("id");
+                try (InputStream image = rs.getBinaryStream("image")) {
+                    blobs.put(id, blobStore.store(image));
+                } catch (IOException e) {
+                    throw new PhotoStorageException("Could not move image of Photo " + id, e);
+                }
+            },
+            batchSize
+        );
+        for (Map.Entry<Long, StoredBlob> entry : blobs.entrySet()) {
+            StoredBlob blob = entry.getValue();
+            jdbcTemplate.update(
+                "update photo set image_key = ?, image_size = ?, image_checksum = ?, image_stored_date = coalesce(image_stored_date, uploaded), image = null where id = ?",
+                blob.getKey(),
+                blob.getSize(),
+                blob.getChecksum(),
+                entry.getKey()
+            );
+            entityManagerFactory.getCache().evict(Photo.class, entry.getKey());
+        }
+        return blobs.size();
+    }
+}
@@ -6,35 +6,73 @@ import io.susimsek.gallery.repository.PhotoRepository;
 import io.susimsek.gallery.repository.search.PhotoSearchRepository;
 import io.susimsek.gallery.service.criteria.PhotoCriteria;
 import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.dto.PhotoSummaryDto;
+import io.susimsek.gallery.service.keyset.KeysetCursor;
+import io.susimsek.gallery.service.keyset.KeysetPage;
+import io.susimsek.gallery.service.keyset.KeysetQueryService;
+import io.susimsek.gallery.service.listing.ListingCache;
+import io.susimsek.gallery.service.listing.ListingKey;
+import io.susimsek.gallery.service.listing.ListingScopes;
 import io.susimsek.gallery.service.mapper.PhotoMapper;
+import io.susimsek.gallery.service.storage.BlobStore;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.SingularAttribute;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import tech.jhipster.service.QueryService;
 
 /**
  * Service for executing complex queries for {@link Photo} entities in the database.
  * The main input is a {@link PhotoCriteria} which gets converted to {@link Specification},
  * in a way that all the filters must apply.
- * It returns a {@link List} of {@link PhotoDto} or a {@link Page} of {@link PhotoDto} which fulfills the criteria.
+ * It returns a {@link List} of {@link PhotoDto} or a {@link Page} of {@link PhotoDto} or {@link PhotoSummaryDto}
+ * or a {@link KeysetPage} of {@link PhotoSummaryDto} which fulfills the criteria.
+ * <p>
+ * The ids of the pages are cached in the {@link ListingCache}, restricted to the albums or else the tags of the
+ * criteria, so a change to a photo only drops the pages of its albums and tags and the unrestricted ones.
  */
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @RequiredArgsConstructor
 @Service
 @Transactional(readOnly = true)
-public class PhotoQueryService extends QueryService<Photo> {
+public class PhotoQueryService extends KeysetQueryService<Photo> {
+
+    private static final Sort.Order DEFAULT_KEYSET_ORDER = Sort.Order.desc(Photo_.TAKEN);
+
+    private static final KeysetQuery<Photo, PhotoSummaryDto> SUMMARY_KEYSET_QUERY = new SummaryKeysetQuery();
+
+    static final String LISTING = "photos";
 
    final PhotoRepository photoRepository;
 
@@ -42,6 +80,12 @@ public class PhotoQueryService extends QueryService<Photo> {
 
    final PhotoSearchRepository photoSearchRepository;
 
+   final BlobStore blobStore;
+
+   final EntityManager entityManager;
+
+   final ListingCache listingCache;
+
     /**
      * Return a {@link List} of {@link PhotoDto} which matches the criteria from the database.
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -51,11 +95,14 @@ public class PhotoQueryService extends QueryService<Photo> {
     public List<PhotoDto> findByCriteria(PhotoCriteria criteria) {
         log.debug("find by criteria : {}", criteria);
         final Specification<Photo> specification = createSpecification(criteria);
-        return photoMapper.toDto(photoRepository.findAll(specification));
+        return findAllWithEagerRelationshipsById(findIds(specification, Pageable.unpaged()));
     }
 
     /**
      * Return a {@link Page} of {@link PhotoDto} which matches the criteria from the database.
+     * <p>
+     * The page is read in two phases, the ids first and then the photos with their tags and album, so the number of
+     * queries does not grow with the size of the page. When the ids of the page are cached only the second phase is run.
      * @param criteria The object which holds all the filters, which the entities should match.
      * @param page The page, which should be returned.
      * @return the matching entities.
@@ -64,7 +111,75 @@ public class PhotoQueryService extends QueryService<Photo> {
     public Page<PhotoDto> findByCriteria(PhotoCriteria criteria, Pageable page) {
         log.debug("find by criteria : {}, page: {}", criteria, page);
         final Specification<Photo> specification = createSpecification(criteria);
-        return photoRepository.findAll(specification, page).map(photoMapper::toDto);
+        return listingCache.findPage(
+            listingKey(criteria, page),
+            () -> {
+                List<PhotoDto> content = findAllWithEagerRelationshipsById(findIds(specification, page));
+                return PageableExecutionUtils.getPage(content, page, () -> photoRepository.count(specification));
+            },
+            PhotoDto::getId,
+            this::findAllWithEagerRelationshipsById
+        );
+    }
+
+    /**
+     * Return a {@link Page} of {@link PhotoSummaryDto} which matches the criteria from the database.
+     * <p>
+     * Only the listed columns are selected, so neither the image nor the entities are loaded into the persistence context.
+     * When the ids of the page are cached the photos are read by id instead, from the second-level cache when they are in it.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param page The page, which should be returned.
+     * @return the matching photo summaries.
+     */
+    @Transactional(readOnly = true)
+    public Page<PhotoSummaryDto> findSummariesByCriteria(PhotoCriteria criteria, Pageable page) {
+        log.debug("find summaries by criteria : {}, page: {}", criteria, page);
+        return listingCache.findPage(
+            listingKey(criteria, page),
+            () -> querySummaries(criteria, page),
+            PhotoSummaryDto::getId,
+            this::findSummariesById
+        );
+    }
+
+    private Page<PhotoSummaryDto> querySummaries(PhotoCriteria criteria, Pageable page) {
+        final Specification<Photo> specification = createSpecification(criteria);
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PhotoSummaryDto> query = builder.createQuery(PhotoSummaryDto.class);
+        Root<Photo> root = query.from(Photo.class);
+        query.select(selectSummary(root, builder));
+        Predicate predicate = specification.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(page.getSort(), root, builder));
+
+        TypedQuery<PhotoSummaryDto> typedQuery = entityManager.createQuery(query);
+        if (page.isPaged()) {
+            typedQuery.setFirstResult((int) page.getOffset());
+            typedQuery.setMaxResults(page.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(typedQuery.getResultList(), page, () -> photoRepository.count(specification));
+    }
+
+    /**
+     * Return a {@link KeysetPage} of {@link PhotoSummaryDto} which matches the criteria from the database.
+     * <p>
+     * Photos are ordered by {@code taken} or {@code uploaded}, then by id, photos without the date come last.
+     * The page is read by seeking past the previous one, so it costs the same however deep it is, and nothing is counted.
+     * @param criteria The object which holds all the filters, which the entities should match.
+     * @param sort The order of the first page, {@code taken} descending if unsorted; later pages keep the order of their cursor.
+     * @param after The cursor of the previous page, {@code null} for the first page.
+     * @param size The number of photos of the page.
+     * @return the matching photo summaries.
+     * @throws IllegalArgumentException if the photos can not be ordered by the sort or the cursor.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<PhotoSummaryDto> findSummariesAfter(PhotoCriteria criteria, Sort sort, KeysetCursor after, int size) {
+        log.debug("find summaries by criteria : {}, sort: {}, after: {}", criteria, sort, after);
+        final Specification<Photo> specification = createSpecification(criteria);
+        Sort.Order order = sort.stream().findFirst().orElse(DEFAULT_KEYSET_ORDER);
+        return findPage(entityManager, SUMMARY_KEYSET_QUERY, specification, order, after, size);
     }
 
     /**
@@ -79,6 +194,124 @@ public class PhotoQueryService extends QueryService<Photo> {
         return photoRepository.count(specification);
     }
 
+    /**
+     * First phase of a fetch: only the ids are filtered, sorted and paged, so the second phase can fetch the tags with a
+     * join without Hibernate paging the joined rows in memory.
+     */
+    private List<Long> findIds(Specification<Photo> specification, Pageable page) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = builder.createQuery(Long.class);
+        Root<Photo> root = query.from(Photo.class);
+        query.select(root.get(Photo_.id));
+        Predicate predicate = specification.toPredicate(root, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(page.getSort(), root, builder));
+
+        TypedQuery<Long> typedQuery = entityManager.createQuery(query);
+        if (page.isPaged()) {
+            typedQuery.setFirstResult((int) page.getOffset());
+            typedQuery.setMaxResults(page.getPageSize());
+        }
+        return typedQuery.getResultList();
+    }
+
+    private List<PhotoDto> findAllWithEagerRelationshipsById(List<Long> ids) {
+        return findAllWithEagerRelationships(ids).stream().map(this::toDtoWithImage).collect(Collectors.toList());
+    }
+
+    private List<PhotoSummaryDto> findSummariesById(List<Long> ids) {
+        return entityManager
+            .unwrap(Session.class)
+            .byMultipleIds(Photo.class)
+            .with(CacheMode.NORMAL)
+            .enableOrderedReturn(true)
+            .multiLoad(ids)
+            .stream()
+            .filter(Objects::nonNull)
+            .map(PhotoQueryService::toSummary)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The page is restricted to the albums of the criteria, or else to its tags, and depends on every photo otherwise.
+     */
+    static ListingKey listingKey(PhotoCriteria criteria, Pageable page) {
+        Set<String> scopes = Set.of();
+        if (criteria != null) {
+            scopes = ListingScopes.restrictedTo(criteria.getAlbumId(), ListingScopes::album);
+            if (scopes.isEmpty()) {
+                scopes = ListingScopes.restrictedTo(criteria.getTagId(), ListingScopes::tag);
+            }
+        }
+        if (scopes.isEmpty()) {
+            scopes = Set.of(ListingScopes.PHOTOS);
+        }
+        return ListingKey.builder(LISTING).criteria(criteria).page(page).scopes(scopes).build();
+    }
+
+    /**
+     * Second phase of a fetch: the photos of the ids with their tags and album, in the order of the ids.
+     */
+    private List<Photo> findAllWithEagerRelationships(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Photo> photos = photoRepository
+            .findAllWithEagerRelationshipsByIdIn(ids)
+            .stream()
+            .collect(Collectors.toMap(Photo::getId, Function.identity()));
+        return ids.stream().map(photos::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static Selection<PhotoSummaryDto> selectSummary(Root<Photo> root, CriteriaBuilder builder) {
+        Join<Photo, Album> album = root.join(Photo_.album, JoinType.LEFT);
+        return builder.construct(
+            PhotoSummaryDto.class,
+            root.get(Photo_.id),
+            root.get(Photo_.title),
+            root.get(Photo_.description),
+            root.get(Photo_.imageContentType),
+            root.get(Photo_.imageSize),
+            root.get(Photo_.height),
+            root.get(Photo_.width),
+            root.get(Photo_.taken),
+            root.get(Photo_.uploaded),
+            album.get(Album_.id),
+            album.get(Album_.title)
+        );
+    }
+
+    private static PhotoSummaryDto toSummary(Photo photo) {
+        Album album = photo.getAlbum();
+        return new PhotoSummaryDto(
+            photo.getId(),
+            photo.getTitle(),
+            photo.getDescription(),
+            photo.getImageContentType(),
+            photo.getImageSize(),
+            photo.getHeight(),
+            photo.getWidth(),
+            photo.getTaken(),
+            photo.getUploaded(),
+            album == null ? null : album.getId(),
+            album == null ? null : album.getTitle()
+        );
+    }
+
+    private PhotoDto toDtoWithImage(Photo photo) {
+        PhotoDto photoDto = photoMapper.toDto(photo);
+        if (photo.getImageKey() != null) {
+            try {
+                blobStore.readAllBytes(photo.getImageKey()).ifPresent(photoDto::setImage);
+            } catch (IOException e) {
+                throw new PhotoStorageException("Could not read image of Photo " + photo.getId(), e);
+            }
+        }
+        return photoDto;
+    }
+
     /**
      * Function to convert {@link PhotoCriteria} to a {@link Specification}
      * @param criteria The object which holds all the filters, which the entities should match.
@@ -118,4 +351,42 @@ public class PhotoQueryService extends QueryService<Photo> {
         }
         return specification;
     }
+
+    private static class SummaryKeysetQuery implements KeysetQuery<Photo, PhotoSummaryDto> {
+
+        @Override
+        public Class<Photo> getEntityClass() {
+            return Photo.class;
+        }
+
+        @Override
+        public Class<PhotoSummaryDto> getResultClass() {
+            return PhotoSummaryDto.class;
+        }
+
+        @Override
+        public Selection<PhotoSummaryDto> select(Root<Photo> root, CriteriaBuilder builder) {
+            return selectSummary(root, builder);
+        }
+
+        @Override
+        public SingularAttribute<? super Photo, Long> getIdAttribute() {
+            return Photo_.id;
+        }
+
+        @Override
+        public Long getId(PhotoSummaryDto row) {
+            return row.getId();
+        }
+
+        @Override
+        public Map<String, SingularAttribute<? super Photo, Instant>> getKeyAttributes() {
+            return Map.of(Photo_.TAKEN, Photo_.taken, Photo_.UPLOADED, Photo_.uploaded);
+        }
+
+        @Override
+        public Instant getKey(PhotoSummaryDto row, String property) {
+            return Photo_.UPLOADED.equals(property) ? row.getUploaded() : row.getTaken();
+        }
+    }
 }
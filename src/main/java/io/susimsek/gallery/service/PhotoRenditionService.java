@@ -0,0 +1,388 @@
+package io.susimsek.gallery.service;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.config.AsyncConfiguration;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.PhotoRendition;
+import io.susimsek.gallery.repository.PhotoRenditionRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.service.event.PhotoImageStoredEvent;
+import io.susimsek.gallery.service.image.ImageResizer;
+import io.susimsek.gallery.service.storage.BlobStore;
+import io.susimsek.gallery.service.storage.PhotoContent;
+import io.susimsek.gallery.service.storage.StoredBlob;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.extern.slf4j.Slf4j;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Generates and serves resized copies of {@link Photo} images.
+ * <p>
+ * Renditions are generated on a dedicated bounded executor once the upload transaction has committed, so
+ * uploads never wait for image processing. Each original is decoded once and every configured size is derived
+ * from that single decode. A backfill job covers photos uploaded before renditions existed, and any work dropped
+ * because the executor queue was full.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Service
+public class PhotoRenditionService {
+
+    static final String JPEG_CONTENT_TYPE = "image/jpeg";
+
+    static final String WEBP_CONTENT_TYPE = "image/webp";
+
+    static final long BACKFILL_RETRY_DELAY_MS = 100;
+
+    final PhotoRepository photoRepository;
+
+    final PhotoRenditionRepository photoRenditionRepository;
+
+    final BlobStore blobStore;
+
+    final BlobReferenceService blobReferenceService;
+
+    final TransactionTemplate transactionTemplate;
+
+    final ThreadPoolTaskExecutor renditionTaskExecutor;
+
+    final ApplicationProperties.Renditions properties;
+
+    final AtomicBoolean backfillRunning = new AtomicBoolean();
+
+    final ExecutorService backfillExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("gallery-rendition-backfill-"));
+
+    /**
+     * Renditions the backfill may have queued or running at once.
+     */
+    final Semaphore backfillPermits;
+
+    public PhotoRenditionService(
+        PhotoRepository photoRepository,
+        PhotoRenditionRepository photoRenditionRepository,
+        BlobStore blobStore,
+        BlobReferenceService blobReferenceService,
+        TransactionTemplate transactionTemplate,
+        @Qualifier(AsyncConfiguration.RENDITION_TASK_EXECUTOR) ThreadPoolTaskExecutor renditionTaskExecutor,
+        ApplicationProperties applicationProperties
+    ) {
+        this.photoRepository = photoRepository;
+        this.photoRenditionRepository = photoRenditionRepository;
+        this.blobStore = blobStore;
+        this.blobReferenceService = blobReferenceService;
+        this.transactionTemplate = transactionTemplate;
+        this.renditionTaskExecutor = renditionTaskExecutor;
+        this.properties = applicationProperties.getRenditions();
+        this.backfillPermits = new Semaphore(Math.max(1, properties.getQueueCapacity() / 2));
+    }
+
+    /**
+     * Whether renditions of the given size are generated.
+     */
+    public boolean isSupportedSize(int size) {
+        return properties.getSizes().contains(size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPhotoImageStored(PhotoImageStoredEvent event) {
+        enqueue(event.getPhotoId());
+    }
+
+    /**
+     * Schedule the generation of the missing renditions of a photo.
+     *
+     * @param photoId the id of the photo.
+     * @return {@code false} if the executor queue is full; the backfill job will pick the photo up later.
+     */
+    public boolean enqueue(Long photoId) {
+        try {
+            renditionTaskExecutor.execute(() -> generateRenditions(photoId));
+            return true;
+        } catch (TaskRejectedException e) {
+            log.debug("Rendition queue is full, leaving Photo {} to the backfill", photoId);
+            return false;
+        }
+    }
+
+    /**
+     * Generate the renditions of a photo which are missing or were made from a previous image.
+     * Safe to call repeatedly and concurrently.
+     *
+     * @param photoId the id of the photo.
+     */
+    public void generateRenditions(Long photoId) {
+        Optional<Photo> photo = photoRepository.findById(photoId).filter(p -> p.getImageKey() != null);
+        if (photo.isEmpty()) {
+            return;
+        }
+        String sourceKey = photo.get().getImageKey();
+        Map<String, PhotoRendition> existing = photoRenditionRepository
+            .findAllByPhotoId(photoId)
+            .stream()
+            .collect(Collectors.toMap(PhotoRenditionService::renditionId, Function.identity()));
+        List<Integer> sizes = properties.getSizes().stream().sorted(Collections.reverseOrder()).collect(Collectors.toList());
+        List<String> formats = formats();
+        boolean upToDate = sizes
+            .stream()
+            .allMatch(
+                size ->
+                    formats
+                        .stream()
+                        .map(format -> existing.get(renditionId(size, format)))
+                        .allMatch(rendition -> rendition != null && sourceKey.equals(rendition.getSourceKey()))
+            );
+        if (upToDate || sizes.isEmpty()) {
+            return;
+        }
+
+        BufferedImage source;
+        try {
+            source = decode(sourceKey, sizes.get(0)).orElse(null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not decode image of Photo {}: {}", photoId, e.getMessage());
+            return;
+        }
+        if (source == null) {
+            log.debug("No renditions for Photo {}, its image format can not be decoded", photoId);
+            return;
+        }
+
+        // largest first, so each smaller size is derived from the previous one instead of the full original
+        BufferedImage current = source;
+        for (Integer size : sizes) {
+            current = ImageResizer.resize(current, size);
+            for (String format : formats) {
+                PhotoRendition rendition = existing.get(renditionId(size, format));
+                if (rendition != null && sourceKey.equals(rendition.getSourceKey())) {
+                    continue;
+                }
+                try {
+                    saveRendition(photoId, sourceKey, size, format, current, rendition);
+                } catch (IOException e) {
+                    log.warn("Could not generate {} rendition {} of Photo {}: {}", format, size, photoId, e.getMessage());
+                } catch (DataIntegrityViolationException e) {
+                    log.debug("Rendition {} {} of Photo {} was generated concurrently", format, size, photoId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get an up to date rendition; a missing or stale one is scheduled for generation.
+     *
+     * @param photoId the id of the photo.
+     * @param size the rendition size.
+     * @param acceptWebp whether the client accepts WebP.
+     * @return the rendition content, or empty if it does not exist yet.
+     */
+    @Transactional(readOnly = true)
+    public Optional<PhotoContent> findRendition(Long photoId, int size, boolean acceptWebp) {
+        Optional<Photo> photo = photoRepository.findById(photoId).filter(p -> p.getImageKey() != null);
+        if (photo.isEmpty()) {
+            return Optional.empty();
+        }
+        String sourceKey = photo.get().getImageKey();
+        List<String> candidates = acceptWebp && formats().contains(ImageResizer.WEBP)
+            ? List.of(ImageResizer.WEBP, ImageResizer.JPEG)
+            : List.of(ImageResizer.JPEG);
+        for (String format : candidates) {
+            Optional<PhotoRendition> rendition = photoRenditionRepository
+                .findOneByPhotoIdAndSizeAndFormat(photoId, size, format)
+                .filter(r -> sourceKey.equals(r.getSourceKey()));
+            if (rendition.isPresent()) {
+                Optional<Resource> resource = blobStore.load(rendition.get().getImageKey());
+                if (resource.isPresent()) {
+                    return Optional.of(
+                        new PhotoContent(
+                            resource.get(),
+                            rendition.get().getImageContentType(),
+                            rendition.get().getImageKey(),
+                            photo.get().getImageStoredDate()
+                        )
+                    );
+                }
+            }
+        }
+        enqueue(photoId);
+        return Optional.empty();
+    }
+
+    /**
+     * Delete the renditions of a photo, as part of the current transaction.
+     *
+     * @param photoId the id of the photo.
+     */
+    @Transactional
+    public void deleteRenditions(Long photoId) {
+        List<PhotoRendition> renditions = photoRenditionRepository.findAllByPhotoId(photoId);
+        photoRenditionRepository.deleteAll(renditions);
+        photoRenditionRepository.flush();
+        renditions.stream().map(PhotoRendition::getImageKey).distinct().forEach(blobReferenceService::releaseAfterCommit);
+    }
+
+    /**
+     * Generate the missing renditions of every photo.
+     * <p>
+     * Walks the photos by id rather than by page offset, so the cost of each batch stays constant. At most half the
+     * rendition queue is taken by the walk, which waits for the workers beyond that, leaving room for the uploads.
+     *
+     * @return the number of photos scheduled, or {@code -1} if a backfill is already running or was interrupted.
+     */
+    public long backfill() {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            log.debug("Rendition backfill already running");
+            return -1;
+        }
+        try {
+            long expected = (long) properties.getSizes().size() * formats().size();
+            long scheduled = 0;
+            Long afterId = 0L;
+            List<Long> photoIds;
+            do {
+                photoIds =
+                    photoRenditionRepository.findPhotoIdsMissingRenditions(afterId, expected, PageRequest.of(0, properties.getBackfillBatchSize()));
+                for (Long photoId : photoIds) {
+                    enqueueBackfill(photoId);
+                    afterId = photoId;
+                    scheduled++;
+                }
+            } while (!photoIds.isEmpty());
+            log.info("Rendition backfill scheduled {} photos", scheduled);
+            return scheduled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Rendition backfill interrupted");
+            return -1;
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+
+    /**
+     * Run {@link #backfill()} in the background, on a thread of its own rather than the scheduler or request thread.
+     */
+    public void backfillAsync() {
+        backfillExecutor.execute(this::backfill);
+    }
+
+    @Scheduled(cron = "${application.renditions.backfill-cron:-}")
+    public void scheduledBackfill() {
+        backfillAsync();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    /**
+     * Schedule the renditions of a photo for the backfill, waiting while the backfill holds its share of the queue or
+     * the uploads filled it.
+     */
+    private void enqueueBackfill(Long photoId) throws InterruptedException {
+        backfillPermits.acquire();
+        while (true) {
+            try {
+                renditionTaskExecutor.execute(
+                    () -> {
+                        try {
+                            generateRenditions(photoId);
+                        } finally {
+                            backfillPermits.release();
+                        }
+                    }
+                );
+                return;
+            } catch (TaskRejectedException e) {
+                try {
+                    Thread.sleep(BACKFILL_RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    backfillPermits.release();
+                    throw interrupted;
+                }
+            }
+        }
+    }
+
+    private void saveRendition(Long photoId, String sourceKey, int size, String format, BufferedImage image, PhotoRendition rendition)
+        throws IOException {
+        byte[] bytes = ImageResizer.write(image, format, properties.getJpegQuality());
+        StoredBlob blob = blobStore.store(new ByteArrayInputStream(bytes));
+        transactionTemplate.executeWithoutResult(
+            status -> {
+                PhotoRendition target = rendition != null
+                    ? photoRenditionRepository.findById(rendition.getId()).orElseGet(PhotoRendition::new)
+                    : new PhotoRendition();
+                String previousKey = target.getImageKey();
+                target.setPhoto(photoRepository.getOne(photoId));
+                target.setSize(size);
+                target.setFormat(format);
+                target.setImageKey(blob.getKey());
+                target.setImageSize(blob.getSize());
+                target.setImageContentType(ImageResizer.WEBP.equals(format) ? WEBP_CONTENT_TYPE : JPEG_CONTENT_TYPE);
+                target.setWidth(image.getWidth());
+                target.setHeight(image.getHeight());
+                target.setSourceKey(sourceKey);
+                photoRenditionRepository.saveAndFlush(target);
+                if (previousKey != null && !previousKey.equals(blob.getKey())) {
+                    blobReferenceService.releaseAfterCommit(previousKey);
+                }
+            }
+        );
+    }
+
+    private Optional<BufferedImage> decode(String key, int maxSide) throws IOException {
+        Optional<Resource> resource = blobStore.load(key);
+        if (resource.isEmpty()) {
+            return Optional.empty();
+        }
+        try (InputStream input = resource.get().getInputStream()) {
+            return ImageResizer.read(input, maxSide);
+        }
+    }
+
+    private List<String> formats() {
+        List<String> formats = new ArrayList<>();
+        formats.add(ImageResizer.JPEG);
+        if (properties.isWebp() && ImageResizer.canWrite(ImageResizer.WEBP)) {
+            formats.add(ImageResizer.WEBP);
+        }
+        return formats;
+    }
+
+    private static String renditionId(PhotoRendition rendition) {
+        return renditionId(rendition.getSize(), rendition.getFormat());
+    }
+
+    private static String renditionId(int size, String format) {
+        return size + "/" + format;
+    }
+}
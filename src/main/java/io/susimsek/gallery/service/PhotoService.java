@@ -1,6 +1,10 @@
 package io.susimsek.gallery.service;
 
+import io.susimsek.gallery.domain.Photo;
 import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.storage.PhotoContent;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -17,6 +21,36 @@ public interface PhotoService {
      */
     PhotoDto save(PhotoDto photoDto);
 
+    /**
+     * Create a photo from its image streamed straight to storage, without holding the image in memory.
+     *
+     * @param photoDto the fields of the photo, without image.
+     * @param content the image, read to the end but not closed.
+     * @return the persisted entity.
+     * @throws PhotoTooLargeException if the image is larger than {@code application.upload.max-size}.
+     */
+    PhotoDto upload(PhotoDto photoDto, InputStream content);
+
+    /**
+     * First half of {@link #upload(PhotoDto, InputStream)}: read the metadata of the image and store it, without
+     * saving the photo. Does not touch the database, so many images can be prepared in parallel.
+     *
+     * @param photoDto the fields of the photo, without image.
+     * @param content the image, read to the end but not closed.
+     * @return the unsaved photo, referencing its stored image.
+     * @throws PhotoTooLargeException if the image is larger than {@code application.upload.max-size}.
+     */
+    Photo prepareUpload(PhotoDto photoDto, InputStream content);
+
+    /**
+     * Second half of {@link #upload(PhotoDto, InputStream)}: save prepared photos in one transaction, so their rows
+     * and search index changes are inserted in JDBC batches.
+     *
+     * @param photos the photos returned by {@link #prepareUpload(PhotoDto, InputStream)}.
+     * @return the persisted entities, in the same order.
+     */
+    List<PhotoDto> saveAll(List<Photo> photos);
+
     /**
      * Partially updates a photo.
      *
@@ -49,6 +83,14 @@ public interface PhotoService {
      */
     Optional<PhotoDto> findOne(Long id);
 
+    /**
+     * Get the stored image of the "id" photo, without reading it.
+     *
+     * @param id the id of the entity.
+     * @return the image, or empty if the photo or its image does not exist.
+     */
+    Optional<PhotoContent> findContent(Long id);
+
     /**
      * Delete the "id" photo.
      *
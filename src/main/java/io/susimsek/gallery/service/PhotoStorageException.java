@@ -0,0 +1,10 @@
+package io.susimsek.gallery.service;
+
+public class PhotoStorageException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PhotoStorageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package io.susimsek.gallery.service;
+
+import lombok.Getter;
+
+@Getter
+public class PhotoTooLargeException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long maxSize;
+
+    public PhotoTooLargeException(long maxSize) {
+        super("Photo is larger than " + maxSize + " bytes");
+        this.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,20 @@
+package io.susimsek.gallery.service;
+
+import lombok.Getter;
+
+/**
+ * A resumable upload is not where the request expects it to be: the chunk does not start at the current offset,
+ * or the upload is completed before all of its bytes were received.
+ */
+@Getter
+public class PhotoUploadConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long offset;
+
+    public PhotoUploadConflictException(String message, long offset) {
+        super(message);
+        this.offset = offset;
+    }
+}
@@ -0,0 +1,424 @@
+package io.susimsek.gallery.service;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.PhotoUpload;
+import io.susimsek.gallery.repository.PhotoUploadRepository;
+import io.susimsek.gallery.security.SecurityUtils;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.dto.PhotoUploadDto;
+import io.susimsek.gallery.service.mapper.PhotoUploadMapper;
+import io.susimsek.gallery.service.storage.SizeLimitedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Resumable photo uploads: an upload is created with the fields of the photo and the size of its image, receives
+ * the image in chunks appended at the current offset, and is completed into a {@link io.susimsek.gallery.domain.Photo}.
+ * <p>
+ * Received bytes go to a file per upload on local disk and the offset is only advanced once they are written, so a
+ * client whose connection dropped asks for the offset and sends the rest. Chunks are streamed to disk, and the
+ * image to the blob store, outside of any transaction. Uploads without a chunk for
+ * {@code application.upload.session-ttl} are deleted by a scheduled job.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Service
+@Transactional
+public class PhotoUploadService {
+
+    static final String PART_SUFFIX = ".part";
+
+    final PhotoUploadRepository photoUploadRepository;
+
+    final PhotoUploadMapper photoUploadMapper;
+
+    final PhotoService photoService;
+
+    final BlobReferenceService blobReferenceService;
+
+    final TransactionTemplate transactionTemplate;
+
+    final ApplicationProperties.Upload properties;
+
+    final Path directory;
+
+    public PhotoUploadService(
+        PhotoUploadRepository photoUploadRepository,
+        PhotoUploadMapper photoUploadMapper,
+        PhotoService photoService,
+        BlobReferenceService blobReferenceService,
+        TransactionTemplate transactionTemplate,
+        ApplicationProperties applicationProperties
+    ) {
+        this.photoUploadRepository = photoUploadRepository;
+        this.photoUploadMapper = photoUploadMapper;
+        this.photoService = photoService;
+        this.blobReferenceService = blobReferenceService;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = applicationProperties.getUpload();
+        this.directory = Paths.get(properties.getDirectory()).toAbsolutePath();
+    }
+
+    /**
+     * Create an upload owned by the current user.
+     *
+     * @param photoUploadDto the fields of the photo and the size of its image.
+     * @return the upload, at offset {@code 0}.
+     * @throws PhotoTooLargeException if the image is larger than {@code application.upload.max-size}.
+     */
+    public PhotoUploadDto create(PhotoUploadDto photoUploadDto) {
+        log.debug("Request to create PhotoUpload : {}", photoUploadDto);
+        long maxSize = properties.getMaxSize().toBytes();
+        if (photoUploadDto.getLength() > maxSize) {
+            throw new PhotoTooLargeException(maxSize);
+        }
+        PhotoUpload upload = photoUploadMapper.toEntity(photoUploadDto);
+        Instant now = Instant.now();
+        upload.setId(UUID.randomUUID().toString());
+        upload.setOwner(currentUserLogin());
+        upload.setOffset(0);
+        upload.setCreatedDate(now);
+        upload.setExpiresAt(now.plus(properties.getSessionTtl()));
+        return photoUploadMapper.toDto(photoUploadRepository.save(upload));
+    }
+
+    /**
+     * Get an upload of the current user.
+     *
+     * @param id the id of the upload.
+     * @return the upload, or empty if the current user has no such upload.
+     */
+    @Transactional(readOnly = true)
+    public Optional<PhotoUploadDto> findOne(String id) {
+        log.debug("Request to get PhotoUpload : {}", id);
+        return photoUploadRepository.findOneByIdAndOwner(id, currentUserLogin()).map(photoUploadMapper::toDto);
+    }
+
+    /**
+     * Append a chunk of the image. When the chunk is cut short, the bytes received are kept and the offset advanced
+     * past them before the failure is reported.
+     * <p>
+     * The bytes are kept on the local disk of the node which received them, so the chunk is only written when the
+     * file of the upload holds {@code offset} bytes; otherwise the offset is moved back to the bytes present and the
+     * client resumes from there. The file is locked while the chunk is written, so a retried chunk does not overwrite
+     * one still being received.
+     *
+     * @param id the id of the upload.
+     * @param offset where the chunk starts, which must be the current offset of the upload.
+     * @param chunk the bytes, read to the end but not closed.
+     * @return the upload with its new offset, or empty if the current user has no such upload.
+     * @throws PhotoUploadConflictException if {@code offset} is not the current offset, the bytes before it are not on
+     * this node, or another chunk is being written.
+     * @throws PhotoTooLargeException if the chunk goes past the announced length.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<PhotoUploadDto> appendChunk(String id, long offset, InputStream chunk) {
+        log.debug("Request to append to PhotoUpload {} at offset {}", id, offset);
+        Optional<PhotoUpload> found = photoUploadRepository.findOneByIdAndOwner(id, currentUserLogin());
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        checkOffset(found.get(), offset);
+
+        long newOffset;
+        RuntimeException failure = null;
+        try (
+            FileChannel channel = FileChannel.open(partFile(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = lockPartFile(channel, id, offset)
+        ) {
+            // read again under the lock, a chunk written meanwhile on this node has moved the offset
+            found = photoUploadRepository.findOneByIdAndOwner(id, currentUserLogin());
+            if (found.isEmpty()) {
+                return Optional.empty();
+            }
+            PhotoUpload upload = found.get();
+            checkOffset(upload, offset);
+            long present = channel.size();
+            if (present < offset) {
+                // the bytes before the offset were received by another node, or lost
+                transactionTemplate.execute(
+                    status -> photoUploadRepository.advanceOffset(id, offset, present, Instant.now().plus(properties.getSessionTtl()))
+                );
+                throw new PhotoUploadConflictException("Upload " + id + " has " + present + " bytes on this node", present);
+            }
+            // drop whatever an earlier interrupted chunk left after the recorded offset
+            channel.truncate(offset);
+            channel.position(offset);
+
+            long written = 0;
+            InputStream limited = new SizeLimitedInputStream(chunk, upload.getLength() - offset);
+            byte[] buffer = new byte[64 * 1024];
+            try {
+                int read;
+                while ((read = limited.read(buffer)) >= 0) {
+                    channel.write(ByteBuffer.wrap(buffer, 0, read));
+                    written += read;
+                }
+            } catch (IOException e) {
+                failure = new PhotoStorageException("Upload " + id + " was interrupted at offset " + (offset + written), e);
+            } catch (PhotoTooLargeException e) {
+                failure = e;
+            }
+            channel.force(false);
+
+            long writtenTo = offset + written;
+            Integer advanced = transactionTemplate.execute(
+                status -> photoUploadRepository.advanceOffset(id, offset, writtenTo, Instant.now().plus(properties.getSessionTtl()))
+            );
+            if (advanced == null || advanced == 0) {
+                throw new PhotoUploadConflictException("Upload " + id + " was written concurrently", offset);
+            }
+            newOffset = writtenTo;
+        } catch (IOException e) {
+            throw new PhotoStorageException("Could not write upload " + id, e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        PhotoUpload upload = found.get();
+        upload.setOffset(newOffset);
+        return Optional.of(photoUploadMapper.toDto(upload));
+    }
+
+    private static void checkOffset(PhotoUpload upload, long offset) {
+        if (upload.getOffset() != offset) {
+            throw new PhotoUploadConflictException("Upload " + upload.getId() + " is at offset " + upload.getOffset(), upload.getOffset());
+        }
+    }
+
+    /**
+     * Lock the file of an upload against the other requests of this node, which would write or truncate it meanwhile.
+     */
+    private static FileLock lockPartFile(FileChannel channel, String id, long offset) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another request of this JVM
+            lock = null;
+        }
+        if (lock == null) {
+            throw new PhotoUploadConflictException("Upload " + id + " is being written by another request", offset);
+        }
+        return lock;
+    }
+
+    /**
+     * Turn a fully received upload into a photo, and delete the upload.
+     * <p>
+     * The image is stored outside of any transaction: the upload is first claimed in a short transaction, so no other
+     * request completes it meanwhile, and the photo saved and the upload deleted in a second one once the image is
+     * stored. A claim whose request failed is released; one whose node stopped lapses after
+     * {@code application.upload.completion-timeout}.
+     *
+     * @param id the id of the upload.
+     * @return the new photo, or empty if the current user has no such upload.
+     * @throws PhotoUploadConflictException if part of the image has not been received yet or is not on this node, or
+     * the upload is being completed by another request.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Optional<PhotoDto> complete(String id) {
+        log.debug("Request to complete PhotoUpload : {}", id);
+        Optional<PhotoUpload> claimed = transactionTemplate.execute(status -> claim(id));
+        if (claimed == null || claimed.isEmpty()) {
+            return Optional.empty();
+        }
+        PhotoUpload upload = claimed.get();
+        Instant completingSince = upload.getCompletingSince();
+        long present;
+        try {
+            present = partFileSize(id);
+        } catch (IOException e) {
+            releaseClaim(id, completingSince);
+            throw new PhotoStorageException("Could not read upload " + id, e);
+        }
+        if (present != upload.getLength()) {
+            // the bytes were received by another node, or lost: the client sends them again from what is present
+            long resumeAt = present < upload.getLength() ? present : 0;
+            transactionTemplate.executeWithoutResult(status -> photoUploadRepository.rewindClaimed(id, completingSince, resumeAt));
+            throw new PhotoUploadConflictException(
+                "Upload " + id + " has " + present + " of " + upload.getLength() + " bytes on this node",
+                resumeAt
+            );
+        }
+        Photo photo;
+        try (InputStream content = Files.newInputStream(partFile(id))) {
+            photo = photoService.prepareUpload(photoUploadMapper.toPhotoDto(upload), content);
+        } catch (IOException e) {
+            releaseClaim(id, completingSince);
+            throw new PhotoStorageException("Could not read upload " + id, e);
+        } catch (RuntimeException e) {
+            releaseClaim(id, completingSince);
+            throw e;
+        }
+        PhotoDto saved = transactionTemplate.execute(
+            status -> {
+                if (photoUploadRepository.deleteClaimed(id, completingSince) == 0) {
+                    // the claim lapsed and the upload was completed or deleted by another request
+                    blobReferenceService.releaseAfterCommit(photo.getImageKey());
+                    return null;
+                }
+                return photoService.saveAll(List.of(photo)).get(0);
+            }
+        );
+        if (saved == null) {
+            throw new PhotoUploadConflictException("Upload " + id + " was completed concurrently", upload.getOffset());
+        }
+        deletePartFile(id);
+        return Optional.of(saved);
+    }
+
+    /**
+     * Mark a fully received upload of the current user as being completed, and keep it from expiring meanwhile.
+     */
+    private Optional<PhotoUpload> claim(String id) {
+        Optional<PhotoUpload> found = photoUploadRepository
+            .findOneForUpdate(id)
+            .filter(upload -> upload.getOwner().equals(currentUserLogin()));
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        PhotoUpload upload = found.get();
+        if (upload.getOffset() < upload.getLength()) {
+            throw new PhotoUploadConflictException(
+                "Upload " + id + " has " + upload.getOffset() + " of " + upload.getLength() + " bytes",
+                upload.getOffset()
+            );
+        }
+        // stored with millisecond precision, and compared with the stored value afterwards
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        if (upload.getCompletingSince() != null && upload.getCompletingSince().plus(properties.getCompletionTimeout()).isAfter(now)) {
+            throw new PhotoUploadConflictException("Upload " + id + " is being completed", upload.getOffset());
+        }
+        upload.setCompletingSince(now);
+        upload.setExpiresAt(now.plus(properties.getSessionTtl()));
+        return Optional.of(upload);
+    }
+
+    private void releaseClaim(String id, Instant completingSince) {
+        transactionTemplate.executeWithoutResult(status -> photoUploadRepository.releaseClaim(id, completingSince));
+    }
+
+    /**
+     * Abandon an upload of the current user and drop the bytes received.
+     *
+     * @param id the id of the upload.
+     */
+    public void delete(String id) {
+        log.debug("Request to delete PhotoUpload : {}", id);
+        photoUploadRepository
+            .findOneByIdAndOwner(id, currentUserLogin())
+            .ifPresent(
+                upload -> {
+                    photoUploadRepository.delete(upload);
+                    deletePartFileAfterCommit(id);
+                }
+            );
+    }
+
+    /**
+     * Delete the uploads that received nothing for {@code application.upload.session-ttl}, and the files left behind
+     * by uploads that no longer exist.
+     */
+    @Scheduled(cron = "${application.upload.cleanup-cron:-}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void removeExpiredUploads() {
+        for (String id : photoUploadRepository.findExpiredIds(Instant.now())) {
+            log.debug("Deleting expired PhotoUpload {}", id);
+            transactionTemplate.executeWithoutResult(status -> photoUploadRepository.deleteById(id));
+            deletePartFile(id);
+        }
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Instant staleBefore = Instant.now().minus(properties.getSessionTtl());
+        try (Stream<Path> files = Files.list(directory)) {
+            Set<Path> stale = files
+                .filter(file -> file.getFileName().toString().endsWith(PART_SUFFIX))
+                .filter(file -> lastModified(file).isBefore(staleBefore))
+                .collect(Collectors.toSet());
+            for (Path file : stale) {
+                String id = file.getFileName().toString().replace(PART_SUFFIX, "");
+                if (!photoUploadRepository.existsById(id)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Could not clean up upload directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    Path partFile(String id) throws IOException {
+        Files.createDirectories(directory);
+        // ids are UUIDs generated here, never a path
+        return directory.resolve(UUID.fromString(id) + PART_SUFFIX);
+    }
+
+    private long partFileSize(String id) throws IOException {
+        try {
+            return Files.size(partFile(id));
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private void deletePartFileAfterCommit(String id) {
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deletePartFile(id);
+                }
+            }
+        );
+    }
+
+    private void deletePartFile(String id) {
+        try {
+            Files.deleteIfExists(partFile(id));
+        } catch (IOException e) {
+            log.warn("Could not delete the bytes of upload {}: {}", id, e.getMessage());
+        }
+    }
+
+    private static Instant lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toInstant();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String currentUserLogin() {
+        return SecurityUtils.getCurrentUserLogin().orElseThrow(() -> new IllegalStateException("Current user login not found"));
+    }
+}
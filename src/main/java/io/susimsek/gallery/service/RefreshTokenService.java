@@ -0,0 +1,175 @@
+package io.susimsek.gallery.service;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Authority;
+import io.susimsek.gallery.domain.RefreshToken;
+import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.repository.RefreshTokenRepository;
+import io.susimsek.gallery.repository.UserRepository;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Service issuing and rotating the refresh tokens, which clients exchange for a new access token instead of signing in
+ * again with their password.
+ * <p>
+ * Each exchange uses up the token and returns the next one of its family, the tokens of one sign in. A used token
+ * presented again means that two clients hold the family, one of which stole it: the whole family is revoked, so the
+ * user has to sign in again. A family expires {@code application.security.refresh-tokens.validity} after its sign in.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Service
+@Transactional
+public class RefreshTokenService {
+
+    static final int TOKEN_BYTES = 32;
+
+    ApplicationProperties.RefreshTokens properties;
+
+    RefreshTokenRepository refreshTokenRepository;
+
+    UserRepository userRepository;
+
+    SecureRandom random = new SecureRandom();
+
+    public RefreshTokenService(
+        ApplicationProperties applicationProperties,
+        RefreshTokenRepository refreshTokenRepository,
+        UserRepository userRepository
+    ) {
+        this.properties = applicationProperties.getSecurity().getRefreshTokens();
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Issue the first refresh token of a sign in.
+     *
+     * @param login the login of the user who signed in.
+     * @param rememberMe whether the user asked to be remembered.
+     * @return the refresh token.
+     */
+    public String create(String login, boolean rememberMe) {
+        User user = userRepository.findOneByLogin(login).orElseThrow(() -> new BadCredentialsException("User " + login + " not found"));
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(rememberMe ? properties.getValidityForRememberMe() : properties.getValidity());
+        return issue(UUID.randomUUID().toString(), user, rememberMe, now, expiresAt);
+    }
+
+    /**
+     * Exchange a refresh token for the next one of its family and the authentication of its user.
+     *
+     * @param token the refresh token.
+     * @return the next refresh token, and the authentication to issue an access token for.
+     * @throws BadCredentialsException if the token is unknown, expired, already used or its user deactivated.
+     */
+    @Transactional(noRollbackFor = BadCredentialsException.class)
+    public Rotation rotate(String token) {
+        RefreshToken refreshToken = refreshTokenRepository
+            .findOneForUpdate(hash(token))
+            .orElseThrow(() -> new BadCredentialsException("Unknown refresh token"));
+        User user = refreshToken.getUser();
+        Instant now = Instant.now();
+        if (refreshToken.getUsedDate() != null) {
+            log.warn("Refresh token of {} used twice, revoking the tokens of its sign in", user.getLogin());
+            refreshTokenRepository.deleteByFamily(refreshToken.getFamily());
+            throw new BadCredentialsException("Refresh token already used");
+        }
+        if (!refreshToken.getExpiresAt().isAfter(now)) {
+            throw new BadCredentialsException("Refresh token expired");
+        }
+        if (!user.isActivated()) {
+            refreshTokenRepository.deleteByFamily(refreshToken.getFamily());
+            throw new BadCredentialsException("User " + user.getLogin() + " was not activated");
+        }
+        refreshToken.setUsedDate(now);
+        String next = issue(refreshToken.getFamily(), user, refreshToken.isRememberMe(), now, refreshToken.getExpiresAt());
+        List<GrantedAuthority> authorities = user
+            .getAuthorities()
+            .stream()
+            .map(Authority::getName)
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+        return new Rotation(next, new UsernamePasswordAuthenticationToken(user.getLogin(), null, authorities), refreshToken.isRememberMe());
+    }
+
+    /**
+     * Revoke a refresh token and the other tokens of its sign in.
+     *
+     * @param token the refresh token.
+     */
+    public void revoke(String token) {
+        refreshTokenRepository.findById(hash(token)).ifPresent(refreshToken -> refreshTokenRepository.deleteByFamily(refreshToken.getFamily()));
+    }
+
+    /**
+     * Revoke all the refresh tokens of a user, e.g. when the password changes.
+     */
+    public void revokeAll(User user) {
+        refreshTokenRepository.deleteByUser(user);
+    }
+
+    @Scheduled(cron = "${application.security.refresh-tokens.cleanup-cron:-}")
+    public void removeExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(Instant.now());
+        log.debug("Deleted {} expired refresh tokens", deleted);
+    }
+
+    private String issue(String family, User user, boolean rememberMe, Instant now, Instant expiresAt) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        refreshTokenRepository.save(
+            RefreshToken.builder().hash(hash(token)).family(family).user(user).rememberMe(rememberMe).createdDate(now).expiresAt(expiresAt).build()
+        );
+        return token;
+    }
+
+    /**
+     * @return the SHA-256 hash of the token; the token is random, a slow hash would add nothing.
+     */
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The result of exchanging a refresh token.
+     */
+    @Value
+    public static class Rotation {
+
+        /**
+         * The next refresh token of the family.
+         */
+        String refreshToken;
+
+        Authentication authentication;
+
+        boolean rememberMe;
+    }
+}
@@ -0,0 +1,16 @@
+package io.susimsek.gallery.service;
+
+import lombok.Getter;
+
+@Getter
+public class TooManyPhotosException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int maxItems;
+
+    public TooManyPhotosException(int maxItems) {
+        super("An import holds at most " + maxItems + " photos");
+        this.maxItems = maxItems;
+    }
+}
@@ -3,13 +3,14 @@ package io.susimsek.gallery.service;
 import io.susimsek.gallery.config.Constants;
 import io.susimsek.gallery.domain.Authority;
 import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
 import io.susimsek.gallery.repository.AuthorityRepository;
 import io.susimsek.gallery.repository.UserRepository;
-import io.susimsek.gallery.repository.search.UserSearchRepository;
 import io.susimsek.gallery.security.AuthoritiesConstants;
 import io.susimsek.gallery.security.SecurityUtils;
 import io.susimsek.gallery.service.dto.AdminUserDto;
 import io.susimsek.gallery.service.dto.UserDto;
+import io.susimsek.gallery.service.search.SearchIndexOutboxService;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
@@ -44,12 +45,14 @@ public class UserService {
 
     final PasswordEncoder passwordEncoder;
 
-    final UserSearchRepository userSearchRepository;
+    final SearchIndexOutboxService searchIndexOutboxService;
 
     final AuthorityRepository authorityRepository;
 
     final CacheManager cacheManager;
 
+    final RefreshTokenService refreshTokenService;
+
     public Optional<User> activateRegistration(String key) {
         log.debug("Activating user for activation key {}", key);
         return userRepository
@@ -59,7 +62,7 @@ public class UserService {
                     // activate given user for the registration key.
                     user.setActivated(true);
                     user.setActivationKey(null);
-                    userSearchRepository.save(user);
+                    searchIndexOutboxService.index(SearchIndexEntityType.USER, user.getId());
                     this.clearUserCaches(user);
                     log.debug("Activated user: {}", user);
                     return user;
@@ -77,6 +80,7 @@ public class UserService {
                     user.setPassword(passwordEncoder.encode(newPassword));
                     user.setResetKey(null);
                     user.setResetDate(null);
+                    refreshTokenService.revokeAll(user);
                     this.clearUserCaches(user);
                     return user;
                 }
@@ -138,7 +142,7 @@ public class UserService {
         authorityRepository.findById(AuthoritiesConstants.USER).ifPresent(authorities::add);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
-        userSearchRepository.save(newUser);
+        searchIndexOutboxService.index(SearchIndexEntityType.USER, newUser.getId());
         this.clearUserCaches(newUser);
         log.debug("Created Information for User: {}", newUser);
         return newUser;
@@ -184,7 +188,7 @@ public class UserService {
             user.setAuthorities(authorities);
         }
         userRepository.save(user);
-        userSearchRepository.save(user);
+        searchIndexOutboxService.index(SearchIndexEntityType.USER, user.getId());
         this.clearUserCaches(user);
         log.debug("Created Information for User: {}", user);
         return user;
@@ -222,7 +226,7 @@ public class UserService {
                         .filter(Optional::isPresent)
                         .map(Optional::get)
                         .forEach(managedAuthorities::add);
-                    userSearchRepository.save(user);
+                    searchIndexOutboxService.index(SearchIndexEntityType.USER, user.getId());
                     this.clearUserCaches(user);
                     log.debug("Changed Information for User: {}", user);
                     return user;
@@ -237,7 +241,7 @@ public class UserService {
             .ifPresent(
                 user -> {
                     userRepository.delete(user);
-                    userSearchRepository.delete(user);
+                    searchIndexOutboxService.delete(SearchIndexEntityType.USER, user.getId());
                     this.clearUserCaches(user);
                     log.debug("Deleted User: {}", user);
                 }
@@ -266,7 +270,7 @@ public class UserService {
                     }
                     user.setLangKey(langKey);
                     user.setImageUrl(imageUrl);
-                    userSearchRepository.save(user);
+                    searchIndexOutboxService.index(SearchIndexEntityType.USER, user.getId());
                     this.clearUserCaches(user);
                     log.debug("Changed Information for User: {}", user);
                 }
@@ -286,6 +290,7 @@ public class UserService {
                     }
                     String encryptedPassword = passwordEncoder.encode(newPassword);
                     user.setPassword(encryptedPassword);
+                    refreshTokenService.revokeAll(user);
                     this.clearUserCaches(user);
                     log.debug("Changed password for User: {}", user);
                 }
@@ -325,7 +330,7 @@ public class UserService {
                 user -> {
                     log.debug("Deleting not activated user {}", user.getLogin());
                     userRepository.delete(user);
-                    userSearchRepository.delete(user);
+                    searchIndexOutboxService.delete(SearchIndexEntityType.USER, user.getId());
                     this.clearUserCaches(user);
                 }
             );
@@ -33,6 +33,9 @@ public class PhotoDto implements Serializable {
     byte[] image;
 
     String imageContentType;
+
+    Long imageSize;
+
     Integer height;
 
     Integer width;
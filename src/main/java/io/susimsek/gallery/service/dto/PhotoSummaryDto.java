@@ -0,0 +1,86 @@
+package io.susimsek.gallery.service.dto;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A read-only DTO for listing {@link io.susimsek.gallery.domain.Photo} entities.
+ * <p>
+ * Built straight from a JPA constructor expression, so neither the image nor the entity is ever loaded.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+public class PhotoSummaryDto implements Serializable {
+
+    Long id;
+
+    String title;
+
+    String description;
+
+    String imageContentType;
+
+    Long imageSize;
+
+    Integer height;
+
+    Integer width;
+
+    Instant taken;
+
+    Instant uploaded;
+
+    AlbumDto album;
+
+    public PhotoSummaryDto(
+        Long id,
+        String title,
+        String description,
+        String imageContentType,
+        Long imageSize,
+        Integer height,
+        Integer width,
+        Instant taken,
+        Instant uploaded,
+        Long albumId,
+        String albumTitle
+    ) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.imageContentType = imageContentType;
+        this.imageSize = imageSize;
+        this.height = height;
+        this.width = width;
+        this.taken = taken;
+        this.uploaded = uploaded;
+        if (albumId != null) {
+            this.album = AlbumDto.builder().id(albumId).title(albumTitle).build();
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhotoSummaryDto)) {
+            return false;
+        }
+
+        PhotoSummaryDto photoSummaryDto = (PhotoSummaryDto) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, photoSummaryDto.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+}
@@ -0,0 +1,62 @@
+package io.susimsek.gallery.service.dto;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+import javax.persistence.Lob;
+import javax.validation.constraints.*;
+
+/**
+ * A DTO for the {@link io.susimsek.gallery.domain.PhotoUpload} entity.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PhotoUploadDto implements Serializable {
+
+    String id;
+
+    @NotNull
+    String title;
+
+    @Lob
+    String description;
+
+    AlbumDto album;
+
+    String imageContentType;
+
+    @NotNull
+    @Positive
+    Long length;
+
+    long offset;
+
+    Instant expiresAt;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PhotoUploadDto)) {
+            return false;
+        }
+
+        PhotoUploadDto photoUploadDto = (PhotoUploadDto) o;
+        if (this.id == null) {
+            return false;
+        }
+        return Objects.equals(this.id, photoUploadDto.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.id);
+    }
+}
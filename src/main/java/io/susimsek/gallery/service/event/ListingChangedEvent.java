@@ -0,0 +1,17 @@
+package io.susimsek.gallery.service.event;
+
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Published when photos or albums change, with the {@link io.susimsek.gallery.service.listing.ListingScopes scopes} of
+ * the cached listings which may no longer be up to date once the transaction commits.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class ListingChangedEvent {
+
+    Set<String> scopes;
+}
@@ -0,0 +1,15 @@
+package io.susimsek.gallery.service.event;
+
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Published when a new image has been stored for a {@link io.susimsek.gallery.domain.Photo}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class PhotoImageStoredEvent {
+
+    Long photoId;
+}
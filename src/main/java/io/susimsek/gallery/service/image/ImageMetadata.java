@@ -0,0 +1,30 @@
+package io.susimsek.gallery.service.image;
+
+import java.time.Instant;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * What {@link ImageMetadataExtractor} could read from the header of an image; every field is {@code null} when unknown.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+@Builder
+public class ImageMetadata {
+
+    /**
+     * Media type of the detected format.
+     */
+    String contentType;
+
+    Integer width;
+
+    Integer height;
+
+    /**
+     * EXIF date the image was digitized.
+     */
+    Instant taken;
+}
@@ -0,0 +1,508 @@
+package io.susimsek.gallery.service.image;
+
+import com.drew.lang.ByteArrayReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Reads the dimensions and EXIF capture date of JPEG, PNG, WebP and HEIF/HEIC images from their headers.
+ * <p>
+ * The input is read once, front to back: segments that are not needed are skipped rather than read, only the EXIF
+ * block is copied, and reading stops as soon as everything is known, normally before the first byte of pixel data.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ImageMetadataExtractor {
+
+    /**
+     * Largest EXIF block that is read; a JPEG segment can never be larger than 64 KiB.
+     */
+    static final int MAX_EXIF_LENGTH = 256 * 1024;
+
+    private static final byte[] JPEG_SIGNATURE = { (byte) 0xFF, (byte) 0xD8 };
+
+    private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    private static final byte[] EXIF_PREAMBLE = { 'E', 'x', 'i', 'f', 0, 0 };
+
+    private static final Set<String> HEIF_BRANDS = Set.of("heic", "heix", "heim", "heis", "hevc", "hevx", "mif1", "msf1", "avif");
+
+    private static final int SIGNATURE_LENGTH = 12;
+
+    /**
+     * Read the metadata at the start of {@code input}, leaving the stream positioned somewhere after it.
+     *
+     * @param input the encoded image, not closed by this method.
+     * @return the metadata found, all {@code null} when the format is not recognised.
+     * @throws IOException if the input could not be read, ends inside the header or the header is malformed.
+     */
+    public static ImageMetadata extract(InputStream input) throws IOException {
+        ImageMetadata.ImageMetadataBuilder metadata = ImageMetadata.builder();
+        read(new HeaderInput(input), metadata);
+        return metadata.build();
+    }
+
+    /**
+     * Read the metadata of an image whose content is still needed afterwards, typically to stream it to storage.
+     * <p>
+     * The header bytes read on the way, at most {@code maxHeaderLength} of them, are kept and replayed in front of
+     * the rest of the input. A longer header, an input ending inside the header or a header which cannot be parsed
+     * yields what was found so far.
+     *
+     * @param input the encoded image, not closed by this method.
+     * @param maxHeaderLength the most bytes held in memory.
+     * @return the metadata, and the whole content to read next.
+     * @throws IOException if the input could not be read.
+     */
+    public static PeekedImage peek(InputStream input, int maxHeaderLength) throws IOException {
+        RecordingInputStream recording = new RecordingInputStream(input, maxHeaderLength);
+        ImageMetadata.ImageMetadataBuilder metadata = ImageMetadata.builder();
+        try {
+            read(new HeaderInput(recording), metadata);
+        } catch (EOFException | HeaderTooLongException | MalformedHeaderException | RuntimeException e) {
+            // the content is stored anyway, with whatever was found
+        }
+        return new PeekedImage(metadata.build(), new SequenceInputStream(new ByteArrayInputStream(recording.recorded()), input));
+    }
+
+    private static void read(HeaderInput header, ImageMetadata.ImageMetadataBuilder metadata) throws IOException {
+        byte[] signature = header.peek(SIGNATURE_LENGTH);
+        if (startsWith(signature, 0, JPEG_SIGNATURE)) {
+            metadata.contentType("image/jpeg");
+            readJpeg(header, metadata);
+        } else if (startsWith(signature, 0, PNG_SIGNATURE)) {
+            metadata.contentType("image/png");
+            readPng(header, metadata);
+        } else if (startsWith(signature, 0, fourCc("RIFF")) && startsWith(signature, 8, fourCc("WEBP"))) {
+            metadata.contentType("image/webp");
+            readWebp(header, metadata);
+        } else if (startsWith(signature, 4, fourCc("ftyp")) && HEIF_BRANDS.contains(new String(signature, 8, 4, StandardCharsets.US_ASCII))) {
+            metadata.contentType("avif".equals(new String(signature, 8, 4, StandardCharsets.US_ASCII)) ? "image/avif" : "image/heic");
+            readHeif(header, metadata);
+        }
+    }
+
+    private static void readJpeg(HeaderInput input, ImageMetadata.ImageMetadataBuilder metadata) throws IOException {
+        input.skip(JPEG_SIGNATURE.length);
+        while (true) {
+            if (input.u8() != 0xFF) {
+                return;
+            }
+            int marker = input.u8();
+            while (marker == 0xFF) {
+                marker = input.u8();
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // end of image or start of scan: there are no more headers
+                return;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            int length = input.u16(true) - 2;
+            if (marker == 0xE1 && length > EXIF_PREAMBLE.length) {
+                byte[] segment = input.bytes(length);
+                if (startsWith(segment, 0, EXIF_PREAMBLE)) {
+                    readExif(segment, EXIF_PREAMBLE.length, metadata);
+                }
+            } else if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                // start of frame, which always follows the EXIF segment
+                input.skip(1);
+                metadata.height(input.u16(true)).width(input.u16(true));
+                return;
+            } else {
+                input.skip(length);
+            }
+        }
+    }
+
+    private static void readPng(HeaderInput input, ImageMetadata.ImageMetadataBuilder metadata) throws IOException {
+        input.skip(PNG_SIGNATURE.length);
+        while (true) {
+            long length = input.u32(true);
+            String type = input.fourCc();
+            if ("IDAT".equals(type) || "IEND".equals(type)) {
+                return;
+            }
+            if ("IHDR".equals(type)) {
+                metadata.width((int) input.u32(true)).height((int) input.u32(true));
+                input.skip(length - 8);
+            } else if ("eXIf".equals(type) && length <= MAX_EXIF_LENGTH) {
+                readExif(input.bytes((int) length), 0, metadata);
+            } else {
+                input.skip(length);
+            }
+            // CRC
+            input.skip(4);
+        }
+    }
+
+    private static void readWebp(HeaderInput input, ImageMetadata.ImageMetadataBuilder metadata) throws IOException {
+        input.skip(SIGNATURE_LENGTH);
+        boolean dimensionsKnown = false;
+        boolean exifExpected = false;
+        while (!dimensionsKnown || exifExpected) {
+            String type = input.fourCc();
+            long size = input.u32(false);
+            long padded = size + (size & 1);
+            if ("VP8X".equals(type)) {
+                exifExpected = (input.u8() & 0x08) != 0;
+                input.skip(3);
+                metadata.width(input.u24LittleEndian() + 1).height(input.u24LittleEndian() + 1);
+                dimensionsKnown = true;
+                input.skip(padded - 10);
+            } else if ("VP8 ".equals(type) && !dimensionsKnown) {
+                // frame tag and start code precede the 14 bit dimensions
+                input.skip(6);
+                metadata.width(input.u16(false) & 0x3FFF).height(input.u16(false) & 0x3FFF);
+                dimensionsKnown = true;
+                input.skip(padded - 10);
+            } else if ("VP8L".equals(type) && !dimensionsKnown) {
+                input.skip(1);
+                long bits = input.u32(false);
+                metadata.width((int) (bits & 0x3FFF) + 1).height((int) ((bits >> 14) & 0x3FFF) + 1);
+                dimensionsKnown = true;
+                input.skip(padded - 5);
+            } else if ("EXIF".equals(type) && size <= MAX_EXIF_LENGTH) {
+                byte[] exif = input.bytes((int) size);
+                readExif(exif, startsWith(exif, 0, EXIF_PREAMBLE) ? EXIF_PREAMBLE.length : 0, metadata);
+                exifExpected = false;
+                input.skip(padded - size);
+            } else {
+                input.skip(padded);
+            }
+        }
+    }
+
+    /**
+     * HEIF keeps everything in the {@code meta} box: the size of each image in {@code ispe} properties and, for
+     * the EXIF item, its type in {@code iinf} and its position in the file in {@code iloc}.
+     */
+    private static void readHeif(HeaderInput input, ImageMetadata.ImageMetadataBuilder metadata) throws IOException {
+        HeifItems items = new HeifItems();
+        readHeifBoxes(input, Long.MAX_VALUE, items);
+        if (items.width > 0) {
+            metadata.width((int) items.width).height((int) items.height);
+        }
+        long[] exifLocation = items.exifItemId != null ? items.locations.get(items.exifItemId) : null;
+        if (exifLocation != null && exifLocation[0] >= input.position && exifLocation[1] > 4 && exifLocation[1] <= MAX_EXIF_LENGTH) {
+            input.skip(exifLocation[0] - input.position);
+            byte[] exif = input.bytes((int) exifLocation[1]);
+            int tiffHeaderOffset = 4 + (int) ((exif[0] & 0xFFL) << 24 | (exif[1] & 0xFF) << 16 | (exif[2] & 0xFF) << 8 | exif[3] & 0xFF);
+            if (tiffHeaderOffset < exif.length) {
+                readExif(exif, tiffHeaderOffset, metadata);
+            }
+        }
+    }
+
+    private static void readHeifBoxes(HeaderInput input, long end, HeifItems items) throws IOException {
+        while (input.position < end) {
+            long start = input.position;
+            long size = input.u32(true);
+            String type = input.fourCc();
+            if (size == 1) {
+                size = input.u64();
+            } else if (size == 0) {
+                size = end - start;
+            }
+            long boxEnd = start + size;
+            switch (type) {
+                case "meta":
+                    input.skip(4);
+                    readHeifBoxes(input, boxEnd, items);
+                    // everything needed is in the meta box, pixel data follows it
+                    return;
+                case "iprp":
+                case "ipco":
+                    readHeifBoxes(input, boxEnd, items);
+                    break;
+                case "ispe":
+                    input.skip(4);
+                    items.imageSize(input.u32(true), input.u32(true));
+                    break;
+                case "iinf":
+                    readHeifItemInfo(input, boxEnd, items);
+                    break;
+                case "iloc":
+                    readHeifItemLocations(input, items);
+                    break;
+                default:
+                    break;
+            }
+            input.skip(boxEnd - input.position);
+        }
+    }
+
+    private static void readHeifItemInfo(HeaderInput input, long end, HeifItems items) throws IOException {
+        int version = input.u8();
+        input.skip(3 + (version == 0 ? 2 : 4));
+        while (input.position < end) {
+            long start = input.position;
+            long size = input.u32(true);
+            String type = input.fourCc();
+            int infeVersion = input.u8();
+            input.skip(3);
+            if ("infe".equals(type) && infeVersion >= 2) {
+                long itemId = infeVersion == 2 ? input.u16(true) : input.u32(true);
+                input.skip(2);
+                if ("Exif".equals(input.fourCc())) {
+                    items.exifItemId = itemId;
+                }
+            }
+            input.skip(start + size - input.position);
+        }
+    }
+
+    private static void readHeifItemLocations(HeaderInput input, HeifItems items) throws IOException {
+        int version = input.u8();
+        input.skip(3);
+        int sizes = input.u8();
+        int offsetSize = sizes >> 4;
+        int lengthSize = sizes & 0x0F;
+        sizes = input.u8();
+        int baseOffsetSize = sizes >> 4;
+        int indexSize = version > 0 ? sizes & 0x0F : 0;
+        long itemCount = version < 2 ? input.u16(true) : input.u32(true);
+        for (long i = 0; i < itemCount; i++) {
+            long itemId = version < 2 ? input.u16(true) : input.u32(true);
+            int constructionMethod = version > 0 ? input.u16(true) & 0x0F : 0;
+            input.skip(2);
+            long baseOffset = input.unsigned(baseOffsetSize);
+            int extentCount = input.u16(true);
+            for (int extent = 0; extent < extentCount; extent++) {
+                input.skip(indexSize);
+                long offset = input.unsigned(offsetSize);
+                long length = input.unsigned(lengthSize);
+                // only items stored in the file itself, in a single extent, can be read while streaming
+                if (extent == 0 && extentCount == 1 && constructionMethod == 0) {
+                    items.locations.put(itemId, new long[] { baseOffset + offset, length });
+                }
+            }
+        }
+    }
+
+    private static void readExif(byte[] data, int tiffHeaderOffset, ImageMetadata.ImageMetadataBuilder metadata) {
+        Metadata exif = new Metadata();
+        new ExifReader().extract(new ByteArrayReader(data, tiffHeaderOffset), exif);
+        ExifSubIFDDirectory directory = exif.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+        Date digitized = directory != null ? directory.getDateDigitized() : null;
+        if (digitized != null) {
+            metadata.taken(digitized.toInstant());
+        }
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        return data.length >= offset + prefix.length && Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static byte[] fourCc(String type) {
+        return type.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Metadata read by {@link #peek(InputStream, int)} and the complete content of the image.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Value
+    public static class PeekedImage {
+
+        ImageMetadata metadata;
+
+        InputStream content;
+    }
+
+    private static final class HeifItems {
+
+        final Map<Long, long[]> locations = new HashMap<>();
+
+        Long exifItemId;
+
+        long width;
+
+        long height;
+
+        /**
+         * Tiles and thumbnails have their own sizes, the primary image is the largest.
+         */
+        void imageSize(long width, long height) {
+            if (width * height > this.width * this.height) {
+                this.width = width;
+                this.height = height;
+            }
+        }
+    }
+
+    private static final class HeaderTooLongException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        HeaderTooLongException(int maxLength) {
+            super("Image header is longer than " + maxLength + " bytes");
+        }
+    }
+
+    private static final class MalformedHeaderException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        MalformedHeaderException() {
+            super("Image header is malformed");
+        }
+    }
+
+    /**
+     * Keeps a copy of everything read through it, up to a limit.
+     */
+    private static final class RecordingInputStream extends FilterInputStream {
+
+        final ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+        final int maxLength;
+
+        RecordingInputStream(InputStream input, int maxLength) {
+            super(input);
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int allowed = Math.min(length, maxLength - recorded.size());
+            if (allowed <= 0) {
+                throw new HeaderTooLongException(maxLength);
+            }
+            int read = super.read(buffer, offset, allowed);
+            if (read > 0) {
+                recorded.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            // skipped bytes are part of the content too
+            int read = read(new byte[(int) Math.min(length, 8192)], 0, (int) Math.min(length, 8192));
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        byte[] recorded() {
+            return recorded.toByteArray();
+        }
+    }
+
+    /**
+     * Forward-only reader that keeps track of its position in the input.
+     */
+    private static final class HeaderInput {
+
+        final PushbackInputStream input;
+
+        long position;
+
+        HeaderInput(InputStream input) {
+            this.input = new PushbackInputStream(input, SIGNATURE_LENGTH);
+        }
+
+        byte[] peek(int length) throws IOException {
+            byte[] data = input.readNBytes(length);
+            input.unread(data);
+            return data;
+        }
+
+        int u8() throws IOException {
+            int value = input.read();
+            if (value < 0) {
+                throw new EOFException("Image header is truncated");
+            }
+            position++;
+            return value;
+        }
+
+        int u16(boolean bigEndian) throws IOException {
+            int first = u8();
+            int second = u8();
+            return bigEndian ? first << 8 | second : second << 8 | first;
+        }
+
+        int u24LittleEndian() throws IOException {
+            return u8() | u8() << 8 | u8() << 16;
+        }
+
+        long u32(boolean bigEndian) throws IOException {
+            long first = u16(bigEndian);
+            long second = u16(bigEndian);
+            return bigEndian ? first << 16 | second : second << 16 | first;
+        }
+
+        long u64() throws IOException {
+            return u32(true) << 32 | u32(true);
+        }
+
+        long unsigned(int size) throws IOException {
+            long value = 0;
+            for (int i = 0; i < size; i++) {
+                value = value << 8 | u8();
+            }
+            return value;
+        }
+
+        String fourCc() throws IOException {
+            return new String(bytes(4), StandardCharsets.US_ASCII);
+        }
+
+        byte[] bytes(int length) throws IOException {
+            byte[] data = input.readNBytes(length);
+            if (data.length < length) {
+                throw new EOFException("Image header is truncated");
+            }
+            position += length;
+            return data;
+        }
+
+        void skip(long length) throws IOException {
+            if (length < 0) {
+                throw new MalformedHeaderException();
+            }
+            long remaining = length;
+            while (remaining > 0) {
+                long skipped = input.skip(remaining);
+                if (skipped <= 0) {
+                    if (input.read() < 0) {
+                        throw new EOFException("Image header is truncated");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+            position += length;
+        }
+    }
+}
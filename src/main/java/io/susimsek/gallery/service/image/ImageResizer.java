@@ -0,0 +1,143 @@
+package io.susimsek.gallery.service.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Optional;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Decodes, downscales and encodes images with the JDK ImageIO and Java2D APIs.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ImageResizer {
+
+    public static final String JPEG = "jpeg";
+
+    public static final String WEBP = "webp";
+
+    /**
+     * Decode an image, subsampling it while reading when it is much larger than needed,
+     * so a 40 megapixel original is never fully decoded to produce a 1600 pixel rendition.
+     *
+     * @param input the encoded image.
+     * @param maxSide the largest side length that will be derived from the image.
+     * @return the decoded image, or empty if no reader understands the format.
+     * @throws IOException if the image could not be read.
+     */
+    public static Optional<BufferedImage> read(InputStream input, int maxSide) throws IOException {
+        try (ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+            if (imageInput == null) {
+                return Optional.empty();
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                // keep twice the target resolution so the final downscale still has pixels to average
+                int subsampling = Math.max(1, longestSide / (maxSide * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return Optional.of(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale an image down so its longest side fits, halving step by step to avoid the aliasing
+     * of a single bilinear pass. Images are never scaled up, and the result is always opaque RGB.
+     *
+     * @param source the image to scale.
+     * @param maxSide the maximum length of the longest side.
+     * @return the scaled image.
+     */
+    public static BufferedImage resize(BufferedImage source, int maxSide) {
+        double scale = Math.min(1d, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(width / 2, targetWidth);
+            height = Math.max(height / 2, targetHeight);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * Check whether ImageIO can encode the format, e.g. WebP needs a plugin on the classpath.
+     *
+     * @param format the format name.
+     * @return {@code true} if a writer is registered.
+     */
+    public static boolean canWrite(String format) {
+        return ImageIO.getImageWritersByFormatName(format).hasNext();
+    }
+
+    /**
+     * Encode an image.
+     *
+     * @param image the image.
+     * @param format the format name.
+     * @param quality the compression quality between 0 and 1, used when the writer supports it.
+     * @return the encoded bytes.
+     * @throws IOException if the image could not be encoded.
+     */
+    public static byte[] write(BufferedImage image, String format, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
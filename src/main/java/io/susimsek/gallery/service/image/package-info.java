@@ -0,0 +1,4 @@
+/**
+ * Image decoding, resizing and encoding.
+ */
+package io.susimsek.gallery.service.image;
@@ -3,12 +3,18 @@ package io.susimsek.gallery.service.impl;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
 import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
 import io.susimsek.gallery.repository.AlbumRepository;
 import io.susimsek.gallery.repository.search.AlbumSearchRepository;
 import io.susimsek.gallery.service.AlbumService;
 import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.event.ListingChangedEvent;
+import io.susimsek.gallery.service.listing.ListingScopes;
 import io.susimsek.gallery.service.mapper.AlbumMapper;
+import io.susimsek.gallery.service.search.SearchIndexOutboxService;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +22,7 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -37,13 +44,23 @@ public class AlbumServiceImpl implements AlbumService {
 
     final AlbumSearchRepository albumSearchRepository;
 
+    final SearchIndexOutboxService searchIndexOutboxService;
+
+    final ApplicationEventPublisher applicationEventPublisher;
+
     @Override
     public AlbumDto save(AlbumDto albumDto) {
         log.debug("Request to save Album : {}", albumDto);
         Album album = albumMapper.toEntity(albumDto);
+        // the user of an updated album is read before the save merges the new one into it
+        Set<String> listingScopes = new HashSet<>(
+            albumDto.getId() == null ? Set.of() : albumRepository.findById(albumDto.getId()).map(ListingScopes::of).orElse(Set.of())
+        );
         album = albumRepository.save(album);
         AlbumDto result = albumMapper.toDto(album);
-        albumSearchRepository.save(album);
+        searchIndexOutboxService.index(SearchIndexEntityType.ALBUM, album.getId());
+        listingScopes.addAll(ListingScopes.of(album));
+        applicationEventPublisher.publishEvent(new ListingChangedEvent(listingScopes));
         return result;
     }
 
@@ -51,10 +68,12 @@ public class AlbumServiceImpl implements AlbumService {
     public Optional<AlbumDto> partialUpdate(AlbumDto albumDto) {
         log.debug("Request to partially update Album : {}", albumDto);
 
+        Set<String> listingScopes = new HashSet<>();
         return albumRepository
             .findById(albumDto.getId())
             .map(
                 existingAlbum -> {
+                    listingScopes.addAll(ListingScopes.of(existingAlbum));
                     albumMapper.partialUpdate(existingAlbum, albumDto);
 
                     return existingAlbum;
@@ -63,7 +82,9 @@ public class AlbumServiceImpl implements AlbumService {
             .map(albumRepository::save)
             .map(
                 savedAlbum -> {
-                    albumSearchRepository.save(savedAlbum);
+                    searchIndexOutboxService.index(SearchIndexEntityType.ALBUM, savedAlbum.getId());
+                    listingScopes.addAll(ListingScopes.of(savedAlbum));
+                    applicationEventPublisher.publishEvent(new ListingChangedEvent(listingScopes));
 
                     return savedAlbum;
                 }
@@ -88,8 +109,12 @@ public class AlbumServiceImpl implements AlbumService {
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Album : {}", id);
+        Set<String> listingScopes = new HashSet<>(albumRepository.findById(id).map(ListingScopes::of).orElse(Set.of(ListingScopes.ALBUMS)));
+        // and the photo listings of the album
+        listingScopes.add(ListingScopes.album(id));
         albumRepository.deleteById(id);
-        albumSearchRepository.deleteById(id);
+        searchIndexOutboxService.delete(SearchIndexEntityType.ALBUM, id);
+        applicationEventPublisher.publishEvent(new ListingChangedEvent(listingScopes));
     }
 
     @Override
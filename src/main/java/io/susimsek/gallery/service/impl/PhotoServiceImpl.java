@@ -1,36 +1,50 @@
 package io.susimsek.gallery.service.impl;
 
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.imaging.ImageProcessingException;
-import com.drew.metadata.Metadata;
-import com.drew.metadata.MetadataException;
-import com.drew.metadata.exif.ExifSubIFDDirectory;
-import com.drew.metadata.jpeg.JpegDirectory;
+import io.susimsek.gallery.config.ApplicationProperties;
 import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
 import io.susimsek.gallery.repository.PhotoRepository;
 import io.susimsek.gallery.repository.search.PhotoSearchRepository;
+import io.susimsek.gallery.service.BlobReferenceService;
+import io.susimsek.gallery.service.PhotoRenditionService;
 import io.susimsek.gallery.service.PhotoService;
+import io.susimsek.gallery.service.PhotoStorageException;
 import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.event.ListingChangedEvent;
+import io.susimsek.gallery.service.event.PhotoImageStoredEvent;
+import io.susimsek.gallery.service.image.ImageMetadata;
+import io.susimsek.gallery.service.image.ImageMetadataExtractor;
+import io.susimsek.gallery.service.listing.ListingScopes;
 import io.susimsek.gallery.service.mapper.PhotoMapper;
+import io.susimsek.gallery.service.search.SearchIndexOutboxService;
+import io.susimsek.gallery.service.mapper.PhotoSearchMapper;
+import io.susimsek.gallery.service.storage.BlobStore;
+import io.susimsek.gallery.service.storage.PhotoContent;
+import io.susimsek.gallery.service.storage.SizeLimitedInputStream;
+import io.susimsek.gallery.service.storage.StoredBlob;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.xml.bind.DatatypeConverter;
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 
@@ -50,20 +64,110 @@ public class PhotoServiceImpl implements PhotoService {
 
     final PhotoSearchRepository photoSearchRepository;
 
+    final SearchIndexOutboxService searchIndexOutboxService;
+
+    final PhotoSearchMapper photoSearchMapper;
+
+    final BlobStore blobStore;
+
+    final BlobReferenceService blobReferenceService;
+
+    final PhotoRenditionService photoRenditionService;
+
+    final ApplicationEventPublisher applicationEventPublisher;
+
+    final TransactionTemplate transactionTemplate;
+
+    final ApplicationProperties applicationProperties;
+
     @Override
     public PhotoDto save(PhotoDto photoDto) {
         log.debug("Request to save Photo : {}", photoDto);
 
+        if (photoDto.getImage() != null) {
+            try {
+                photoDto = setMetadata(photoDto);
+            } catch (IOException e) {
+                log.error(e.getMessage());
+            }
+        }
+
+        Photo photo = photoMapper.toEntity(photoDto);
+        Optional<Photo> existingPhoto = photoDto.getId() != null ? photoRepository.findById(photoDto.getId()) : Optional.empty();
+        String previousImageKey = existingPhoto.map(Photo::getImageKey).orElse(null);
+        // the existing photo is the instance the save merges into, its album and tags are read before
+        Set<String> listingScopes = new HashSet<>(existingPhoto.map(ListingScopes::of).orElse(Set.of()));
+        if (photoDto.getImage() != null) {
+            storeImage(photo, photoDto.getImage());
+        } else {
+            existingPhoto.ifPresent(
+                existing -> {
+                    photo.setImageKey(existing.getImageKey());
+                    photo.setImageSize(existing.getImageSize());
+                    photo.setImageChecksum(existing.getImageChecksum());
+                    photo.setImageStoredDate(existing.getImageStoredDate());
+                }
+            );
+        }
+        Photo savedPhoto = photoRepository.save(photo);
+        releaseImageIfReplaced(previousImageKey, savedPhoto.getImageKey());
+        if (photoDto.getImage() != null) {
+            applicationEventPublisher.publishEvent(new PhotoImageStoredEvent(savedPhoto.getId()));
+        }
+        PhotoDto result = photoMapper.toDto(savedPhoto);
+        searchIndexOutboxService.index(SearchIndexEntityType.PHOTO, savedPhoto.getId());
+        listingScopes.addAll(ListingScopes.of(savedPhoto));
+        applicationEventPublisher.publishEvent(new ListingChangedEvent(listingScopes));
+        return result;
+    }
+
+    /**
+     * Does not start a transaction of its own, so a slow upload never holds a database connection; the photo row is
+     * only written once the image has been stored.
+     */
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public PhotoDto upload(PhotoDto photoDto, InputStream content) {
+        log.debug("Request to upload Photo : {}", photoDto);
+        Photo photo = prepareUpload(photoDto, content);
+        return transactionTemplate.execute(status -> saveAll(List.of(photo)).get(0));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Photo prepareUpload(PhotoDto photoDto, InputStream content) {
+        ApplicationProperties.Upload limits = applicationProperties.getUpload();
+        ImageMetadataExtractor.PeekedImage image;
         try {
-            photoDto = setMetadata(photoDto);
-        } catch (ImageProcessingException | IOException | MetadataException ipe) {
-            log.error(ipe.getMessage());
+            image = ImageMetadataExtractor.peek(
+                new SizeLimitedInputStream(content, limits.getMaxSize().toBytes()),
+                (int) limits.getMaxHeaderSize().toBytes()
+            );
+        } catch (IOException e) {
+            throw new PhotoStorageException("Could not read uploaded image", e);
+        }
+        setMetadata(photoDto, image.getMetadata());
+        if (photoDto.getImageContentType() == null) {
+            photoDto.setImageContentType(image.getMetadata().getContentType());
         }
 
         Photo photo = photoMapper.toEntity(photoDto);
-        photo = photoRepository.save(photo);
-        PhotoDto result = photoMapper.toDto(photo);
-        photoSearchRepository.save(photo);
+        storeImage(photo, image.getContent());
+        return photo;
+    }
+
+    @Override
+    public List<PhotoDto> saveAll(List<Photo> photos) {
+        log.debug("Request to save {} uploaded Photos", photos.size());
+        // ids come from the pooled sequence, so nothing is inserted before the flush, which batches the inserts
+        List<Photo> savedPhotos = photoRepository.saveAll(photos);
+        List<PhotoDto> result = new ArrayList<>(savedPhotos.size());
+        for (Photo savedPhoto : savedPhotos) {
+            applicationEventPublisher.publishEvent(new PhotoImageStoredEvent(savedPhoto.getId()));
+            searchIndexOutboxService.index(SearchIndexEntityType.PHOTO, savedPhoto.getId());
+            result.add(photoMapper.toDto(savedPhoto));
+        }
+        applicationEventPublisher.publishEvent(new ListingChangedEvent(ListingScopes.ofPhotos(savedPhotos)));
         return result;
     }
 
@@ -71,11 +175,19 @@ public class PhotoServiceImpl implements PhotoService {
     public Optional<PhotoDto> partialUpdate(PhotoDto photoDto) {
         log.debug("Request to partially update Photo : {}", photoDto);
 
+        Set<String> listingScopes = new HashSet<>();
         return photoRepository
             .findById(photoDto.getId())
             .map(
                 existingPhoto -> {
+                    listingScopes.addAll(ListingScopes.of(existingPhoto));
+                    String previousImageKey = existingPhoto.getImageKey();
                     photoMapper.partialUpdate(existingPhoto, photoDto);
+                    if (photoDto.getImage() != null) {
+                        storeImage(existingPhoto, photoDto.getImage());
+                        releaseImageIfReplaced(previousImageKey, existingPhoto.getImageKey());
+                        applicationEventPublisher.publishEvent(new PhotoImageStoredEvent(existingPhoto.getId()));
+                    }
 
                     return existingPhoto;
                 }
@@ -83,7 +195,9 @@ public class PhotoServiceImpl implements PhotoService {
             .map(photoRepository::save)
             .map(
                 savedPhoto -> {
-                    photoSearchRepository.save(savedPhoto);
+                    searchIndexOutboxService.index(SearchIndexEntityType.PHOTO, savedPhoto.getId());
+                    listingScopes.addAll(ListingScopes.of(savedPhoto));
+                    applicationEventPublisher.publishEvent(new ListingChangedEvent(listingScopes));
 
                     return savedPhoto;
                 }
@@ -95,48 +209,100 @@ public class PhotoServiceImpl implements PhotoService {
     @Transactional(readOnly = true)
     public Page<PhotoDto> findAll(Pageable pageable) {
         log.debug("Request to get all Photos");
-        return photoRepository.findAll(pageable).map(photoMapper::toDto);
+        return photoRepository.findAll(pageable).map(this::toDtoWithImage);
     }
 
     public Page<PhotoDto> findAllWithEagerRelationships(Pageable pageable) {
-        return photoRepository.findAllWithEagerRelationships(pageable).map(photoMapper::toDto);
+        return photoRepository.findAllWithEagerRelationships(pageable).map(this::toDtoWithImage);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<PhotoDto> findOne(Long id) {
         log.debug("Request to get Photo : {}", id);
-        return photoRepository.findOneWithEagerRelationships(id).map(photoMapper::toDto);
+        return photoRepository.findOneWithEagerRelationships(id).map(this::toDtoWithImage);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<PhotoContent> findContent(Long id) {
+        log.debug("Request to get content of Photo : {}", id);
+        return photoRepository
+            .findById(id)
+            .filter(photo -> photo.getImageKey() != null)
+            .flatMap(
+                photo ->
+                    blobStore
+                        .load(photo.getImageKey())
+                        .map(resource -> new PhotoContent(resource, photo.getImageContentType(), photo.getImageKey(), photo.getImageStoredDate()))
+            );
     }
 
     @Override
     public void delete(Long id) {
         log.debug("Request to delete Photo : {}", id);
+        Optional<Photo> photo = photoRepository.findById(id);
+        String imageKey = photo.map(Photo::getImageKey).orElse(null);
+        Set<String> listingScopes = photo.map(ListingScopes::of).orElse(Set.of(ListingScopes.PHOTOS));
+        photoRenditionService.deleteRenditions(id);
         photoRepository.deleteById(id);
-        photoSearchRepository.deleteById(id);
+        searchIndexOutboxService.delete(SearchIndexEntityType.PHOTO, id);
+        releaseImageIfReplaced(imageKey, null);
+        applicationEventPublisher.publishEvent(new ListingChangedEvent(listingScopes));
     }
 
     @Override
     @Transactional(readOnly = true)
     public Page<PhotoDto> search(String query, Pageable pageable) {
         log.debug("Request to search for a page of Photos for query {}", query);
-        return photoSearchRepository.search(queryStringQuery(query), pageable).map(photoMapper::toDto);
+        return photoSearchRepository.search(queryStringQuery(query), pageable).map(photoSearchMapper::toDto);
     }
 
-    private PhotoDto setMetadata(PhotoDto photoDto) throws ImageProcessingException, IOException, MetadataException {
-        String str = DatatypeConverter.printBase64Binary(photoDto.getImage());
-        byte[] data2 = DatatypeConverter.parseBase64Binary(str);
-        InputStream inputStream = new ByteArrayInputStream(data2);
-        BufferedInputStream bis = new BufferedInputStream(inputStream);
-        Metadata metadata = ImageMetadataReader.readMetadata(bis);
-        ExifSubIFDDirectory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
-
-        if (directory != null) {
-            Date date = directory.getDateDigitized();
-            if (date != null) {
-                photoDto.setTaken(date.toInstant());
+    private PhotoDto toDtoWithImage(Photo photo) {
+        PhotoDto photoDto = photoMapper.toDto(photo);
+        if (photo.getImageKey() != null) {
+            try {
+                blobStore.readAllBytes(photo.getImageKey()).ifPresent(photoDto::setImage);
+            } catch (IOException e) {
+                throw new PhotoStorageException("Could not read image of Photo " + photo.getId(), e);
             }
         }
+        return photoDto;
+    }
+
+    private void storeImage(Photo photo, byte[] image) {
+        storeImage(photo, new ByteArrayInputStream(image));
+    }
+
+    private void storeImage(Photo photo, InputStream image) {
+        StoredBlob blob;
+        try {
+            blob = blobStore.store(image);
+        } catch (IOException e) {
+            throw new PhotoStorageException("Could not store image of Photo " + photo.getId(), e);
+        }
+        photo.setImageKey(blob.getKey());
+        photo.setImageSize(blob.getSize());
+        photo.setImageChecksum(blob.getChecksum());
+        photo.setImageStoredDate(Instant.now());
+    }
+
+    private void releaseImageIfReplaced(String previousImageKey, String currentImageKey) {
+        if (previousImageKey != null && !previousImageKey.equals(currentImageKey)) {
+            blobReferenceService.releaseAfterCommit(previousImageKey);
+        }
+    }
+
+    private PhotoDto setMetadata(PhotoDto photoDto) throws IOException {
+        byte[] image = photoDto.getImage();
+        // an image whose header cannot be parsed is stored anyway, like an upload
+        return setMetadata(photoDto, ImageMetadataExtractor.peek(new ByteArrayInputStream(image), image.length).getMetadata());
+    }
+
+    private PhotoDto setMetadata(PhotoDto photoDto, ImageMetadata metadata) {
+        if (metadata.getTaken() != null) {
+            photoDto.setTaken(metadata.getTaken());
+        }
 
         if (photoDto.getTaken() == null) {
             log.debug("Photo EXIF date digitized not available, setting taken on date to now...");
@@ -145,10 +311,9 @@ public class PhotoServiceImpl implements PhotoService {
 
         photoDto.setUploaded(Instant.now());
 
-        JpegDirectory jpgDirectory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
-        if (jpgDirectory != null) {
-            photoDto.setHeight(jpgDirectory.getImageHeight());
-            photoDto.setWidth(jpgDirectory.getImageWidth());
+        if (metadata.getWidth() != null) {
+            photoDto.setHeight(metadata.getHeight());
+            photoDto.setWidth(metadata.getWidth());
         }
 
         return photoDto;
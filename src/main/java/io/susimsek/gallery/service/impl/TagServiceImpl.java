@@ -3,12 +3,17 @@ package io.susimsek.gallery.service.impl;
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
 import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
 import io.susimsek.gallery.repository.TagRepository;
 import io.susimsek.gallery.repository.search.TagSearchRepository;
 import io.susimsek.gallery.service.TagService;
 import io.susimsek.gallery.service.dto.TagDto;
+import io.susimsek.gallery.service.event.ListingChangedEvent;
+import io.susimsek.gallery.service.listing.ListingScopes;
 import io.susimsek.gallery.service.mapper.TagMapper;
+import io.susimsek.gallery.service.search.SearchIndexOutboxService;
 import java.util.Optional;
+import java.util.Set;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +21,7 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -37,13 +43,17 @@ public class TagServiceImpl implements TagService {
 
     final TagSearchRepository tagSearchRepository;
 
+    final SearchIndexOutboxService searchIndexOutboxService;
+
+    final ApplicationEventPublisher applicationEventPublisher;
+
     @Override
     public TagDto save(TagDto tagDto) {
         log.debug("Request to save Tag : {}", tagDto);
         Tag tag = tagMapper.toEntity(tagDto);
         tag = tagRepository.save(tag);
         TagDto result = tagMapper.toDto(tag);
-        tagSearchRepository.save(tag);
+        searchIndexOutboxService.index(SearchIndexEntityType.TAG, tag.getId());
         return result;
     }
 
@@ -63,7 +73,7 @@ public class TagServiceImpl implements TagService {
             .map(tagRepository::save)
             .map(
                 savedTag -> {
-                    tagSearchRepository.save(savedTag);
+                    searchIndexOutboxService.index(SearchIndexEntityType.TAG, savedTag.getId());
 
                     return savedTag;
                 }
@@ -89,7 +99,9 @@ public class TagServiceImpl implements TagService {
     public void delete(Long id) {
         log.debug("Request to delete Tag : {}", id);
         tagRepository.deleteById(id);
-        tagSearchRepository.deleteById(id);
+        searchIndexOutboxService.delete(SearchIndexEntityType.TAG, id);
+        // renaming a tag changes no listing, the photos are only listed by its id
+        applicationEventPublisher.publishEvent(new ListingChangedEvent(Set.of(ListingScopes.tag(id))));
     }
 
     @Override
@@ -0,0 +1,13 @@
+package io.susimsek.gallery.service.importer;
+
+/**
+ * This exception is thrown when an import cannot start because the node already runs as many imports as it allows.
+ */
+public class PhotoImportBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PhotoImportBusyException(String message) {
+        super(message);
+    }
+}
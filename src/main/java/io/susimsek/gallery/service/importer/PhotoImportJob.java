@@ -0,0 +1,121 @@
+package io.susimsek.gallery.service.importer;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.Instant;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Progress of an import started by {@link PhotoImportService}, with the status of each of its photos.
+ */
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class PhotoImportJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+    }
+
+    public enum ItemStatus {
+        PENDING,
+        STORED,
+        IMPORTED,
+        FAILED,
+    }
+
+    final String id;
+
+    @JsonIgnore
+    final String owner;
+
+    final Instant startedAt = Instant.now();
+
+    final List<Item> items;
+
+    volatile Status status = Status.PENDING;
+
+    volatile Instant finishedAt;
+
+    volatile String error;
+
+    PhotoImportJob(String id, String owner, List<Item> items) {
+        this.id = id;
+        this.owner = owner;
+        this.items = items;
+    }
+
+    public int getTotal() {
+        return items.size();
+    }
+
+    public long getImported() {
+        return count(ItemStatus.IMPORTED);
+    }
+
+    public long getFailed() {
+        return count(ItemStatus.FAILED);
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+        finishedAt = Instant.now();
+    }
+
+    void fail(Exception e) {
+        error = e.getMessage();
+        status = Status.FAILED;
+        finishedAt = Instant.now();
+    }
+
+    private long count(ItemStatus itemStatus) {
+        return items.stream().filter(item -> item.status == itemStatus).count();
+    }
+
+    /**
+     * One photo of the import, named after its file.
+     */
+    @Getter
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Item {
+
+        final String name;
+
+        volatile ItemStatus status = ItemStatus.PENDING;
+
+        volatile Long photoId;
+
+        volatile String error;
+
+        Item(String name) {
+            this.name = name;
+        }
+
+        void stored() {
+            status = ItemStatus.STORED;
+        }
+
+        void imported(Long photoId) {
+            this.photoId = photoId;
+            status = ItemStatus.IMPORTED;
+        }
+
+        void fail(Exception e) {
+            error = e.getMessage();
+            status = ItemStatus.FAILED;
+        }
+    }
+}
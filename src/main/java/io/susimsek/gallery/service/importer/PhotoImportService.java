@@ -0,0 +1,403 @@
+package io.susimsek.gallery.service.importer;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.security.SecurityUtils;
+import io.susimsek.gallery.service.BlobReferenceService;
+import io.susimsek.gallery.service.PhotoService;
+import io.susimsek.gallery.service.PhotoStorageException;
+import io.susimsek.gallery.service.PhotoTooLargeException;
+import io.susimsek.gallery.service.TooManyPhotosException;
+import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.storage.SizeLimitedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Imports many photos at once.
+ * <p>
+ * The images of an import are spooled to disk while the request is read, then processed in the background as a
+ * pipeline: a pool of {@code application.photo-import.parallelism} threads, shared by the imports of the node, reads
+ * the metadata of the images and stores them, while the job thread saves the prepared photos in order,
+ * {@code application.photo-import.batch-size} per transaction so their rows and outbox entries go out in JDBC
+ * batches. Renditions and search documents follow from the usual events and outbox, generated on the rendition
+ * executor and sent to Elasticsearch in bulk.
+ * <p>
+ * At most {@code application.photo-import.max-concurrent-jobs} imports are spooled or run at once on a node, the
+ * others are rejected before their request is read. Jobs are kept in memory, on the node which received the import,
+ * for {@code application.photo-import.retention} after they finish.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Service
+public class PhotoImportService {
+
+    static final int MAX_TITLE_LENGTH = 255;
+
+    final PhotoService photoService;
+
+    final BlobReferenceService blobReferenceService;
+
+    final TransactionTemplate transactionTemplate;
+
+    final TaskExecutor taskExecutor;
+
+    final ApplicationProperties.PhotoImport properties;
+
+    final long maxPhotoSize;
+
+    final ExecutorService pool;
+
+    final Semaphore jobSlots;
+
+    final Map<String, PhotoImportJob> jobs = new ConcurrentHashMap<>();
+
+    public PhotoImportService(
+        PhotoService photoService,
+        BlobReferenceService blobReferenceService,
+        TransactionTemplate transactionTemplate,
+        @Qualifier("taskExecutor") TaskExecutor taskExecutor,
+        ApplicationProperties applicationProperties
+    ) {
+        this.photoService = photoService;
+        this.blobReferenceService = blobReferenceService;
+        this.transactionTemplate = transactionTemplate;
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getPhotoImport();
+        this.maxPhotoSize = applicationProperties.getUpload().getMaxSize().toBytes();
+        int parallelism = properties.getParallelism() > 0 ? properties.getParallelism() : Runtime.getRuntime().availableProcessors();
+        this.pool = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("gallery-import-"));
+        this.jobSlots = new Semaphore(properties.getMaxConcurrentJobs());
+    }
+
+    /**
+     * Import every file of a ZIP archive; directories and hidden files are skipped.
+     *
+     * @param archive the archive, read to the end but not closed.
+     * @param albumId the album of the new photos, or {@code null}.
+     * @return the started job.
+     * @throws PhotoTooLargeException if the archive is larger than {@code application.photo-import.max-size}.
+     * @throws TooManyPhotosException if the archive holds more than {@code application.photo-import.max-items} files.
+     * @throws PhotoImportBusyException if {@code application.photo-import.max-concurrent-jobs} imports are running.
+     */
+    public PhotoImportJob importArchive(InputStream archive, Long albumId) {
+        log.debug("Request to import a photo archive into Album {}", albumId);
+        acquireJobSlot();
+        Spool spool = new Spool();
+        try (ZipInputStream zip = new ZipInputStream(new SizeLimitedInputStream(archive, properties.getMaxSize().toBytes()))) {
+            spool.addArchive(zip);
+        } catch (IOException e) {
+            abandon(spool);
+            throw new PhotoStorageException("Could not read photo archive", e);
+        } catch (RuntimeException e) {
+            abandon(spool);
+            throw e;
+        }
+        return start(spool, albumId);
+    }
+
+    /**
+     * Import uploaded files; ZIP archives among them are expanded.
+     *
+     * @param files the files.
+     * @param albumId the album of the new photos, or {@code null}.
+     * @return the started job.
+     * @throws TooManyPhotosException if there are more than {@code application.photo-import.max-items} files.
+     * @throws PhotoImportBusyException if {@code application.photo-import.max-concurrent-jobs} imports are running.
+     */
+    public PhotoImportJob importFiles(List<MultipartFile> files, Long albumId) {
+        log.debug("Request to import {} photo files into Album {}", files.size(), albumId);
+        acquireJobSlot();
+        Spool spool = new Spool();
+        try {
+            for (MultipartFile file : files) {
+                if (isArchive(file)) {
+                    try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+                        spool.addArchive(zip);
+                    }
+                } else {
+                    spool.addFile(file);
+                }
+            }
+        } catch (IOException e) {
+            abandon(spool);
+            throw new PhotoStorageException("Could not read imported photos", e);
+        } catch (RuntimeException e) {
+            abandon(spool);
+            throw e;
+        }
+        return start(spool, albumId);
+    }
+
+    /**
+     * Get an import of the current user.
+     *
+     * @param id the id of the job.
+     * @return the job, or empty if the current user has no such import or it finished too long ago.
+     */
+    public Optional<PhotoImportJob> findJob(String id) {
+        String owner = SecurityUtils.getCurrentUserLogin().orElse(null);
+        return Optional.ofNullable(jobs.get(id)).filter(job -> job.getOwner().equals(owner));
+    }
+
+    private PhotoImportJob start(Spool spool, Long albumId) {
+        Instant expired = Instant.now().minus(properties.getRetention());
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(expired));
+
+        PhotoImportJob job = new PhotoImportJob(spool.id, SecurityUtils.getCurrentUserLogin().orElseThrow(), spool.items);
+        jobs.put(job.getId(), job);
+        try {
+            taskExecutor.execute(() -> run(job, spool, albumId));
+        } catch (RuntimeException e) {
+            jobs.remove(job.getId());
+            abandon(spool);
+            throw e;
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void acquireJobSlot() {
+        if (!jobSlots.tryAcquire()) {
+            throw new PhotoImportBusyException("At most " + properties.getMaxConcurrentJobs() + " imports run at once");
+        }
+    }
+
+    /**
+     * Drop the files of an import which ended or never started, and let another import start.
+     */
+    private void abandon(Spool spool) {
+        spool.discard();
+        jobSlots.release();
+    }
+
+    private void run(PhotoImportJob job, Spool spool, Long albumId) {
+        log.info("Importing {} photos for {}", job.getTotal(), job.getOwner());
+        job.start();
+        List<CompletableFuture<Photo>> prepared = new ArrayList<>(job.getTotal());
+        try {
+            for (int i = 0; i < job.getTotal(); i++) {
+                PhotoImportJob.Item item = job.getItems().get(i);
+                Path file = spool.files.get(i);
+                prepared.add(
+                    file == null ? CompletableFuture.completedFuture(null) : CompletableFuture.supplyAsync(() -> prepare(item, file, albumId), pool)
+                );
+            }
+
+            // saved in order while later images are still being prepared
+            List<PhotoImportJob.Item> batchItems = new ArrayList<>(properties.getBatchSize());
+            List<Photo> batch = new ArrayList<>(properties.getBatchSize());
+            for (int i = 0; i < job.getTotal(); i++) {
+                PhotoImportJob.Item item = job.getItems().get(i);
+                Photo photo;
+                try {
+                    photo = prepared.get(i).join();
+                } catch (CompletionException e) {
+                    Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    log.debug("Could not import {}: {}", item.getName(), cause.getMessage());
+                    item.fail(cause);
+                    continue;
+                }
+                if (photo == null) {
+                    continue;
+                }
+                batchItems.add(item);
+                batch.add(photo);
+                if (batch.size() >= properties.getBatchSize()) {
+                    save(batchItems, batch);
+                    batchItems.clear();
+                    batch.clear();
+                }
+            }
+            save(batchItems, batch);
+            job.complete();
+            log.info("Imported {} of {} photos for {}", job.getImported(), job.getTotal(), job.getOwner());
+        } catch (RuntimeException e) {
+            log.error("Could not import photos for {}", job.getOwner(), e);
+            job.fail(e);
+        } finally {
+            // images of a failed job which are not being prepared yet are skipped
+            prepared.forEach(future -> future.cancel(false));
+            abandon(spool);
+        }
+    }
+
+    private Photo prepare(PhotoImportJob.Item item, Path file, Long albumId) {
+        PhotoDto photoDto = PhotoDto
+            .builder()
+            .title(title(item.getName()))
+            .album(albumId != null ? AlbumDto.builder().id(albumId).build() : null)
+            .build();
+        Photo photo;
+        try (InputStream content = Files.newInputStream(file)) {
+            photo = photoService.prepareUpload(photoDto, content);
+        } catch (IOException e) {
+            throw new PhotoStorageException("Could not read " + item.getName(), e);
+        } finally {
+            deleteQuietly(file);
+        }
+        if (photo.getImageContentType() == null) {
+            blobReferenceService.releaseAfterCommit(photo.getImageKey());
+            throw new PhotoStorageException("Unsupported image format", null);
+        }
+        item.stored();
+        return photo;
+    }
+
+    private void save(List<PhotoImportJob.Item> items, List<Photo> photos) {
+        if (photos.isEmpty()) {
+            return;
+        }
+        try {
+            List<PhotoDto> saved = transactionTemplate.execute(status -> photoService.saveAll(photos));
+            for (int i = 0; i < items.size(); i++) {
+                items.get(i).imported(saved.get(i).getId());
+            }
+        } catch (RuntimeException e) {
+            if (photos.size() == 1) {
+                log.debug("Could not save {}: {}", items.get(0).getName(), e.getMessage());
+                items.get(0).fail(e);
+                blobReferenceService.releaseAfterCommit(photos.get(0).getImageKey());
+                return;
+            }
+            // find the offending photos, the others are still imported
+            for (int i = 0; i < photos.size(); i++) {
+                photos.get(i).setId(null);
+                save(List.of(items.get(i)), List.of(photos.get(i)));
+            }
+        }
+    }
+
+    private static boolean isArchive(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        return (
+            "application/zip".equals(file.getContentType()) ||
+            "application/x-zip-compressed".equals(file.getContentType()) ||
+            (name != null && name.toLowerCase(Locale.ROOT).endsWith(".zip"))
+        );
+    }
+
+    static String title(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        int extension = fileName.lastIndexOf('.');
+        String title = extension > 0 ? fileName.substring(0, extension) : fileName;
+        return title.length() > MAX_TITLE_LENGTH ? title.substring(0, MAX_TITLE_LENGTH) : title;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * The files of an import, written under a directory of their own and named by position, never after the
+     * names given by the client. A file which could not be spooled has a {@code null} path and a failed item.
+     */
+    private class Spool {
+
+        final String id = UUID.randomUUID().toString();
+
+        final Path directory = Paths.get(properties.getDirectory()).toAbsolutePath().resolve(id);
+
+        final List<PhotoImportJob.Item> items = Collections.synchronizedList(new ArrayList<>());
+
+        final List<Path> files = new ArrayList<>();
+
+        void addArchive(ZipInputStream zip) throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && !isHidden(entry.getName())) {
+                    add(entry.getName(), zip);
+                }
+                zip.closeEntry();
+            }
+        }
+
+        void addFile(MultipartFile file) throws IOException {
+            PhotoImportJob.Item item = newItem(file.getOriginalFilename() != null ? file.getOriginalFilename() : file.getName());
+            Path target = directory.resolve(String.valueOf(files.size()));
+            // the part is already on disk, so this is usually a rename
+            file.transferTo(target.toFile());
+            files.add(target);
+            items.add(item);
+        }
+
+        private void add(String name, InputStream content) throws IOException {
+            PhotoImportJob.Item item = newItem(name);
+            Path target = directory.resolve(String.valueOf(files.size()));
+            try {
+                // not closed: the rest of the archive is read from the same stream
+                Files.copy(new SizeLimitedInputStream(content, maxPhotoSize), target);
+                files.add(target);
+            } catch (PhotoTooLargeException e) {
+                deleteQuietly(target);
+                item.fail(e);
+                files.add(null);
+            }
+            items.add(item);
+        }
+
+        private PhotoImportJob.Item newItem(String name) throws IOException {
+            if (files.size() >= properties.getMaxItems()) {
+                throw new TooManyPhotosException(properties.getMaxItems());
+            }
+            Files.createDirectories(directory);
+            return new PhotoImportJob.Item(name);
+        }
+
+        void discard() {
+            if (!Files.exists(directory)) {
+                return;
+            }
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(PhotoImportService::deleteQuietly);
+            } catch (IOException e) {
+                log.warn("Could not delete {}: {}", directory, e.getMessage());
+            }
+        }
+
+        private boolean isHidden(String name) {
+            String fileName = name.substring(name.lastIndexOf('/') + 1);
+            return name.startsWith("__MACOSX/") || fileName.startsWith(".");
+        }
+    }
+}
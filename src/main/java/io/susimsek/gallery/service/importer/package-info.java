@@ -0,0 +1,4 @@
+/**
+ * Imports many photos at once, from a ZIP archive or a multipart batch.
+ */
+package io.susimsek.gallery.service.importer;
@@ -0,0 +1,63 @@
+package io.susimsek.gallery.service.keyset;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Position after the last row of a keyset page: its sort key, which may be {@code null}, and its id, along with
+ * the order the page was read in. Sent to clients as an opaque URL safe string.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class KeysetCursor {
+
+    private static final String VERSION = "1";
+
+    private static final String NULL = "-";
+
+    String property;
+
+    Sort.Direction direction;
+
+    Instant key;
+
+    long id;
+
+    public String encode() {
+        String keyValue = key == null ? NULL : key.getEpochSecond() + "." + key.getNano();
+        String value = String.join(":", VERSION, property, direction.name(), keyValue, Long.toString(id));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor a cursor from {@link #encode()}.
+     * @return the decoded cursor.
+     * @throws IllegalArgumentException if {@code cursor} was not produced by {@link #encode()}.
+     */
+    public static KeysetCursor decode(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        if (parts.length != 5 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            Instant key = null;
+            if (!NULL.equals(parts[3])) {
+                String[] instant = parts[3].split("\\.");
+                key = Instant.ofEpochSecond(Long.parseLong(instant[0]), Long.parseLong(instant[1]));
+            }
+            return new KeysetCursor(parts[1], Sort.Direction.valueOf(parts[2]), key, Long.parseLong(parts[4]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
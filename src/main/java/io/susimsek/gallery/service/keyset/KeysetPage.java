@@ -0,0 +1,27 @@
+package io.susimsek.gallery.service.keyset;
+
+import java.util.List;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A page read with keyset pagination. Unlike a {@link org.springframework.data.domain.Page} it has no total,
+ * which would cost a count of every matching row.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class KeysetPage<T> {
+
+    List<T> content;
+
+    /**
+     * Position to continue from, {@code null} on the last page.
+     */
+    KeysetCursor next;
+
+    public Optional<KeysetCursor> getNext() {
+        return Optional.ofNullable(next);
+    }
+}
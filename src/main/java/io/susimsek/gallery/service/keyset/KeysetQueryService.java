@@ -0,0 +1,161 @@
+package io.susimsek.gallery.service.keyset;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.SingularAttribute;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import tech.jhipster.service.QueryService;
+
+/**
+ * {@link QueryService} which can also read pages by seeking on an {@link Instant} column and the id.
+ * <p>
+ * Rows come in {@code (key, id)} order, and a page continues after the key and id of the previous one, so reading
+ * page 500 costs as much as reading page 1 given an index on {@code (key, id)}, and no count is needed. Rows whose
+ * key is {@code null} follow the others in id order. They are read by a second query, so the order does not depend
+ * on where the database sorts nulls and both queries can use an index.
+ *
+ * @param <ENTITY> the type of the entity which is queried.
+ */
+public abstract class KeysetQueryService<ENTITY> extends QueryService<ENTITY> {
+
+    /**
+     * Describes how rows of one entity are read for a keyset page.
+     *
+     * @param <ENTITY> the type of the entity.
+     * @param <RESULT> the type of the rows of the page.
+     */
+    protected interface KeysetQuery<ENTITY, RESULT> {
+        Class<ENTITY> getEntityClass();
+
+        Class<RESULT> getResultClass();
+
+        Selection<RESULT> select(Root<ENTITY> root, CriteriaBuilder builder);
+
+        SingularAttribute<? super ENTITY, Long> getIdAttribute();
+
+        Long getId(RESULT row);
+
+        /**
+         * @return the attributes pages can be ordered by, by property name.
+         */
+        Map<String, SingularAttribute<? super ENTITY, Instant>> getKeyAttributes();
+
+        Instant getKey(RESULT row, String property);
+    }
+
+    /**
+     * Read a keyset page.
+     *
+     * @param entityManager the entity manager to run the queries with.
+     * @param keysetQuery what to read.
+     * @param specification the filters the rows must match.
+     * @param order the order of the rows, used for the first page; later pages keep the order of their cursor.
+     * @param after the cursor of the previous page, {@code null} for the first page.
+     * @param size the number of rows of the page.
+     * @param <RESULT> the type of the rows of the page.
+     * @return the page.
+     * @throws IllegalArgumentException if the page is ordered by a property pages can not be ordered by.
+     */
+    protected <RESULT> KeysetPage<RESULT> findPage(
+        EntityManager entityManager,
+        KeysetQuery<ENTITY, RESULT> keysetQuery,
+        Specification<ENTITY> specification,
+        Sort.Order order,
+        KeysetCursor after,
+        int size
+    ) {
+        String property = after != null ? after.getProperty() : order.getProperty();
+        Sort.Direction direction = after != null ? after.getDirection() : order.getDirection();
+        SingularAttribute<? super ENTITY, Instant> keyAttribute = keysetQuery.getKeyAttributes().get(property);
+        if (keyAttribute == null) {
+            throw new IllegalArgumentException("Pages can not be ordered by " + property);
+        }
+
+        // one more row than asked tells whether there is a next page
+        int limit = size + 1;
+        List<RESULT> rows = new ArrayList<>(limit);
+        boolean afterNullKeys = after != null && after.getKey() == null;
+        if (!afterNullKeys) {
+            rows.addAll(query(entityManager, keysetQuery, specification, keyAttribute, direction, false, after, limit));
+        }
+        if (rows.size() < limit) {
+            KeysetCursor nullKeysAfter = afterNullKeys ? after : null;
+            rows.addAll(query(entityManager, keysetQuery, specification, keyAttribute, direction, true, nullKeysAfter, limit - rows.size()));
+        }
+
+        if (rows.size() <= size) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<RESULT> content = rows.subList(0, size);
+        RESULT last = content.get(size - 1);
+        return new KeysetPage<>(
+            new ArrayList<>(content),
+            new KeysetCursor(property, direction, keysetQuery.getKey(last, property), keysetQuery.getId(last))
+        );
+    }
+
+    private <RESULT> List<RESULT> query(
+        EntityManager entityManager,
+        KeysetQuery<ENTITY, RESULT> keysetQuery,
+        Specification<ENTITY> specification,
+        SingularAttribute<? super ENTITY, Instant> keyAttribute,
+        Sort.Direction direction,
+        boolean nullKeys,
+        KeysetCursor after,
+        int limit
+    ) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<RESULT> query = builder.createQuery(keysetQuery.getResultClass());
+        Root<ENTITY> root = query.from(keysetQuery.getEntityClass());
+        query.select(keysetQuery.select(root, builder));
+        Path<Instant> key = root.get(keyAttribute);
+        Path<Long> id = root.get(keysetQuery.getIdAttribute());
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate filter = specification.toPredicate(root, query, builder);
+        if (filter != null) {
+            predicates.add(filter);
+        }
+        if (nullKeys) {
+            predicates.add(builder.isNull(key));
+            if (after != null) {
+                predicates.add(beyond(builder, id, after.getId(), direction));
+            }
+            query.orderBy(direction.isDescending() ? builder.desc(id) : builder.asc(id));
+        } else {
+            predicates.add(builder.isNotNull(key));
+            if (after != null) {
+                // (key, id) > (afterKey, afterId), with the first term alone as a range bound for the index
+                predicates.add(direction.isDescending() ? builder.lessThanOrEqualTo(key, after.getKey()) : builder.greaterThanOrEqualTo(key, after.getKey()));
+                predicates.add(
+                    builder.or(
+                        beyond(builder, key, after.getKey(), direction),
+                        builder.and(builder.equal(key, after.getKey()), beyond(builder, id, after.getId(), direction))
+                    )
+                );
+            }
+            query.orderBy(
+                direction.isDescending() ? builder.desc(key) : builder.asc(key),
+                direction.isDescending() ? builder.desc(id) : builder.asc(id)
+            );
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    private static <Y extends Comparable<? super Y>> Predicate beyond(CriteriaBuilder builder, Path<Y> path, Y value, Sort.Direction direction) {
+        return direction.isDescending() ? builder.lessThan(path, value) : builder.greaterThan(path, value);
+    }
+}
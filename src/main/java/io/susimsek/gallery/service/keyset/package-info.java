@@ -0,0 +1,4 @@
+/**
+ * Keyset (seek) pagination: pages continue after the sort key and id of the last row instead of skipping rows.
+ */
+package io.susimsek.gallery.service.keyset;
@@ -0,0 +1,186 @@
+package io.susimsek.gallery.service.listing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.service.event.ListingChangedEvent;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.PackagePrivate;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.EvictionMode;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.LongCodec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.codec.CompositeCodec;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Cache of the pages of the hot photo and album listings, so identical requests, the front page first of all, do not
+ * all filter, sort and count in the database. Only the ids and the total of a page are cached, the entities are then
+ * read by id, from the second-level cache when they are in it, so a change to an entity never needs to drop a page.
+ * <p>
+ * Each page depends on {@link ListingScopes scopes}, and is cached under the generation its scopes had before it was
+ * read. A {@link ListingChangedEvent} increments the generations of its scopes in Redis once its transaction commits,
+ * so afterwards every node reads the pages of these scopes again and only them. A page read while the change commits
+ * keeps the previous generation and is never served; outdated pages are left to expire.
+ * <p>
+ * Concurrent misses of a page on a node are read once: the first request queries the database while the others wait
+ * for the ids it finds.
+ * <p>
+ * Gets are counted in {@code cache.listings.gets}, tagged with the listing and the result ({@code hit}, {@code miss}
+ * or {@code coalesced}, a miss which waited for another request).
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Service
+public class ListingCache {
+
+    static final String GETS = "cache.listings.gets";
+
+    ApplicationProperties.CacheListings properties;
+
+    RMapCache<String, ListingPage> pages;
+
+    RMap<String, Long> generations;
+
+    MeterRegistry meterRegistry;
+
+    /**
+     * Pages being read from the database on this node, by cache key.
+     */
+    @PackagePrivate
+    ConcurrentMap<String, CompletableFuture<ListingPage>> loading = new ConcurrentHashMap<>();
+
+    public ListingCache(ApplicationProperties applicationProperties, RedissonClient redissonClient, MeterRegistry meterRegistry) {
+        this.properties = applicationProperties.getCache().getListings();
+        this.pages = redissonClient.getMapCache(properties.getName());
+        this.generations = redissonClient.getMap(
+            properties.getName() + ":generations",
+            new CompositeCodec(StringCodec.INSTANCE, LongCodec.INSTANCE)
+        );
+        this.meterRegistry = meterRegistry;
+        if (properties.isEnabled() && properties.getMaxEntries() > 0) {
+            pages.setMaxSize(properties.getMaxEntries(), EvictionMode.LRU);
+        }
+    }
+
+    /**
+     * Return a page of a listing, from the cache if it holds its ids.
+     *
+     * @param key the listing, criteria, page and scopes of the page.
+     * @param query reads the page from the database.
+     * @param idOf the id of an element of the page.
+     * @param findAllById reads the elements of ids, in their order.
+     * @param <T> the type of the elements of the page.
+     * @return the page.
+     */
+    public <T> Page<T> findPage(ListingKey key, Supplier<Page<T>> query, Function<T, Long> idOf, Function<List<Long>, List<T>> findAllById) {
+        if (!properties.isEnabled() || key.getPage().isUnpaged()) {
+            return query.get();
+        }
+        String cacheKey;
+        try {
+            cacheKey = cacheKey(key);
+            ListingPage cached = pages.get(cacheKey);
+            if (cached != null) {
+                count(key, "hit");
+                return toPage(key, cached, findAllById);
+            }
+        } catch (RedisException e) {
+            log.warn("Could not read listing {} from Redis: {}", key, e.getMessage());
+            return query.get();
+        }
+
+        CompletableFuture<ListingPage> load = new CompletableFuture<>();
+        CompletableFuture<ListingPage> running = loading.putIfAbsent(cacheKey, load);
+        if (running != null) {
+            count(key, "coalesced");
+            return toPage(key, await(running), findAllById);
+        }
+        count(key, "miss");
+        try {
+            Page<T> page = query.get();
+            ListingPage listingPage = new ListingPage(page.getContent().stream().map(idOf).collect(Collectors.toList()), page.getTotalElements());
+            load.complete(listingPage);
+            store(cacheKey, listingPage);
+            return page;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(cacheKey, load);
+        }
+    }
+
+    /**
+     * Drop the cached pages of the scopes of the event, once the change is committed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onListingChanged(ListingChangedEvent event) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        log.debug("Invalidating listings of {}", event.getScopes());
+        try {
+            for (String scope : event.getScopes()) {
+                generations.addAndGet(scope, 1L);
+            }
+        } catch (RedisException e) {
+            log.error("Could not invalidate listings of {}, they expire after {}", event.getScopes(), properties.getTimeToLive(), e);
+        }
+    }
+
+    /**
+     * @return the key of the page, followed by the current generations of its scopes.
+     */
+    private String cacheKey(ListingKey key) {
+        Map<String, Long> current = generations.getAll(new HashSet<>(key.getScopes()));
+        return key.getScopes().stream().map(scope -> String.valueOf(current.getOrDefault(scope, 0L))).collect(Collectors.joining(".", key + "@", ""));
+    }
+
+    private void store(String cacheKey, ListingPage listingPage) {
+        try {
+            pages.fastPut(cacheKey, listingPage, properties.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RedisException e) {
+            log.warn("Could not cache listing {} in Redis: {}", cacheKey, e.getMessage());
+        }
+    }
+
+    private <T> Page<T> toPage(ListingKey key, ListingPage listingPage, Function<List<Long>, List<T>> findAllById) {
+        List<T> content = listingPage.getIds().isEmpty() ? List.of() : findAllById.apply(listingPage.getIds());
+        return new PageImpl<>(content, key.getPage(), listingPage.getTotal());
+    }
+
+    private static ListingPage await(CompletableFuture<ListingPage> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void count(ListingKey key, String result) {
+        Counter.builder(GETS).tags("listing", key.getListing(), "result", result).register(meterRegistry).increment();
+    }
+}
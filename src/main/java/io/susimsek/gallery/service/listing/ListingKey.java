@@ -0,0 +1,164 @@
+package io.susimsek.gallery.service.listing;
+
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.ReflectionUtils;
+import tech.jhipster.service.Criteria;
+import tech.jhipster.service.filter.Filter;
+import tech.jhipster.service.filter.RangeFilter;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * Key of a page of a listing: the listing, its criteria and page in a canonical form, so that requests for the same
+ * page share it whatever the order of their parameters, and the scopes the page depends on.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Getter
+public final class ListingKey {
+
+    String listing;
+
+    /**
+     * The criteria and page as a query string, parameters sorted by name.
+     */
+    String query;
+
+    Pageable page;
+
+    /**
+     * The {@link ListingScopes scopes} whose changes may change the page, sorted.
+     */
+    List<String> scopes;
+
+    private ListingKey(String listing, String query, Pageable page, Set<String> scopes) {
+        this.listing = listing;
+        this.query = query;
+        this.page = page;
+        this.scopes = List.copyOf(new TreeSet<>(scopes));
+    }
+
+    public static Builder builder(String listing) {
+        return new Builder(listing);
+    }
+
+    @Override
+    public String toString() {
+        return listing + '?' + query;
+    }
+
+    public static final class Builder {
+
+        private final String listing;
+
+        private final Map<String, String> parameters = new TreeMap<>();
+
+        private final Set<String> scopes = new TreeSet<>();
+
+        private Pageable page = Pageable.unpaged();
+
+        private Builder(String listing) {
+            this.listing = listing;
+        }
+
+        /**
+         * Add the filters of criteria: every non-static field, the filters by operation.
+         */
+        public Builder criteria(Criteria criteria) {
+            if (criteria != null) {
+                ReflectionUtils.doWithFields(
+                    criteria.getClass(),
+                    field -> {
+                        ReflectionUtils.makeAccessible(field);
+                        Object value = field.get(criteria);
+                        if (value instanceof Filter) {
+                            filter(field.getName(), (Filter<?>) value);
+                        } else {
+                            parameter(field.getName(), value);
+                        }
+                    },
+                    field -> !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic()
+                );
+            }
+            return this;
+        }
+
+        public Builder filter(String name, Filter<?> filter) {
+            if (filter == null) {
+                return this;
+            }
+            parameter(name + ".equals", filter.getEquals());
+            parameter(name + ".notEquals", filter.getNotEquals());
+            parameter(name + ".specified", filter.getSpecified());
+            parameter(name + ".in", filter.getIn());
+            parameter(name + ".notIn", filter.getNotIn());
+            if (filter instanceof RangeFilter) {
+                RangeFilter<?> range = (RangeFilter<?>) filter;
+                parameter(name + ".greaterThan", range.getGreaterThan());
+                parameter(name + ".greaterThanOrEqual", range.getGreaterThanOrEqual());
+                parameter(name + ".lessThan", range.getLessThan());
+                parameter(name + ".lessThanOrEqual", range.getLessThanOrEqual());
+            }
+            if (filter instanceof StringFilter) {
+                StringFilter string = (StringFilter) filter;
+                parameter(name + ".contains", string.getContains());
+                parameter(name + ".doesNotContain", string.getDoesNotContain());
+            }
+            return this;
+        }
+
+        public Builder page(Pageable page) {
+            this.page = page;
+            return this;
+        }
+
+        public Builder scopes(Collection<String> scopes) {
+            this.scopes.addAll(scopes);
+            return this;
+        }
+
+        public ListingKey build() {
+            StringJoiner query = new StringJoiner("&");
+            parameters.forEach((name, value) -> query.add(name + '=' + value));
+            if (page.isPaged()) {
+                query.add("page=" + page.getPageNumber()).add("size=" + page.getPageSize());
+            }
+            if (page.getSort().isSorted()) {
+                query.add("sort=" + page.getSort().stream().map(Builder::order).collect(Collectors.joining(";")));
+            }
+            return new ListingKey(listing, query.toString(), page, scopes);
+        }
+
+        private void parameter(String name, Object value) {
+            if (value instanceof Collection) {
+                // the values of in and notIn are a set, whatever their order
+                value = ((Collection<?>) value).stream().map(String::valueOf).sorted().distinct().collect(Collectors.joining(","));
+            }
+            if (value != null) {
+                parameters.put(name, value.toString());
+            }
+        }
+
+        private static String order(Sort.Order order) {
+            StringBuilder text = new StringBuilder(order.getProperty()).append(',').append(order.getDirection());
+            if (order.isIgnoreCase()) {
+                text.append(",ignorecase");
+            }
+            if (order.getNullHandling() != Sort.NullHandling.NATIVE) {
+                text.append(',').append(order.getNullHandling());
+            }
+            return text.toString();
+        }
+    }
+}
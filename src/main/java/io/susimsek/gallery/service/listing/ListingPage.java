@@ -0,0 +1,21 @@
+package io.susimsek.gallery.service.listing;
+
+import java.io.Serializable;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * What is cached of a page of a listing: the ids of its entities, in order, and the total of the listing.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class ListingPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    List<Long> ids;
+
+    long total;
+}
@@ -0,0 +1,94 @@
+package io.susimsek.gallery.service.listing;
+
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.Tag;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import tech.jhipster.service.filter.LongFilter;
+
+/**
+ * Scopes of the cached listings: a change to a photo or an album only drops the pages of the scopes it belongs to.
+ * <p>
+ * A page restricted to some albums, tags or users is in their scopes, any other page is in the scope of all photos or
+ * all albums. A change is in the scope of all photos or all albums and in the scopes of the album, tags or user of the
+ * entity, before and after the change.
+ */
+public final class ListingScopes {
+
+    public static final String PHOTOS = "photos";
+
+    public static final String ALBUMS = "albums";
+
+    private ListingScopes() {}
+
+    public static String album(Long id) {
+        return "album:" + id;
+    }
+
+    public static String tag(Long id) {
+        return "tag:" + id;
+    }
+
+    public static String user(Long id) {
+        return "user:" + id;
+    }
+
+    /**
+     * @param filter a filter of the listing.
+     * @param scope the scope of an id.
+     * @return the scopes of the ids the filter restricts the listing to, empty if it matches other ids too.
+     */
+    public static Set<String> restrictedTo(LongFilter filter, Function<Long, String> scope) {
+        if (filter == null) {
+            return Set.of();
+        }
+        if (filter.getEquals() != null) {
+            return Set.of(scope.apply(filter.getEquals()));
+        }
+        List<Long> in = filter.getIn();
+        if (in != null && !in.isEmpty()) {
+            return in.stream().map(scope).collect(Collectors.toSet());
+        }
+        return Set.of();
+    }
+
+    /**
+     * @return the scopes of the listings a change to the photo affects.
+     */
+    public static Set<String> of(Photo photo) {
+        Set<String> scopes = new HashSet<>();
+        scopes.add(PHOTOS);
+        if (photo.getAlbum() != null && photo.getAlbum().getId() != null) {
+            scopes.add(album(photo.getAlbum().getId()));
+        }
+        if (photo.getTags() != null) {
+            photo.getTags().stream().map(Tag::getId).filter(Objects::nonNull).map(ListingScopes::tag).forEach(scopes::add);
+        }
+        return scopes;
+    }
+
+    /**
+     * @return the scopes of the listings a change to the album affects.
+     */
+    public static Set<String> of(Album album) {
+        Set<String> scopes = new HashSet<>();
+        scopes.add(ALBUMS);
+        if (album.getUser() != null && album.getUser().getId() != null) {
+            scopes.add(user(album.getUser().getId()));
+        }
+        return scopes;
+    }
+
+    /**
+     * @return the scopes of the listings a change to the photos affects.
+     */
+    public static Set<String> ofPhotos(Collection<Photo> photos) {
+        return photos.stream().flatMap(photo -> of(photo).stream()).collect(Collectors.toSet());
+    }
+}
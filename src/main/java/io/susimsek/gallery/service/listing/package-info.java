@@ -0,0 +1,4 @@
+/**
+ * Cache of the ids of the pages of the photo and album listings, invalidated by scope when photos or albums change.
+ */
+package io.susimsek.gallery.service.listing;
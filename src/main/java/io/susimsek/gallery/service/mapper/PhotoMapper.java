@@ -12,7 +12,21 @@ import org.mapstruct.*;
 public interface PhotoMapper extends EntityMapper<PhotoDto, Photo> {
     @Mapping(target = "album", source = "album", qualifiedByName = "title")
     @Mapping(target = "tags", source = "tags", qualifiedByName = "nameSet")
+    @Mapping(target = "image", ignore = true)
     PhotoDto toDto(Photo s);
 
+    @Mapping(target = "imageKey", ignore = true)
+    @Mapping(target = "imageSize", ignore = true)
+    @Mapping(target = "imageChecksum", ignore = true)
+    @Mapping(target = "imageStoredDate", ignore = true)
     Photo toEntity(PhotoDto photoDto);
+
+    @Override
+    @Named("partialUpdate")
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "imageKey", ignore = true)
+    @Mapping(target = "imageSize", ignore = true)
+    @Mapping(target = "imageChecksum", ignore = true)
+    @Mapping(target = "imageStoredDate", ignore = true)
+    void partialUpdate(@MappingTarget Photo entity, PhotoDto dto);
 }
@@ -0,0 +1,37 @@
+package io.susimsek.gallery.service.mapper;
+
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
+import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.dto.TagDto;
+import java.util.List;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link Photo} to its search document {@link PhotoSearchDocument},
+ * and for search hits back to {@link PhotoDto}.
+ */
+@Mapper(componentModel = "spring")
+public interface PhotoSearchMapper {
+    PhotoSearchDocument toDocument(Photo photo);
+
+    List<PhotoSearchDocument> toDocument(List<Photo> photos);
+
+    PhotoSearchDocument.AlbumReference toReference(Album album);
+
+    PhotoSearchDocument.TagReference toReference(Tag tag);
+
+    @Mapping(target = "image", ignore = true)
+    @Mapping(target = "imageSize", ignore = true)
+    PhotoDto toDto(PhotoSearchDocument document);
+
+    @Mapping(target = "description", ignore = true)
+    @Mapping(target = "created", ignore = true)
+    @Mapping(target = "user", ignore = true)
+    AlbumDto toDto(PhotoSearchDocument.AlbumReference album);
+
+    TagDto toDto(PhotoSearchDocument.TagReference tag);
+}
@@ -0,0 +1,42 @@
+package io.susimsek.gallery.service.mapper;
+
+import io.susimsek.gallery.domain.PhotoUpload;
+import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.dto.PhotoUploadDto;
+import org.mapstruct.*;
+
+/**
+ * Mapper for the entity {@link PhotoUpload} and its DTO {@link PhotoUploadDto}.
+ */
+@Mapper(componentModel = "spring")
+public interface PhotoUploadMapper {
+    @Mapping(target = "album", source = "albumId")
+    PhotoUploadDto toDto(PhotoUpload s);
+
+    @Mapping(target = "albumId", source = "album.id")
+    @Mapping(target = "owner", ignore = true)
+    @Mapping(target = "offset", ignore = true)
+    @Mapping(target = "createdDate", ignore = true)
+    @Mapping(target = "expiresAt", ignore = true)
+    @Mapping(target = "completingSince", ignore = true)
+    PhotoUpload toEntity(PhotoUploadDto photoUploadDto);
+
+    /**
+     * The photo a completed upload turns into, without its image.
+     */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "album", source = "albumId")
+    @Mapping(target = "image", ignore = true)
+    @Mapping(target = "imageSize", ignore = true)
+    @Mapping(target = "height", ignore = true)
+    @Mapping(target = "width", ignore = true)
+    @Mapping(target = "taken", ignore = true)
+    @Mapping(target = "uploaded", ignore = true)
+    @Mapping(target = "tags", ignore = true)
+    PhotoDto toPhotoDto(PhotoUpload s);
+
+    default AlbumDto toAlbumReference(Long albumId) {
+        return albumId != null ? AlbumDto.builder().id(albumId).build() : null;
+    }
+}
@@ -0,0 +1,68 @@
+package io.susimsek.gallery.service.search;
+
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
+import io.susimsek.gallery.repository.AlbumRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.TagRepository;
+import io.susimsek.gallery.repository.UserRepository;
+import io.susimsek.gallery.service.mapper.PhotoSearchMapper;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Builds search documents from the current database state.
+ * <p>
+ * Documents are written to Elasticsearch after the read transaction has ended, so everything they reference is
+ * loaded here.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+@Service
+@Transactional(readOnly = true)
+public class SearchDocumentLoader {
+
+    final PhotoRepository photoRepository;
+
+    final PhotoSearchMapper photoSearchMapper;
+
+    final AlbumRepository albumRepository;
+
+    final TagRepository tagRepository;
+
+    final UserRepository userRepository;
+
+    public List<PhotoSearchDocument> loadPhotos(Collection<Long> ids) {
+        return photoSearchMapper.toDocument(photoRepository.findAllWithEagerRelationshipsByIdIn(ids));
+    }
+
+    public List<Album> loadAlbums(Collection<Long> ids) {
+        List<Album> albums = albumRepository.findAllById(ids);
+        albums.stream().filter(album -> album.getUser() != null).forEach(album -> Hibernate.initialize(album.getUser().getAuthorities()));
+        return albums;
+    }
+
+    public List<Tag> loadTags(Collection<Long> ids) {
+        // the photos of a tag are not part of its document
+        return tagRepository
+            .findAllById(ids)
+            .stream()
+            .map(tag -> Tag.builder().id(tag.getId()).name(tag.getName()).build())
+            .collect(Collectors.toList());
+    }
+
+    public List<User> loadUsers(Collection<Long> ids) {
+        List<User> users = userRepository.findAllById(ids);
+        users.forEach(user -> Hibernate.initialize(user.getAuthorities()));
+        return users;
+    }
+}
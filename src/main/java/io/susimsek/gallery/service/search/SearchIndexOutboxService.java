@@ -0,0 +1,63 @@
+package io.susimsek.gallery.service.search;
+
+import io.susimsek.gallery.domain.SearchIndexOutbox;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
+import java.time.Instant;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Records search index changes in the outbox table.
+ * <p>
+ * Changes must be recorded in the transaction which modifies the entity, so they are committed or rolled back
+ * together with it. The {@link SearchIndexer} applies them to Elasticsearch afterwards.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+@Service
+@Transactional(propagation = Propagation.MANDATORY)
+public class SearchIndexOutboxService {
+
+    final SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    /**
+     * Schedule the document of an entity to be (re)indexed from its current database state.
+     *
+     * @param entityType the type of the entity.
+     * @param entityId the id of the entity.
+     */
+    public void index(SearchIndexEntityType entityType, Long entityId) {
+        record(entityType, entityId, SearchIndexOperation.INDEX);
+    }
+
+    /**
+     * Schedule the document of an entity to be removed from its index.
+     *
+     * @param entityType the type of the entity.
+     * @param entityId the id of the entity.
+     */
+    public void delete(SearchIndexEntityType entityType, Long entityId) {
+        record(entityType, entityId, SearchIndexOperation.DELETE);
+    }
+
+    private void record(SearchIndexEntityType entityType, Long entityId, SearchIndexOperation operation) {
+        log.debug("Recording search index {} of {} {}", operation, entityType, entityId);
+        searchIndexOutboxRepository.save(
+            SearchIndexOutbox
+                .builder()
+                .entityType(entityType)
+                .entityId(entityId)
+                .operation(operation)
+                .createdDate(Instant.now())
+                .build()
+        );
+    }
+}
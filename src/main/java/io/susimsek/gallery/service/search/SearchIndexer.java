@@ -0,0 +1,351 @@
+package io.susimsek.gallery.service.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.SearchIndexOutbox;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
+import io.susimsek.gallery.repository.search.AlbumSearchRepository;
+import io.susimsek.gallery.repository.search.PhotoSearchRepository;
+import io.susimsek.gallery.repository.search.TagSearchRepository;
+import io.susimsek.gallery.repository.search.UserSearchRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Applies the changes recorded by the {@link SearchIndexOutboxService} to Elasticsearch.
+ * <p>
+ * The outbox is drained oldest first in batches. Within a batch, changes to the same entity are collapsed into
+ * the latest one, and documents are rebuilt from the current database state, so replaying a change is harmless
+ * and changes to one entity are never applied out of order. Each batch is written with one bulk request per index,
+ * outside any database transaction. Rows are deleted only once Elasticsearch accepted them; on failure the whole
+ * drain backs off exponentially.
+ * <p>
+ * Every node drains the same outbox, so each batch is read, written and deleted under a Redis lock: only one node
+ * applies changes at a time, and a document rebuilt by one node can never be overwritten by an older one written by
+ * another. The drain runs every {@code application.search-index.poll-interval} on a thread of its own, so it neither
+ * waits for nor delays the other scheduled jobs.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Service
+public class SearchIndexer {
+
+    final SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    final TransactionTemplate transactionTemplate;
+
+    final ApplicationProperties.SearchIndex properties;
+
+    final RLock lock;
+
+    final ScheduledExecutorService scheduler;
+
+    final Map<SearchIndexEntityType, IndexTarget<?>> targets = new EnumMap<>(SearchIndexEntityType.class);
+
+    final AtomicInteger pauses = new AtomicInteger();
+
+    final AtomicLong pending = new AtomicLong();
+
+    final AtomicLong lagMillis = new AtomicLong();
+
+    final Counter indexedCounter;
+
+    final Counter deletedCounter;
+
+    final Counter failureCounter;
+
+    final Timer bulkTimer;
+
+    int consecutiveFailures;
+
+    Instant nextAttempt = Instant.MIN;
+
+    public SearchIndexer(
+        SearchIndexOutboxRepository searchIndexOutboxRepository,
+        SearchDocumentLoader searchDocumentLoader,
+        PhotoSearchRepository photoSearchRepository,
+        AlbumSearchRepository albumSearchRepository,
+        TagSearchRepository tagSearchRepository,
+        UserSearchRepository userSearchRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties,
+        RedissonClient redissonClient,
+        MeterRegistry meterRegistry
+    ) {
+        this.searchIndexOutboxRepository = searchIndexOutboxRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getSearchIndex();
+        this.lock = redissonClient.getLock(properties.getLockName());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("gallery-search-indexer-"));
+
+        targets.put(
+            SearchIndexEntityType.PHOTO,
+            new IndexTarget<>(
+                searchDocumentLoader::loadPhotos,
+                PhotoSearchDocument::getId,
+                id -> PhotoSearchDocument.builder().id(id).build(),
+                photoSearchRepository
+            )
+        );
+        targets.put(
+            SearchIndexEntityType.ALBUM,
+            new IndexTarget<>(searchDocumentLoader::loadAlbums, Album::getId, id -> Album.builder().id(id).build(), albumSearchRepository)
+        );
+        targets.put(
+            SearchIndexEntityType.TAG,
+            new IndexTarget<>(searchDocumentLoader::loadTags, Tag::getId, id -> Tag.builder().id(id).build(), tagSearchRepository)
+        );
+        targets.put(
+            SearchIndexEntityType.USER,
+            new IndexTarget<>(searchDocumentLoader::loadUsers, User::getId, id -> User.builder().id(id).build(), userSearchRepository)
+        );
+
+        Gauge.builder("search.index.outbox.pending", pending, AtomicLong::get)
+            .description("Search index changes waiting in the outbox")
+            .register(meterRegistry);
+        TimeGauge
+            .builder("search.index.outbox.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+            .description("Age of the oldest search index change waiting in the outbox")
+            .register(meterRegistry);
+        indexedCounter = Counter.builder("search.index.documents").tag("operation", "index").register(meterRegistry);
+        deletedCounter = Counter.builder("search.index.documents").tag("operation", "delete").register(meterRegistry);
+        failureCounter = Counter.builder("search.index.failures").description("Failed search index bulk requests").register(meterRegistry);
+        bulkTimer = Timer.builder("search.index.bulk").description("Duration of search index bulk requests").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long pollInterval = properties.getPollInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::scheduledDrain, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Apply all pending changes, unless paused or backing off after a failure. Stops early when another node is
+     * applying changes or the indexer is paused on any node.
+     */
+    public synchronized void drain() {
+        try {
+            if (isPaused() || Instant.now().isBefore(nextAttempt)) {
+                return;
+            }
+            int processed;
+            do {
+                processed = drainBatchExclusively();
+            } while (processed == properties.getBatchSize() && !isPaused());
+        } finally {
+            updateLag();
+        }
+    }
+
+    /**
+     * Runs on the scheduler thread, where an exception would cancel all the following drains.
+     */
+    private void scheduledDrain() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn("Could not drain the search index outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stop applying changes on every node until {@link #resume()} is called; changes keep accumulating in the outbox.
+     * Takes the lock the drains hold for each batch, so it returns once the batch in progress on any node is applied,
+     * and keeps it until resumed. If this node stops meanwhile, the lock expires and the other nodes resume.
+     * <p>
+     * Must be resumed by the thread which paused it.
+     */
+    public void pause() {
+        lock.lock();
+        pauses.incrementAndGet();
+        log.debug("Search indexer paused");
+    }
+
+    public void resume() {
+        pauses.decrementAndGet();
+        lock.unlock();
+        log.debug("Search indexer resumed");
+    }
+
+    /**
+     * @return whether the indexer is paused by this node.
+     */
+    public boolean isPaused() {
+        return pauses.get() > 0;
+    }
+
+    /**
+     * Apply the oldest batch of pending changes, holding the lock from reading the batch to deleting it.
+     *
+     * @return the number of changes applied, {@code 0} if another node or a pause holds the lock.
+     */
+    private int drainBatchExclusively() {
+        if (!lock.tryLock()) {
+            log.trace("Search index outbox is drained by another node, or paused");
+            return 0;
+        }
+        try {
+            return drainBatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Apply the oldest batch of pending changes.
+     *
+     * @return the number of changes applied, {@code 0} if there were none or the batch failed.
+     */
+    int drainBatch() {
+        List<SearchIndexOutbox> batch = searchIndexOutboxRepository.findOldest(PageRequest.of(0, properties.getBatchSize()));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            bulkTimer.record(() -> coalesce(batch).forEach((entityType, operations) -> apply(targets.get(entityType), operations)));
+        } catch (RuntimeException e) {
+            onFailure(batch, e);
+            return 0;
+        }
+        List<Long> ids = batch.stream().map(SearchIndexOutbox::getId).collect(Collectors.toList());
+        transactionTemplate.executeWithoutResult(status -> searchIndexOutboxRepository.deleteByIdIn(ids));
+        consecutiveFailures = 0;
+        return batch.size();
+    }
+
+    /**
+     * Collapse the changes of a batch to the latest operation per entity, keeping the order of first appearance.
+     */
+    static Map<SearchIndexEntityType, Map<Long, SearchIndexOperation>> coalesce(List<SearchIndexOutbox> batch) {
+        Map<SearchIndexEntityType, Map<Long, SearchIndexOperation>> changes = new EnumMap<>(SearchIndexEntityType.class);
+        for (SearchIndexOutbox change : batch) {
+            changes.computeIfAbsent(change.getEntityType(), type -> new LinkedHashMap<>()).put(change.getEntityId(), change.getOperation());
+        }
+        return changes;
+    }
+
+    private <D> void apply(IndexTarget<D> target, Map<Long, SearchIndexOperation> operations) {
+        Set<Long> toIndex = idsWith(operations, SearchIndexOperation.INDEX);
+        Set<Long> toDelete = idsWith(operations, SearchIndexOperation.DELETE);
+        if (!toIndex.isEmpty()) {
+            List<D> documents = target.getLoader().apply(toIndex);
+            if (!documents.isEmpty()) {
+                target.getRepository().saveAll(documents);
+                indexedCounter.increment(documents.size());
+                documents.forEach(document -> toIndex.remove(target.getIdOf().apply(document)));
+            }
+            // deleted again since the change was recorded
+            toDelete.addAll(toIndex);
+        }
+        if (!toDelete.isEmpty()) {
+            target.getRepository().deleteAll(toDelete.stream().map(target.getReference()).collect(Collectors.toList()));
+            deletedCounter.increment(toDelete.size());
+        }
+    }
+
+    private void onFailure(List<SearchIndexOutbox> batch, RuntimeException e) {
+        failureCounter.increment();
+        consecutiveFailures++;
+        Duration backoff = properties.getInitialBackoff().multipliedBy(1L << Math.min(consecutiveFailures - 1, 20));
+        if (backoff.compareTo(properties.getMaxBackoff()) > 0) {
+            backoff = properties.getMaxBackoff();
+        }
+        nextAttempt = Instant.now().plus(backoff);
+        log.warn("Could not apply {} search index changes, retrying in {}: {}", batch.size(), backoff, e.getMessage());
+
+        List<Long> ids = batch.stream().map(SearchIndexOutbox::getId).collect(Collectors.toList());
+        List<SearchIndexOutbox> exhausted = batch
+            .stream()
+            .filter(change -> change.getAttempts() + 1 >= properties.getMaxAttempts())
+            .collect(Collectors.toList());
+        transactionTemplate.executeWithoutResult(
+            status -> {
+                searchIndexOutboxRepository.incrementAttempts(ids);
+                if (!exhausted.isEmpty()) {
+                    log.error("Dropping {} search index changes after {} attempts: {}", exhausted.size(), properties.getMaxAttempts(), exhausted);
+                    searchIndexOutboxRepository.deleteByIdIn(exhausted.stream().map(SearchIndexOutbox::getId).collect(Collectors.toList()));
+                }
+            }
+        );
+    }
+
+    private void updateLag() {
+        try {
+            pending.set(searchIndexOutboxRepository.count());
+            Instant oldest = searchIndexOutboxRepository.findOldestCreatedDate();
+            lagMillis.set(oldest != null ? Math.max(0, Duration.between(oldest, Instant.now()).toMillis()) : 0);
+        } catch (RuntimeException e) {
+            log.debug("Could not measure the search index outbox: {}", e.getMessage());
+        }
+    }
+
+    private static Set<Long> idsWith(Map<Long, SearchIndexOperation> operations, SearchIndexOperation operation) {
+        return operations
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue() == operation)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * How to build and write the documents of one entity type.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    @RequiredArgsConstructor
+    @Getter
+    private static final class IndexTarget<D> {
+
+        Function<Collection<Long>, List<D>> loader;
+
+        Function<D, Long> idOf;
+
+        Function<Long, D> reference;
+
+        ElasticsearchRepository<D, Long> repository;
+    }
+}
@@ -0,0 +1,93 @@
+package io.susimsek.gallery.service.search;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Progress of a full rebuild of the search indices, started by {@link SearchReindexService#start()}.
+ */
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SearchReindexJob {
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+    }
+
+    final Instant startedAt = Instant.now();
+
+    final List<IndexProgress> indices;
+
+    volatile Status status = Status.RUNNING;
+
+    volatile Instant finishedAt;
+
+    volatile String error;
+
+    SearchReindexJob(List<IndexProgress> indices) {
+        this.indices = indices;
+    }
+
+    public boolean isRunning() {
+        return status == Status.RUNNING;
+    }
+
+    void complete() {
+        status = Status.COMPLETED;
+        finishedAt = Instant.now();
+    }
+
+    void fail(Exception e) {
+        error = e.getMessage();
+        status = Status.FAILED;
+        finishedAt = Instant.now();
+    }
+
+    /**
+     * Progress of one index, built next to the one its alias currently points to.
+     */
+    @Getter
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class IndexProgress {
+
+        final String alias;
+
+        final String index;
+
+        @Getter(AccessLevel.NONE)
+        final AtomicLong indexed = new AtomicLong();
+
+        volatile long total;
+
+        volatile Status status = Status.PENDING;
+
+        IndexProgress(String alias, String index) {
+            this.alias = alias;
+            this.index = index;
+        }
+
+        public long getIndexed() {
+            return indexed.get();
+        }
+
+        void start(long total) {
+            this.total = total;
+            status = Status.RUNNING;
+        }
+
+        void indexed(int count) {
+            indexed.addAndGet(count);
+        }
+
+        void finish(Status status) {
+            this.status = status;
+        }
+    }
+}
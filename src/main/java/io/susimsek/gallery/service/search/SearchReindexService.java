@@ -0,0 +1,312 @@
+package io.susimsek.gallery.service.search;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
+import io.susimsek.gallery.repository.AlbumRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.TagRepository;
+import io.susimsek.gallery.repository.UserRepository;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.settings.Settings;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rebuilds every search index without taking search offline.
+ * <p>
+ * Each index is built under a new versioned name next to the one its alias points to, with refresh and replicas
+ * disabled while it is filled. The id range of the entity is split into slices read and written in parallel, each
+ * slice walking its range with keyset pagination. Once an index is complete its settings are restored and the
+ * alias is moved to it in one atomic request, after which the previous index is dropped.
+ * <p>
+ * The {@link SearchIndexer} is paused on every node for the whole rebuild: changes made meanwhile stay in the outbox
+ * and are applied through the alias, to the new index, as soon as the indexer resumes. As the pause is a cluster-wide
+ * lock, rebuilds started on several nodes run one after the other.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Service
+public class SearchReindexService {
+
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    final ElasticsearchOperations elasticsearchOperations;
+
+    final RestHighLevelClient client;
+
+    final SearchIndexer searchIndexer;
+
+    final TaskExecutor taskExecutor;
+
+    final ApplicationProperties.Reindex properties;
+
+    final List<ReindexTarget> targets = new ArrayList<>();
+
+    final AtomicReference<SearchReindexJob> currentJob = new AtomicReference<>();
+
+    public SearchReindexService(
+        ElasticsearchOperations elasticsearchOperations,
+        RestHighLevelClient client,
+        SearchIndexer searchIndexer,
+        SearchDocumentLoader searchDocumentLoader,
+        PhotoRepository photoRepository,
+        AlbumRepository albumRepository,
+        TagRepository tagRepository,
+        UserRepository userRepository,
+        @Qualifier("taskExecutor") TaskExecutor taskExecutor,
+        ApplicationProperties applicationProperties
+    ) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.client = client;
+        this.searchIndexer = searchIndexer;
+        this.taskExecutor = taskExecutor;
+        this.properties = applicationProperties.getReindex();
+
+        targets.add(
+            new ReindexTarget(
+                PhotoSearchDocument.class,
+                photoRepository::count,
+                photoRepository::findMaxId,
+                photoRepository::findIdsInRange,
+                searchDocumentLoader::loadPhotos
+            )
+        );
+        targets.add(
+            new ReindexTarget(
+                Album.class,
+                albumRepository::count,
+                albumRepository::findMaxId,
+                albumRepository::findIdsInRange,
+                searchDocumentLoader::loadAlbums
+            )
+        );
+        targets.add(
+            new ReindexTarget(Tag.class, tagRepository::count, tagRepository::findMaxId, tagRepository::findIdsInRange, searchDocumentLoader::loadTags)
+        );
+        targets.add(
+            new ReindexTarget(
+                User.class,
+                userRepository::count,
+                userRepository::findMaxId,
+                userRepository::findIdsInRange,
+                searchDocumentLoader::loadUsers
+            )
+        );
+    }
+
+    /**
+     * Start rebuilding all indices in the background.
+     *
+     * @return the new job, or the running one if a rebuild is already in progress.
+     */
+    public synchronized SearchReindexJob start() {
+        SearchReindexJob running = currentJob.get();
+        if (running != null && running.isRunning()) {
+            return running;
+        }
+        String version = "_v" + LocalDateTime.now().format(VERSION_FORMAT);
+        SearchReindexJob job = new SearchReindexJob(
+            targets
+                .stream()
+                .map(target -> {
+                    String alias = elasticsearchOperations.getIndexCoordinatesFor(target.getDocumentClass()).getIndexName();
+                    return new SearchReindexJob.IndexProgress(alias, alias + version);
+                })
+                .collect(Collectors.toList())
+        );
+        currentJob.set(job);
+        taskExecutor.execute(() -> run(job));
+        return job;
+    }
+
+    public Optional<SearchReindexJob> getCurrentJob() {
+        return Optional.ofNullable(currentJob.get());
+    }
+
+    private void run(SearchReindexJob job) {
+        log.info("Rebuilding search indices");
+        try {
+            searchIndexer.pause();
+        } catch (RuntimeException e) {
+            log.error("Could not pause the search indexer", e);
+            job.fail(e);
+            return;
+        }
+        ExecutorService slicePool = Executors.newFixedThreadPool(properties.getSlices(), new CustomizableThreadFactory("gallery-reindex-"));
+        try {
+            for (int i = 0; i < targets.size(); i++) {
+                rebuild(targets.get(i), job.getIndices().get(i), slicePool);
+            }
+            job.complete();
+            log.info("Rebuilt search indices");
+        } catch (RuntimeException e) {
+            log.error("Could not rebuild search indices", e);
+            job.fail(e);
+        } finally {
+            searchIndexer.resume();
+            slicePool.shutdownNow();
+        }
+    }
+
+    private void rebuild(ReindexTarget target, SearchReindexJob.IndexProgress progress, ExecutorService slicePool) {
+        Class<?> documentClass = target.getDocumentClass();
+        IndexCoordinates index = IndexCoordinates.of(progress.getIndex());
+        IndexOperations indexOps = elasticsearchOperations.indexOps(index);
+
+        Document settings = elasticsearchOperations.indexOps(documentClass).createSettings(documentClass);
+        Object refreshInterval = settings.getOrDefault("index.refresh_interval", "1s");
+        Object replicas = settings.getOrDefault("index.number_of_replicas", 1);
+        settings.put("index.refresh_interval", "-1");
+        settings.put("index.number_of_replicas", 0);
+        indexOps.create(settings);
+        try {
+            indexOps.putMapping(indexOps.createMapping(documentClass));
+            progress.start(target.getCount().getAsLong());
+
+            Long maxId = target.getMaxId().get();
+            long[] bounds = sliceBounds(maxId != null ? maxId : 0, properties.getSlices());
+            List<CompletableFuture<Void>> slices = new ArrayList<>();
+            for (int i = 0; i < bounds.length - 1; i++) {
+                long afterId = bounds[i];
+                long toId = bounds[i + 1];
+                slices.add(CompletableFuture.runAsync(() -> indexSlice(target, index, progress, afterId, toId), slicePool));
+            }
+            CompletableFuture.allOf(slices.toArray(new CompletableFuture[0])).join();
+
+            restoreSettings(progress.getIndex(), refreshInterval, replicas);
+            indexOps.refresh();
+            Set<String> previousIndices = swapAlias(progress.getAlias(), progress.getIndex());
+            if (properties.isDeletePreviousIndices()) {
+                previousIndices.forEach(previous -> elasticsearchOperations.indexOps(IndexCoordinates.of(previous)).delete());
+            }
+            progress.finish(SearchReindexJob.Status.COMPLETED);
+            log.info("Alias {} now points to {} ({} documents)", progress.getAlias(), progress.getIndex(), progress.getIndexed());
+        } catch (RuntimeException e) {
+            progress.finish(SearchReindexJob.Status.FAILED);
+            indexOps.delete();
+            throw e instanceof CompletionException && e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private void indexSlice(ReindexTarget target, IndexCoordinates index, SearchReindexJob.IndexProgress progress, long afterId, long toId) {
+        PageRequest page = PageRequest.of(0, properties.getBatchSize());
+        List<Long> ids;
+        do {
+            ids = target.getIdFinder().find(afterId, toId, page);
+            if (!ids.isEmpty()) {
+                elasticsearchOperations.save(target.getLoader().apply(ids), index);
+                progress.indexed(ids.size());
+                afterId = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == page.getPageSize());
+    }
+
+    private void restoreSettings(String index, Object refreshInterval, Object replicas) {
+        UpdateSettingsRequest request = new UpdateSettingsRequest(index)
+            .settings(
+                Settings.builder().put("index.refresh_interval", refreshInterval.toString()).put("index.number_of_replicas", replicas.toString())
+            );
+        try {
+            client.indices().putSettings(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not restore the settings of index " + index, e);
+        }
+    }
+
+    /**
+     * Point {@code alias} at {@code index} only, in one request.
+     *
+     * @return the indices the alias pointed to before.
+     */
+    private Set<String> swapAlias(String alias, String index) {
+        IndexOperations aliasOps = elasticsearchOperations.indexOps(IndexCoordinates.of(alias));
+        Map<String, ?> previous = aliasOps.getAliases(alias);
+        List<AliasAction> actions = new ArrayList<>();
+        actions.add(new AliasAction.Add(AliasActionParameters.builder().withIndices(index).withAliases(alias).build()));
+        if (!previous.isEmpty()) {
+            actions.add(
+                new AliasAction.Remove(AliasActionParameters.builder().withIndices(previous.keySet().toArray(new String[0])).withAliases(alias).build())
+            );
+        } else if (aliasOps.exists()) {
+            // an index created before aliases were used holds the name itself, it is dropped in the same request
+            actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder().withIndices(alias).build()));
+        }
+        aliasOps.alias(new AliasActions(actions.toArray(new AliasAction[0])));
+        return previous.keySet();
+    }
+
+    /**
+     * Split the ids {@code (0, maxId]} into at most {@code slices} ranges of equal width.
+     *
+     * @return the range bounds, slice {@code i} covering {@code (bounds[i], bounds[i + 1]]}.
+     */
+    static long[] sliceBounds(long maxId, int slices) {
+        int count = (int) Math.max(1, Math.min(slices, maxId));
+        long[] bounds = new long[count + 1];
+        for (int i = 1; i <= count; i++) {
+            bounds[i] = maxId / count * i + Math.min(i, maxId % count);
+        }
+        return bounds;
+    }
+
+    @FunctionalInterface
+    interface IdFinder {
+        List<Long> find(Long afterId, Long toId, Pageable pageable);
+    }
+
+    @Getter
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    @RequiredArgsConstructor
+    private static class ReindexTarget {
+
+        Class<?> documentClass;
+
+        LongSupplier count;
+
+        Supplier<Long> maxId;
+
+        IdFinder idFinder;
+
+        Function<Collection<Long>, List<?>> loader;
+    }
+}
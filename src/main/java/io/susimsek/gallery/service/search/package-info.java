@@ -0,0 +1,4 @@
+/**
+ * Keeps the Elasticsearch indices in sync with the database through a transactional outbox.
+ */
+package io.susimsek.gallery.service.search;
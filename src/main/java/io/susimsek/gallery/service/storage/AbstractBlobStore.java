@@ -0,0 +1,99 @@
+package io.susimsek.gallery.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Base class for {@link BlobStore} implementations which spool the content to a local temporary file
+ * while computing its content hash, as the key is only known once the whole stream has been read.
+ */
+@FieldDefaults(level = AccessLevel.PROTECTED, makeFinal = true)
+@RequiredArgsConstructor
+public abstract class AbstractBlobStore implements BlobStore {
+
+    static final String KEY_ALGORITHM = "SHA-256";
+
+    static final String CHECKSUM_ALGORITHM = "MD5";
+
+    Path spoolDirectory;
+
+    /**
+     * Copy the content into a temporary file under the spool directory.
+     *
+     * @param content the content to copy.
+     * @return the temporary file with the identity of its content; the caller owns the file.
+     * @throws IOException if the content could not be copied.
+     */
+    protected SpooledBlob spool(InputStream content) throws IOException {
+        Files.createDirectories(spoolDirectory);
+        Path file = Files.createTempFile(spoolDirectory, "blob-", ".tmp");
+        MessageDigest keyDigest = newDigest(KEY_ALGORITHM);
+        MessageDigest checksumDigest = newDigest(CHECKSUM_ALGORITHM);
+        long size;
+        try (OutputStream out = new DigestOutputStream(new DigestOutputStream(Files.newOutputStream(file), keyDigest), checksumDigest)) {
+            size = StreamUtils.copy(content, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new SpooledBlob(file, new StoredBlob(toHex(keyDigest.digest()), size, toHex(checksumDigest.digest())));
+    }
+
+    /**
+     * Check that a key looks like a content hash, so it can never escape the store layout.
+     *
+     * @param key the key to check.
+     * @return the key.
+     */
+    protected static String checkKey(String key) {
+        if (key == null || key.length() != 64 || !key.chars().allMatch(c -> (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return key;
+    }
+
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A temporary file holding spooled content.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    @RequiredArgsConstructor
+    @Getter
+    protected static class SpooledBlob implements AutoCloseable {
+
+        Path file;
+
+        StoredBlob blob;
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+}
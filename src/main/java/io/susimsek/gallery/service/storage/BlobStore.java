@@ -0,0 +1,75 @@
+package io.susimsek.gallery.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Optional;
+import org.springframework.core.io.Resource;
+
+/**
+ * SPI for content-addressed blob storage.
+ * <p>
+ * Blobs are keyed by the SHA-256 of their content, so storing the same bytes twice yields the same key
+ * and only one copy is kept.
+ */
+public interface BlobStore {
+    /**
+     * Stream the content into the store. Storing content which is already stored refreshes the last modification
+     * time of its blob, which keeps the blob from being collected while its new reference is not committed yet.
+     *
+     * @param content the content, read to the end but not closed.
+     * @return the key, size and checksum of the stored blob.
+     * @throws IOException if the content could not be read or written.
+     */
+    StoredBlob store(InputStream content) throws IOException;
+
+    /**
+     * Get the blob stored under the key.
+     *
+     * @param key the content hash.
+     * @return the blob, or empty if nothing is stored under the key.
+     */
+    Optional<Resource> load(String key);
+
+    /**
+     * Check whether a blob is stored under the key.
+     *
+     * @param key the content hash.
+     * @return {@code true} if the blob exists.
+     */
+    boolean exists(String key);
+
+    /**
+     * Get when the blob stored under the key was last stored.
+     *
+     * @param key the content hash.
+     * @return the last modification time, or empty if nothing is stored under the key.
+     * @throws IOException if the blob could not be read.
+     */
+    Optional<Instant> lastModified(String key) throws IOException;
+
+    /**
+     * Delete the blob stored under the key, if any.
+     *
+     * @param key the content hash.
+     * @throws IOException if the blob could not be deleted.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Read the whole blob into memory.
+     *
+     * @param key the content hash.
+     * @return the content, or empty if nothing is stored under the key.
+     * @throws IOException if the blob could not be read.
+     */
+    default Optional<byte[]> readAllBytes(String key) throws IOException {
+        Optional<Resource> resource = load(key);
+        if (resource.isEmpty()) {
+            return Optional.empty();
+        }
+        try (InputStream inputStream = resource.get().getInputStream()) {
+            return Optional.of(inputStream.readAllBytes());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.susimsek.gallery.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * {@link BlobStore} keeping blobs as files under a root directory, fanned out by the first bytes of their key
+ * ({@code ab/cd/abcd...}) to keep directories small.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class FileSystemBlobStore extends AbstractBlobStore {
+
+    Path root;
+
+    public FileSystemBlobStore(Path root) {
+        super(root.resolve(".tmp"));
+        this.root = root;
+    }
+
+    @Override
+    public StoredBlob store(InputStream content) throws IOException {
+        try (SpooledBlob spooled = spool(content)) {
+            StoredBlob blob = spooled.getBlob();
+            Path target = resolve(blob.getKey());
+            if (touch(target)) {
+                log.debug("Blob {} already stored", blob.getKey());
+                return blob;
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(spooled.getFile(), target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(spooled.getFile(), target);
+            } catch (FileAlreadyExistsException e) {
+                log.debug("Blob {} stored concurrently", blob.getKey());
+                touch(target);
+            }
+            return blob;
+        }
+    }
+
+    @Override
+    public Optional<Resource> load(String key) {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(new FileSystemResource(path)) : Optional.empty();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public Optional<Instant> lastModified(String key) throws IOException {
+        Path path = resolve(key);
+        try {
+            return Optional.of(Files.getLastModifiedTime(path).toInstant());
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    /**
+     * Refresh the last modification time of a blob.
+     *
+     * @return {@code false} if the blob does not exist.
+     */
+    private static boolean touch(Path blob) throws IOException {
+        try {
+            Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    Path resolve(String key) {
+        checkKey(key);
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+}
@@ -0,0 +1,26 @@
+package io.susimsek.gallery.service.storage;
+
+import java.time.Instant;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+import org.springframework.core.io.Resource;
+
+/**
+ * The stored bytes of a {@link io.susimsek.gallery.domain.Photo} along with what is needed to serve them over HTTP.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class PhotoContent {
+
+    Resource resource;
+
+    String contentType;
+
+    /**
+     * The content hash, stable for as long as the bytes do not change.
+     */
+    String key;
+
+    Instant lastModified;
+}
@@ -0,0 +1,21 @@
+package io.susimsek.gallery.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.core.io.Resource;
+
+/**
+ * A {@link Resource} whose bytes can be read from a position without fetching the ones before it, which a stream
+ * skipping to the position would.
+ */
+public interface RangeReadableResource extends Resource {
+    /**
+     * Open a stream over part of the content.
+     *
+     * @param position the offset of the first byte.
+     * @param count the number of bytes, which must not go past the end of the content.
+     * @return the bytes from {@code position}, {@code count} of them.
+     * @throws IOException if the content could not be read.
+     */
+    InputStream getInputStream(long position, long count) throws IOException;
+}
@@ -0,0 +1,234 @@
+package io.susimsek.gallery.service.storage;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.function.Consumer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.MetadataDirective;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+/**
+ * {@link BlobStore} backed by an S3 compatible object store, such as AWS S3 or a local MinIO.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class S3BlobStore extends AbstractBlobStore implements AutoCloseable {
+
+    S3Client s3;
+
+    String bucket;
+
+    String keyPrefix;
+
+    public S3BlobStore(ApplicationProperties.S3 properties, Path spoolDirectory) {
+        super(spoolDirectory);
+        this.bucket = properties.getBucket();
+        this.keyPrefix = properties.getKeyPrefix() != null ? properties.getKeyPrefix() : "";
+
+        S3ClientBuilder builder = S3Client
+            .builder()
+            .region(Region.of(properties.getRegion()))
+            .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(properties.isPathStyleAccess()).build());
+        if (StringUtils.hasText(properties.getEndpoint())) {
+            builder.endpointOverride(URI.create(properties.getEndpoint()));
+        }
+        if (StringUtils.hasText(properties.getAccessKey())) {
+            builder.credentialsProvider(
+                StaticCredentialsProvider.create(AwsBasicCredentials.create(properties.getAccessKey(), properties.getSecretKey()))
+            );
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        this.s3 = builder.build();
+    }
+
+    /**
+     * Create the bucket if it does not exist yet, which is convenient with a local stand-in.
+     */
+    public void createBucketIfMissing() {
+        try {
+            s3.headBucket(b -> b.bucket(bucket));
+        } catch (NoSuchBucketException e) {
+            log.info("Creating bucket {}", bucket);
+            s3.createBucket(b -> b.bucket(bucket));
+        }
+    }
+
+    @Override
+    public StoredBlob store(InputStream content) throws IOException {
+        try (SpooledBlob spooled = spool(content)) {
+            StoredBlob blob = spooled.getBlob();
+            if (touch(blob.getKey())) {
+                log.debug("Blob {} already stored", blob.getKey());
+                return blob;
+            }
+            try {
+                s3.putObject(
+                    b -> b.bucket(bucket).key(objectKey(blob.getKey())).contentLength(blob.getSize()).contentMD5(toBase64(blob.getChecksum())),
+                    RequestBody.fromFile(spooled.getFile())
+                );
+            } catch (SdkException e) {
+                throw new IOException("Could not store blob " + blob.getKey(), e);
+            }
+            return blob;
+        }
+    }
+
+    @Override
+    public Optional<Resource> load(String key) {
+        return head(key).map(head -> new S3BlobResource(key, head.contentLength()));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return head(key).isPresent();
+    }
+
+    @Override
+    public Optional<Instant> lastModified(String key) {
+        return head(key).map(HeadObjectResponse::lastModified);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(b -> b.bucket(bucket).key(objectKey(key)));
+        } catch (SdkException e) {
+            throw new IOException("Could not delete blob " + key, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        s3.close();
+    }
+
+    /**
+     * Refresh the last modification time of a blob by copying it onto itself, which S3 only allows when the metadata
+     * is replaced; the content is copied within the store, not uploaded again.
+     *
+     * @return {@code false} if the blob does not exist.
+     */
+    private boolean touch(String key) throws IOException {
+        if (!exists(key)) {
+            return false;
+        }
+        try {
+            s3.copyObject(
+                b ->
+                    b
+                        .copySource(SdkHttpUtils.urlEncodeIgnoreSlashes(bucket + "/" + objectKey(key)))
+                        .destinationBucket(bucket)
+                        .destinationKey(objectKey(key))
+                        .metadataDirective(MetadataDirective.REPLACE)
+            );
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (SdkException e) {
+            throw new IOException("Could not refresh blob " + key, e);
+        }
+    }
+
+    Optional<HeadObjectResponse> head(String key) {
+        try {
+            return Optional.of(s3.headObject(b -> b.bucket(bucket).key(objectKey(key))));
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    String objectKey(String key) {
+        return keyPrefix + checkKey(key);
+    }
+
+    static String toBase64(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex, i * 2, i * 2 + 2, 16);
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Lazily opened S3 object; the object is only fetched when the content is read, and only the requested bytes when
+     * part of it is.
+     */
+    @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+    class S3BlobResource extends AbstractResource implements RangeReadableResource {
+
+        String key;
+
+        long contentLength;
+
+        S3BlobResource(String key, long contentLength) {
+            this.key = key;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return getObject(b -> b.bucket(bucket).key(objectKey(key)));
+        }
+
+        @Override
+        public InputStream getInputStream(long position, long count) throws IOException {
+            return getObject(b -> b.bucket(bucket).key(objectKey(key)).range("bytes=" + position + "-" + (position + count - 1)));
+        }
+
+        private InputStream getObject(Consumer<GetObjectRequest.Builder> request) throws IOException {
+            try {
+                return s3.getObject(request);
+            } catch (NoSuchKeyException e) {
+                throw new FileNotFoundException(getDescription());
+            } catch (SdkException e) {
+                throw new IOException("Could not read " + getDescription(), e);
+            }
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public String getFilename() {
+            return key;
+        }
+
+        @Override
+        public String getDescription() {
+            return "S3 object [" + bucket + "/" + objectKey(key) + "]";
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package io.susimsek.gallery.service.storage;
+
+import io.susimsek.gallery.service.PhotoTooLargeException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails with a {@link PhotoTooLargeException} as soon as more than {@code maxSize} bytes have been read, so an
+ * oversized upload is rejected while it streams instead of after it has been stored.
+ */
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+
+    private long count;
+
+    public SizeLimitedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read >= 0) {
+            count(1);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        long skipped = super.skip(length);
+        count(skipped);
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void count(long read) {
+        count += read;
+        if (count > maxSize) {
+            throw new PhotoTooLargeException(maxSize);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package io.susimsek.gallery.service.storage;
+
+import java.io.Serializable;
+import lombok.AccessLevel;
+import lombok.Value;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Identity of a blob written to a {@link BlobStore}.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Value
+public class StoredBlob implements Serializable {
+
+    static final long serialVersionUID = 1L;
+
+    /**
+     * Hex encoded SHA-256 of the content, used as the storage key.
+     */
+    String key;
+
+    long size;
+
+    /**
+     * Hex encoded MD5 of the content, used to verify transfers end to end.
+     */
+    String checksum;
+}
@@ -0,0 +1,4 @@
+/**
+ * Content-addressed storage for photo bytes.
+ */
+package io.susimsek.gallery.service.storage;
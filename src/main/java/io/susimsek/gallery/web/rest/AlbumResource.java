@@ -7,6 +7,8 @@ import io.susimsek.gallery.service.AlbumQueryService;
 import io.susimsek.gallery.service.AlbumService;
 import io.susimsek.gallery.service.criteria.AlbumCriteria;
 import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.keyset.KeysetCursor;
+import io.susimsek.gallery.service.keyset.KeysetPage;
 import io.susimsek.gallery.web.rest.errors.BadRequestAlertException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -153,7 +155,7 @@ public class AlbumResource {
      * @param criteria the criteria which the requested entities should match.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of albums in body.
      */
-    @GetMapping("/albums")
+    @GetMapping(value = "/albums", params = "!" + KeysetPaginationUtil.CURSOR)
     public ResponseEntity<List<AlbumDto>> getAllAlbums(AlbumCriteria criteria, Pageable pageable) {
         log.debug("REST request to get Albums by criteria: {}", criteria);
         Page<AlbumDto> page = albumQueryService.findByCriteria(criteria, pageable);
@@ -161,6 +163,32 @@ public class AlbumResource {
         return ResponseEntity.ok().headers(headers).body(page.getContent());
     }
 
+    /**
+     * {@code GET  /albums?cursor=} : get a page of the albums, continuing after the cursor of the previous page.
+     * <p>
+     * The first page is requested with an empty cursor. Pages are sorted by {@code created}, descending by default;
+     * the {@code next} link of the {@code Link} header points to the following page.
+     *
+     * @param cursor the cursor of the previous page, empty for the first page.
+     * @param pageable the size and sort of the page, the page number is ignored.
+     * @param criteria the criteria which the requested entities should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of albums in body.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the cursor is invalid or the sort is not supported.
+     */
+    @GetMapping(value = "/albums", params = KeysetPaginationUtil.CURSOR)
+    public ResponseEntity<List<AlbumDto>> getAlbumsAfter(@RequestParam String cursor, AlbumCriteria criteria, Pageable pageable) {
+        log.debug("REST request to get Albums by criteria: {}, after: {}", criteria, cursor);
+        KeysetCursor after = KeysetPaginationUtil.parseCursor(cursor, ENTITY_NAME);
+        KeysetPage<AlbumDto> page;
+        try {
+            page = albumQueryService.findAfter(criteria, pageable.getSort(), after, pageable.getPageSize());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "sortinvalid");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
     /**
      * {@code GET  /albums/count} : count all the albums.
      *
@@ -0,0 +1,58 @@
+package io.susimsek.gallery.web.rest;
+
+import io.susimsek.gallery.service.keyset.KeysetCursor;
+import io.susimsek.gallery.service.keyset.KeysetPage;
+import io.susimsek.gallery.web.rest.errors.BadRequestAlertException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for handling keyset pagination, the counterpart of {@link tech.jhipster.web.util.PaginationUtil}
+ * for {@link KeysetPage}s.
+ * <p>
+ * A client asks for the first page with an empty {@code cursor} parameter and follows the {@code next} link of the
+ * {@code Link} header until there is none. There is no {@code X-Total-Count} header.
+ */
+final class KeysetPaginationUtil {
+
+    static final String CURSOR = "cursor";
+
+    private KeysetPaginationUtil() {}
+
+    /**
+     * @param cursor the {@code cursor} parameter of the request.
+     * @param entityName the name of the listed entity, for the error.
+     * @return the decoded cursor, or {@code null} for the first page.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the cursor is invalid.
+     */
+    static KeysetCursor parseCursor(String cursor, String entityName) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+        }
+    }
+
+    /**
+     * Generate the {@code Link} header pointing to the next page, if there is one.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param page the page.
+     * @return the headers.
+     */
+    static HttpHeaders generateKeysetHttpHeaders(UriComponentsBuilder uriBuilder, KeysetPage<?> page) {
+        HttpHeaders headers = new HttpHeaders();
+        page
+            .getNext()
+            .ifPresent(
+                next -> {
+                    String link = uriBuilder.replaceQueryParam(CURSOR, next.encode()).replaceQueryParam("page").toUriString();
+                    headers.add(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+                }
+            );
+        return headers;
+    }
+}
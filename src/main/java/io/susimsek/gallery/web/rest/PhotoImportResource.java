@@ -0,0 +1,88 @@
+package io.susimsek.gallery.web.rest;
+
+import io.susimsek.gallery.service.importer.PhotoImportJob;
+import io.susimsek.gallery.service.importer.PhotoImportService;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for importing many {@link io.susimsek.gallery.domain.Photo}s at once.
+ * <p>
+ * An import is accepted once its files are spooled to disk and processed in the background; its progress, with
+ * the status of every photo, is read from the returned job.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class PhotoImportResource {
+
+    static final String ZIP_VALUE = "application/zip";
+
+    final PhotoImportService photoImportService;
+
+    /**
+     * {@code POST  /photos/import} : Import the photos of a {@code multipart/form-data} request with one or more
+     * {@code files} parts, images or ZIP archives of images.
+     *
+     * @param files the images.
+     * @param albumId the id of the album of the new photos.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)} and with body the import job,
+     * or with status {@code 413 (Payload Too Large)} if the request or the number of photos is over the limit,
+     * or with status {@code 503 (Service Unavailable)} if too many imports are running.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping(value = "/photos/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PhotoImportJob> importPhotos(
+        @RequestPart("files") List<MultipartFile> files,
+        @RequestParam(required = false) Long albumId
+    ) throws URISyntaxException {
+        log.debug("REST request to import {} photo files", files.size());
+        return accepted(photoImportService.importFiles(files, albumId));
+    }
+
+    /**
+     * {@code POST  /photos/import} : Import the images of the ZIP archive in the request body.
+     *
+     * @param albumId the id of the album of the new photos.
+     * @param archive the archive.
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)} and with body the import job,
+     * or with status {@code 413 (Payload Too Large)} if the archive or the number of photos is over the limit,
+     * or with status {@code 503 (Service Unavailable)} if too many imports are running.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping(value = "/photos/import", consumes = ZIP_VALUE)
+    public ResponseEntity<PhotoImportJob> importPhotoArchive(@RequestParam(required = false) Long albumId, InputStream archive)
+        throws URISyntaxException {
+        log.debug("REST request to import a photo archive");
+        return accepted(photoImportService.importArchive(archive, albumId));
+    }
+
+    /**
+     * {@code GET  /photos/import/:id} : get the progress of an import.
+     *
+     * @param id the id of the import job.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the job, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/photos/import/{id}")
+    public ResponseEntity<PhotoImportJob> getPhotoImport(@PathVariable String id) {
+        log.debug("REST request to get photo import : {}", id);
+        return ResponseUtil.wrapOrNotFound(photoImportService.findJob(id));
+    }
+
+    private static ResponseEntity<PhotoImportJob> accepted(PhotoImportJob job) throws URISyntaxException {
+        return ResponseEntity.accepted().location(new URI("/api/photos/import/" + job.getId())).body(job);
+    }
+}
@@ -2,14 +2,26 @@ package io.susimsek.gallery.web.rest;
 
 import static org.elasticsearch.index.query.QueryBuilders.*;
 
+import io.susimsek.gallery.config.ApplicationProperties;
 import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.security.AuthoritiesConstants;
 import io.susimsek.gallery.service.PhotoQueryService;
+import io.susimsek.gallery.service.PhotoRenditionService;
 import io.susimsek.gallery.service.PhotoService;
+import io.susimsek.gallery.service.PhotoTooLargeException;
 import io.susimsek.gallery.service.criteria.PhotoCriteria;
+import io.susimsek.gallery.service.dto.AlbumDto;
 import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.dto.PhotoSummaryDto;
+import io.susimsek.gallery.service.keyset.KeysetCursor;
+import io.susimsek.gallery.service.keyset.KeysetPage;
+import io.susimsek.gallery.service.storage.PhotoContent;
 import io.susimsek.gallery.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -24,12 +36,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
@@ -48,6 +66,8 @@ public class PhotoResource {
 
     static final String ENTITY_NAME = "photo";
 
+    static final CacheControl CONTENT_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(1)).cachePrivate();
+
     @Value("${jhipster.clientApp.name}")
     String applicationName;
 
@@ -57,6 +77,10 @@ public class PhotoResource {
 
     final PhotoQueryService photoQueryService;
 
+    final PhotoRenditionService photoRenditionService;
+
+    final ApplicationProperties applicationProperties;
+
     /**
      * {@code POST  /photos} : Create a new photo.
      *
@@ -77,6 +101,78 @@ public class PhotoResource {
             .body(result);
     }
 
+    /**
+     * {@code POST  /photos/upload} : Create a new photo from a {@code multipart/form-data} request with a
+     * {@code photo} JSON part and a {@code file} part; the file is streamed to storage from the container's spool file.
+     *
+     * @param photoDto the photoDto to create, without image.
+     * @param file the image.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new photoDto,
+     * or with status {@code 413 (Payload Too Large)} if the image is larger than {@code application.upload.max-size}.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     * @throws IOException if the image could not be read.
+     */
+    @PostMapping(value = "/photos/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<PhotoDto> uploadPhoto(@Valid @RequestPart("photo") PhotoDto photoDto, @RequestPart("file") MultipartFile file)
+        throws URISyntaxException, IOException {
+        log.debug("REST request to upload Photo : {}, {} bytes", photoDto, file.getSize());
+        if (photoDto.getId() != null) {
+            throw new BadRequestAlertException("A new photo cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        photoDto.setImage(null);
+        if (photoDto.getImageContentType() == null && !MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(file.getContentType())) {
+            photoDto.setImageContentType(file.getContentType());
+        }
+        try (InputStream content = file.getInputStream()) {
+            return created(photoService.upload(photoDto, content));
+        }
+    }
+
+    /**
+     * {@code POST  /photos/upload} : Create a new photo from the raw image in the request body, streamed to storage
+     * as it arrives; the other fields are given as request parameters.
+     *
+     * @param title the title of the photo.
+     * @param description the description of the photo.
+     * @param albumId the id of the album of the photo.
+     * @param contentType the media type of the image, detected from its content for {@code application/octet-stream}.
+     * @param contentLength the announced size of the image, checked before anything is read.
+     * @param content the image.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new photoDto,
+     * or with status {@code 413 (Payload Too Large)} if the image is larger than {@code application.upload.max-size}.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping(value = "/photos/upload", consumes = { MediaType.APPLICATION_OCTET_STREAM_VALUE, "image/*" })
+    public ResponseEntity<PhotoDto> uploadRawPhoto(
+        @RequestParam String title,
+        @RequestParam(required = false) String description,
+        @RequestParam(required = false) Long albumId,
+        @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+        @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+        InputStream content
+    ) throws URISyntaxException {
+        log.debug("REST request to upload Photo : {}, {} bytes", title, contentLength);
+        long maxSize = applicationProperties.getUpload().getMaxSize().toBytes();
+        if (contentLength != null && contentLength > maxSize) {
+            throw new PhotoTooLargeException(maxSize);
+        }
+        PhotoDto photoDto = PhotoDto
+            .builder()
+            .title(title)
+            .description(description)
+            .album(albumId != null ? AlbumDto.builder().id(albumId).build() : null)
+            .imageContentType(MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(contentType) ? null : contentType.toString())
+            .build();
+        return created(photoService.upload(photoDto, content));
+    }
+
+    private ResponseEntity<PhotoDto> created(PhotoDto result) throws URISyntaxException {
+        return ResponseEntity
+            .created(new URI("/api/photos/" + result.getId()))
+            .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+            .body(result);
+    }
+
     /**
      * {@code PUT  /photos/:id} : Updates an existing photo.
      *
@@ -148,15 +244,59 @@ public class PhotoResource {
     }
 
     /**
-     * {@code GET  /photos} : get all the photos.
+     * {@code GET  /photos} : get all the photos, without their image.
+     *
+     * @param pageable the pagination information.
+     * @param criteria the criteria which the requested entities should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of photo summaries in body.
+     */
+    @GetMapping(value = "/photos", params = "!" + KeysetPaginationUtil.CURSOR)
+    public ResponseEntity<List<PhotoSummaryDto>> getAllPhotos(PhotoCriteria criteria, Pageable pageable) {
+        log.debug("REST request to get Photo summaries by criteria: {}", criteria);
+        Page<PhotoSummaryDto> page = photoQueryService.findSummariesByCriteria(criteria, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /photos?cursor=} : get a page of the photos, without their image, continuing after the cursor of the previous page.
+     * <p>
+     * The first page is requested with an empty cursor. Pages may be sorted by {@code taken} (the default, descending)
+     * or {@code uploaded}; the {@code next} link of the {@code Link} header points to the following page.
+     *
+     * @param cursor the cursor of the previous page, empty for the first page.
+     * @param pageable the size and sort of the page, the page number is ignored.
+     * @param criteria the criteria which the requested entities should match.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of photo summaries in body.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the cursor is invalid or the sort is not supported.
+     */
+    @GetMapping(value = "/photos", params = { KeysetPaginationUtil.CURSOR, "!include" })
+    public ResponseEntity<List<PhotoSummaryDto>> getPhotosAfter(@RequestParam String cursor, PhotoCriteria criteria, Pageable pageable) {
+        log.debug("REST request to get Photo summaries by criteria: {}, after: {}", criteria, cursor);
+        KeysetCursor after = KeysetPaginationUtil.parseCursor(cursor, ENTITY_NAME);
+        KeysetPage<PhotoSummaryDto> page;
+        try {
+            page = photoQueryService.findSummariesAfter(criteria, pageable.getSort(), after, pageable.getPageSize());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "sortinvalid");
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).body(page.getContent());
+    }
+
+    /**
+     * {@code GET  /photos?include=image} : get all the photos with their image, for clients which still expect it in the list.
+     * <p>
+     * These pages are numbered only; a request with a {@code cursor} as well matches no mapping and is rejected with
+     * {@code 400 (Bad Request)}, rather than served as a numbered page.
      *
      * @param pageable the pagination information.
      * @param criteria the criteria which the requested entities should match.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of photos in body.
      */
-    @GetMapping("/photos")
-    public ResponseEntity<List<PhotoDto>> getAllPhotos(PhotoCriteria criteria, Pageable pageable) {
-        log.debug("REST request to get Photos by criteria: {}", criteria);
+    @GetMapping(value = "/photos", params = { "include=image", "!" + KeysetPaginationUtil.CURSOR })
+    public ResponseEntity<List<PhotoDto>> getAllPhotosWithImage(PhotoCriteria criteria, Pageable pageable) {
+        log.debug("REST request to get Photos with image by criteria: {}", criteria);
         Page<PhotoDto> page = photoQueryService.findByCriteria(criteria, pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
         return ResponseEntity.ok().headers(headers).body(page.getContent());
@@ -187,6 +327,97 @@ public class PhotoResource {
         return ResponseUtil.wrapOrNotFound(photoDto);
     }
 
+    /**
+     * {@code GET  /photos/:id/content} : get the raw image of the "id" photo.
+     * <p>
+     * Conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) are answered with {@code 304 (Not Modified)}
+     * and {@code Range} requests with {@code 206 (Partial Content)}, the bytes are streamed from the blob store.
+     *
+     * @param id the id of the photo whose image to retrieve.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the image in body, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/photos/{id}/content")
+    public ResponseEntity<Resource> getPhotoContent(@PathVariable Long id) {
+        log.debug("REST request to get content of Photo : {}", id);
+        Optional<PhotoContent> content = photoService.findContent(id);
+        if (content.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity
+            .ok()
+            .contentType(parseContentType(content.get().getContentType()))
+            .eTag(content.get().getKey())
+            .cacheControl(CONTENT_CACHE_CONTROL)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (content.get().getLastModified() != null) {
+            builder.lastModified(content.get().getLastModified());
+        }
+        return builder.body(content.get().getResource());
+    }
+
+    /**
+     * {@code GET  /photos/:id/renditions/:size} : get a resized copy of the image of the "id" photo.
+     * <p>
+     * WebP is served to clients which accept it. Renditions are generated in the background after an upload,
+     * until one is ready the client is redirected to the original image.
+     *
+     * @param id the id of the photo whose rendition to retrieve.
+     * @param size the length of the longest side of the rendition, one of the configured sizes.
+     * @param accept the {@code Accept} header of the request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the rendition in body,
+     * or with status {@code 307 (Temporary Redirect)} to the original image if the rendition is not ready,
+     * or with status {@code 404 (Not Found)}.
+     * @throws BadRequestAlertException {@code 400 (Bad Request)} if the size is not configured.
+     */
+    @GetMapping("/photos/{id}/renditions/{size}")
+    public ResponseEntity<Resource> getPhotoRendition(
+        @PathVariable Long id,
+        @PathVariable int size,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        log.debug("REST request to get rendition {} of Photo : {}", size, id);
+        if (!photoRenditionService.isSupportedSize(size)) {
+            throw new BadRequestAlertException("Unsupported rendition size", ENTITY_NAME, "renditionsize");
+        }
+        if (!photoRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        boolean acceptWebp = accept != null && accept.contains("image/webp");
+        Optional<PhotoContent> content = photoRenditionService.findRendition(id, size, acceptWebp);
+        if (content.isEmpty()) {
+            URI original = ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/photos/{id}/content").buildAndExpand(id).toUri();
+            return ResponseEntity.status(HttpStatus.TEMPORARY_REDIRECT).location(original).cacheControl(CacheControl.noStore()).build();
+        }
+        return ResponseEntity
+            .ok()
+            .contentType(parseContentType(content.get().getContentType()))
+            .eTag(content.get().getKey())
+            .cacheControl(CONTENT_CACHE_CONTROL)
+            .varyBy(HttpHeaders.ACCEPT)
+            .body(content.get().getResource());
+    }
+
+    /**
+     * {@code POST  /photos/renditions/backfill} : generate the missing renditions of all photos in the background.
+     *
+     * @return the {@link ResponseEntity} with status {@code 202 (Accepted)}.
+     */
+    @PostMapping("/photos/renditions/backfill")
+    @PreAuthorize("hasAuthority(\"" + AuthoritiesConstants.ADMIN + "\")")
+    public ResponseEntity<Void> backfillPhotoRenditions() {
+        log.debug("REST request to backfill Photo renditions");
+        photoRenditionService.backfillAsync();
+        return ResponseEntity.accepted().build();
+    }
+
+    private static MediaType parseContentType(String contentType) {
+        try {
+            return contentType != null ? MediaType.parseMediaType(contentType) : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
     /**
      * {@code DELETE  /photos/:id} : delete the "id" photo.
      *
@@ -0,0 +1,169 @@
+package io.susimsek.gallery.web.rest;
+
+import io.susimsek.gallery.service.PhotoUploadService;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import io.susimsek.gallery.service.dto.PhotoUploadDto;
+import io.susimsek.gallery.web.rest.errors.BadRequestAlertException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import javax.validation.Valid;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.ResponseUtil;
+
+/**
+ * REST controller for resumable uploads of {@link io.susimsek.gallery.domain.Photo} images.
+ * <p>
+ * A client creates an upload with the fields of the photo and the size of the image, sends the image in one or more
+ * {@code PUT} requests carrying the offset they start at in an {@code Upload-Offset} header, and completes the upload
+ * into a photo. After a dropped connection, {@code HEAD} gives the offset to resume from.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api")
+public class PhotoUploadResource {
+
+    public static final String UPLOAD_OFFSET = "Upload-Offset";
+
+    public static final String UPLOAD_LENGTH = "Upload-Length";
+
+    static final String OFFSET_OCTET_STREAM_VALUE = "application/offset+octet-stream";
+
+    static final String ENTITY_NAME = "photoUpload";
+
+    @Value("${jhipster.clientApp.name}")
+    String applicationName;
+
+    final PhotoUploadService photoUploadService;
+
+    /**
+     * {@code POST  /photo-uploads} : Create a new upload.
+     *
+     * @param photoUploadDto the fields of the photo and the size of its image.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new upload,
+     * or with status {@code 413 (Payload Too Large)} if the image is larger than {@code application.upload.max-size}.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/photo-uploads")
+    public ResponseEntity<PhotoUploadDto> createPhotoUpload(@Valid @RequestBody PhotoUploadDto photoUploadDto) throws URISyntaxException {
+        log.debug("REST request to create PhotoUpload : {}", photoUploadDto);
+        if (photoUploadDto.getId() != null) {
+            throw new BadRequestAlertException("A new photoUpload cannot already have an ID", ENTITY_NAME, "idexists");
+        }
+        PhotoUploadDto result = photoUploadService.create(photoUploadDto);
+        return ResponseEntity
+            .created(new URI("/api/photo-uploads/" + result.getId()))
+            .header(UPLOAD_OFFSET, String.valueOf(result.getOffset()))
+            .body(result);
+    }
+
+    /**
+     * {@code GET  /photo-uploads/:id} : get an upload of the current user.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the upload, or with status {@code 404 (Not Found)}.
+     */
+    @GetMapping("/photo-uploads/{id}")
+    public ResponseEntity<PhotoUploadDto> getPhotoUpload(@PathVariable String id) {
+        log.debug("REST request to get PhotoUpload : {}", id);
+        return ResponseUtil.wrapOrNotFound(photoUploadService.findOne(id));
+    }
+
+    /**
+     * {@code HEAD  /photo-uploads/:id} : get the offset to resume an upload from.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the {@code Upload-Offset} and {@code Upload-Length} headers,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @RequestMapping(value = "/photo-uploads/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getPhotoUploadOffset(@PathVariable String id) {
+        log.debug("REST request to get the offset of PhotoUpload : {}", id);
+        return photoUploadService
+            .findOne(id)
+            .map(upload -> ResponseEntity.ok().headers(offsetHeaders(upload)).header(UPLOAD_LENGTH, String.valueOf(upload.getLength())).<Void>build())
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * {@code PUT  /photo-uploads/:id} : append a chunk of the image, streamed to disk as it arrives.
+     *
+     * @param id the id of the upload.
+     * @param offset the offset the chunk starts at, which must be the offset of the upload.
+     * @param content the chunk.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)} and the new {@code Upload-Offset} header,
+     * or with status {@code 409 (Conflict)} and the current {@code Upload-Offset} header if {@code offset} is not the offset of the upload,
+     * or with status {@code 413 (Payload Too Large)} if the chunk goes past the size of the image,
+     * or with status {@code 404 (Not Found)}.
+     */
+    @PutMapping(
+        value = "/photo-uploads/{id}",
+        consumes = { OFFSET_OCTET_STREAM_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE }
+    )
+    public ResponseEntity<Void> appendPhotoUploadChunk(
+        @PathVariable String id,
+        @RequestHeader(UPLOAD_OFFSET) long offset,
+        InputStream content
+    ) {
+        log.debug("REST request to append to PhotoUpload {} at offset {}", id, offset);
+        return photoUploadService
+            .appendChunk(id, offset, content)
+            .map(upload -> ResponseEntity.noContent().headers(offsetHeaders(upload)).<Void>build())
+            .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * {@code POST  /photo-uploads/:id/complete} : create the photo from a fully received upload.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new photoDto,
+     * or with status {@code 409 (Conflict)} if part of the image is missing, or with status {@code 404 (Not Found)}.
+     * @throws URISyntaxException if the Location URI syntax is incorrect.
+     */
+    @PostMapping("/photo-uploads/{id}/complete")
+    public ResponseEntity<PhotoDto> completePhotoUpload(@PathVariable String id) throws URISyntaxException {
+        log.debug("REST request to complete PhotoUpload : {}", id);
+        Optional<PhotoDto> result = photoUploadService.complete(id);
+        if (result.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        PhotoDto photo = result.get();
+        return ResponseEntity
+            .created(new URI("/api/photos/" + photo.getId()))
+            .headers(HeaderUtil.createEntityCreationAlert(applicationName, true, PhotoResource.ENTITY_NAME, photo.getId().toString()))
+            .body(photo);
+    }
+
+    /**
+     * {@code DELETE  /photo-uploads/:id} : abandon an upload.
+     *
+     * @param id the id of the upload.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     */
+    @DeleteMapping("/photo-uploads/{id}")
+    public ResponseEntity<Void> deletePhotoUpload(@PathVariable String id) {
+        log.debug("REST request to delete PhotoUpload : {}", id);
+        photoUploadService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static HttpHeaders offsetHeaders(PhotoUploadDto upload) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(UPLOAD_OFFSET, String.valueOf(upload.getOffset()));
+        headers.setCacheControl(CacheControl.noStore());
+        return headers;
+    }
+}
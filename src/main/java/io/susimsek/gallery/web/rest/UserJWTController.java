@@ -1,9 +1,13 @@
 package io.susimsek.gallery.web.rest;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.susimsek.gallery.security.SecurityUtils;
 import io.susimsek.gallery.security.jwt.JWTFilter;
 import io.susimsek.gallery.security.jwt.TokenProvider;
+import io.susimsek.gallery.security.jwt.TokenRevocationService;
+import io.susimsek.gallery.service.RefreshTokenService;
 import io.susimsek.gallery.web.rest.vm.LoginVM;
+import io.susimsek.gallery.web.rest.vm.RefreshTokenVM;
 import javax.validation.Valid;
 
 import lombok.AccessLevel;
@@ -32,6 +36,10 @@ public class UserJWTController {
 
     final AuthenticationManagerBuilder authenticationManagerBuilder;
 
+    final TokenRevocationService tokenRevocationService;
+
+    final RefreshTokenService refreshTokenService;
+
     @PostMapping("/authenticate")
     public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
@@ -42,9 +50,44 @@ public class UserJWTController {
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
         String jwt = tokenProvider.createToken(authentication, loginVM.isRememberMe());
+        String refreshToken = refreshTokenService.create(authentication.getName(), loginVM.isRememberMe());
+        return tokens(jwt, refreshToken);
+    }
+
+    /**
+     * {@code POST /authenticate/refresh} : exchange a refresh token for a new access token, without the password.
+     *
+     * @param refreshTokenVM the refresh token, which can only be exchanged once.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the access token and next refresh token in
+     * body, or with status {@code 401 (Unauthorized)} if the refresh token is invalid, expired or already used.
+     */
+    @PostMapping("/authenticate/refresh")
+    public ResponseEntity<JWTToken> refresh(@Valid @RequestBody RefreshTokenVM refreshTokenVM) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshTokenVM.getRefreshToken());
+        String jwt = tokenProvider.createToken(rotation.getAuthentication(), rotation.isRememberMe());
+        return tokens(jwt, rotation.getRefreshToken());
+    }
+
+    /**
+     * {@code POST /logout} : revoke the token of the request, on every node, until it expires, and the refresh token
+     * of the body with the other tokens of its sign in.
+     *
+     * @param refreshTokenVM the refresh token of the client, if any.
+     * @return the {@link ResponseEntity} with status {@code 204 (No Content)}.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@Valid @RequestBody(required = false) RefreshTokenVM refreshTokenVM) {
+        SecurityUtils.getCurrentUserJWT().ifPresent(tokenRevocationService::revoke);
+        if (refreshTokenVM != null) {
+            refreshTokenService.revoke(refreshTokenVM.getRefreshToken());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<JWTToken> tokens(String jwt, String refreshToken) {
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
-        return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
+        return new ResponseEntity<>(new JWTToken(jwt, refreshToken), httpHeaders, HttpStatus.OK);
     }
 
     /**
@@ -54,8 +97,11 @@ public class UserJWTController {
 
         private String idToken;
 
-        JWTToken(String idToken) {
+        private String refreshToken;
+
+        JWTToken(String idToken, String refreshToken) {
             this.idToken = idToken;
+            this.refreshToken = refreshToken;
         }
 
         @JsonProperty("id_token")
@@ -66,5 +112,14 @@ public class UserJWTController {
         void setIdToken(String idToken) {
             this.idToken = idToken;
         }
+
+        @JsonProperty("refresh_token")
+        String getRefreshToken() {
+            return refreshToken;
+        }
+
+        void setRefreshToken(String refreshToken) {
+            this.refreshToken = refreshToken;
+        }
     }
 }
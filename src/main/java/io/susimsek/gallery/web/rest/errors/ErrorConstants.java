@@ -6,6 +6,9 @@ public final class ErrorConstants {
 
     public static final String ERR_CONCURRENCY_FAILURE = "error.concurrencyFailure";
     public static final String ERR_VALIDATION = "error.validation";
+    public static final String ERR_PAYLOAD_TOO_LARGE = "error.payloadTooLarge";
+    public static final String ERR_UPLOAD_OFFSET_MISMATCH = "error.uploadOffsetMismatch";
+    public static final String ERR_SERVER_BUSY = "error.serverBusy";
     public static final String PROBLEM_BASE_URL = "https://www.jhipster.tech/problem";
     public static final URI DEFAULT_TYPE = URI.create(PROBLEM_BASE_URL + "/problem-with-message");
     public static final URI CONSTRAINT_VIOLATION_TYPE = URI.create(PROBLEM_BASE_URL + "/constraint-violation");
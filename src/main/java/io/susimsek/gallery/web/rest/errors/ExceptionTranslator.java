@@ -17,6 +17,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageConversionException;
 import org.springframework.validation.BindingResult;
@@ -24,6 +25,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.zalando.problem.DefaultProblem;
 import org.zalando.problem.Problem;
 import org.zalando.problem.ProblemBuilder;
@@ -48,6 +50,8 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
     static final String MESSAGE_KEY = "message";
     static final String PATH_KEY = "path";
     static final String VIOLATIONS_KEY = "violations";
+    static final int RETRY_AFTER_SECONDS = 1;
+    static final int IMPORT_RETRY_AFTER_SECONDS = 60;
 
     @Value("${jhipster.clientApp.name}")
     String applicationName;
@@ -160,6 +164,100 @@ public class ExceptionTranslator implements ProblemHandling, SecurityAdviceTrait
         );
     }
 
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePhotoTooLargeException(
+        io.susimsek.gallery.service.PhotoTooLargeException ex,
+        NativeWebRequest request
+    ) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.REQUEST_ENTITY_TOO_LARGE)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_PAYLOAD_TOO_LARGE)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleTooManyPhotosException(
+        io.susimsek.gallery.service.TooManyPhotosException ex,
+        NativeWebRequest request
+    ) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.REQUEST_ENTITY_TOO_LARGE)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_PAYLOAD_TOO_LARGE)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handleMaxUploadSizeExceeded(MaxUploadSizeExceededException ex, NativeWebRequest request) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.REQUEST_ENTITY_TOO_LARGE)
+            .with(MESSAGE_KEY, ErrorConstants.ERR_PAYLOAD_TOO_LARGE)
+            .build();
+        return create(ex, problem, request);
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePhotoUploadConflictException(
+        io.susimsek.gallery.service.PhotoUploadConflictException ex,
+        NativeWebRequest request
+    ) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.CONFLICT)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_UPLOAD_OFFSET_MISMATCH)
+            .with("offset", ex.getOffset())
+            .build();
+        ResponseEntity<Problem> entity = create(ex, problem, request);
+        // lets a client resume from the problem without another HEAD request
+        return ResponseEntity
+            .status(entity.getStatusCode())
+            .headers(entity.getHeaders())
+            .header(io.susimsek.gallery.web.rest.PhotoUploadResource.UPLOAD_OFFSET, String.valueOf(ex.getOffset()))
+            .body(entity.getBody());
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePasswordHashingBusyException(
+        io.susimsek.gallery.security.PasswordHashingBusyException ex,
+        NativeWebRequest request
+    ) {
+        Problem problem = Problem.builder().withStatus(Status.SERVICE_UNAVAILABLE).with(MESSAGE_KEY, ErrorConstants.ERR_SERVER_BUSY).build();
+        ResponseEntity<Problem> entity = create(ex, problem, request);
+        // the pool drains within a few hashes, a client retrying at once would only refill it
+        return ResponseEntity
+            .status(entity.getStatusCode())
+            .headers(entity.getHeaders())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+            .body(entity.getBody());
+    }
+
+    @ExceptionHandler
+    public ResponseEntity<Problem> handlePhotoImportBusyException(
+        io.susimsek.gallery.service.importer.PhotoImportBusyException ex,
+        NativeWebRequest request
+    ) {
+        Problem problem = Problem
+            .builder()
+            .withStatus(Status.SERVICE_UNAVAILABLE)
+            .withDetail(ex.getMessage())
+            .with(MESSAGE_KEY, ErrorConstants.ERR_SERVER_BUSY)
+            .build();
+        ResponseEntity<Problem> entity = create(ex, problem, request);
+        // an import runs for minutes, not the few milliseconds of a password hash
+        return ResponseEntity
+            .status(entity.getStatusCode())
+            .headers(entity.getHeaders())
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(IMPORT_RETRY_AFTER_SECONDS))
+            .body(entity.getBody());
+    }
+
     @ExceptionHandler
     public ResponseEntity<Problem> handleConcurrencyFailure(ConcurrencyFailureException ex, NativeWebRequest request) {
         Problem problem = Problem.builder().withStatus(Status.CONFLICT).with(MESSAGE_KEY, ErrorConstants.ERR_CONCURRENCY_FAILURE).build();
@@ -0,0 +1,44 @@
+import { useEffect, useRef, useState } from 'react';
+import axios from 'axios';
+
+import { IPhoto } from 'app/shared/model/photo.model';
+
+export const GRID_RENDITION_SIZE = 640;
+export const LIGHTBOX_RENDITION_SIZE = 1600;
+
+/**
+ * Loads a resized copy of each photo and exposes it as an object URL, keyed by photo id.
+ * Renditions are fetched with axios so the request carries the authentication header.
+ */
+export const usePhotoRenditions = (photos: ReadonlyArray<IPhoto>, size: number, enabled = true) => {
+  const [urls, setUrls] = useState<Record<number, string>>({});
+  const loaded = useRef<Record<number, string>>({});
+
+  useEffect(() => {
+    if (!enabled) {
+      return undefined;
+    }
+    let cancelled = false;
+    photos
+      .filter(photo => photo.id !== undefined && loaded.current[photo.id] === undefined)
+      .forEach(photo =>
+        axios
+          .get<Blob>(`api/photos/${photo.id}/renditions/${size}`, { responseType: 'blob' })
+          .then(response => {
+            if (cancelled || loaded.current[photo.id] !== undefined) {
+              return;
+            }
+            loaded.current[photo.id] = URL.createObjectURL(response.data);
+            setUrls({ ...loaded.current });
+          })
+          .catch(() => undefined)
+      );
+    return () => {
+      cancelled = true;
+    };
+  }, [photos, size, enabled]);
+
+  useEffect(() => () => Object.values(loaded.current).forEach(url => URL.revokeObjectURL(url)), []);
+
+  return urls;
+};
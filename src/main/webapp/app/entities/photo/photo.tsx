@@ -2,7 +2,7 @@ import React, { useState, useEffect } from 'react';
 import InfiniteScroll from 'react-infinite-scroller';
 import { Link, RouteComponentProps } from 'react-router-dom';
 import { Button, Input, InputGroup, FormGroup, Form, Col, Row, Table } from 'reactstrap';
-import {openFile, byteSize, Translate, translate, TextFormat, getSortState, IPaginationBaseState} from 'react-jhipster';
+import { Translate, translate, TextFormat, getSortState, IPaginationBaseState} from 'react-jhipster';
 import { FontAwesomeIcon } from '@fortawesome/react-fontawesome';
 
 import { searchEntities, getEntities, reset } from './photo.reducer';
@@ -11,6 +11,7 @@ import { APP_DATE_FORMAT, APP_LOCAL_DATE_FORMAT } from 'app/config/constants';
 import { ASC, DESC, ITEMS_PER_PAGE, SORT } from 'app/shared/util/pagination.constants';
 import { overridePaginationStateWithQueryParams } from 'app/shared/util/entity-utils';
 import { useAppDispatch, useAppSelector } from 'app/config/store';
+import { GRID_RENDITION_SIZE, LIGHTBOX_RENDITION_SIZE, usePhotoRenditions } from './photo-rendition';
 
 import Gallery from 'react-photo-gallery';
 import Lightbox from 'react-images';
@@ -33,11 +34,18 @@ export const Photo = (props: RouteComponentProps<{ url: string }>) => {
   const [sorting, setSorting] = useState(false);
 
   const photoList = useAppSelector(state => state.photo.entities);
-  const photoSet = photoList.map(photo => ({
-    src: `data:${photo.imageContentType};base64,${photo.image}`,
-    width: photo.height > photo.width ? 3 : photo.height === photo.width ? 1 : 4,
-    height: photo.height > photo.width ? 4 : photo.height === photo.width ? 1 : 3
-  }));
+  const gridUrls = usePhotoRenditions(photoList, GRID_RENDITION_SIZE);
+  const lightboxUrls = usePhotoRenditions(photoList, LIGHTBOX_RENDITION_SIZE, !!lightboxIsOpen);
+  const photoSet = photoList
+    .filter(photo => gridUrls[photo.id] !== undefined)
+    .map(photo => ({
+      src: gridUrls[photo.id],
+      width: photo.height > photo.width ? 3 : photo.height === photo.width ? 1 : 4,
+      height: photo.height > photo.width ? 4 : photo.height === photo.width ? 1 : 3
+    }));
+  const lightboxSet = photoList
+    .filter(photo => gridUrls[photo.id] !== undefined)
+    .map(photo => ({ src: lightboxUrls[photo.id] ?? gridUrls[photo.id] }));
 
   const loading = useAppSelector(state => state.photo.loading);
   const totalItems = useAppSelector(state => state.photo.totalItems);
@@ -213,7 +221,7 @@ export const Photo = (props: RouteComponentProps<{ url: string }>) => {
       </Row>
       <Gallery photos={photoSet} onClick={openLightbox} />
       <Lightbox
-        images={photoSet}
+        images={lightboxSet}
         onClose={closeLightbox}
         onClickPrev={gotoPrevious}
         onClickNext={gotoNext}
@@ -274,16 +282,17 @@ export const Photo = (props: RouteComponentProps<{ url: string }>) => {
                     <td>{photo.title}</td>
                     <td>{photo.description}</td>
                     <td>
-                      {photo.image ? (
+                      {photo.imageContentType ? (
                         <div>
-                          {photo.imageContentType ? (
-                            <a onClick={openFile(photo.imageContentType, photo.image)}>
-                              <img src={`data:${photo.imageContentType};base64,${photo.image}`} style={{ maxHeight: '30px' }} />
+                          {gridUrls[photo.id] ? (
+                            <a href={gridUrls[photo.id]} target="_blank" rel="noopener noreferrer">
+                              <img src={gridUrls[photo.id]} style={{ maxHeight: '30px' }} />
                               &nbsp;
                             </a>
                           ) : null}
                           <span>
-                            {photo.imageContentType}, {byteSize(photo.image)}
+                            {photo.imageContentType}
+                            {photo.imageSize ? `, ${photo.imageSize} bytes` : null}
                           </span>
                         </div>
                       ) : null}
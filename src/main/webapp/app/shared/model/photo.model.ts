@@ -8,6 +8,7 @@ export interface IPhoto {
   description?: string | null;
   imageContentType?: string;
   image?: string;
+  imageSize?: number | null;
   height?: number | null;
   width?: number | null;
   taken?: string | null;
@@ -81,6 +81,11 @@ export const clearAuthToken = () => {
 };
 
 export const logout: () => AppThunk = () => dispatch => {
+  const token = Storage.local.get(AUTH_TOKEN_KEY) || Storage.session.get(AUTH_TOKEN_KEY);
+  if (token) {
+    // revoke the token, which could otherwise still be used until it expires
+    axios.post('api/logout', null, { headers: { Authorization: `Bearer ${token}` } }).catch(() => undefined);
+  }
   clearAuthToken();
   dispatch(logoutSession());
 };
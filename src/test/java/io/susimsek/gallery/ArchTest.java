@@ -1,10 +1,13 @@
 package io.susimsek.gallery;
 
 import static com.tngtech.archunit.lang.syntax.ArchRuleDefinition.noClasses;
+import static com.tngtech.archunit.lang.syntax.ArchRuleDefinition.noFields;
 
 import com.tngtech.archunit.core.domain.JavaClasses;
 import com.tngtech.archunit.core.importer.ClassFileImporter;
 import com.tngtech.archunit.core.importer.ImportOption;
+import java.sql.Blob;
+import org.hibernate.annotations.Cache;
 import org.junit.jupiter.api.Test;
 
 class ArchTest {
@@ -26,4 +29,24 @@ class ArchTest {
             .because("Services and repositories should not depend on web layer")
             .check(importedClasses);
     }
+
+    @Test
+    void cachedEntitiesShouldNotHoldBinaryContent() {
+        JavaClasses importedClasses = new ClassFileImporter()
+            .withImportOption(ImportOption.Predefined.DO_NOT_INCLUDE_TESTS)
+            .importPackages("io.susimsek.gallery.domain");
+
+        noFields()
+            .that()
+            .areDeclaredInClassesThat()
+            .areAnnotatedWith(Cache.class)
+            .should()
+            .haveRawType(byte[].class)
+            .orShould()
+            .haveRawType(Byte[].class)
+            .orShould()
+            .haveRawType(Blob.class)
+            .because("Binary content belongs in the blob store, a cached entity would copy it into Redis on every load")
+            .check(importedClasses);
+    }
 }
@@ -0,0 +1,85 @@
+package io.susimsek.gallery.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.susimsek.gallery.service.storage.RangeReadableResource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+/**
+ * Unit tests for the {@link ResourceRegionConfiguration} class.
+ */
+class ResourceRegionConfigurationTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes();
+
+    private final ResourceRegionHttpMessageConverter converter = new ResourceRegionConfiguration.RangeReadingResourceRegionHttpMessageConverter();
+
+    @Test
+    void replacesTheResourceRegionConverter() {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(
+            List.of(new StringHttpMessageConverter(), new ResourceRegionHttpMessageConverter())
+        );
+
+        new ResourceRegionConfiguration().extendMessageConverters(converters);
+
+        assertThat(converters.get(0)).isInstanceOf(StringHttpMessageConverter.class);
+        assertThat(converters.get(1)).isInstanceOf(ResourceRegionConfiguration.RangeReadingResourceRegionHttpMessageConverter.class);
+    }
+
+    @Test
+    void readsOnlyTheRangeOfRangeReadableResources() throws IOException {
+        RangedResource resource = new RangedResource();
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        converter.write(new ResourceRegion(resource, 7, 5), MediaType.APPLICATION_OCTET_STREAM, outputMessage);
+
+        assertThat(resource.ranges).containsExactly("7-9");
+        assertThat(outputMessage.getBodyAsString()).isEqualTo("789");
+        assertThat(outputMessage.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 7-9/10");
+        assertThat(outputMessage.getHeaders().getContentLength()).isEqualTo(3);
+    }
+
+    @Test
+    void skipsToTheRangeOfOtherResources() throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        converter.write(new ResourceRegion(new ByteArrayResource(CONTENT), 2, 3), MediaType.APPLICATION_OCTET_STREAM, outputMessage);
+
+        assertThat(outputMessage.getBodyAsString()).isEqualTo("234");
+        assertThat(outputMessage.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-4/10");
+    }
+
+    private static class RangedResource extends ByteArrayResource implements RangeReadableResource {
+
+        final List<String> ranges = new ArrayList<>();
+
+        RangedResource() {
+            super(CONTENT);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            throw new AssertionError("The whole content was read");
+        }
+
+        @Override
+        public InputStream getInputStream(long position, long count) {
+            ranges.add(position + "-" + (position + count - 1));
+            return new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, (int) position, (int) (position + count)));
+        }
+    }
+}
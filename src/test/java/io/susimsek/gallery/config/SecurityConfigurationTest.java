@@ -0,0 +1,46 @@
+package io.susimsek.gallery.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+class SecurityConfigurationTest {
+
+    private final ApplicationProperties.PasswordHashing properties = new ApplicationProperties().getSecurity().getPasswordHashing();
+
+    @Test
+    void hashesNewPasswordsWithArgon2() {
+        PasswordEncoder encoder = SecurityConfiguration.delegatingPasswordEncoder(properties);
+
+        String hash = encoder.encode("password");
+
+        assertThat(hash).startsWith("{argon2}$argon2id$").hasSizeBetween(60, 128);
+        assertThat(encoder.matches("password", hash)).isTrue();
+        assertThat(encoder.matches("wrong", hash)).isFalse();
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+    }
+
+    @Test
+    void verifiesAndUpgradesTheUnprefixedBCryptHashes() {
+        PasswordEncoder encoder = SecurityConfiguration.delegatingPasswordEncoder(properties);
+        String legacy = new BCryptPasswordEncoder().encode("password");
+
+        assertThat(encoder.matches("password", legacy)).isTrue();
+        assertThat(encoder.matches("wrong", legacy)).isFalse();
+        assertThat(encoder.upgradeEncoding(legacy)).isTrue();
+        assertThat(encoder.upgradeEncoding("{bcrypt}" + legacy)).isTrue();
+    }
+
+    @Test
+    void hashesWithBCryptWhenConfigured() {
+        properties.setEncodingId("bcrypt");
+        PasswordEncoder encoder = SecurityConfiguration.delegatingPasswordEncoder(properties);
+
+        String hash = encoder.encode("password");
+
+        assertThat(hash).startsWith("{bcrypt}$2a$10$");
+        assertThat(encoder.upgradeEncoding(hash)).isFalse();
+    }
+}
@@ -0,0 +1,230 @@
+package io.susimsek.gallery.config.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Authority;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.User;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.hibernate.cache.spi.support.SimpleTimestamper;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.MarshallingCodec;
+import org.redisson.codec.SerializationCodec;
+
+/**
+ * Time to encode and decode the second-level cache entries of a user, an album, a photo and their collections with
+ * each codec of {@code application.cache.codec}, with and without LZ4 compression from 1 KB.
+ * <p>
+ * The entries are the ones Hibernate builds for the application's entities, mapped on an in-memory H2 database, and
+ * the ones of the {@code READ_WRITE} regions are wrapped in items as Hibernate stores them, along with the soft lock
+ * which replaces the photo while it is updated. The photo has a 2 KB description so compression has something to work
+ * on. Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.susimsek.gallery.config.cache.CacheCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Param({ "java", "marshalling", "compact", "compact-lz4" })
+    public String codecName;
+
+    private Codec codec;
+
+    private Map<String, Object> entries;
+
+    private List<byte[]> encoded;
+
+    @Setup(Level.Trial)
+    public void createEntries() throws IOException, ReflectiveOperationException {
+        codec = codec(codecName);
+        entries = cacheEntries();
+        encoded = new ArrayList<>();
+        for (Object entry : entries.values()) {
+            ByteBuf buf = codec.getValueEncoder().encode(entry);
+            try {
+                encoded.add(ByteBufUtil.getBytes(buf));
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Benchmark
+    public void encode(Blackhole blackhole) throws IOException {
+        for (Object entry : entries.values()) {
+            ByteBuf buf = codec.getValueEncoder().encode(entry);
+            blackhole.consume(buf.readableBytes());
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws IOException {
+        for (byte[] bytes : encoded) {
+            blackhole.consume(codec.getValueDecoder().decode(Unpooled.wrappedBuffer(bytes), null));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CacheCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    static Codec codec(String name) {
+        switch (name) {
+            case "java":
+                return new SerializationCodec();
+            case "marshalling":
+                return new MarshallingCodec();
+            case "compact":
+                return new CacheEntryCodec();
+            default:
+                return new Lz4ThresholdCodec(new CacheEntryCodec(), COMPRESSION_THRESHOLD);
+        }
+    }
+
+    /**
+     * @return the cache entries Hibernate stores for a user with two authorities, an album and a photo with three tags,
+     * and for the photo while it is updated.
+     */
+    static Map<String, Object> cacheEntries() throws ReflectiveOperationException {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+            .applySetting(AvailableSettings.URL, "jdbc:h2:mem:codec-benchmark;DB_CLOSE_DELAY=-1")
+            .applySetting(AvailableSettings.USER, "sa")
+            .applySetting(AvailableSettings.PASS, "")
+            .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, false)
+            .build();
+        try (
+            SessionFactory sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(Authority.class)
+                .addAnnotatedClass(User.class)
+                .addAnnotatedClass(Album.class)
+                .addAnnotatedClass(Photo.class)
+                .addAnnotatedClass(Tag.class)
+                .buildMetadata()
+                .buildSessionFactory();
+            Session session = sessionFactory.openSession()
+        ) {
+            session.beginTransaction();
+            Authority admin = new Authority();
+            admin.setName("ROLE_ADMIN");
+            Authority user = new Authority();
+            user.setName("ROLE_USER");
+            session.persist(admin);
+            session.persist(user);
+
+            User owner = new User();
+            owner.setLogin("benchmark");
+            owner.setPassword("$2a$10$gSAhZrxMllrbgj/kkK9UceBPpChGWJA7SYIb1Mqo.n5aNLq1/oRrC");
+            owner.setFirstName("Bench");
+            owner.setLastName("Mark");
+            owner.setEmail("benchmark@localhost");
+            owner.setActivated(true);
+            owner.setLangKey("en");
+            owner.setCreatedBy("system");
+            owner.setCreatedDate(Instant.now());
+            owner.getAuthorities().add(admin);
+            owner.getAuthorities().add(user);
+            session.persist(owner);
+
+            Album album = Album.builder().title("Holidays 2021").description("Two weeks by the sea").created(Instant.now()).user(owner).build();
+            session.persist(album);
+
+            Photo photo = Photo
+                .builder()
+                .title("Sunset over the bay")
+                .description("The sun going down behind the lighthouse, seen from the terrace of the hotel. ".repeat(26))
+                .imageKey("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824")
+                .imageSize(3_145_728L)
+                .imageChecksum("5d41402abc4b2a76b9719d911017c592")
+                .imageContentType("image/jpeg")
+                .height(3000)
+                .width(4000)
+                .taken(Instant.parse("2021-07-14T19:42:11Z"))
+                .uploaded(Instant.now())
+                .album(album)
+                .build();
+            for (String name : new String[] { "sunset", "sea", "lighthouse" }) {
+                Tag tag = Tag.builder().name(name).build();
+                session.persist(tag);
+                photo.addTag(tag);
+            }
+            session.persist(photo);
+            session.flush();
+            session.clear();
+
+            SessionImplementor sessionImplementor = (SessionImplementor) session;
+            Map<String, Object> entries = new LinkedHashMap<>();
+            User loadedUser = session.get(User.class, owner.getId());
+            Photo loadedPhoto = session.get(Photo.class, photo.getId());
+            entries.put("user", entityEntry(sessionImplementor, loadedUser));
+            entries.put("user.authorities", collectionEntry(sessionImplementor, User.class.getName() + ".authorities", loadedUser.getAuthorities()));
+            entries.put("album", item(entityEntry(sessionImplementor, session.get(Album.class, album.getId()))));
+            AbstractReadWriteAccess.Item photoItem = item(entityEntry(sessionImplementor, loadedPhoto));
+            entries.put("photo", photoItem);
+            entries.put("photo.tags", item(collectionEntry(sessionImplementor, Photo.class.getName() + ".tags", loadedPhoto.getTags())));
+            entries.put("photo.lock", photoItem.lock(SimpleTimestamper.next() + SimpleTimestamper.timeOut(), UUID.randomUUID(), 1L));
+            session.getTransaction().rollback();
+            return entries;
+        }
+    }
+
+    private static AbstractReadWriteAccess.Item item(Object entry) throws ReflectiveOperationException {
+        return CacheEntryCodec.ITEM_CONSTRUCTOR.newInstance(entry, null, SimpleTimestamper.next());
+    }
+
+    private static StandardCacheEntryImpl entityEntry(SessionImplementor session, Object entity) {
+        EntityPersister persister = session.getEntityPersister(null, entity);
+        return new StandardCacheEntryImpl(persister.getPropertyValues(entity), persister, null, session, entity);
+    }
+
+    private static CollectionCacheEntry collectionEntry(SessionImplementor session, String role, Object collection) {
+        PersistentCollection persistentCollection = (PersistentCollection) collection;
+        persistentCollection.forceInitialization();
+        return new CollectionCacheEntry(persistentCollection, session.getFactory().getMetamodel().collectionPersister(role));
+    }
+}
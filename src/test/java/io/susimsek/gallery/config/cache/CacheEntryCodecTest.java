@@ -0,0 +1,148 @@
+package io.susimsek.gallery.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.UUID;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.support.AbstractReadWriteAccess;
+import org.junit.jupiter.api.Test;
+import org.redisson.codec.MarshallingCodec;
+
+class CacheEntryCodecTest {
+
+    private final CacheEntryCodec codec = new CacheEntryCodec();
+
+    @Test
+    void roundTripsColumnValues() throws IOException {
+        Object[] values = {
+            null,
+            "",
+            "żółw 🐢",
+            0L,
+            -1L,
+            Long.MIN_VALUE,
+            Long.MAX_VALUE,
+            42,
+            Integer.MIN_VALUE,
+            true,
+            false,
+            Instant.parse("1969-12-31T23:59:59.999999999Z"),
+            Instant.parse("2021-07-14T19:42:11.123Z"),
+            LocalDate.of(2021, 7, 14),
+        };
+
+        for (Object value : values) {
+            assertThat(roundTrip(value)).isEqualTo(value);
+        }
+        assertThat((byte[]) roundTrip(new byte[] { 1, 2, 3 })).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void roundTripsEntityEntries() throws Exception {
+        Serializable[] state = { "Sunset", null, 3_145_728L, 4000, Instant.parse("2021-07-14T19:42:11Z"), 1051L, 1051L };
+        StandardCacheEntryImpl entry = CacheEntryCodec.ENTITY_ENTRY_CONSTRUCTOR.newInstance(state, "io.susimsek.gallery.domain.Photo", null);
+
+        StandardCacheEntryImpl decoded = (StandardCacheEntryImpl) roundTrip(entry);
+
+        assertThat(decoded.getSubclass()).isEqualTo("io.susimsek.gallery.domain.Photo");
+        assertThat(decoded.getVersion()).isNull();
+        assertThat(decoded.getDisassembledState()).containsExactly(state);
+    }
+
+    @Test
+    void roundTripsCollectionEntries() throws Exception {
+        Serializable[] state = { 1L, 2L, 3L };
+        CollectionCacheEntry entry = CacheEntryCodec.COLLECTION_ENTRY_CONSTRUCTOR.newInstance((Object) state);
+
+        CollectionCacheEntry decoded = (CollectionCacheEntry) roundTrip(entry);
+
+        assertThat(decoded.getState()).containsExactly(state);
+    }
+
+    @Test
+    void roundTripsReadWriteItems() throws Exception {
+        Serializable[] state = { "Holidays 2021", "Two weeks by the sea", Instant.parse("2021-07-14T19:42:11Z"), 1051L };
+        StandardCacheEntryImpl entry = CacheEntryCodec.ENTITY_ENTRY_CONSTRUCTOR.newInstance(state, "io.susimsek.gallery.domain.Album", null);
+        AbstractReadWriteAccess.Item item = CacheEntryCodec.ITEM_CONSTRUCTOR.newInstance(entry, 3, 6_853_416_312_832_000L);
+
+        AbstractReadWriteAccess.Item decoded = (AbstractReadWriteAccess.Item) roundTrip(item);
+
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(item);
+        assertThat(((StandardCacheEntryImpl) decoded.getValue()).getDisassembledState()).containsExactly(state);
+    }
+
+    @Test
+    void roundTripsSoftLocks() throws Exception {
+        AbstractReadWriteAccess.Item item = CacheEntryCodec.ITEM_CONSTRUCTOR.newInstance("value", 3, 6_853_416_312_832_000L);
+        UUID sourceUuid = UUID.randomUUID();
+        AbstractReadWriteAccess.SoftLockImpl lock = item.lock(6_853_416_558_592_000L, sourceUuid, 7L);
+        lock.lock(6_853_416_640_512_000L, sourceUuid, 8L);
+        lock.unlock(6_853_416_312_900_000L);
+
+        AbstractReadWriteAccess.SoftLockImpl decoded = (AbstractReadWriteAccess.SoftLockImpl) roundTrip(lock);
+
+        assertThat(decoded).isEqualTo(lock).usingRecursiveComparison().isEqualTo(lock);
+        assertThat(decoded.isUnlockable(lock)).isTrue();
+    }
+
+    @Test
+    void otherValuesUseTheFallbackCodec() throws IOException {
+        NearCacheInvalidation invalidation = new NearCacheInvalidation("node", "region", 7L);
+
+        assertThat(roundTrip(invalidation)).isEqualTo(invalidation);
+        assertThat(roundTrip(Map.of("key", "value"))).isEqualTo(Map.of("key", "value"));
+    }
+
+    @Test
+    void entityEntriesAreSmallerThanWithMarshalling() throws Exception {
+        Serializable[] state = { "Sunset", "A photo", 3_145_728L, 3000, 4000, Instant.parse("2021-07-14T19:42:11Z"), 1051L };
+        StandardCacheEntryImpl entry = CacheEntryCodec.ENTITY_ENTRY_CONSTRUCTOR.newInstance(state, "io.susimsek.gallery.domain.Photo", null);
+
+        ByteBuf compact = codec.getValueEncoder().encode(entry);
+        ByteBuf marshalled = new MarshallingCodec().getValueEncoder().encode(entry);
+        try {
+            assertThat(compact.readableBytes()).isLessThan(marshalled.readableBytes() / 2);
+        } finally {
+            compact.release();
+            marshalled.release();
+        }
+    }
+
+    @Test
+    void rejectsValuesWrittenByAnotherCodec() {
+        assertThatThrownBy(() -> codec.getValueDecoder().decode(Unpooled.wrappedBuffer(new byte[] { 64, 1, 2 }), null))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void variableLengthNumbersUseOneByteUpTo127() {
+        ByteBuf buf = Unpooled.buffer();
+        CacheEntryCodec.writeVarLong(buf, 127);
+        assertThat(buf.readableBytes()).isEqualTo(1);
+        CacheEntryCodec.writeVarLong(buf, 128);
+        assertThat(buf.readableBytes()).isEqualTo(3);
+
+        assertThat(CacheEntryCodec.readVarLong(buf)).isEqualTo(127);
+        assertThat(CacheEntryCodec.readVarLong(buf)).isEqualTo(128);
+    }
+
+    private Object roundTrip(Object value) throws IOException {
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            Object decoded = codec.getValueDecoder().decode(encoded, null);
+            assertThat(encoded.readableBytes()).isZero();
+            return decoded;
+        } finally {
+            encoded.release();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package io.susimsek.gallery.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Authority;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.repository.AlbumRepository;
+import io.susimsek.gallery.repository.AuthorityRepository;
+import io.susimsek.gallery.repository.TagRepository;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.boot.info.BuildProperties;
+import org.springframework.boot.info.GitProperties;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class CacheStartupRunnerTest {
+
+    private static final String VERSION_KEY = "gallery:cache:version";
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RBucket<String> versionBucket;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private Cache<Object, Object> usersByLogin;
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TagRepository tagRepository;
+
+    @Mock
+    private AuthorityRepository authorityRepository;
+
+    @Mock
+    private AlbumRepository albumRepository;
+
+    private ApplicationProperties applicationProperties;
+
+    @BeforeEach
+    void setUp() {
+        applicationProperties = new ApplicationProperties();
+    }
+
+    @Test
+    void theFirstNodeOfANewBuildClearsTheCaches() {
+        doReturn(versionBucket).when(redissonClient).getBucket(VERSION_KEY, StringCodec.INSTANCE);
+        when(versionBucket.getAndSet("b2c3d4e")).thenReturn("a1b2c3d");
+        when(cacheManager.getCacheNames()).thenReturn(List.of("usersByLogin"));
+        when(cacheManager.getCache("usersByLogin")).thenReturn(usersByLogin);
+
+        assertThat(runner("b2c3d4e").clearCaches()).isTrue();
+
+        verify(usersByLogin).clear();
+        verify(entityManagerFactory.getCache()).evictAll();
+    }
+
+    @Test
+    void nodesOfTheSameBuildKeepTheCaches() {
+        doReturn(versionBucket).when(redissonClient).getBucket(VERSION_KEY, StringCodec.INSTANCE);
+        when(versionBucket.getAndSet("b2c3d4e")).thenReturn("b2c3d4e");
+
+        assertThat(runner("b2c3d4e").clearCaches()).isFalse();
+
+        verifyNoInteractions(cacheManager, entityManagerFactory);
+    }
+
+    @Test
+    void anUnknownBuildClearsTheCachesOnEveryStart() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of());
+
+        assertThat(runner(null).clearCaches()).isTrue();
+
+        verifyNoInteractions(redissonClient);
+        verify(entityManagerFactory.getCache()).evictAll();
+    }
+
+    @Test
+    void clearingCanBeDisabled() {
+        applicationProperties.getCache().getStartup().setClear(ApplicationProperties.CacheClear.NEVER);
+
+        assertThat(runner(null).clearCaches()).isFalse();
+
+        verifyNoInteractions(redissonClient, cacheManager, entityManagerFactory);
+    }
+
+    @Test
+    void theBuildIsTheOneOfThePrefixedKeyGenerator() {
+        Properties git = new Properties();
+        git.setProperty("commit.id.abbrev", "a1b2c3d");
+        Properties build = new Properties();
+        build.setProperty("time", "2021-07-14T19:42:11Z");
+        build.setProperty("version", "0.0.1-SNAPSHOT");
+
+        assertThat(CacheStartupRunner.version(new GitProperties(git), new BuildProperties(build))).isEqualTo("a1b2c3d");
+        assertThat(CacheStartupRunner.version(null, new BuildProperties(build))).isEqualTo("2021-07-14T19:42:11Z");
+        assertThat(CacheStartupRunner.version(null, null)).isNull();
+    }
+
+    @Test
+    void warmUpLoadsTheHotEntitiesInParallel() {
+        secondLevelCacheEnabled(true);
+        CountDownLatch allStarted = new CountDownLatch(3);
+        when(authorityRepository.findAll()).thenAnswer(invocation -> awaitAll(allStarted, List.of(new Authority())));
+        when(tagRepository.findMostUsed(PageRequest.of(0, 1000))).thenAnswer(invocation -> awaitAll(allStarted, List.of(new Tag())));
+        when(albumRepository.findAllByOrderByCreatedDesc(PageRequest.of(0, 500))).thenAnswer(invocation -> awaitAll(allStarted, List.of(new Album())));
+
+        runner("b2c3d4e").warmUp();
+
+        assertThat(allStarted.getCount()).isZero();
+    }
+
+    @Test
+    void warmUpStopsWaitingAfterTheTimeout() {
+        secondLevelCacheEnabled(true);
+        ApplicationProperties.CacheWarmUp warmUp = applicationProperties.getCache().getStartup().getWarmUp();
+        warmUp.setTags(0);
+        warmUp.setAlbums(0);
+        warmUp.setTimeout(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        when(authorityRepository.findAll()).thenAnswer(invocation -> awaitAll(release, List.of()));
+
+        long start = System.nanoTime();
+        runner("b2c3d4e").warmUp();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        release.countDown();
+    }
+
+    @Test
+    void nothingIsWarmedUpWithoutSecondLevelCache() {
+        secondLevelCacheEnabled(false);
+
+        runner("b2c3d4e").warmUp();
+
+        verifyNoInteractions(authorityRepository, tagRepository, albumRepository);
+    }
+
+    private CacheStartupRunner runner(String version) {
+        return new CacheStartupRunner(
+            applicationProperties,
+            redissonClient,
+            cacheManager,
+            entityManagerFactory,
+            transactionManager,
+            tagRepository,
+            authorityRepository,
+            albumRepository,
+            version
+        );
+    }
+
+    private void secondLevelCacheEnabled(boolean enabled) {
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        SessionFactoryOptions options = mock(SessionFactoryOptions.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getSessionFactoryOptions()).thenReturn(options);
+        when(options.isSecondLevelCacheEnabled()).thenReturn(enabled);
+    }
+
+    /**
+     * Count down the latch and wait for it to reach zero, which only happens if the loads run at the same time.
+     */
+    private static <T> T awaitAll(CountDownLatch latch, T result) throws InterruptedException {
+        latch.countDown();
+        latch.await();
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package io.susimsek.gallery.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.buffer.ByteBuf;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.redisson.client.codec.StringCodec;
+
+class Lz4ThresholdCodecTest {
+
+    private final Lz4ThresholdCodec codec = new Lz4ThresholdCodec(StringCodec.INSTANCE, 64);
+
+    @Test
+    void smallValuesAreNotCompressed() throws IOException {
+        String value = "a".repeat(63);
+
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+
+        assertThat(encoded.getByte(0)).isEqualTo(Lz4ThresholdCodec.RAW);
+        assertThat(encoded.readableBytes()).isEqualTo(64);
+        assertThat(decode(encoded)).isEqualTo(value);
+    }
+
+    @Test
+    void largeValuesAreCompressed() throws IOException {
+        String value = "The sun going down behind the lighthouse. ".repeat(50);
+
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+
+        assertThat(encoded.getByte(0)).isEqualTo(Lz4ThresholdCodec.LZ4);
+        assertThat(encoded.readableBytes()).isLessThan(value.length() / 4);
+        assertThat(decode(encoded)).isEqualTo(value);
+    }
+
+    @Test
+    void incompressibleValuesAreKeptAsTheyAre() throws IOException {
+        byte[] random = new byte[1024];
+        new SecureRandom().nextBytes(random);
+        String value = Base64.getEncoder().encodeToString(random);
+
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+
+        assertThat(encoded.getByte(0)).isEqualTo(Lz4ThresholdCodec.RAW);
+        assertThat(decode(encoded)).isEqualTo(value);
+    }
+
+    @Test
+    void compressesTheValuesOfAnotherCodec() throws IOException {
+        Lz4ThresholdCodec compactCodec = new Lz4ThresholdCodec(new CacheEntryCodec(), 64);
+        Object[] values = { 42L, "x".repeat(1000), null };
+
+        for (Object value : values) {
+            ByteBuf encoded = compactCodec.getValueEncoder().encode(value);
+            try {
+                assertThat(compactCodec.getValueDecoder().decode(encoded, null)).isEqualTo(value);
+            } finally {
+                encoded.release();
+            }
+        }
+    }
+
+    private Object decode(ByteBuf encoded) throws IOException {
+        try {
+            return codec.getValueDecoder().decode(encoded, null);
+        } finally {
+            encoded.release();
+        }
+    }
+}
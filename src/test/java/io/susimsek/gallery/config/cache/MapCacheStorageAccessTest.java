@@ -0,0 +1,107 @@
+package io.susimsek.gallery.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.EvictionMode;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+
+@ExtendWith(MockitoExtension.class)
+class MapCacheStorageAccessTest {
+
+    private static final String REGION = "io.susimsek.gallery.domain.Photo";
+
+    @Mock
+    private RMapCache<Object, Object> map;
+
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void boundsTheMapCacheAndPutsWithTheExpirationOfTheRegion() {
+        ApplicationProperties.CacheRegion settings = new ApplicationProperties.CacheRegion();
+        settings.setMaxEntries(1000);
+        settings.setEviction(EvictionMode.LFU);
+        settings.setTimeToLive(Duration.ofHours(1));
+        settings.setTimeToIdle(Duration.ofMinutes(15));
+
+        MapCacheStorageAccess storage = new MapCacheStorageAccess(REGION, map, settings, meterRegistry);
+        storage.putIntoCache(1L, "entry", null);
+        storage.putFromLoad(2L, "entry", null);
+
+        verify(map).setMaxSize(1000, EvictionMode.LFU);
+        verify(map).fastPut(1L, "entry", 3_600_000, TimeUnit.MILLISECONDS, 900_000, TimeUnit.MILLISECONDS);
+        verify(map).fastPut(2L, "entry", 3_600_000, TimeUnit.MILLISECONDS, 900_000, TimeUnit.MILLISECONDS);
+        assertThat(storage.getPuts().count()).isEqualTo(2);
+    }
+
+    @Test
+    void unboundedRegionsKeepEntriesUntilTheyExpire() {
+        ApplicationProperties.CacheRegion settings = new ApplicationProperties.CacheRegion();
+        settings.setTimeToLive(Duration.ofMinutes(10));
+
+        new MapCacheStorageAccess(REGION, map, settings, meterRegistry).putIntoCache(1L, "entry", null);
+
+        verify(map, never()).setMaxSize(anyInt(), any());
+        verify(map).fastPut(1L, "entry", 600_000, TimeUnit.MILLISECONDS, 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        when(map.get(1L)).thenReturn("entry");
+        MapCacheStorageAccess storage = new MapCacheStorageAccess(REGION, map, new ApplicationProperties.CacheRegion(), meterRegistry);
+
+        assertThat(storage.getFromCache(1L, null)).isEqualTo("entry");
+        assertThat(storage.getFromCache(2L, null)).isNull();
+
+        assertThat(meterRegistry.get(MapCacheStorageAccess.GETS).tags("cache", REGION, "result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MapCacheStorageAccess.GETS).tags("cache", REGION, "result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void clearingTheRegionKeepsItsMaxSize() {
+        ApplicationProperties.CacheRegion settings = new ApplicationProperties.CacheRegion();
+        settings.setMaxEntries(10);
+        MapCacheStorageAccess storage = new MapCacheStorageAccess(REGION, map, settings, meterRegistry);
+
+        storage.evictData();
+
+        verify(map).clear();
+        verify(map, times(2)).setMaxSize(10, EvictionMode.LRU);
+    }
+
+    @Test
+    void regionsWithoutExpirationUseTheDefaultTimeToLive() {
+        ApplicationProperties.Cache properties = new ApplicationProperties.Cache();
+        ApplicationProperties.CacheRegion idle = new ApplicationProperties.CacheRegion();
+        idle.setTimeToIdle(Duration.ofMinutes(30));
+        properties.getRegions().put("idle", idle);
+        ApplicationProperties.CacheRegion bounded = new ApplicationProperties.CacheRegion();
+        bounded.setMaxEntries(100);
+        properties.getRegions().put("bounded", bounded);
+        RedisRegionFactory regionFactory = new RedisRegionFactory(properties, Duration.ofHours(1), mock(RedissonClient.class), meterRegistry);
+
+        assertThat(regionFactory.settings("idle").getTimeToLive()).isNull();
+        assertThat(regionFactory.settings("idle").getTimeToIdle()).isEqualTo(Duration.ofMinutes(30));
+        assertThat(regionFactory.settings("bounded").getTimeToLive()).isEqualTo(Duration.ofHours(1));
+        assertThat(regionFactory.settings("bounded").getMaxEntries()).isEqualTo(100);
+        assertThat(regionFactory.settings("other").getTimeToLive()).isEqualTo(Duration.ofHours(1));
+        assertThat(regionFactory.settings("other").getMaxEntries()).isZero();
+    }
+}
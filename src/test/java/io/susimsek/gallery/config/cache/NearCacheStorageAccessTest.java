@@ -0,0 +1,283 @@
+package io.susimsek.gallery.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.hibernate.cache.cfg.spi.CollectionDataCachingConfig;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.cfg.spi.EntityDataCachingConfig;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.DomainDataRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.EntityNonStrictReadWriteAccess;
+import org.hibernate.cache.spi.support.EntityReadWriteAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+
+@ExtendWith(MockitoExtension.class)
+class NearCacheStorageAccessTest {
+
+    private static final String REGION = "io.susimsek.gallery.domain.Tag";
+
+    @Mock
+    private DomainDataStorageAccess remote;
+
+    private final List<Object[]> published = new ArrayList<>();
+
+    private MeterRegistry meterRegistry;
+
+    private NearCacheStorageAccess nearCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        nearCache =
+            new NearCacheStorageAccess(
+                REGION,
+                remote,
+                new ApplicationProperties.NearCacheRegion(),
+                (region, key) -> published.add(new Object[] { region, key }),
+                meterRegistry
+            );
+    }
+
+    @Test
+    void readsFromRedisOnceThenLocally() {
+        when(remote.getFromCache("key", null)).thenReturn("value");
+
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("value");
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("value");
+
+        verify(remote, times(1)).getFromCache("key", null);
+        assertThat(gets("local", "hit")).isEqualTo(1);
+        assertThat(gets("local", "miss")).isEqualTo(1);
+        assertThat(gets("remote", "hit")).isEqualTo(1);
+        assertThat(gets("remote", "miss")).isZero();
+    }
+
+    @Test
+    void missesAreNotKeptLocally() {
+        assertThat(nearCache.getFromCache("key", null)).isNull();
+        assertThat(nearCache.getFromCache("key", null)).isNull();
+
+        verify(remote, times(2)).getFromCache("key", null);
+        assertThat(gets("remote", "miss")).isEqualTo(2);
+    }
+
+    @Test
+    void putWritesBothTiersAndPublishes() {
+        nearCache.putIntoCache("key", "value", null);
+
+        verify(remote).putIntoCache("key", "value", null);
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("value");
+        verify(remote, never()).getFromCache(any(), any());
+        assertThat(published).containsExactly(new Object[] { REGION, "key" });
+    }
+
+    @Test
+    void putFromLoadIsNotPublished() {
+        nearCache.putFromLoad("key", "value", null);
+
+        verify(remote).putFromLoad("key", "value", null);
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("value");
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void readWriteEntriesAreOnlyKeptInRedis() {
+        // two nodes sharing the Redis tier, which never receive each other's invalidations
+        MapStorageAccess redis = new MapStorageAccess();
+        EntityReadWriteAccess node1 = new EntityReadWriteAccess(region(), DefaultCacheKeysFactory.INSTANCE, nearCache(redis), cachingConfig());
+        EntityReadWriteAccess node2 = new EntityReadWriteAccess(region(), DefaultCacheKeysFactory.INSTANCE, nearCache(redis), cachingConfig());
+
+        assertThat(node1.putFromLoad(session(2), "key", "loaded", null)).isTrue();
+        assertThat(node2.get(session(3), "key")).isEqualTo("loaded");
+        SoftLock lock = node1.lockItem(session(4), "key", null);
+
+        // the second node sees the lock in Redis rather than the item it read before, and does not overwrite it
+        assertThat(node2.get(session(5), "key")).isNull();
+        assertThat(node2.putFromLoad(session(5), "key", "stale", null)).isFalse();
+        assertThat(redis.entries.get("key")).isEqualTo(lock);
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void nonstrictLoadsAreKeptLocallyWithoutPublishing() {
+        MapStorageAccess redis = new MapStorageAccess();
+        NearCacheStorageAccess storage = nearCache(redis);
+        EntityNonStrictReadWriteAccess access = new EntityNonStrictReadWriteAccess(
+            region(),
+            DefaultCacheKeysFactory.INSTANCE,
+            storage,
+            cachingConfig()
+        );
+
+        access.putFromLoad(session(2), "key", "loaded", null);
+        redis.entries.clear();
+
+        assertThat(access.get(session(3), "key")).isEqualTo("loaded");
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void regionFactoryLeavesReadWriteRegionsInRedis() {
+        DomainDataRegionConfig readWrite = mock(DomainDataRegionConfig.class);
+        EntityDataCachingConfig entityCaching = cachingConfig();
+        when(entityCaching.getAccessType()).thenReturn(AccessType.READ_WRITE);
+        doReturn(List.of(entityCaching)).when(readWrite).getEntityCaching();
+        DomainDataRegionConfig nonstrict = mock(DomainDataRegionConfig.class);
+        CollectionDataCachingConfig collectionCaching = mock(CollectionDataCachingConfig.class);
+        when(collectionCaching.getAccessType()).thenReturn(AccessType.NONSTRICT_READ_WRITE);
+        doReturn(List.of(collectionCaching)).when(nonstrict).getCollectionCaching();
+
+        assertThat(RedisRegionFactory.hasReadWriteAccess(readWrite)).isTrue();
+        assertThat(RedisRegionFactory.hasReadWriteAccess(nonstrict)).isFalse();
+    }
+
+    @Test
+    void removeAndClearArePublished() {
+        nearCache.putFromLoad("key", "value", null);
+
+        nearCache.removeFromCache("key", null);
+        nearCache.evictData();
+
+        assertThat(published).containsExactly(new Object[] { REGION, "key" }, new Object[] { REGION, null });
+        assertThat(nearCache.getFromCache("key", null)).isNull();
+    }
+
+    @Test
+    void invalidationFromAnotherNodeDropsLocalEntry() {
+        nearCache.putFromLoad("key", "old", null);
+        when(remote.getFromCache("key", null)).thenReturn("new");
+
+        nearCache.invalidateLocal("key");
+
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("new");
+        assertThat(published).isEmpty();
+        assertThat(meterRegistry.get(NearCacheStorageAccess.INVALIDATIONS).functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void valueReadDuringAnInvalidationIsNotKeptLocally() {
+        when(remote.getFromCache("key", null))
+            .thenAnswer(
+                invocation -> {
+                    nearCache.invalidateLocal("key");
+                    return "old";
+                }
+            )
+            .thenReturn("new");
+
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("old");
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("new");
+    }
+
+    @Test
+    void regionFactoryIgnoresItsOwnInvalidations() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getTopic(any())).thenReturn(mock(RTopic.class));
+        RedisRegionFactory regionFactory = new RedisRegionFactory(
+            new ApplicationProperties.Cache(),
+            Duration.ofHours(1),
+            redissonClient,
+            meterRegistry
+        );
+        regionFactory.nearCaches.put(REGION, nearCache);
+        nearCache.putFromLoad("key", "value", null);
+
+        regionFactory.onInvalidation(new NearCacheInvalidation(regionFactory.nodeId, REGION, "key"));
+        assertThat(nearCache.getFromCache("key", null)).isEqualTo("value");
+
+        regionFactory.onInvalidation(new NearCacheInvalidation("another-node", REGION, "key"));
+        assertThat(nearCache.getFromCache("key", null)).isNull();
+    }
+
+    private NearCacheStorageAccess nearCache(DomainDataStorageAccess redis) {
+        return new NearCacheStorageAccess(
+            REGION,
+            redis,
+            new ApplicationProperties.NearCacheRegion(),
+            (region, key) -> published.add(new Object[] { region, key }),
+            new SimpleMeterRegistry()
+        );
+    }
+
+    private static DomainDataRegion region() {
+        RegionFactory regionFactory = mock(RegionFactory.class);
+        lenient().when(regionFactory.nextTimestamp()).thenReturn(1L);
+        lenient().when(regionFactory.getTimeout()).thenReturn(60_000L);
+        DomainDataRegion region = mock(DomainDataRegion.class);
+        lenient().when(region.getRegionFactory()).thenReturn(regionFactory);
+        return region;
+    }
+
+    private static EntityDataCachingConfig cachingConfig() {
+        return mock(EntityDataCachingConfig.class);
+    }
+
+    private static SharedSessionContractImplementor session(long transactionStart) {
+        SharedSessionContractImplementor session = mock(SharedSessionContractImplementor.class);
+        lenient().when(session.getTransactionStartTimestamp()).thenReturn(transactionStart);
+        return session;
+    }
+
+    private double gets(String tier, String result) {
+        return meterRegistry.get(NearCacheStorageAccess.GETS).tags("cache", REGION, "tier", tier, "result", result).meter().measure().iterator().next().getValue();
+    }
+
+    /**
+     * The Redis tier of a region, shared by the nodes.
+     */
+    private static class MapStorageAccess implements DomainDataStorageAccess {
+
+        final Map<Object, Object> entries = new HashMap<>();
+
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            entries.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return entries.containsKey(key);
+        }
+
+        @Override
+        public void evictData() {
+            entries.clear();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            entries.remove(key);
+        }
+
+        @Override
+        public void release() {
+            entries.clear();
+        }
+    }
+}
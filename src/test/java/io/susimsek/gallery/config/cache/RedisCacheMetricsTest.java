@@ -0,0 +1,124 @@
+package io.susimsek.gallery.config.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.util.List;
+import java.util.Map;
+import javax.cache.CacheManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+
+@ExtendWith(MockitoExtension.class)
+class RedisCacheMetricsTest {
+
+    private static final String CACHE = "usersByLogin";
+
+    private static final String REGION = "io.susimsek.gallery.domain.Photo";
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private RMap<Object, Object> map;
+
+    @Mock
+    private RScoredSortedSet<Object> timeouts;
+
+    @Mock
+    private RMapCache<Object, Object> mapCache;
+
+    @Mock
+    private RedisRegionFactory regionFactory;
+
+    private MeterRegistry meterRegistry;
+
+    private RedisCacheMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new RedisCacheMetrics(redissonClient, cacheManager, regionFactory);
+    }
+
+    @Test
+    void measuresNothingBeforeBeingBound() {
+        metrics.refresh();
+
+        verifyNoInteractions(cacheManager, redissonClient, regionFactory);
+    }
+
+    @Test
+    void sumsTheMemoryOfTheEntriesAndOfTheirExpirations() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of(CACHE));
+        when(redissonClient.getMap(CACHE)).thenReturn(map);
+        when(redissonClient.getScoredSortedSet(RedisCacheMetrics.timeoutSetName(CACHE))).thenReturn(timeouts);
+        when(map.sizeInMemory()).thenReturn(4000L, 1000L);
+        when(timeouts.sizeInMemory()).thenReturn(200L, 100L);
+        when(map.size()).thenReturn(20, 5);
+        metrics.bindTo(meterRegistry);
+
+        metrics.refresh();
+
+        assertThat(memory()).isEqualTo(4200);
+        assertThat(entries()).isEqualTo(20);
+
+        metrics.refresh();
+
+        assertThat(memory()).isEqualTo(1100);
+        assertThat(entries()).isEqualTo(5);
+        assertThat(meterRegistry.find(RedisCacheMetrics.MEMORY).gauges()).hasSize(1);
+    }
+
+    @Test
+    void keepsTheLastValueWhenRedisFails() {
+        when(cacheManager.getCacheNames()).thenReturn(List.of(CACHE));
+        when(redissonClient.getMap(CACHE)).thenReturn(map);
+        when(redissonClient.getScoredSortedSet(RedisCacheMetrics.timeoutSetName(CACHE))).thenReturn(timeouts);
+        when(map.sizeInMemory()).thenReturn(4000L).thenThrow(new IllegalStateException("Redis is down"));
+        when(timeouts.sizeInMemory()).thenReturn(200L);
+        when(map.size()).thenReturn(20);
+        metrics.bindTo(meterRegistry);
+
+        metrics.refresh();
+        metrics.refresh();
+
+        assertThat(memory()).isEqualTo(4200);
+        assertThat(entries()).isEqualTo(20);
+    }
+
+    @Test
+    void measuresTheMapCachesOfTheHibernateRegions() {
+        when(mapCache.sizeInMemory()).thenReturn(9000L);
+        when(mapCache.size()).thenReturn(30);
+        MapCacheStorageAccess region = new MapCacheStorageAccess(REGION, mapCache, new ApplicationProperties.CacheRegion(), meterRegistry);
+        when(regionFactory.getRegions()).thenReturn(Map.of(REGION, region));
+        metrics.bindTo(meterRegistry);
+
+        metrics.refresh();
+
+        assertThat(meterRegistry.get(RedisCacheMetrics.MEMORY).tag("cache", REGION).gauge().value()).isEqualTo(9000);
+        assertThat(meterRegistry.get(RedisCacheMetrics.ENTRIES).tag("cache", REGION).gauge().value()).isEqualTo(30);
+    }
+
+    private double memory() {
+        return meterRegistry.get(RedisCacheMetrics.MEMORY).tag("cache", CACHE).gauge().value();
+    }
+
+    private double entries() {
+        return meterRegistry.get(RedisCacheMetrics.ENTRIES).tag("cache", CACHE).gauge().value();
+    }
+}
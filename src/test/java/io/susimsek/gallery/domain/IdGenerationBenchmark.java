@@ -0,0 +1,178 @@
+package io.susimsek.gallery.domain;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.MappingException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Insert throughput of bulk photo and tag creation, with JDBC batching on, for each way of allocating ids:
+ * <ul>
+ *     <li>{@code per-insert}: a {@code nextval} for every row;</li>
+ *     <li>{@code shared-pooled}: the previous mapping, every entity on {@code sequence_generator} with the pooled optimizer;</li>
+ *     <li>{@code pooled-lo}: the current mapping, a sequence per entity read with the pooled-lo optimizer.</li>
+ * </ul>
+ * Runs against an in-memory H2 database, where a round trip is nearly free; give a PostgreSQL database with
+ * {@code -Dbenchmark.jdbc-url=jdbc:postgresql://localhost:5432/benchmark -Dbenchmark.jdbc-user=... -Dbenchmark.jdbc-password=...}
+ * to measure with real round trips. Run with {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.susimsek.gallery.domain.IdGenerationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    private static final int PHOTOS = 500;
+
+    private static final int TAGS = 500;
+
+    private static final String MAPPING =
+        "<hibernate-mapping default-access=\"field\">" +
+        "<class name=\"" + BenchmarkPhoto.class.getName() + "\" table=\"photo\">" +
+        "<id name=\"id\" type=\"long\"><generator class=\"" + BenchmarkSequenceGenerator.class.getName() + "\"/></id>" +
+        "<property name=\"title\"/>" +
+        "</class>" +
+        "<class name=\"" + BenchmarkTag.class.getName() + "\" table=\"tag\">" +
+        "<id name=\"id\" type=\"long\"><generator class=\"" + BenchmarkSequenceGenerator.class.getName() + "\"/></id>" +
+        "<property name=\"name\"/>" +
+        "</class>" +
+        "</hibernate-mapping>";
+
+    @Param({ "per-insert", "shared-pooled", "pooled-lo" })
+    public String allocation;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void createSessionFactory() {
+        BenchmarkSequenceGenerator.allocation = allocation;
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+            .applySetting(AvailableSettings.URL, System.getProperty("benchmark.jdbc-url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"))
+            .applySetting(AvailableSettings.USER, System.getProperty("benchmark.jdbc-user", "sa"))
+            .applySetting(AvailableSettings.PASS, System.getProperty("benchmark.jdbc-password", ""))
+            .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+            .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, 25)
+            .applySetting(AvailableSettings.ORDER_INSERTS, true)
+            .applySetting(AvailableSettings.POOL_SIZE, 1)
+            .build();
+        sessionFactory = new MetadataSources(registry)
+            .addInputStream(new ByteArrayInputStream(MAPPING.getBytes(StandardCharsets.UTF_8)))
+            .buildMetadata()
+            .buildSessionFactory();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeSessionFactory() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PHOTOS + TAGS)
+    public void insertPhotosAndTags() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            for (int i = 0; i < PHOTOS; i++) {
+                session.persist(new BenchmarkPhoto(null, "photo " + i));
+            }
+            for (int i = 0; i < TAGS; i++) {
+                session.persist(new BenchmarkTag(null, "tag " + i));
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IdGenerationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * {@link SequenceStyleGenerator} configured after the allocation under test instead of fixed annotation values.
+     */
+    public static class BenchmarkSequenceGenerator extends SequenceStyleGenerator {
+
+        static volatile String allocation;
+
+        @Override
+        public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+            String table = params.getProperty(PersistentIdentifierGenerator.TABLE);
+            switch (allocation) {
+                case "per-insert":
+                    params.setProperty(SEQUENCE_PARAM, table + "_seq");
+                    params.setProperty(INCREMENT_PARAM, "1");
+                    break;
+                case "shared-pooled":
+                    params.setProperty(SEQUENCE_PARAM, "sequence_generator");
+                    params.setProperty(INCREMENT_PARAM, "50");
+                    params.setProperty(OPT_PARAM, "pooled");
+                    break;
+                default:
+                    params.setProperty(SEQUENCE_PARAM, table + "_seq");
+                    params.setProperty(INCREMENT_PARAM, "50");
+                    params.setProperty(OPT_PARAM, "pooled-lo");
+            }
+            super.configure(type, params, serviceRegistry);
+        }
+    }
+
+    /**
+     * Mapped in {@link #MAPPING} rather than annotated, so the application's entity scan never picks it up.
+     */
+    public static class BenchmarkPhoto {
+
+        Long id;
+
+        String title;
+
+        protected BenchmarkPhoto() {}
+
+        BenchmarkPhoto(Long id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+
+    public static class BenchmarkTag {
+
+        Long id;
+
+        String name;
+
+        protected BenchmarkTag() {}
+
+        BenchmarkTag(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
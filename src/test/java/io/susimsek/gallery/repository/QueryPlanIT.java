@@ -0,0 +1,217 @@
+package io.susimsek.gallery.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Query plan regression tests: the photo and album list queries must be answered from indexes.
+ * <p>
+ * Runs the Liquibase changelogs against a PostgreSQL container seeded with enough rows that a sequential scan would
+ * be chosen over an unsuitable index, then checks the {@code EXPLAIN} output of queries shaped like the ones
+ * {@link io.susimsek.gallery.service.PhotoQueryService} and {@link io.susimsek.gallery.service.AlbumQueryService} generate.
+ */
+class QueryPlanIT {
+
+    private static final int USERS = 100;
+
+    private static final int ALBUMS = 2_000;
+
+    private static final int PHOTOS = 200_000;
+
+    private static final int TAGS = 500;
+
+    private static final long FIRST_ID = 10_000;
+
+    private static final String PHOTO_SUMMARY_COLUMNS =
+        "p.id, p.title, p.description, p.image_content_type, p.image_size, p.height, p.width, p.taken, p.uploaded, a.id, a.title";
+
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:13.3");
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void createAndSeedDatabase() throws Exception {
+        postgres.start();
+        connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        new Liquibase("config/liquibase/master.xml", new ClassLoaderResourceAccessor(), database)
+            .update(new Contexts("test"), new LabelExpression());
+        connection.setAutoCommit(true);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                "INSERT INTO sys_user (id, login, activated, created_by) " +
+                "SELECT " + FIRST_ID + " + i, 'seed-' || i, true, 'system' FROM generate_series(1, " + USERS + ") i"
+            );
+            statement.execute(
+                "INSERT INTO album (id, title, created, user_id) " +
+                "SELECT " + FIRST_ID + " + i, 'album ' || i, timestamp '2015-01-01' + i * interval '1 hour', " +
+                FIRST_ID + " + 1 + i % " + USERS + " FROM generate_series(1, " + ALBUMS + ") i"
+            );
+            statement.execute(
+                "INSERT INTO tag (id, name) SELECT " + FIRST_ID + " + i, 'tag ' || i FROM generate_series(1, " + TAGS + ") i"
+            );
+            // one photo in twenty has no date taken, every photo has two tags
+            statement.execute(
+                "INSERT INTO photo (id, title, image_content_type, image_key, image_size, height, width, taken, uploaded, album_id) " +
+                "SELECT " + FIRST_ID + " + i, 'photo ' || i, 'image/jpeg', md5(i::text), 1000, 600, 800, " +
+                "CASE WHEN i % 20 = 0 THEN NULL ELSE timestamp '2015-01-01' + i * interval '17 minutes' END, " +
+                "timestamp '2021-01-01' + i * interval '1 minute', " +
+                FIRST_ID + " + 1 + i % " + ALBUMS + " FROM generate_series(1, " + PHOTOS + ") i"
+            );
+            statement.execute(
+                "INSERT INTO rel_photo__tag (photo_id, tag_id) " +
+                "SELECT " + FIRST_ID + " + i, " + FIRST_ID + " + 1 + i % " + TAGS + " FROM generate_series(1, " + PHOTOS + ") i " +
+                "UNION ALL SELECT " + FIRST_ID + " + i, " + FIRST_ID + " + 1 + (i + 7) % " + TAGS + " FROM generate_series(1, " + PHOTOS + ") i"
+            );
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @AfterAll
+    static void stopDatabase() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+        postgres.stop();
+    }
+
+    @Test
+    void albumTimelineUsesAlbumTakenIndex() throws Exception {
+        JsonNode plan = explain(
+            "SELECT " + PHOTO_SUMMARY_COLUMNS + " FROM photo p LEFT OUTER JOIN album a ON p.album_id = a.id " +
+            "WHERE a.id = " + (FIRST_ID + 42) + " AND p.taken IS NOT NULL ORDER BY p.taken DESC, p.id DESC LIMIT 21"
+        );
+
+        assertThat(indexNames(plan)).contains("idx_photo__album_id_taken_id");
+        assertThat(sequentialScans(plan)).doesNotContain("photo");
+        assertThat(nodeTypes(plan)).doesNotContain("Sort");
+    }
+
+    @Test
+    void albumTimelineNextPageSeeksInAlbumTakenIndex() throws Exception {
+        String after = "timestamp '2018-01-01'";
+        JsonNode plan = explain(
+            "SELECT " + PHOTO_SUMMARY_COLUMNS + " FROM photo p LEFT OUTER JOIN album a ON p.album_id = a.id " +
+            "WHERE a.id = " + (FIRST_ID + 42) + " AND p.taken IS NOT NULL AND p.taken <= " + after + " " +
+            "AND (p.taken < " + after + " OR p.taken = " + after + " AND p.id < " + (FIRST_ID + 100_000) + ") " +
+            "ORDER BY p.taken DESC, p.id DESC LIMIT 21"
+        );
+
+        assertThat(indexNames(plan)).contains("idx_photo__album_id_taken_id");
+        assertThat(sequentialScans(plan)).doesNotContain("photo");
+    }
+
+    @Test
+    void photosByTakenUseTakenIndex() throws Exception {
+        String after = "timestamp '2018-01-01'";
+        JsonNode plan = explain(
+            "SELECT " + PHOTO_SUMMARY_COLUMNS + " FROM photo p LEFT OUTER JOIN album a ON p.album_id = a.id " +
+            "WHERE p.taken IS NOT NULL AND p.taken <= " + after + " " +
+            "AND (p.taken < " + after + " OR p.taken = " + after + " AND p.id < " + (FIRST_ID + 100_000) + ") " +
+            "ORDER BY p.taken DESC, p.id DESC LIMIT 21"
+        );
+
+        assertThat(indexNames(plan)).contains("idx_photo__taken_id");
+        assertThat(sequentialScans(plan)).doesNotContain("photo");
+    }
+
+    @Test
+    void photosUploadedInRangeUseUploadedIndex() throws Exception {
+        JsonNode plan = explain(
+            "SELECT " + PHOTO_SUMMARY_COLUMNS + " FROM photo p LEFT OUTER JOIN album a ON p.album_id = a.id " +
+            "WHERE p.uploaded >= timestamp '2021-02-01' AND p.uploaded < timestamp '2021-02-02' ORDER BY p.uploaded ASC, p.id ASC LIMIT 20"
+        );
+
+        assertThat(indexNames(plan)).contains("idx_photo__uploaded_id");
+        assertThat(sequentialScans(plan)).doesNotContain("photo");
+    }
+
+    @Test
+    void countPhotosByTagUsesTagIndex() throws Exception {
+        JsonNode plan = explain(
+            "SELECT count(p.id) FROM photo p LEFT OUTER JOIN rel_photo__tag r ON p.id = r.photo_id " +
+            "LEFT OUTER JOIN tag t ON r.tag_id = t.id WHERE t.id = " + (FIRST_ID + 7)
+        );
+
+        assertThat(indexNames(plan)).contains("idx_rel_photo__tag__tag_id_photo_id");
+        assertThat(sequentialScans(plan)).doesNotContain("photo", "rel_photo__tag");
+    }
+
+    @Test
+    void albumsOfUserUseUserIndex() throws Exception {
+        JsonNode plan = explain(
+            "SELECT a.* FROM album a LEFT OUTER JOIN sys_user u ON a.user_id = u.id WHERE u.id = " + (FIRST_ID + 3) + " ORDER BY a.id ASC"
+        );
+
+        assertThat(indexNames(plan)).contains("idx_album__user_id");
+        assertThat(sequentialScans(plan)).doesNotContain("album");
+    }
+
+    @Test
+    void albumsByCreatedUseCreatedIndex() throws Exception {
+        JsonNode plan = explain("SELECT a.* FROM album a WHERE a.created IS NOT NULL ORDER BY a.created DESC, a.id DESC LIMIT 21");
+
+        assertThat(indexNames(plan)).contains("idx_album__created_id");
+        assertThat(nodeTypes(plan)).doesNotContain("Sort");
+    }
+
+    private static JsonNode explain(String sql) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery("EXPLAIN (FORMAT JSON) " + sql)) {
+            resultSet.next();
+            return objectMapper.readTree(resultSet.getString(1)).get(0).get("Plan");
+        }
+    }
+
+    private static List<String> indexNames(JsonNode plan) {
+        return collect(plan, "Index Name", new ArrayList<>());
+    }
+
+    private static List<String> nodeTypes(JsonNode plan) {
+        return collect(plan, "Node Type", new ArrayList<>());
+    }
+
+    private static List<String> sequentialScans(JsonNode plan) {
+        List<String> relations = new ArrayList<>();
+        if ("Seq Scan".equals(plan.path("Node Type").asText())) {
+            relations.add(plan.path("Relation Name").asText());
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            relations.addAll(sequentialScans(child));
+        }
+        return relations;
+    }
+
+    private static List<String> collect(JsonNode plan, String field, List<String> values) {
+        if (plan.has(field)) {
+            values.add(plan.get(field).asText());
+        }
+        for (JsonNode child : plan.path("Plans")) {
+            collect(child, field, values);
+        }
+        return values;
+    }
+}
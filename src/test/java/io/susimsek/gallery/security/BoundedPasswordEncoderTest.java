@@ -0,0 +1,107 @@
+package io.susimsek.gallery.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.shutdown();
+    }
+
+    @Test
+    void hashesOnThePool() {
+        encoder = new BoundedPasswordEncoder(new ThreadRecordingEncoder(), 1, 1, meterRegistry);
+
+        assertThat(encoder.encode("password")).isEqualTo("password@gallery-password-1");
+        assertThat(encoder.matches("password", "password")).isTrue();
+        assertThat(encoder.upgradeEncoding("password")).isTrue();
+    }
+
+    @Test
+    void rejectsHashesBeyondTheQueue() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, meterRegistry);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("running"));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("queued"));
+        while (meterRegistry.get("executor.queued").gauge().value() < 1) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> encoder.matches("rejected", "rejected")).isInstanceOf(PasswordHashingBusyException.class);
+
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.REJECTED).counter().count()).isEqualTo(1);
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).isEqualTo("running");
+        assertThat(queued.get(10, TimeUnit.SECONDS)).isEqualTo("queued");
+    }
+
+    @Test
+    void rethrowsTheFailuresOfTheDelegate() {
+        encoder = new BoundedPasswordEncoder(new ThreadRecordingEncoder(), 1, 1, meterRegistry);
+
+        assertThatThrownBy(() -> encoder.encode(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static class ThreadRecordingEncoder implements PasswordEncoder {
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            if (rawPassword == null) {
+                throw new IllegalArgumentException("rawPassword cannot be null");
+            }
+            return rawPassword + "@" + Thread.currentThread().getName();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return true;
+        }
+    }
+
+    private class BlockingEncoder implements PasswordEncoder {
+
+        @SuppressWarnings("deprecation")
+        private final PasswordEncoder delegate = NoOpPasswordEncoder.getInstance();
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return delegate.matches(rawPassword, encodedPassword);
+        }
+    }
+}
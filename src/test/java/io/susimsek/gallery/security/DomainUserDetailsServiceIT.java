@@ -11,8 +11,11 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -35,6 +38,9 @@ class DomainUserDetailsServiceIT {
     @Autowired
     private UserDetailsService domainUserDetailsService;
 
+    @Autowired
+    private AuthenticationManagerBuilder authenticationManagerBuilder;
+
     @BeforeEach
     public void init() {
         User userOne = new User();
@@ -108,4 +114,16 @@ class DomainUserDetailsServiceIT {
         assertThatExceptionOfType(UserNotActivatedException.class)
             .isThrownBy(() -> domainUserDetailsService.loadUserByUsername(USER_THREE_LOGIN));
     }
+
+    @Test
+    void assertThatABCryptHashIsUpgradedOnSignIn() throws Exception {
+        User userOne = userRepository.findOneByLogin(USER_ONE_LOGIN).orElseThrow();
+        userOne.setPassword(new BCryptPasswordEncoder().encode("password"));
+        userRepository.saveAndFlush(userOne);
+
+        authenticationManagerBuilder.getObject().authenticate(new UsernamePasswordAuthenticationToken(USER_ONE_LOGIN, "password"));
+
+        assertThat(userRepository.findOneByLogin(USER_ONE_LOGIN).orElseThrow().getPassword()).startsWith("{argon2}");
+        authenticationManagerBuilder.getObject().authenticate(new UsernamePasswordAuthenticationToken(USER_ONE_LOGIN, "password"));
+    }
 }
@@ -0,0 +1,184 @@
+package io.susimsek.gallery.security.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.security.AuthoritiesConstants;
+import java.io.IOException;
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import tech.jhipster.config.JHipsterProperties;
+
+/**
+ * Time for {@link JWTFilter} to authenticate a request, with and without {@code application.security.token-cache}.
+ * <p>
+ * The requests mix the tokens of clients as a node sees them: 90% bear one of the tokens of 1000 signed in users, 5%
+ * the token of a user who just signed in, sent for the first time, and 5% an expired or forged token. Each iteration
+ * starts with the tokens of the signed in users verified once. Run with {@code ./mvnw test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=io.susimsek.gallery.security.jwt.JWTFilterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTFilterBenchmark {
+
+    private static final String BASE64_SECRET =
+        "fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8";
+
+    private static final int SIGNED_IN_USERS = 1000;
+
+    /**
+     * More tokens of new users than an iteration sends.
+     */
+    private static final int NEW_USERS = 100_000;
+
+    private static final int INVALID_TOKENS = 100;
+
+    private static final FilterChain CHAIN = (request, response) -> {};
+
+    @Param({ "true", "false" })
+    public boolean tokenCache;
+
+    private TokenProvider tokenProvider;
+
+    private JWTFilter jwtFilter;
+
+    private String[] signedIn;
+
+    private String[] newUsers;
+
+    private String[] invalid;
+
+    /**
+     * The requests, in the order they are sent: the index of a token, or -1 for the token of a new user.
+     */
+    private int[] requests;
+
+    private int requestCursor;
+
+    private int newUserCursor;
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Setup(Level.Trial)
+    public void createTokens() {
+        // every invalid token is logged, writing to the console would be most of what is measured
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(TokenProvider.class)).setLevel(ch.qos.logback.classic.Level.WARN);
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(BASE64_SECRET);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getTokenCache().setEnabled(tokenCache);
+        tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties, new TokenRevocationList(applicationProperties));
+        jwtFilter = new JWTFilter(tokenProvider);
+
+        signedIn = new String[SIGNED_IN_USERS];
+        for (int i = 0; i < signedIn.length; i++) {
+            signedIn[i] = token("user-" + i);
+        }
+        newUsers = new String[NEW_USERS];
+        for (int i = 0; i < newUsers.length; i++) {
+            newUsers[i] = token("new-user-" + i);
+        }
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(BASE64_SECRET));
+        Key otherKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode("X" + BASE64_SECRET));
+        invalid = new String[INVALID_TOKENS];
+        for (int i = 0; i < invalid.length; i++) {
+            // half expired an hour ago, half signed with another key
+            boolean expired = i % 2 == 0;
+            invalid[i] =
+                Jwts
+                    .builder()
+                    .setSubject("intruder-" + i)
+                    .claim(TokenProvider.AUTHORITIES_KEY, AuthoritiesConstants.USER)
+                    .signWith(expired ? key : otherKey, SignatureAlgorithm.HS512)
+                    .setExpiration(new Date(System.currentTimeMillis() + (expired ? -3_600_000 : 3_600_000)))
+                    .compact();
+        }
+
+        Random random = new Random(42);
+        requests = new int[10_000];
+        for (int i = 0; i < requests.length; i++) {
+            int kind = random.nextInt(100);
+            if (kind < 90) {
+                requests[i] = random.nextInt(SIGNED_IN_USERS);
+            } else if (kind < 95) {
+                requests[i] = -1;
+            } else {
+                requests[i] = SIGNED_IN_USERS + random.nextInt(INVALID_TOKENS);
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void signIn() {
+        if (tokenProvider.verifiedTokens != null) {
+            tokenProvider.verifiedTokens.invalidateAll();
+        }
+        for (String token : signedIn) {
+            tokenProvider.authenticate(token);
+        }
+        requestCursor = 0;
+        newUserCursor = 0;
+    }
+
+    @Benchmark
+    public Object filter() throws IOException, ServletException {
+        int request = requests[requestCursor++ % requests.length];
+        String token;
+        if (request < 0) {
+            token = newUsers[newUserCursor++ % newUsers.length];
+        } else if (request < SIGNED_IN_USERS) {
+            token = signedIn[request];
+        } else {
+            token = invalid[request - SIGNED_IN_USERS];
+        }
+        MockHttpServletRequest servletRequest = new MockHttpServletRequest("GET", "/api/photos");
+        servletRequest.addHeader(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + token);
+        jwtFilter.doFilter(servletRequest, response, CHAIN);
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JWTFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    private String token(String login) {
+        return tokenProvider.createToken(
+            new UsernamePasswordAuthenticationToken(login, null, List.of(new SimpleGrantedAuthority(AuthoritiesConstants.USER))),
+            false
+        );
+    }
+}
@@ -2,13 +2,19 @@ package io.susimsek.gallery.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
 import io.jsonwebtoken.security.Keys;
+import io.susimsek.gallery.config.ApplicationProperties;
 import io.susimsek.gallery.security.AuthoritiesConstants;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -83,6 +89,89 @@ class TokenProviderTest {
         assertThat(isTokenValid).isFalse();
     }
 
+    @Test
+    void testAuthenticateReturnsTheUserOfAValidToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Optional<Authentication> authentication = tokenProvider.authenticate(token);
+
+        assertThat(authentication).isPresent();
+        assertThat(authentication.get().getName()).isEqualTo("anonymous");
+        assertThat(authentication.get().getCredentials()).isEqualTo(token);
+        assertThat(authentication.get().getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly(AuthoritiesConstants.ANONYMOUS);
+    }
+
+    @Test
+    void testAuthenticateReusesTheAuthenticationOfAVerifiedToken() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication first = tokenProvider.authenticate(token).orElseThrow();
+        Authentication second = tokenProvider.authenticate(token).orElseThrow();
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    void testAuthenticateRejectsACachedTokenOnceExpired() {
+        Instant now = Instant.parse("2021-06-01T10:00:00Z");
+        ReflectionTestUtils.setField(tokenProvider, "clock", Clock.fixed(now, ZoneOffset.UTC));
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        assertThat(tokenProvider.authenticate(token)).isPresent();
+
+        ReflectionTestUtils.setField(tokenProvider, "clock", Clock.fixed(now.plusMillis(ONE_MINUTE + 1000), ZoneOffset.UTC));
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+    }
+
+    @Test
+    void testAuthenticateDoesNotCacheInvalidTokens() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.authenticate(token.substring(1))).isEmpty();
+        assertThat(tokenProvider.authenticate(createTokenWithDifferentSignature())).isEmpty();
+        assertThat(tokenProvider.verifiedTokens.estimatedSize()).isZero();
+    }
+
+    @Test
+    void testAuthenticateWithoutCache() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(Encoders.BASE64.encode(key.getEncoded()));
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getTokenCache().setEnabled(false);
+        TokenProvider uncached = new TokenProvider(jHipsterProperties, applicationProperties, new TokenRevocationList(applicationProperties));
+        String token = uncached.createToken(createAuthentication(), false);
+
+        assertThat(uncached.authenticate(token).map(Authentication::getName)).contains("anonymous");
+        assertThat(uncached.authenticate("")).isEmpty();
+    }
+
+    @Test
+    void testCreateTokenGivesEachTokenAnId() {
+        String first = tokenProvider.createToken(createAuthentication(), false);
+        String second = tokenProvider.createToken(createAuthentication(), false);
+
+        String firstId = tokenProvider.parse(first).orElseThrow().getId();
+        assertThat(firstId).isNotEmpty().isNotEqualTo(tokenProvider.parse(second).orElseThrow().getId());
+    }
+
+    @Test
+    void testAuthenticateRejectsARevokedTokenOnceCached() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getSecurity().getAuthentication().getJwt().setBase64Secret(Encoders.BASE64.encode(key.getEncoded()));
+        TokenRevocationList revocationList = new TokenRevocationList();
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, new ApplicationProperties(), revocationList);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        String other = tokenProvider.createToken(createAuthentication(), false);
+        assertThat(tokenProvider.authenticate(token)).isPresent();
+
+        Claims claims = tokenProvider.parse(token).orElseThrow();
+        revocationList.revoke(claims.getId(), claims.getExpiration().getTime());
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+        assertThat(tokenProvider.validateToken(token)).isFalse();
+        assertThat(tokenProvider.authenticate(other)).isPresent();
+    }
+
     @Test
     void testKeyIsSetFromSecretWhenSecretIsNotEmpty() {
         final String secret = "NwskoUmKHZtzGRKJKVjsJF7BtQMMxNWi";
@@ -0,0 +1,76 @@
+package io.susimsek.gallery.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TokenRevocationListTest {
+
+    private static final long NOW = 1_622_541_600_000L;
+
+    private TokenRevocationList revocationList;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getSecurity().getTokenRevocation().setExpectedRevocations(100);
+        revocationList = new TokenRevocationList(applicationProperties);
+    }
+
+    @Test
+    void rejectsOnlyTheRevokedTokens() {
+        revocationList.revoke("revoked", NOW + 60_000);
+
+        assertThat(revocationList.isRevoked("revoked")).isTrue();
+        assertThat(revocationList.isRevoked("other")).isFalse();
+        assertThat(revocationList.isRevoked(null)).isFalse();
+    }
+
+    @Test
+    void forgetsTheExpiredTokens() {
+        revocationList.revokeAll(Map.of("expired", NOW - 1, "valid", NOW + 60_000));
+
+        revocationList.purge(NOW);
+
+        assertThat(revocationList.isRevoked("expired")).isFalse();
+        assertThat(revocationList.isRevoked("valid")).isTrue();
+        assertThat(revocationList.size()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsTheLatestExpirationOfATokenRevokedTwice() {
+        revocationList.revoke("revoked", NOW + 60_000);
+        revocationList.revoke("revoked", NOW - 1);
+
+        revocationList.purge(NOW);
+
+        assertThat(revocationList.isRevoked("revoked")).isTrue();
+    }
+
+    @Test
+    void keepsEveryTokenRevokedBeyondTheExpectedRevocations() {
+        String[] ids = IntStream.range(0, 1000).mapToObj(i -> UUID.randomUUID().toString()).toArray(String[]::new);
+
+        for (String id : ids) {
+            revocationList.revoke(id, NOW + 60_000);
+        }
+
+        assertThat(ids).allMatch(revocationList::isRevoked);
+    }
+
+    @Test
+    void bloomFilterHasFewFalsePositives() {
+        TokenRevocationList.BloomFilter bloomFilter = new TokenRevocationList.BloomFilter(1000);
+        IntStream.range(0, 1000).mapToObj(i -> "revoked-" + i).forEach(bloomFilter::put);
+
+        long falsePositives = IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID().toString()).filter(bloomFilter::mightContain).count();
+
+        assertThat(IntStream.range(0, 1000).mapToObj(i -> "revoked-" + i)).allMatch(bloomFilter::mightContain);
+        assertThat(falsePositives).isLessThan(300);
+    }
+}
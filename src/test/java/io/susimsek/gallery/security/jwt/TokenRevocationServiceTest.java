@@ -0,0 +1,127 @@
+package io.susimsek.gallery.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.security.AuthoritiesConstants;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import tech.jhipster.config.JHipsterProperties;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RMapCache<String, Long> revokedTokens;
+
+    @Mock
+    private RTopic topic;
+
+    private TokenRevocationList revocationList;
+
+    private TokenProvider tokenProvider;
+
+    private TokenRevocationService tokenRevocationService;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties
+            .getSecurity()
+            .getAuthentication()
+            .getJwt()
+            .setBase64Secret("fd54a45s65fds737b9aafcb3412e07ed99b267f33413274720ddbb7f6c5e64e9f14075f2d7ed041592f0b7657baf8");
+        revocationList = new TokenRevocationList(applicationProperties);
+        tokenProvider = new TokenProvider(jHipsterProperties, applicationProperties, revocationList);
+        doReturn(revokedTokens).when(redissonClient).getMapCache(eq("gallery:revoked-tokens"), any(Codec.class));
+        doReturn(topic).when(redissonClient).getTopic("gallery:revoked-tokens");
+        tokenRevocationService = new TokenRevocationService(applicationProperties, tokenProvider, revocationList, redissonClient);
+    }
+
+    @Test
+    void revokesATokenOnEveryNodeUntilItExpires() {
+        String token = createToken();
+        String id = tokenProvider.parse(token).orElseThrow().getId();
+
+        assertThat(tokenRevocationService.revoke(token)).isTrue();
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+        ArgumentCaptor<Long> timeToLive = ArgumentCaptor.forClass(Long.class);
+        verify(revokedTokens).fastPut(eq(id), anyLong(), timeToLive.capture(), eq(TimeUnit.MILLISECONDS));
+        assertThat(timeToLive.getValue()).isPositive().isLessThanOrEqualTo(TimeUnit.DAYS.toMillis(1));
+        ArgumentCaptor<RevokedToken> published = ArgumentCaptor.forClass(RevokedToken.class);
+        verify(topic).publish(published.capture());
+        assertThat(published.getValue().getId()).isEqualTo(id);
+    }
+
+    @Test
+    void invalidTokensAreNotRevoked() {
+        assertThat(tokenRevocationService.revoke("wrong_jwt")).isFalse();
+
+        verifyNoInteractions(revokedTokens, topic);
+        assertThat(revocationList.size()).isZero();
+    }
+
+    @Test
+    void appliesTheRevocationsOfTheOtherNodes() {
+        when(revokedTokens.readAllMap()).thenReturn(Map.of());
+        tokenRevocationService.subscribe();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<MessageListener<RevokedToken>> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(topic).addListener(eq(RevokedToken.class), listener.capture());
+        String token = createToken();
+
+        listener.getValue().onMessage("gallery:revoked-tokens", new RevokedToken(tokenProvider.parse(token).orElseThrow().getId(), Long.MAX_VALUE));
+
+        assertThat(tokenProvider.authenticate(token)).isEmpty();
+    }
+
+    @Test
+    void refreshReadsTheRevocationsAndForgetsTheExpiredOnes() {
+        revocationList.revoke("expired", System.currentTimeMillis() - 1);
+        when(revokedTokens.readAllMap()).thenReturn(Map.of("missed", Long.MAX_VALUE));
+
+        tokenRevocationService.refresh();
+
+        assertThat(revocationList.isRevoked("missed")).isTrue();
+        assertThat(revocationList.isRevoked("expired")).isFalse();
+    }
+
+    @Test
+    void refreshKeepsTheKnownRevocationsWhenRedisIsDown() {
+        revocationList.revoke("revoked", Long.MAX_VALUE);
+        when(revokedTokens.readAllMap()).thenThrow(new RedisException("Redis is down"));
+
+        tokenRevocationService.refresh();
+
+        assertThat(revocationList.isRevoked("revoked")).isTrue();
+    }
+
+    private String createToken() {
+        return tokenProvider.createToken(
+            new UsernamePasswordAuthenticationToken("user", null, List.of(new SimpleGrantedAuthority(AuthoritiesConstants.USER))),
+            false
+        );
+    }
+}
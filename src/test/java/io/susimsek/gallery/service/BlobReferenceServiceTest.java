@@ -0,0 +1,106 @@
+package io.susimsek.gallery.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.ReleasedBlob;
+import io.susimsek.gallery.repository.PhotoRenditionRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.ReleasedBlobRepository;
+import io.susimsek.gallery.service.storage.BlobStore;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class BlobReferenceServiceTest {
+
+    private static final String KEY = "55c64d0fcd6f9d5f7c828093857e3fdfda68478bb4e9bd24d481ef391c7804e8";
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private PhotoRenditionRepository photoRenditionRepository;
+
+    @Mock
+    private ReleasedBlobRepository releasedBlobRepository;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BlobReferenceService blobReferenceService;
+
+    @BeforeEach
+    void setUp() {
+        blobReferenceService =
+            new BlobReferenceService(
+                photoRepository,
+                photoRenditionRepository,
+                releasedBlobRepository,
+                blobStore,
+                new TransactionTemplate(transactionManager),
+                new ApplicationProperties()
+            );
+    }
+
+    @Test
+    void releaseOnlyRecordsTheBlob() {
+        blobReferenceService.releaseAfterCommit(KEY);
+
+        ArgumentCaptor<ReleasedBlob> released = ArgumentCaptor.forClass(ReleasedBlob.class);
+        verify(releasedBlobRepository).save(released.capture());
+        assertThat(released.getValue().getImageKey()).isEqualTo(KEY);
+        verifyNoInteractions(blobStore);
+    }
+
+    @Test
+    void deletesAnUnusedBlobLastStoredBeforeTheGracePeriod() throws Exception {
+        when(releasedBlobRepository.findKeysReleasedBefore(any(), eq(""), any(Pageable.class))).thenReturn(List.of(KEY));
+        when(blobStore.lastModified(KEY)).thenReturn(Optional.of(Instant.now().minus(Duration.ofDays(1))));
+
+        blobReferenceService.collectUnused();
+
+        verify(blobStore).delete(KEY);
+        verify(releasedBlobRepository).deleteByImageKey(KEY);
+    }
+
+    @Test
+    void keepsABlobReferencedAgain() throws Exception {
+        when(releasedBlobRepository.findKeysReleasedBefore(any(), eq(""), any(Pageable.class))).thenReturn(List.of(KEY));
+        when(photoRepository.existsByImageKey(KEY)).thenReturn(true);
+
+        blobReferenceService.collectUnused();
+
+        verify(blobStore, never()).delete(any());
+        verify(releasedBlobRepository).deleteReleasedBefore(eq(KEY), any());
+    }
+
+    @Test
+    void keepsABlobStoredAgainWithinTheGracePeriod() throws Exception {
+        when(releasedBlobRepository.findKeysReleasedBefore(any(), eq(""), any(Pageable.class))).thenReturn(List.of(KEY));
+        when(blobStore.lastModified(KEY)).thenReturn(Optional.of(Instant.now()));
+
+        blobReferenceService.collectUnused();
+
+        verify(blobStore, never()).delete(any());
+        verify(releasedBlobRepository, never()).deleteByImageKey(any());
+        verify(releasedBlobRepository, never()).deleteReleasedBefore(any(), any());
+    }
+}
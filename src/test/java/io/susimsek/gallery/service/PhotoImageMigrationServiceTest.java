@@ -0,0 +1,77 @@
+package io.susimsek.gallery.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.service.storage.BlobStore;
+import javax.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoImageMigrationServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManagerFactory entityManagerFactory;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RLock lock;
+
+    private PhotoImageMigrationService photoImageMigrationService;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        when(redissonClient.getLock(applicationProperties.getStorage().getMigrationLockName())).thenReturn(lock);
+        photoImageMigrationService =
+            new PhotoImageMigrationService(
+                jdbcTemplate,
+                transactionTemplate,
+                entityManagerFactory,
+                blobStore,
+                redissonClient,
+                applicationProperties
+            );
+    }
+
+    @Test
+    void migratesUnderTheLock() {
+        when(lock.tryLock()).thenReturn(true);
+        when(transactionTemplate.execute(any())).thenReturn(0);
+
+        photoImageMigrationService.migrateLegacyImages();
+
+        verify(transactionTemplate).execute(any());
+        verify(lock).unlock();
+    }
+
+    @Test
+    void skipsWhileAnotherNodeHoldsTheLock() {
+        when(lock.tryLock()).thenReturn(false);
+
+        photoImageMigrationService.migrateLegacyImages();
+
+        verifyNoInteractions(transactionTemplate, jdbcTemplate, blobStore);
+        verify(lock, never()).unlock();
+    }
+}
@@ -0,0 +1,96 @@
+package io.susimsek.gallery.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.repository.PhotoRenditionRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.service.storage.BlobStore;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoRenditionServiceTest {
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private PhotoRenditionRepository photoRenditionRepository;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private BlobReferenceService blobReferenceService;
+
+    private ThreadPoolTaskExecutor renditionTaskExecutor;
+
+    private PhotoRenditionService photoRenditionService;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRenditions().setQueueCapacity(1);
+        renditionTaskExecutor = new ThreadPoolTaskExecutor();
+        renditionTaskExecutor.setCorePoolSize(1);
+        renditionTaskExecutor.setMaxPoolSize(1);
+        renditionTaskExecutor.setQueueCapacity(1);
+        renditionTaskExecutor.setThreadNamePrefix("gallery-rendition-");
+        renditionTaskExecutor.initialize();
+        photoRenditionService =
+            new PhotoRenditionService(
+                photoRepository,
+                photoRenditionRepository,
+                blobStore,
+                blobReferenceService,
+                mock(TransactionTemplate.class),
+                renditionTaskExecutor,
+                applicationProperties
+            );
+    }
+
+    @AfterEach
+    void tearDown() {
+        photoRenditionService.shutdown();
+        renditionTaskExecutor.shutdown();
+    }
+
+    @Test
+    void backfillWaitsForTheWorkersInsteadOfRunningOnTheCallingThread() throws Exception {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        when(photoRenditionRepository.findPhotoIdsMissingRenditions(eq(0L), anyLong(), any(Pageable.class))).thenReturn(List.of(1L, 2L, 3L));
+        when(photoRenditionRepository.findPhotoIdsMissingRenditions(eq(3L), anyLong(), any(Pageable.class))).thenReturn(List.of());
+        when(photoRepository.findById(anyLong()))
+            .thenAnswer(
+                invocation -> {
+                    threads.add(Thread.currentThread().getName());
+                    Thread.sleep(50);
+                    return Optional.empty();
+                }
+            );
+
+        assertThat(photoRenditionService.backfill()).isEqualTo(3);
+
+        renditionTaskExecutor.getThreadPoolExecutor().shutdown();
+        assertThat(renditionTaskExecutor.getThreadPoolExecutor().awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        verify(photoRepository, times(3)).findById(anyLong());
+        assertThat(threads).allMatch(name -> name.startsWith("gallery-rendition-"));
+    }
+}
@@ -0,0 +1,157 @@
+package io.susimsek.gallery.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.susimsek.gallery.IntegrationTest;
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.service.criteria.AlbumCriteria;
+import io.susimsek.gallery.service.criteria.PhotoCriteria;
+import io.susimsek.gallery.service.dto.AlbumDto;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
+import tech.jhipster.service.filter.StringFilter;
+
+/**
+ * Integration tests for the number of queries of {@link PhotoQueryService} and {@link AlbumQueryService}: a page
+ * costs the same number of statements whatever its size, the associations are never loaded one by one.
+ */
+@IntegrationTest
+@Transactional
+class QueryServiceStatementCountIT {
+
+    private static final String TITLE = "STATEMENT-COUNT";
+
+    private static final int ROWS = 6;
+
+    @Autowired
+    private PhotoQueryService photoQueryService;
+
+    @Autowired
+    private AlbumQueryService albumQueryService;
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        Tag first = Tag.builder().name("first").build();
+        Tag second = Tag.builder().name("second").build();
+        em.persist(first);
+        em.persist(second);
+        for (int i = 0; i < ROWS; i++) {
+            User user = new User();
+            user.setLogin("statement-count-" + i);
+            user.setPassword(RandomStringUtils.randomAlphanumeric(60));
+            user.setActivated(true);
+            em.persist(user);
+            Album album = Album.builder().title(TITLE).created(Instant.now()).user(user).build();
+            em.persist(album);
+            Photo photo = Photo.builder().title(TITLE).imageContentType("image/jpeg").album(album).build();
+            photo.addTag(first);
+            photo.addTag(second);
+            em.persist(photo);
+        }
+        em.flush();
+        em.clear();
+        entityManagerFactory.getCache().evictAll();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statistics.setStatisticsEnabled(false);
+        statistics.clear();
+    }
+
+    @Test
+    void photoPageCostsIdsFetchAndCountQueries() {
+        PhotoCriteria criteria = new PhotoCriteria();
+        criteria.setTitle(titleFilter());
+
+        for (int size : new int[] { 2, 5 }) {
+            em.clear();
+            statistics.clear();
+
+            Page<PhotoDto> page = photoQueryService.findByCriteria(criteria, PageRequest.of(0, size, Sort.by("id")));
+
+            assertThat(page.getContent()).hasSize(size).allSatisfy(photo -> assertThat(photo.getTags()).hasSize(2));
+            assertThat(page.getContent()).extracting(photo -> photo.getAlbum().getTitle()).containsOnly(TITLE);
+            assertThat(page.getTotalElements()).isEqualTo(ROWS);
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+            assertThat(statistics.getCollectionFetchCount()).isZero();
+            assertThat(statistics.getEntityFetchCount()).isZero();
+        }
+    }
+
+    @Test
+    void photoListCostsIdsAndFetchQueries() {
+        PhotoCriteria criteria = new PhotoCriteria();
+        criteria.setTitle(titleFilter());
+        statistics.clear();
+
+        List<PhotoDto> photos = photoQueryService.findByCriteria(criteria);
+
+        assertThat(photos).hasSize(ROWS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    void albumPageCostsSelectAndCountQueries() {
+        AlbumCriteria criteria = new AlbumCriteria();
+        criteria.setTitle(titleFilter());
+
+        for (int size : new int[] { 2, 5 }) {
+            em.clear();
+            statistics.clear();
+
+            Page<AlbumDto> page = albumQueryService.findByCriteria(criteria, PageRequest.of(0, size, Sort.by("id")));
+
+            assertThat(page.getContent()).hasSize(size).allSatisfy(album -> assertThat(album.getUser().getLogin()).isNotNull());
+            assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+            assertThat(statistics.getEntityFetchCount()).isZero();
+        }
+    }
+
+    @Test
+    void albumKeysetPageCostsOneQuery() {
+        AlbumCriteria criteria = new AlbumCriteria();
+        criteria.setTitle(titleFilter());
+        statistics.clear();
+
+        albumQueryService.findAfter(criteria, Sort.unsorted(), null, 3);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityFetchCount()).isZero();
+    }
+
+    private static StringFilter titleFilter() {
+        StringFilter filter = new StringFilter();
+        filter.setEquals(TITLE);
+        return filter;
+    }
+}
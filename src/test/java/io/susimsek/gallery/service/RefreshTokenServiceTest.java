@@ -0,0 +1,139 @@
+package io.susimsek.gallery.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Authority;
+import io.susimsek.gallery.domain.RefreshToken;
+import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.repository.RefreshTokenRepository;
+import io.susimsek.gallery.repository.UserRepository;
+import io.susimsek.gallery.security.AuthoritiesConstants;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.core.GrantedAuthority;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private User user;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setLogin("user");
+        user.setActivated(true);
+        Authority authority = new Authority();
+        authority.setName(AuthoritiesConstants.USER);
+        user.getAuthorities().add(authority);
+        refreshTokenService = new RefreshTokenService(new ApplicationProperties(), refreshTokenRepository, userRepository);
+    }
+
+    @Test
+    void storesOnlyTheHashOfANewToken() {
+        when(userRepository.findOneByLogin("user")).thenReturn(Optional.of(user));
+
+        String token = refreshTokenService.create("user", true);
+
+        RefreshToken stored = saved();
+        assertThat(stored.getHash()).isEqualTo(RefreshTokenService.hash(token)).isNotEqualTo(token);
+        assertThat(stored.getUser()).isSameAs(user);
+        assertThat(stored.isRememberMe()).isTrue();
+        assertThat(stored.getUsedDate()).isNull();
+        assertThat(Duration.between(stored.getCreatedDate(), stored.getExpiresAt())).isEqualTo(Duration.ofDays(30));
+    }
+
+    @Test
+    void rotatesATokenIntoTheNextOneOfItsFamily() {
+        RefreshToken current = refreshToken("token", Instant.now().plus(Duration.ofDays(1)));
+        when(refreshTokenRepository.findOneForUpdate(RefreshTokenService.hash("token"))).thenReturn(Optional.of(current));
+
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate("token");
+
+        assertThat(current.getUsedDate()).isNotNull();
+        RefreshToken next = saved();
+        assertThat(next.getHash()).isEqualTo(RefreshTokenService.hash(rotation.getRefreshToken()));
+        assertThat(next.getFamily()).isEqualTo(current.getFamily());
+        assertThat(next.getExpiresAt()).isEqualTo(current.getExpiresAt());
+        assertThat(rotation.getAuthentication().getName()).isEqualTo("user");
+        assertThat(rotation.getAuthentication().getAuthorities())
+            .extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.USER);
+    }
+
+    @Test
+    void aReusedTokenRevokesItsFamily() {
+        RefreshToken used = refreshToken("token", Instant.now().plus(Duration.ofDays(1)));
+        used.setUsedDate(Instant.now().minusSeconds(60));
+        when(refreshTokenRepository.findOneForUpdate(RefreshTokenService.hash("token"))).thenReturn(Optional.of(used));
+
+        assertThatThrownBy(() -> refreshTokenService.rotate("token")).isInstanceOf(BadCredentialsException.class);
+
+        verify(refreshTokenRepository).deleteByFamily("family");
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void anExpiredTokenIsRejected() {
+        when(refreshTokenRepository.findOneForUpdate(RefreshTokenService.hash("token")))
+            .thenReturn(Optional.of(refreshToken("token", Instant.now().minusSeconds(1))));
+
+        assertThatThrownBy(() -> refreshTokenService.rotate("token")).isInstanceOf(BadCredentialsException.class);
+
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void anUnknownTokenIsRejected() {
+        when(refreshTokenRepository.findOneForUpdate(any())).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> refreshTokenService.rotate("unknown")).isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void theTokensOfADeactivatedUserAreRevoked() {
+        user.setActivated(false);
+        when(refreshTokenRepository.findOneForUpdate(RefreshTokenService.hash("token")))
+            .thenReturn(Optional.of(refreshToken("token", Instant.now().plus(Duration.ofDays(1)))));
+
+        assertThatThrownBy(() -> refreshTokenService.rotate("token")).isInstanceOf(BadCredentialsException.class);
+
+        verify(refreshTokenRepository).deleteByFamily("family");
+    }
+
+    private RefreshToken refreshToken(String token, Instant expiresAt) {
+        return RefreshToken
+            .builder()
+            .hash(RefreshTokenService.hash(token))
+            .family("family")
+            .user(user)
+            .createdDate(Instant.now().minus(Duration.ofDays(1)))
+            .expiresAt(expiresAt)
+            .build();
+    }
+
+    private RefreshToken saved() {
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        return saved.getValue();
+    }
+}
@@ -1,16 +1,17 @@
 package io.susimsek.gallery.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.when;
 
 import io.susimsek.gallery.IntegrationTest;
 import io.susimsek.gallery.config.Constants;
+import io.susimsek.gallery.domain.SearchIndexOutbox;
 import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
 import io.susimsek.gallery.repository.UserRepository;
-import io.susimsek.gallery.repository.search.UserSearchRepository;
 import io.susimsek.gallery.service.dto.AdminUserDto;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -54,13 +55,8 @@ class UserServiceIT {
     @Autowired
     private UserService userService;
 
-    /**
-     * This repository is mocked in the io.susimsek.gallery.repository.search test package.
-     *
-     * @see io.susimsek.gallery.repository.search.UserSearchRepositoryMockConfiguration
-     */
     @Autowired
-    private UserSearchRepository mockUserSearchRepository;
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
 
     @Autowired
     private AuditingHandler auditingHandler;
@@ -177,8 +173,10 @@ class UserServiceIT {
         users = userRepository.findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(threeDaysAgo);
         assertThat(users).isEmpty();
 
-        // Verify Elasticsearch mock
-        verify(mockUserSearchRepository, times(1)).delete(user);
+        // Verify the search index change was recorded
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.USER, dbUser.getId(), SearchIndexOperation.DELETE));
     }
 
     @Test
@@ -197,7 +195,9 @@ class UserServiceIT {
         Optional<User> maybeDbUser = userRepository.findById(dbUser.getId());
         assertThat(maybeDbUser).contains(dbUser);
 
-        // Verify Elasticsearch mock
-        verify(mockUserSearchRepository, never()).delete(user);
+        // Verify no search index change was recorded
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getOperation)
+            .doesNotContain(tuple(SearchIndexEntityType.USER, SearchIndexOperation.DELETE));
     }
 }
@@ -0,0 +1,95 @@
+package io.susimsek.gallery.service.image;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import javax.xml.bind.DatatypeConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link ImageMetadataExtractor} with the previous extraction, which copied every upload twice through
+ * base64 and let metadata-extractor scan the whole file.
+ * <p>
+ * The corpus is generated, or read from the directory given with {@code -Dbenchmark.corpus=<dir>}. Run with
+ * {@code ./mvnw test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=io.susimsek.gallery.service.image.ImageMetadataExtractorBenchmark}; allocation is reported by
+ * the GC profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageMetadataExtractorBenchmark {
+
+    private final List<byte[]> corpus = new ArrayList<>();
+
+    @Setup
+    public void loadCorpus() throws IOException {
+        String directory = System.getProperty("benchmark.corpus");
+        if (directory != null) {
+            try (Stream<Path> files = Files.list(Paths.get(directory))) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    corpus.add(Files.readAllBytes(file));
+                }
+            }
+            return;
+        }
+        corpus.add(SampleImages.jpeg(4000, 3000, true));
+        corpus.add(SampleImages.jpeg(1600, 1200, false));
+        corpus.add(SampleImages.png(1920, 1080));
+        corpus.add(SampleImages.webpExtended(4000, 3000));
+        corpus.add(SampleImages.heic(4032, 3024));
+    }
+
+    @Benchmark
+    public void streamingExtractor(Blackhole blackhole) throws IOException {
+        for (byte[] image : corpus) {
+            blackhole.consume(ImageMetadataExtractor.extract(new ByteArrayInputStream(image)));
+        }
+    }
+
+    @Benchmark
+    public void base64RoundTripAndFullScan(Blackhole blackhole) throws IOException {
+        for (byte[] image : corpus) {
+            byte[] copy = DatatypeConverter.parseBase64Binary(DatatypeConverter.printBase64Binary(image));
+            try {
+                Metadata metadata = ImageMetadataReader.readMetadata(new BufferedInputStream(new ByteArrayInputStream(copy)));
+                blackhole.consume(metadata);
+            } catch (ImageProcessingException e) {
+                blackhole.consume(e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(
+            new OptionsBuilder().include(ImageMetadataExtractorBenchmark.class.getSimpleName()).addProfiler("gc").build()
+        )
+            .run();
+    }
+}
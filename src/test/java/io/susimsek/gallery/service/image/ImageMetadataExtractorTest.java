@@ -0,0 +1,154 @@
+package io.susimsek.gallery.service.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class ImageMetadataExtractorTest {
+
+    private static final LocalDateTime DIGITIZED = LocalDateTime.of(2021, 6, 1, 10, 20, 30);
+
+    @Test
+    void readsJpegDimensionsAndExifDate() throws IOException {
+        ImageMetadata metadata = extract(SampleImages.jpeg(64, 48, true));
+
+        assertThat(metadata.getWidth()).isEqualTo(64);
+        assertThat(metadata.getHeight()).isEqualTo(48);
+        assertThat(metadata.getTaken()).isEqualTo(DIGITIZED.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    void readsJpegWithoutExif() throws IOException {
+        ImageMetadata metadata = extract(SampleImages.jpeg(64, 48, false));
+
+        assertThat(metadata.getWidth()).isEqualTo(64);
+        assertThat(metadata.getHeight()).isEqualTo(48);
+        assertThat(metadata.getTaken()).isNull();
+    }
+
+    @Test
+    void stopsReadingJpegAtStartOfFrame() throws IOException {
+        byte[] jpeg = SampleImages.jpeg(64, 48, true);
+        // drop the entropy coded data: only the headers are needed
+        int startOfFrame = indexOf(jpeg, new byte[] { (byte) 0xFF, (byte) 0xC0, 0x00, 0x11 });
+
+        ImageMetadata metadata = extract(Arrays.copyOf(jpeg, startOfFrame + 9));
+
+        assertThat(metadata.getWidth()).isEqualTo(64);
+        assertThat(metadata.getHeight()).isEqualTo(48);
+    }
+
+    @Test
+    void readsPngDimensions() throws IOException {
+        ImageMetadata metadata = extract(SampleImages.png(30, 20));
+
+        assertThat(metadata.getWidth()).isEqualTo(30);
+        assertThat(metadata.getHeight()).isEqualTo(20);
+    }
+
+    @Test
+    void readsLosslessWebpDimensions() throws IOException {
+        ImageMetadata metadata = extract(SampleImages.webpLossless(1200, 900));
+
+        assertThat(metadata.getWidth()).isEqualTo(1200);
+        assertThat(metadata.getHeight()).isEqualTo(900);
+    }
+
+    @Test
+    void readsExtendedWebpDimensionsAndExifDate() throws IOException {
+        ImageMetadata metadata = extract(SampleImages.webpExtended(4000, 3000));
+
+        assertThat(metadata.getWidth()).isEqualTo(4000);
+        assertThat(metadata.getHeight()).isEqualTo(3000);
+        assertThat(metadata.getTaken()).isEqualTo(DIGITIZED.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    void readsHeicPrimaryImageSizeAndExifDate() throws IOException {
+        ImageMetadata metadata = extract(SampleImages.heic(4032, 3024));
+
+        assertThat(metadata.getWidth()).isEqualTo(4032);
+        assertThat(metadata.getHeight()).isEqualTo(3024);
+        assertThat(metadata.getTaken()).isEqualTo(DIGITIZED.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    @Test
+    void returnsNothingForUnknownFormats() throws IOException {
+        ImageMetadata metadata = extract("GIF89a not supported".getBytes());
+
+        assertThat(metadata.getWidth()).isNull();
+        assertThat(metadata.getHeight()).isNull();
+        assertThat(metadata.getTaken()).isNull();
+    }
+
+    @Test
+    void detectsContentType() throws IOException {
+        assertThat(extract(SampleImages.jpeg(8, 8, false)).getContentType()).isEqualTo("image/jpeg");
+        assertThat(extract(SampleImages.png(8, 8)).getContentType()).isEqualTo("image/png");
+        assertThat(extract(SampleImages.webpLossless(8, 8)).getContentType()).isEqualTo("image/webp");
+        assertThat(extract(SampleImages.heic(8, 8)).getContentType()).isEqualTo("image/heic");
+    }
+
+    @Test
+    void peekReplaysTheWholeContent() throws IOException {
+        byte[] heic = SampleImages.heic(4032, 3024);
+
+        ImageMetadataExtractor.PeekedImage peeked = ImageMetadataExtractor.peek(new ByteArrayInputStream(heic), 4096);
+
+        assertThat(peeked.getMetadata().getWidth()).isEqualTo(4032);
+        assertThat(peeked.getMetadata().getTaken()).isNotNull();
+        assertThat(peeked.getContent().readAllBytes()).isEqualTo(heic);
+    }
+
+    @Test
+    void peekKeepsWhatWasFoundBeforeTheHeaderLimit() throws IOException {
+        byte[] jpeg = SampleImages.jpeg(64, 48, true);
+
+        ImageMetadataExtractor.PeekedImage peeked = ImageMetadataExtractor.peek(new ByteArrayInputStream(jpeg), 100);
+
+        assertThat(peeked.getMetadata().getContentType()).isEqualTo("image/jpeg");
+        assertThat(peeked.getMetadata().getTaken()).isNotNull();
+        assertThat(peeked.getMetadata().getWidth()).isNull();
+        assertThat(peeked.getContent().readAllBytes()).isEqualTo(jpeg);
+    }
+
+    @Test
+    void peekStoresImagesWithAMalformedHeader() throws IOException {
+        // a segment length below 2, which would end before it starts
+        byte[] jpeg = { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x01, 0x4A, 0x46, 0x49, 0x46 };
+
+        ImageMetadataExtractor.PeekedImage peeked = ImageMetadataExtractor.peek(new ByteArrayInputStream(jpeg), 4096);
+
+        assertThat(peeked.getMetadata().getContentType()).isEqualTo("image/jpeg");
+        assertThat(peeked.getMetadata().getWidth()).isNull();
+        assertThat(peeked.getContent().readAllBytes()).isEqualTo(jpeg);
+        assertThatThrownBy(() -> extract(jpeg)).isInstanceOf(IOException.class).hasMessage("Image header is malformed");
+    }
+
+    @Test
+    void failsOnTruncatedHeader() {
+        byte[] png = SampleImages.png(30, 20);
+
+        assertThatThrownBy(() -> extract(Arrays.copyOf(png, 12))).isInstanceOf(EOFException.class);
+    }
+
+    private static ImageMetadata extract(byte[] image) throws IOException {
+        return ImageMetadataExtractor.extract(new ByteArrayInputStream(image));
+    }
+
+    private static int indexOf(byte[] data, byte[] marker) {
+        for (int i = 0; i <= data.length - marker.length; i++) {
+            if (Arrays.equals(data, i, i + marker.length, marker, 0, marker.length)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Marker not found");
+    }
+}
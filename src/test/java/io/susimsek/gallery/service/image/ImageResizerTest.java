@@ -0,0 +1,66 @@
+package io.susimsek.gallery.service.image;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+class ImageResizerTest {
+
+    @Test
+    void resizeKeepsAspectRatio() {
+        BufferedImage resized = ImageResizer.resize(new BufferedImage(3000, 2000, BufferedImage.TYPE_INT_ARGB), 640);
+
+        assertThat(resized.getWidth()).isEqualTo(640);
+        assertThat(resized.getHeight()).isEqualTo(427);
+        assertThat(resized.getType()).isEqualTo(BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    void resizeNeverUpscales() {
+        BufferedImage resized = ImageResizer.resize(new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB), 640);
+
+        assertThat(resized.getWidth()).isEqualTo(100);
+        assertThat(resized.getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    void readSubsamplesLargeImages() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_RGB), "png", png);
+
+        BufferedImage image = ImageResizer.read(new ByteArrayInputStream(png.toByteArray()), 160).orElseThrow();
+
+        assertThat(image.getWidth()).isEqualTo(334);
+        assertThat(image.getHeight()).isEqualTo(167);
+    }
+
+    @Test
+    void readUnknownFormat() throws IOException {
+        assertThat(ImageResizer.read(new ByteArrayInputStream(new byte[] { 0 }), 160)).isEmpty();
+    }
+
+    @Test
+    void writeJpeg() throws IOException {
+        byte[] jpeg = ImageResizer.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), ImageResizer.JPEG, 0.85f);
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertThat(image.getWidth()).isEqualTo(10);
+    }
+
+    @Test
+    void writeWebp() throws IOException {
+        assertThat(ImageResizer.canWrite(ImageResizer.WEBP)).isTrue();
+
+        byte[] webp = ImageResizer.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), ImageResizer.WEBP, 0.85f);
+
+        assertThat(new String(webp, 8, 4, StandardCharsets.US_ASCII)).isEqualTo("WEBP");
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(webp));
+        assertThat(image.getWidth()).isEqualTo(10);
+    }
+}
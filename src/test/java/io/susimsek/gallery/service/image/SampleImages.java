@@ -0,0 +1,163 @@
+package io.susimsek.gallery.service.image;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import javax.imageio.ImageIO;
+
+/**
+ * Builds small but structurally complete images in every format {@link ImageMetadataExtractor} understands.
+ * JPEG and PNG are encoded by ImageIO; WebP and HEIC containers are assembled by hand around a fake payload,
+ * since only their headers are ever read.
+ */
+final class SampleImages {
+
+    /**
+     * EXIF date time digitized written into every sample that carries EXIF.
+     */
+    static final String DIGITIZED = "2021:06:01 10:20:30";
+
+    private SampleImages() {}
+
+    static byte[] jpeg(int width, int height, boolean withExif) {
+        byte[] encoded = encode("jpeg", width, height);
+        if (!withExif) {
+            return encoded;
+        }
+        byte[] exif = concat("Exif\0\0".getBytes(StandardCharsets.US_ASCII), tiff());
+        ByteBuffer app1 = ByteBuffer.allocate(4 + exif.length);
+        app1.put((byte) 0xFF).put((byte) 0xE1).putShort((short) (exif.length + 2)).put(exif);
+        // right after the start of image marker
+        return concat(slice(encoded, 0, 2), app1.array(), slice(encoded, 2, encoded.length));
+    }
+
+    static byte[] png(int width, int height) {
+        return encode("png", width, height);
+    }
+
+    static byte[] webpLossless(int width, int height) {
+        ByteBuffer vp8l = littleEndian(5);
+        vp8l.put((byte) 0x2F).putInt((width - 1) | (height - 1) << 14);
+        return riff(chunk("VP8L", concat(vp8l.array(), new byte[64])));
+    }
+
+    static byte[] webpExtended(int width, int height) {
+        ByteBuffer vp8x = littleEndian(10);
+        vp8x.put((byte) 0x08).put(new byte[3]);
+        putUInt24(vp8x, width - 1);
+        putUInt24(vp8x, height - 1);
+        return riff(concat(chunk("VP8X", vp8x.array()), chunk("VP8L", new byte[101]), chunk("EXIF", tiff())));
+    }
+
+    /**
+     * A HEIC with a thumbnail and a primary image property, and an EXIF item stored in {@code mdat}.
+     */
+    static byte[] heic(int width, int height) {
+        byte[] ftyp = box("ftyp", concat(ascii("heic"), new byte[4], ascii("mif1heic")));
+        byte[] exifItem = concat(ByteBuffer.allocate(4).putInt(6).array(), ascii("Exif\0\0"), tiff());
+        byte[] mdatPayload = concat(new byte[128], exifItem);
+
+        byte[] iinf = fullBox("iinf", 0, concat(ByteBuffer.allocate(2).putShort((short) 2).array(), infe(1, "hvc1"), infe(2, "Exif")));
+        byte[] iprp = box("iprp", box("ipco", concat(ispe(320, 240), ispe(width, height))));
+        // the iloc offset is absolute, so it depends on the size of everything before mdat
+        int ilocLength = 8 + 4 + 2 + 2 + 2 * (2 + 2 + 2 + 4 + 4);
+        int metaLength = 12 + ilocLength + iinf.length + iprp.length;
+        int exifOffset = ftyp.length + metaLength + 8 + 128;
+        ByteBuffer iloc = ByteBuffer.allocate(ilocLength - 12);
+        iloc.put((byte) 0x44).put((byte) 0x00).putShort((short) 2);
+        iloc.putShort((short) 1).putShort((short) 0).putShort((short) 1).putInt(8 + ftyp.length + metaLength).putInt(64);
+        iloc.putShort((short) 2).putShort((short) 0).putShort((short) 1).putInt(exifOffset).putInt(exifItem.length);
+        byte[] meta = fullBox("meta", 0, concat(fullBox("iloc", 0, iloc.array()), iinf, iprp));
+        return concat(ftyp, meta, box("mdat", mdatPayload));
+    }
+
+    /**
+     * A big-endian TIFF structure holding only an EXIF sub-IFD with the date time digitized.
+     */
+    static byte[] tiff() {
+        ByteBuffer tiff = ByteBuffer.allocate(64);
+        tiff.put(ascii("MM")).putShort((short) 42).putInt(8);
+        // IFD0: pointer to the EXIF sub-IFD
+        tiff.putShort((short) 1).putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(26).putInt(0);
+        // EXIF sub-IFD: date time digitized
+        tiff.putShort((short) 1).putShort((short) 0x9004).putShort((short) 2).putInt(20).putInt(44).putInt(0);
+        tiff.put(ascii(DIGITIZED + "\0"));
+        return tiff.array();
+    }
+
+    private static byte[] encode(String format, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, format, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] riff(byte[] chunks) {
+        ByteBuffer header = littleEndian(12);
+        header.put(ascii("RIFF")).putInt(4 + chunks.length).put(ascii("WEBP"));
+        return concat(header.array(), chunks);
+    }
+
+    private static byte[] chunk(String type, byte[] payload) {
+        ByteBuffer chunk = littleEndian(8 + payload.length + (payload.length & 1));
+        chunk.put(ascii(type)).putInt(payload.length).put(payload);
+        return chunk.array();
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return concat(ByteBuffer.allocate(4).putInt(8 + payload.length).array(), ascii(type), payload);
+    }
+
+    private static byte[] fullBox(String type, int version, byte[] payload) {
+        return box(type, concat(new byte[] { (byte) version, 0, 0, 0 }, payload));
+    }
+
+    private static byte[] infe(int itemId, String itemType) {
+        return fullBox("infe", 2, concat(ByteBuffer.allocate(4).putShort((short) itemId).putShort((short) 0).array(), ascii(itemType)));
+    }
+
+    private static byte[] ispe(int width, int height) {
+        return fullBox("ispe", 0, ByteBuffer.allocate(8).putInt(width).putInt(height).array());
+    }
+
+    private static ByteBuffer littleEndian(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putUInt24(ByteBuffer buffer, int value) {
+        buffer.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16));
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] slice(byte[] data, int from, int to) {
+        byte[] slice = new byte[to - from];
+        System.arraycopy(data, from, slice, 0, slice.length);
+        return slice;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            output.writeBytes(part);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,251 @@
+package io.susimsek.gallery.service.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.service.BlobReferenceService;
+import io.susimsek.gallery.service.PhotoService;
+import io.susimsek.gallery.service.TooManyPhotosException;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+@ExtendWith(MockitoExtension.class)
+class PhotoImportServiceTest {
+
+    @Mock
+    private PhotoService photoService;
+
+    @Mock
+    private BlobReferenceService blobReferenceService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private ApplicationProperties applicationProperties;
+
+    private PhotoImportService photoImportService;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", "password"));
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getPhotoImport().setDirectory(directory.toString());
+        applicationProperties.getPhotoImport().setParallelism(2);
+        applicationProperties.getPhotoImport().setBatchSize(2);
+        applicationProperties.getPhotoImport().setMaxItems(10);
+        applicationProperties.getUpload().setMaxSize(DataSize.ofBytes(100));
+        photoImportService = newService();
+    }
+
+    @AfterEach
+    void tearDown() {
+        photoImportService.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void importsArchiveInBatches() throws IOException {
+        preparePhotos();
+        saveAllPhotos();
+
+        PhotoImportJob job = photoImportService.importArchive(zip("a.jpg", "b.jpg", "dir/c.jpg", "d.jpg", "e.jpg"), null);
+
+        assertThat(job.getStatus()).isEqualTo(PhotoImportJob.Status.COMPLETED);
+        assertThat(job.getImported()).isEqualTo(5);
+        assertThat(job.getItems()).extracting(PhotoImportJob.Item::getName).containsExactly("a.jpg", "b.jpg", "dir/c.jpg", "d.jpg", "e.jpg");
+        assertThat(job.getItems()).extracting(PhotoImportJob.Item::getPhotoId).doesNotContainNull();
+        verify(photoService, times(3)).saveAll(anyList());
+        assertThat(photoImportService.findJob(job.getId())).contains(job);
+        assertThat(directory).isEmptyDirectory();
+    }
+
+    @Test
+    void skipsDirectoriesAndHiddenFiles() throws IOException {
+        preparePhotos();
+        saveAllPhotos();
+
+        PhotoImportJob job = photoImportService.importArchive(zip("a.jpg", ".DS_Store", "__MACOSX/._a.jpg", "folder/"), null);
+
+        assertThat(job.getItems()).extracting(PhotoImportJob.Item::getName).containsExactly("a.jpg");
+    }
+
+    @Test
+    void reportsFailedItemsAndImportsTheOthers() throws IOException {
+        when(photoService.prepareUpload(any(), any()))
+            .thenAnswer(
+                invocation -> {
+                    PhotoDto photoDto = invocation.getArgument(0);
+                    byte[] content = invocation.<InputStream>getArgument(1).readAllBytes();
+                    String contentType = new String(content, StandardCharsets.UTF_8).startsWith("image") ? "image/jpeg" : null;
+                    return Photo.builder().title(photoDto.getTitle()).imageKey(photoDto.getTitle()).imageContentType(contentType).build();
+                }
+            );
+        saveAllPhotos();
+
+        PhotoImportJob job = photoImportService.importArchive(
+            zipOf(entry("a.jpg", "image"), entry("notes.txt", "text"), entry("huge.jpg", "image" + "x".repeat(100))),
+            null
+        );
+
+        assertThat(job.getStatus()).isEqualTo(PhotoImportJob.Status.COMPLETED);
+        assertThat(job.getItems())
+            .extracting(PhotoImportJob.Item::getStatus)
+            .containsExactly(PhotoImportJob.ItemStatus.IMPORTED, PhotoImportJob.ItemStatus.FAILED, PhotoImportJob.ItemStatus.FAILED);
+        verify(blobReferenceService).releaseAfterCommit("notes");
+    }
+
+    @Test
+    void isolatesPhotosRejectedByTheDatabase() throws IOException {
+        preparePhotos();
+        when(photoService.saveAll(anyList()))
+            .thenAnswer(
+                invocation -> {
+                    List<Photo> photos = invocation.getArgument(0);
+                    if (photos.stream().anyMatch(photo -> photo.getTitle().equals("bad"))) {
+                        throw new DataIntegrityViolationException("rejected");
+                    }
+                    return toDtos(photos);
+                }
+            );
+
+        PhotoImportJob job = photoImportService.importArchive(zip("good.jpg", "bad.jpg"), null);
+
+        assertThat(job.getItems())
+            .extracting(PhotoImportJob.Item::getStatus)
+            .containsExactly(PhotoImportJob.ItemStatus.IMPORTED, PhotoImportJob.ItemStatus.FAILED);
+        verify(blobReferenceService).releaseAfterCommit("bad");
+    }
+
+    @Test
+    void rejectsTooManyPhotos() {
+        applicationProperties.getPhotoImport().setMaxItems(1);
+        photoImportService.shutdown();
+        photoImportService = newService();
+
+        assertThatThrownBy(() -> photoImportService.importArchive(zip("a.jpg", "b.jpg"), null)).isInstanceOf(TooManyPhotosException.class);
+        assertThat(directory).isEmptyDirectory();
+        verifyNoInteractions(photoService);
+    }
+
+    @Test
+    void rejectsImportsBeyondTheConcurrentJobs() throws IOException {
+        applicationProperties.getPhotoImport().setMaxConcurrentJobs(1);
+        List<Runnable> queued = new ArrayList<>();
+        photoImportService.shutdown();
+        photoImportService = newService(queued::add);
+
+        photoImportService.importArchive(zip(), null);
+
+        assertThatThrownBy(() -> photoImportService.importArchive(zip(), null)).isInstanceOf(PhotoImportBusyException.class);
+        queued.remove(0).run();
+        assertThat(photoImportService.importArchive(zip(), null).getStatus()).isEqualTo(PhotoImportJob.Status.PENDING);
+    }
+
+    @Test
+    void jobsOfOtherUsersAreNotFound() throws IOException {
+        PhotoImportJob job = photoImportService.importArchive(zip(), null);
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("another-user", "password"));
+
+        assertThat(photoImportService.findJob(job.getId())).isEmpty();
+    }
+
+    @Test
+    void titleIsTheFileNameWithoutExtension() {
+        assertThat(PhotoImportService.title("holidays/2021/beach.jpeg")).isEqualTo("beach");
+        assertThat(PhotoImportService.title(".profile")).isEqualTo(".profile");
+        assertThat(PhotoImportService.title("x".repeat(300) + ".png")).hasSize(PhotoImportService.MAX_TITLE_LENGTH);
+    }
+
+    private PhotoImportService newService() {
+        return newService(new SyncTaskExecutor());
+    }
+
+    private PhotoImportService newService(TaskExecutor taskExecutor) {
+        return new PhotoImportService(
+            photoService,
+            blobReferenceService,
+            new TransactionTemplate(transactionManager),
+            taskExecutor,
+            applicationProperties
+        );
+    }
+
+    private void preparePhotos() {
+        when(photoService.prepareUpload(any(), any()))
+            .thenAnswer(
+                invocation -> {
+                    PhotoDto photoDto = invocation.getArgument(0);
+                    invocation.<InputStream>getArgument(1).readAllBytes();
+                    return Photo.builder().title(photoDto.getTitle()).imageKey(photoDto.getTitle()).imageContentType("image/jpeg").build();
+                }
+            );
+    }
+
+    private void saveAllPhotos() {
+        when(photoService.saveAll(anyList())).thenAnswer(invocation -> toDtos(invocation.getArgument(0)));
+    }
+
+    private List<PhotoDto> toDtos(List<Photo> photos) {
+        return photos.stream().map(photo -> PhotoDto.builder().id(ids.incrementAndGet()).title(photo.getTitle()).build()).collect(Collectors.toList());
+    }
+
+    private static String[] entry(String name, String content) {
+        return new String[] { name, content };
+    }
+
+    private static InputStream zip(String... names) throws IOException {
+        return zipOf(Arrays.stream(names).map(name -> entry(name, "image")).toArray(String[][]::new));
+    }
+
+    private static InputStream zipOf(String[]... entries) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            for (String[] entry : entries) {
+                zip.putNextEntry(new ZipEntry(entry[0]));
+                if (!entry[0].endsWith("/")) {
+                    zip.write(entry[1].getBytes(StandardCharsets.UTF_8));
+                }
+                zip.closeEntry();
+            }
+        }
+        return new ByteArrayInputStream(archive.toByteArray());
+    }
+}
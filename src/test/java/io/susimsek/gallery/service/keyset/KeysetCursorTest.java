@@ -0,0 +1,43 @@
+package io.susimsek.gallery.service.keyset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodesToAnUrlSafeStringAndBack() {
+        KeysetCursor cursor = new KeysetCursor("taken", Sort.Direction.DESC, Instant.parse("2021-06-01T10:00:00.123456789Z"), 42L);
+
+        String encoded = cursor.encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+        assertThat(KeysetCursor.decode(encoded)).isEqualTo(cursor);
+    }
+
+    @Test
+    void keepsANullKey() {
+        KeysetCursor cursor = new KeysetCursor("uploaded", Sort.Direction.ASC, null, 7L);
+
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void rejectsInvalidCursors() {
+        assertThatThrownBy(() -> KeysetCursor.decode("not base64!")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("1:taken:DESC:1.0"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("2:taken:DESC:1.0:1"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("1:taken:SIDEWAYS:1.0:1"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetCursor.decode(encode("1:taken:DESC:x:1"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String encode(String value) {
+        return Base64.getUrlEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,209 @@
+package io.susimsek.gallery.service.listing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.service.event.ListingChangedEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.EvictionMode;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.Codec;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import tech.jhipster.service.filter.LongFilter;
+
+@ExtendWith(MockitoExtension.class)
+class ListingCacheTest {
+
+    private static final PageRequest PAGE = PageRequest.of(0, 2);
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RMapCache<String, ListingPage> pages;
+
+    @Mock
+    private RMap<String, Long> generations;
+
+    private ApplicationProperties applicationProperties;
+
+    private MeterRegistry meterRegistry;
+
+    private ListingCache listingCache;
+
+    @BeforeEach
+    void setUp() {
+        applicationProperties = new ApplicationProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        doReturn(pages).when(redissonClient).getMapCache("gallery:listings");
+        doReturn(generations).when(redissonClient).getMap(eq("gallery:listings:generations"), any(Codec.class));
+        listingCache = new ListingCache(applicationProperties, redissonClient, meterRegistry);
+    }
+
+    @Test
+    void boundsThePages() {
+        verify(pages).setMaxSize(10000, EvictionMode.LRU);
+    }
+
+    @Test
+    void cachesTheIdsOfAMissUnderTheGenerationsOfItsScopes() {
+        ListingKey key = albumKey(3L);
+        when(generations.getAll(Set.of("album:3"))).thenReturn(Map.of("album:3", 7L));
+
+        Page<String> page = listingCache.findPage(key, () -> new PageImpl<>(List.of("1", "2"), PAGE, 5), Long::valueOf, ids -> fail());
+
+        assertThat(page.getContent()).containsExactly("1", "2");
+        verify(pages).fastPut(key + "@7", new ListingPage(List.of(1L, 2L), 5), 300_000, TimeUnit.MILLISECONDS);
+        assertThat(gets("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void readsTheEntitiesOfCachedIdsById() {
+        ListingKey key = albumKey(3L);
+        when(generations.getAll(Set.of("album:3"))).thenReturn(Map.of());
+        when(pages.get(key + "@0")).thenReturn(new ListingPage(List.of(2L, 1L), 5));
+
+        Page<String> page = listingCache.findPage(key, this::fail, Long::valueOf, ids -> List.of(ids.get(0) + "!", ids.get(1) + "!"));
+
+        assertThat(page.getContent()).containsExactly("2!", "1!");
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.getPageable()).isEqualTo(PAGE);
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentMissesQueryTheDatabaseOnce() throws Exception {
+        ListingKey key = albumKey(3L);
+        when(generations.getAll(Set.of("album:3"))).thenReturn(Map.of());
+        CountDownLatch querying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger queries = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Page<String>> first = executor.submit(
+                () ->
+                    listingCache.findPage(
+                        key,
+                        () -> {
+                            queries.incrementAndGet();
+                            querying.countDown();
+                            await(release);
+                            return new PageImpl<>(List.of("1"), PAGE, 1);
+                        },
+                        Long::valueOf,
+                        ids -> fail()
+                    )
+            );
+            querying.await();
+            CompletableFuture<Page<String>> second = CompletableFuture.supplyAsync(
+                () -> listingCache.findPage(key, this::fail, Long::valueOf, ids -> List.of("from " + ids))
+            );
+            while (meterRegistry.find(ListingCache.GETS).tag("result", "coalesced").counter() == null) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertThat(first.get().getContent()).containsExactly("1");
+            assertThat(second.get().getContent()).containsExactly("from [1]");
+            assertThat(queries).hasValue(1);
+            assertThat(listingCache.loading).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void changesIncrementTheGenerationsOfTheirScopes() {
+        listingCache.onListingChanged(new ListingChangedEvent(Set.of("photos", "album:3")));
+
+        verify(generations).addAndGet("photos", 1L);
+        verify(generations).addAndGet("album:3", 1L);
+    }
+
+    @Test
+    void queriesTheDatabaseWhenRedisIsDown() {
+        when(generations.getAll(any())).thenThrow(new RedisException("Redis is down"));
+
+        Page<String> page = listingCache.findPage(albumKey(3L), () -> new PageImpl<>(List.of("1"), PAGE, 1), Long::valueOf, ids -> fail());
+
+        assertThat(page.getContent()).containsExactly("1");
+        verify(pages, never()).fastPut(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void aFailedQueryIsNotCached() {
+        when(generations.getAll(any())).thenReturn(Map.of());
+        Supplier<Page<String>> failing = () -> {
+            throw new IllegalStateException("database is down");
+        };
+
+        assertThatThrownBy(() -> listingCache.findPage(albumKey(3L), failing, Long::valueOf, ids -> fail()))
+            .isInstanceOf(IllegalStateException.class);
+        verify(pages, never()).fastPut(any(), any(), anyLong(), any());
+        assertThat(listingCache.loading).isEmpty();
+    }
+
+    @Test
+    void disabledCacheOnlyQueries() {
+        applicationProperties.getCache().getListings().setEnabled(false);
+        listingCache = new ListingCache(applicationProperties, redissonClient, meterRegistry);
+
+        listingCache.findPage(albumKey(3L), () -> new PageImpl<>(List.of("1"), PAGE, 1), Long::valueOf, ids -> fail());
+        listingCache.onListingChanged(new ListingChangedEvent(Set.of("photos")));
+
+        verifyNoInteractions(generations);
+        verify(pages, never()).get(any());
+    }
+
+    private static ListingKey albumKey(Long albumId) {
+        LongFilter filter = new LongFilter();
+        filter.setEquals(albumId);
+        return ListingKey
+            .builder("photos")
+            .filter("albumId", filter)
+            .page(PAGE)
+            .scopes(ListingScopes.restrictedTo(filter, ListingScopes::album))
+            .build();
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get(ListingCache.GETS).tags("listing", "photos", "result", result).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> T fail() {
+        throw new AssertionError("should not be called");
+    }
+}
@@ -0,0 +1,56 @@
+package io.susimsek.gallery.service.listing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.susimsek.gallery.service.criteria.PhotoCriteria;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import tech.jhipster.service.filter.IntegerFilter;
+import tech.jhipster.service.filter.LongFilter;
+import tech.jhipster.service.filter.StringFilter;
+
+class ListingKeyTest {
+
+    @Test
+    void writesTheCriteriaAndPageInACanonicalForm() {
+        PhotoCriteria criteria = new PhotoCriteria();
+        criteria.title().setContains("sea");
+        criteria.tagId().setIn(List.of(3L, 1L, 3L));
+
+        ListingKey key = ListingKey
+            .builder("photos")
+            .criteria(criteria)
+            .page(PageRequest.of(1, 20, Sort.by(Sort.Order.desc("taken"), Sort.Order.asc("id").ignoreCase())))
+            .build();
+
+        assertThat(key).hasToString("photos?tagId.in=1,3&title.contains=sea&page=1&size=20&sort=taken,DESC;id,ASC,ignorecase");
+    }
+
+    @Test
+    void sameCriteriaGiveTheSameKeyWhateverTheirOrder() {
+        PhotoCriteria first = new PhotoCriteria();
+        first.albumId().setIn(List.of(1L, 2L));
+        first.title().setEquals("sunset");
+        PhotoCriteria second = new PhotoCriteria();
+        second.setTitle(new StringFilter());
+        second.getTitle().setEquals("sunset");
+        second.setAlbumId(new LongFilter());
+        second.getAlbumId().setIn(List.of(2L, 1L));
+        second.setWidth(new IntegerFilter());
+
+        Pageable page = PageRequest.of(0, 10);
+        assertThat(ListingKey.builder("photos").criteria(first).page(page).build())
+            .hasToString(ListingKey.builder("photos").criteria(second).page(page).build().toString());
+    }
+
+    @Test
+    void keepsTheScopesSorted() {
+        ListingKey key = ListingKey.builder("photos").scopes(List.of("tag:2", "album:1", "tag:2")).build();
+
+        assertThat(key.getScopes()).containsExactly("album:1", "tag:2");
+        assertThat(key.getPage().isUnpaged()).isTrue();
+    }
+}
@@ -0,0 +1,66 @@
+package io.susimsek.gallery.service.mapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
+import io.susimsek.gallery.service.dto.PhotoDto;
+import java.time.Instant;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PhotoSearchMapperTest {
+
+    private PhotoSearchMapper photoSearchMapper;
+
+    @BeforeEach
+    public void setUp() {
+        photoSearchMapper = new PhotoSearchMapperImpl();
+    }
+
+    @Test
+    void toDocumentKeepsOnlySearchableMetadata() {
+        Photo photo = Photo
+            .builder()
+            .id(1L)
+            .title("Beach")
+            .imageKey("55c64d0fcd6f9d5f7c828093857e3fdfda68478bb4e9bd24d481ef391c7804e8")
+            .imageSize(5L)
+            .imageChecksum("5ae0c1c8a5260bc7b6648f6fbd115c35")
+            .imageContentType("image/jpeg")
+            .uploaded(Instant.EPOCH)
+            .album(Album.builder().id(2L).title("Holidays").description("Summer").build())
+            .tags(Set.of(Tag.builder().id(3L).name("sea").build()))
+            .build();
+
+        PhotoSearchDocument document = photoSearchMapper.toDocument(photo);
+
+        assertThat(document.getId()).isEqualTo(1L);
+        assertThat(document.getTitle()).isEqualTo("Beach");
+        assertThat(document.getImageContentType()).isEqualTo("image/jpeg");
+        assertThat(document.getUploaded()).isEqualTo(Instant.EPOCH);
+        assertThat(document.getAlbum()).isEqualTo(new PhotoSearchDocument.AlbumReference(2L, "Holidays"));
+        assertThat(document.getTags()).containsExactly(new PhotoSearchDocument.TagReference(3L, "sea"));
+    }
+
+    @Test
+    void toDtoFromSearchHit() {
+        PhotoSearchDocument document = PhotoSearchDocument
+            .builder()
+            .id(1L)
+            .title("Beach")
+            .album(new PhotoSearchDocument.AlbumReference(2L, "Holidays"))
+            .tags(Set.of(new PhotoSearchDocument.TagReference(3L, "sea")))
+            .build();
+
+        PhotoDto photoDto = photoSearchMapper.toDto(document);
+
+        assertThat(photoDto.getId()).isEqualTo(1L);
+        assertThat(photoDto.getImage()).isNull();
+        assertThat(photoDto.getAlbum().getTitle()).isEqualTo("Holidays");
+        assertThat(photoDto.getTags()).extracting("name").containsExactly("sea");
+    }
+}
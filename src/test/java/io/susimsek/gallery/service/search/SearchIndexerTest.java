@@ -0,0 +1,193 @@
+package io.susimsek.gallery.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.SearchIndexOutbox;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
+import io.susimsek.gallery.domain.search.PhotoSearchDocument;
+import io.susimsek.gallery.repository.AlbumRepository;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
+import io.susimsek.gallery.repository.TagRepository;
+import io.susimsek.gallery.repository.UserRepository;
+import io.susimsek.gallery.repository.search.AlbumSearchRepository;
+import io.susimsek.gallery.repository.search.PhotoSearchRepository;
+import io.susimsek.gallery.repository.search.TagSearchRepository;
+import io.susimsek.gallery.repository.search.UserSearchRepository;
+import io.susimsek.gallery.service.mapper.PhotoSearchMapperImpl;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class SearchIndexerTest {
+
+    @Mock
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    @Mock
+    private PhotoRepository photoRepository;
+
+    @Mock
+    private PhotoSearchRepository photoSearchRepository;
+
+    @Mock
+    private AlbumRepository albumRepository;
+
+    @Mock
+    private AlbumSearchRepository albumSearchRepository;
+
+    @Mock
+    private TagRepository tagRepository;
+
+    @Mock
+    private TagSearchRepository tagSearchRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserSearchRepository userSearchRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private RedissonClient redissonClient;
+
+    @Mock
+    private RLock lock;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SearchIndexer searchIndexer;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(redissonClient.getLock("gallery:search-indexer")).thenReturn(lock);
+        lenient().when(lock.tryLock()).thenReturn(true);
+        searchIndexer =
+            new SearchIndexer(
+                searchIndexOutboxRepository,
+                new SearchDocumentLoader(photoRepository, new PhotoSearchMapperImpl(), albumRepository, tagRepository, userRepository),
+                photoSearchRepository,
+                albumSearchRepository,
+                tagSearchRepository,
+                userSearchRepository,
+                transactionManager,
+                new ApplicationProperties(),
+                redissonClient,
+                meterRegistry
+            );
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drainAppliesTheLatestChangePerEntity() {
+        List<SearchIndexOutbox> batch = List.of(
+            change(1L, 10L, SearchIndexOperation.INDEX),
+            change(2L, 20L, SearchIndexOperation.INDEX),
+            change(3L, 10L, SearchIndexOperation.DELETE),
+            change(4L, 30L, SearchIndexOperation.INDEX)
+        );
+        when(searchIndexOutboxRepository.findOldest(any())).thenReturn(batch);
+        // photo 30 was deleted since its change was recorded
+        when(photoRepository.findAllWithEagerRelationshipsByIdIn(Set.of(20L, 30L))).thenReturn(List.of(Photo.builder().id(20L).build()));
+
+        searchIndexer.drain();
+
+        ArgumentCaptor<Iterable<PhotoSearchDocument>> indexed = ArgumentCaptor.forClass(Iterable.class);
+        verify(photoSearchRepository).saveAll(indexed.capture());
+        assertThat(indexed.getValue()).extracting(PhotoSearchDocument::getId).containsExactly(20L);
+        ArgumentCaptor<Iterable<PhotoSearchDocument>> deleted = ArgumentCaptor.forClass(Iterable.class);
+        verify(photoSearchRepository).deleteAll(deleted.capture());
+        assertThat(deleted.getValue()).extracting(PhotoSearchDocument::getId).containsExactlyInAnyOrder(10L, 30L);
+        verify(searchIndexOutboxRepository).deleteByIdIn(List.of(1L, 2L, 3L, 4L));
+        assertThat(meterRegistry.get("search.index.documents").tag("operation", "index").counter().count()).isEqualTo(1);
+        InOrder inOrder = inOrder(lock, searchIndexOutboxRepository);
+        inOrder.verify(lock).tryLock();
+        inOrder.verify(searchIndexOutboxRepository).findOldest(any());
+        inOrder.verify(searchIndexOutboxRepository).deleteByIdIn(anyCollection());
+        inOrder.verify(lock).unlock();
+    }
+
+    @Test
+    void drainSkipsWhileAnotherNodeHoldsTheLock() {
+        when(lock.tryLock()).thenReturn(false);
+
+        searchIndexer.drain();
+
+        verify(searchIndexOutboxRepository, never()).findOldest(any());
+        verify(lock, never()).unlock();
+    }
+
+    @Test
+    void drainBacksOffAfterAFailure() {
+        when(searchIndexOutboxRepository.findOldest(any())).thenReturn(List.of(change(1L, 10L, SearchIndexOperation.DELETE)));
+        doThrow(new IllegalStateException("Elasticsearch is down")).when(photoSearchRepository).deleteAll(any());
+
+        searchIndexer.drain();
+        searchIndexer.drain();
+
+        verify(searchIndexOutboxRepository, times(1)).findOldest(any());
+        verify(searchIndexOutboxRepository).incrementAttempts(List.of(1L));
+        verify(searchIndexOutboxRepository, never()).deleteByIdIn(anyCollection());
+        assertThat(meterRegistry.get("search.index.failures").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void drainDoesNothingWhilePaused() {
+        searchIndexer.pause();
+        searchIndexer.drain();
+
+        verify(lock).lock();
+        verify(searchIndexOutboxRepository, never()).findOldest(any());
+
+        searchIndexer.resume();
+        searchIndexer.drain();
+
+        verify(searchIndexOutboxRepository).findOldest(any());
+    }
+
+    @Test
+    void pauseHoldsTheLockTheOtherNodesDrainUnder() {
+        searchIndexer.pause();
+
+        verify(lock).lock();
+        verify(lock, never()).unlock();
+
+        searchIndexer.resume();
+
+        verify(lock).unlock();
+        assertThat(searchIndexer.isPaused()).isFalse();
+    }
+
+    private static SearchIndexOutbox change(Long id, Long photoId, SearchIndexOperation operation) {
+        return SearchIndexOutbox
+            .builder()
+            .id(id)
+            .entityType(SearchIndexEntityType.PHOTO)
+            .entityId(photoId)
+            .operation(operation)
+            .createdDate(Instant.now())
+            .build();
+    }
+}
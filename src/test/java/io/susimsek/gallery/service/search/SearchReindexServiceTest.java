@@ -0,0 +1,20 @@
+package io.susimsek.gallery.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SearchReindexServiceTest {
+
+    @Test
+    void sliceBoundsSplitIdsEvenly() {
+        assertThat(SearchReindexService.sliceBounds(1000, 4)).containsExactly(0, 250, 500, 750, 1000);
+        assertThat(SearchReindexService.sliceBounds(10, 4)).containsExactly(0, 3, 6, 8, 10);
+    }
+
+    @Test
+    void sliceBoundsNeverCreateEmptySlices() {
+        assertThat(SearchReindexService.sliceBounds(2, 4)).containsExactly(0, 1, 2);
+        assertThat(SearchReindexService.sliceBounds(0, 4)).containsExactly(0, 0);
+    }
+}
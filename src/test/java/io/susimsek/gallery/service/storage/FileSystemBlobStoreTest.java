@@ -0,0 +1,84 @@
+package io.susimsek.gallery.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileSystemBlobStoreTest {
+
+    private static final byte[] CONTENT = "photo".getBytes(StandardCharsets.UTF_8);
+
+    // sha256 and md5 of "photo"
+    private static final String KEY = "55c64d0fcd6f9d5f7c828093857e3fdfda68478bb4e9bd24d481ef391c7804e8";
+    private static final String CHECKSUM = "5ae0c1c8a5260bc7b6648f6fbd115c35";
+
+    @TempDir
+    Path root;
+
+    private FileSystemBlobStore blobStore;
+
+    @BeforeEach
+    public void setUp() {
+        blobStore = new FileSystemBlobStore(root);
+    }
+
+    @Test
+    void storeShouldBeKeyedByContent() throws Exception {
+        StoredBlob blob = blobStore.store(new ByteArrayInputStream(CONTENT));
+
+        assertThat(blob.getKey()).isEqualTo(KEY);
+        assertThat(blob.getSize()).isEqualTo(CONTENT.length);
+        assertThat(blob.getChecksum()).isEqualTo(CHECKSUM);
+        assertThat(root.resolve("55").resolve("c6").resolve(KEY)).hasBinaryContent(CONTENT);
+        assertThat(blobStore.readAllBytes(KEY).orElseThrow()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void storeShouldDeduplicateIdenticalContent() throws Exception {
+        StoredBlob first = blobStore.store(new ByteArrayInputStream(CONTENT));
+        StoredBlob second = blobStore.store(new ByteArrayInputStream(CONTENT));
+
+        assertThat(second).isEqualTo(first);
+        try (Stream<Path> files = Files.walk(root)) {
+            assertThat(files.filter(Files::isRegularFile)).hasSize(1);
+        }
+    }
+
+    @Test
+    void storeShouldRefreshTheLastModifiedTimeOfIdenticalContent() throws Exception {
+        blobStore.store(new ByteArrayInputStream(CONTENT));
+        Path blob = root.resolve("55").resolve("c6").resolve(KEY);
+        Files.setLastModifiedTime(blob, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        blobStore.store(new ByteArrayInputStream(CONTENT));
+
+        assertThat(blobStore.lastModified(KEY).orElseThrow()).isAfter(Instant.now().minus(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void deleteShouldRemoveBlob() throws Exception {
+        blobStore.store(new ByteArrayInputStream(CONTENT));
+
+        blobStore.delete(KEY);
+
+        assertThat(blobStore.exists(KEY)).isFalse();
+        assertThat(blobStore.load(KEY)).isEmpty();
+        assertThat(blobStore.lastModified(KEY)).isEmpty();
+    }
+
+    @Test
+    void invalidKeyShouldBeRejected() {
+        assertThatThrownBy(() -> blobStore.load("../../etc/passwd")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
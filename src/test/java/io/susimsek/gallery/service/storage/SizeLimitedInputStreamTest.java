@@ -0,0 +1,38 @@
+package io.susimsek.gallery.service.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.susimsek.gallery.service.PhotoTooLargeException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.jupiter.api.Test;
+
+class SizeLimitedInputStreamTest {
+
+    @Test
+    void readsContentUpToTheLimit() throws IOException {
+        InputStream input = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[100]), 100);
+
+        assertThat(input.readAllBytes()).hasSize(100);
+    }
+
+    @Test
+    void failsOnceTheLimitIsExceeded() {
+        InputStream input = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[101]), 100);
+
+        assertThatThrownBy(input::readAllBytes)
+            .isInstanceOf(PhotoTooLargeException.class)
+            .extracting("maxSize")
+            .isEqualTo(100L);
+    }
+
+    @Test
+    void countsSkippedBytes() throws IOException {
+        InputStream input = new SizeLimitedInputStream(new ByteArrayInputStream(new byte[101]), 100);
+        input.skip(100);
+
+        assertThatThrownBy(input::read).isInstanceOf(PhotoTooLargeException.class);
+    }
+}
@@ -1,7 +1,9 @@
 package io.susimsek.gallery.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -9,8 +11,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import io.susimsek.gallery.IntegrationTest;
 import io.susimsek.gallery.domain.Album;
+import io.susimsek.gallery.domain.SearchIndexOutbox;
 import io.susimsek.gallery.domain.User;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
 import io.susimsek.gallery.repository.AlbumRepository;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
 import io.susimsek.gallery.repository.search.AlbumSearchRepository;
 import io.susimsek.gallery.service.criteria.AlbumCriteria;
 import io.susimsek.gallery.service.dto.AlbumDto;
@@ -31,6 +37,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -76,6 +83,9 @@ class AlbumResourceIT {
     @Autowired
     private AlbumSearchRepository mockAlbumSearchRepository;
 
+    @Autowired
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -130,7 +140,9 @@ class AlbumResourceIT {
         assertThat(testAlbum.getCreated()).isEqualTo(DEFAULT_CREATED);
 
         // Validate the Album in Elasticsearch
-        verify(mockAlbumSearchRepository, times(1)).save(testAlbum);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.ALBUM, testAlbum.getId(), SearchIndexOperation.INDEX));
     }
 
     @Test
@@ -190,6 +202,38 @@ class AlbumResourceIT {
             .andExpect(jsonPath("$.[*].created").value(hasItem(DEFAULT_CREATED.toString())));
     }
 
+    @Test
+    @Transactional
+    void getAlbumsByCursor() throws Exception {
+        // Initialize the database
+        Instant created = Instant.parse("2021-06-01T10:00:00Z");
+        Album[] albums = new Album[5];
+        for (int i = 0; i < albums.length; i++) {
+            albums[i] = createEntity(em);
+            albums[i].setTitle("KEYSET");
+            albums[i].setCreated(created.plusSeconds(i % 3));
+            albumRepository.saveAndFlush(albums[i]);
+        }
+
+        // First page, oldest first
+        String link = restAlbumMockMvc
+            .perform(get(ENTITY_API_URL + "?title.equals=KEYSET&size=3&sort=created,asc&cursor="))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(contains(albums[0].getId().intValue(), albums[3].getId().intValue(), albums[1].getId().intValue())))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith("; rel=\"next\"");
+
+        // Last page, in the order of the cursor
+        restAlbumMockMvc
+            .perform(get(link.substring(link.indexOf('<') + 1, link.indexOf('>'))))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.LINK))
+            .andExpect(jsonPath("$.[*].id").value(contains(albums[4].getId().intValue(), albums[2].getId().intValue())));
+    }
+
     @Test
     @Transactional
     void getAlbum() throws Exception {
@@ -455,7 +499,9 @@ class AlbumResourceIT {
         assertThat(testAlbum.getCreated()).isEqualTo(UPDATED_CREATED);
 
         // Validate the Album in Elasticsearch
-        verify(mockAlbumSearchRepository).save(testAlbum);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.ALBUM, testAlbum.getId(), SearchIndexOperation.INDEX));
     }
 
     @Test
@@ -689,7 +735,9 @@ class AlbumResourceIT {
         assertThat(albumList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the Album in Elasticsearch
-        verify(mockAlbumSearchRepository, times(1)).deleteById(album.getId());
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.ALBUM, album.getId(), SearchIndexOperation.DELETE));
     }
 
     @Test
@@ -0,0 +1,136 @@
+package io.susimsek.gallery.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.susimsek.gallery.IntegrationTest;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.service.PhotoService;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link PhotoImportResource} REST controller. Imports commit on their own threads, so
+ * the photos they create are deleted after each test.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class PhotoImportResourceIT {
+
+    private static final String ENTITY_API_URL = "/api/photos/import";
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private PhotoService photoService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc restPhotoImportMockMvc;
+
+    private final List<Long> importedPhotoIds = new ArrayList<>();
+
+    @AfterEach
+    void deleteImportedPhotos() {
+        importedPhotoIds.forEach(photoService::delete);
+    }
+
+    @Test
+    void importZipArchive() throws Exception {
+        int databaseSizeBeforeImport = photoRepository.findAll().size();
+
+        String location = restPhotoImportMockMvc
+            .perform(post(ENTITY_API_URL).contentType(PhotoImportResource.ZIP_VALUE).content(zip("first.png", "second.png", "third.png")))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.total").value(3))
+            .andReturn()
+            .getResponse()
+            .getHeader("Location");
+
+        JsonNode job = awaitJob(location);
+        assertThat(job.get("status").asText()).isEqualTo("COMPLETED");
+        assertThat(job.get("imported").asInt()).isEqualTo(3);
+        assertThat(photoRepository.findAll()).hasSize(databaseSizeBeforeImport + 3);
+    }
+
+    @Test
+    void importMultipartBatch() throws Exception {
+        String location = restPhotoImportMockMvc
+            .perform(
+                multipart(ENTITY_API_URL)
+                    .file(new MockMultipartFile("files", "one.png", "image/png", encodePng(20, 10)))
+                    .file(new MockMultipartFile("files", "notes.txt", "text/plain", "not an image".getBytes()))
+            )
+            .andExpect(status().isAccepted())
+            .andReturn()
+            .getResponse()
+            .getHeader("Location");
+
+        JsonNode job = awaitJob(location);
+        assertThat(job.get("imported").asInt()).isEqualTo(1);
+        assertThat(job.get("failed").asInt()).isEqualTo(1);
+        assertThat(job.at("/items/0/status").asText()).isEqualTo("IMPORTED");
+        assertThat(job.at("/items/1/status").asText()).isEqualTo("FAILED");
+    }
+
+    @Test
+    void getUnknownImport() throws Exception {
+        restPhotoImportMockMvc.perform(get(ENTITY_API_URL + "/{id}", "unknown")).andExpect(status().isNotFound());
+    }
+
+    private JsonNode awaitJob(String location) throws Exception {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            JsonNode job = objectMapper.readTree(
+                restPhotoImportMockMvc.perform(get(location)).andExpect(status().isOk()).andReturn().getResponse().getContentAsByteArray()
+            );
+            if ("COMPLETED".equals(job.get("status").asText()) || "FAILED".equals(job.get("status").asText())) {
+                job.get("items").forEach(item -> {
+                    if (item.hasNonNull("photoId")) {
+                        importedPhotoIds.add(item.get("photoId").asLong());
+                    }
+                });
+                return job;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Import " + location + " did not finish");
+    }
+
+    private static byte[] zip(String... names) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            for (String name : names) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(encodePng(32, 24));
+                zip.closeEntry();
+            }
+        }
+        return archive.toByteArray();
+    }
+
+    private static byte[] encodePng(int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", png);
+        return png.toByteArray();
+    }
+}
@@ -1,22 +1,40 @@
 package io.susimsek.gallery.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.jayway.jsonpath.JsonPath;
 import io.susimsek.gallery.IntegrationTest;
+import io.susimsek.gallery.config.ApplicationProperties;
 import io.susimsek.gallery.domain.Album;
 import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.SearchIndexOutbox;
 import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
 import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
 import io.susimsek.gallery.repository.search.PhotoSearchRepository;
+import io.susimsek.gallery.service.PhotoRenditionService;
 import io.susimsek.gallery.service.PhotoService;
 import io.susimsek.gallery.service.criteria.PhotoCriteria;
 import io.susimsek.gallery.service.dto.PhotoDto;
 import io.susimsek.gallery.service.mapper.PhotoMapper;
+import io.susimsek.gallery.service.mapper.PhotoSearchMapper;
+import io.susimsek.gallery.service.storage.BlobStore;
+import io.susimsek.gallery.service.storage.StoredBlob;
+import io.susimsek.gallery.web.rest.errors.ErrorConstants;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -24,6 +42,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,7 +53,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
@@ -57,6 +78,10 @@ class PhotoResourceIT {
 
     private static final byte[] DEFAULT_IMAGE = TestUtil.createByteArray(1, "0");
     private static final byte[] UPDATED_IMAGE = TestUtil.createByteArray(1, "1");
+    private static final String DEFAULT_IMAGE_KEY = TestUtil.sha256Hex(DEFAULT_IMAGE);
+    private static final String UPDATED_IMAGE_KEY = TestUtil.sha256Hex(UPDATED_IMAGE);
+    private static final String DEFAULT_IMAGE_CHECKSUM = TestUtil.md5Hex(DEFAULT_IMAGE);
+    private static final String UPDATED_IMAGE_CHECKSUM = TestUtil.md5Hex(UPDATED_IMAGE);
     private static final String DEFAULT_IMAGE_CONTENT_TYPE = "image/jpg";
     private static final String UPDATED_IMAGE_CONTENT_TYPE = "image/png";
 
@@ -74,6 +99,8 @@ class PhotoResourceIT {
     private static final Instant DEFAULT_UPLOADED = Instant.ofEpochMilli(0L);
     private static final Instant UPDATED_UPLOADED = Instant.now().truncatedTo(ChronoUnit.MILLIS);
 
+    private static final Instant DEFAULT_IMAGE_STORED_DATE = Instant.ofEpochSecond(86400L);
+
     private static final String ENTITY_API_URL = "/api/photos";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
     private static final String ENTITY_SEARCH_API_URL = "/api/_search/photos";
@@ -101,6 +128,21 @@ class PhotoResourceIT {
     @Autowired
     private PhotoSearchRepository mockPhotoSearchRepository;
 
+    @Autowired
+    private PhotoSearchMapper photoSearchMapper;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private PhotoRenditionService photoRenditionService;
+
+    @Autowired
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private EntityManager em;
 
@@ -119,7 +161,10 @@ class PhotoResourceIT {
         Photo photo =Photo.builder()
             .title(DEFAULT_TITLE)
             .description(DEFAULT_DESCRIPTION)
-            .image(DEFAULT_IMAGE)
+            .imageKey(DEFAULT_IMAGE_KEY)
+            .imageSize((long) DEFAULT_IMAGE.length)
+            .imageChecksum(DEFAULT_IMAGE_CHECKSUM)
+            .imageStoredDate(DEFAULT_IMAGE_STORED_DATE)
             .imageContentType(DEFAULT_IMAGE_CONTENT_TYPE)
             .height(DEFAULT_HEIGHT)
             .width(DEFAULT_WIDTH)
@@ -139,7 +184,9 @@ class PhotoResourceIT {
         Photo photo = Photo.builder()
             .title(UPDATED_TITLE)
             .description(UPDATED_DESCRIPTION)
-            .image(UPDATED_IMAGE)
+            .imageKey(UPDATED_IMAGE_KEY)
+            .imageSize((long) UPDATED_IMAGE.length)
+            .imageChecksum(UPDATED_IMAGE_CHECKSUM)
             .imageContentType(UPDATED_IMAGE_CONTENT_TYPE)
             .height(UPDATED_HEIGHT)
             .width(UPDATED_WIDTH)
@@ -150,8 +197,9 @@ class PhotoResourceIT {
     }
 
     @BeforeEach
-    public void initTest() {
+    public void initTest() throws IOException {
         photo = createEntity(em);
+        blobStore.store(new ByteArrayInputStream(DEFAULT_IMAGE));
     }
 
     @Test
@@ -160,6 +208,7 @@ class PhotoResourceIT {
         int databaseSizeBeforeCreate = photoRepository.findAll().size();
         // Create the Photo
         PhotoDto photoDto = photoMapper.toDto(photo);
+        photoDto.setImage(DEFAULT_IMAGE);
         restPhotoMockMvc
             .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(photoDto)))
             .andExpect(status().isCreated());
@@ -170,7 +219,10 @@ class PhotoResourceIT {
         Photo testPhoto = photoList.get(photoList.size() - 1);
         assertThat(testPhoto.getTitle()).isEqualTo(DEFAULT_TITLE);
         assertThat(testPhoto.getDescription()).isEqualTo(DEFAULT_DESCRIPTION);
-        assertThat(testPhoto.getImage()).isEqualTo(DEFAULT_IMAGE);
+        assertThat(testPhoto.getImageKey()).isEqualTo(DEFAULT_IMAGE_KEY);
+        assertThat(testPhoto.getImageSize()).isEqualTo((long) DEFAULT_IMAGE.length);
+        assertThat(testPhoto.getImageChecksum()).isEqualTo(DEFAULT_IMAGE_CHECKSUM);
+        assertThat(blobStore.readAllBytes(DEFAULT_IMAGE_KEY).orElseThrow()).isEqualTo(DEFAULT_IMAGE);
         assertThat(testPhoto.getImageContentType()).isEqualTo(DEFAULT_IMAGE_CONTENT_TYPE);
         assertThat(testPhoto.getHeight()).isEqualTo(DEFAULT_HEIGHT);
         assertThat(testPhoto.getWidth()).isEqualTo(DEFAULT_WIDTH);
@@ -178,7 +230,74 @@ class PhotoResourceIT {
         assertThat(testPhoto.getUploaded()).isEqualTo(DEFAULT_UPLOADED);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(1)).save(testPhoto);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.PHOTO, testPhoto.getId(), SearchIndexOperation.INDEX));
+    }
+
+    @Test
+    @Transactional
+    void uploadPhotoMultipart() throws Exception {
+        int databaseSizeBeforeCreate = photoRepository.findAll().size();
+        byte[] png = encodePng(120, 80);
+        PhotoDto photoDto = PhotoDto.builder().title(DEFAULT_TITLE).description(DEFAULT_DESCRIPTION).build();
+
+        restPhotoMockMvc
+            .perform(
+                multipart(ENTITY_API_URL + "/upload")
+                    .file(new MockMultipartFile("file", "photo.png", "image/png", png))
+                    .file(
+                        new MockMultipartFile("photo", "", MediaType.APPLICATION_JSON_VALUE, TestUtil.convertObjectToJsonBytes(photoDto))
+                    )
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.width").value(120))
+            .andExpect(jsonPath("$.height").value(80));
+
+        List<Photo> photoList = photoRepository.findAll();
+        assertThat(photoList).hasSize(databaseSizeBeforeCreate + 1);
+        Photo testPhoto = photoList.get(photoList.size() - 1);
+        assertThat(testPhoto.getTitle()).isEqualTo(DEFAULT_TITLE);
+        assertThat(testPhoto.getImageContentType()).isEqualTo("image/png");
+        assertThat(testPhoto.getImageKey()).isEqualTo(TestUtil.sha256Hex(png));
+        assertThat(testPhoto.getImageSize()).isEqualTo(png.length);
+        assertThat(blobStore.readAllBytes(testPhoto.getImageKey()).orElseThrow()).isEqualTo(png);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.PHOTO, testPhoto.getId(), SearchIndexOperation.INDEX));
+    }
+
+    @Test
+    @Transactional
+    void uploadRawPhotoDetectsContentType() throws Exception {
+        byte[] png = encodePng(64, 32);
+
+        restPhotoMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/upload")
+                    .param("title", DEFAULT_TITLE)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .content(png)
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.imageContentType").value("image/png"))
+            .andExpect(jsonPath("$.imageSize").value(png.length))
+            .andExpect(jsonPath("$.width").value(64))
+            .andExpect(jsonPath("$.height").value(32));
+    }
+
+    @Test
+    @Transactional
+    void uploadRawPhotoLargerThanLimit() throws Exception {
+        int databaseSizeBeforeCreate = photoRepository.findAll().size();
+        byte[] tooLarge = new byte[(int) applicationProperties.getUpload().getMaxSize().toBytes() + 1];
+
+        restPhotoMockMvc
+            .perform(post(ENTITY_API_URL + "/upload").param("title", DEFAULT_TITLE).contentType("image/jpeg").content(tooLarge))
+            .andExpect(status().isPayloadTooLarge())
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_PAYLOAD_TOO_LARGE));
+
+        assertThat(photoRepository.findAll()).hasSize(databaseSizeBeforeCreate);
     }
 
     @Test
@@ -200,7 +319,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeCreate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -236,13 +355,80 @@ class PhotoResourceIT {
             .andExpect(jsonPath("$.[*].title").value(hasItem(DEFAULT_TITLE)))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION.toString())))
             .andExpect(jsonPath("$.[*].imageContentType").value(hasItem(DEFAULT_IMAGE_CONTENT_TYPE)))
-            .andExpect(jsonPath("$.[*].image").value(hasItem(Base64Utils.encodeToString(DEFAULT_IMAGE))))
+            .andExpect(jsonPath("$.[*].imageSize").value(hasItem(DEFAULT_IMAGE.length)))
+            .andExpect(jsonPath("$.[*].image").doesNotExist())
             .andExpect(jsonPath("$.[*].height").value(hasItem(DEFAULT_HEIGHT)))
             .andExpect(jsonPath("$.[*].width").value(hasItem(DEFAULT_WIDTH)))
             .andExpect(jsonPath("$.[*].taken").value(hasItem(DEFAULT_TAKEN.toString())))
             .andExpect(jsonPath("$.[*].uploaded").value(hasItem(DEFAULT_UPLOADED.toString())));
     }
 
+    @Test
+    @Transactional
+    void getPhotosByCursor() throws Exception {
+        // Initialize the database, the last two photos without a capture date
+        Instant taken = Instant.parse("2021-06-01T10:00:00Z");
+        Instant[] takenDates = { taken, taken.plusSeconds(1), taken, null, null };
+        Photo[] photos = new Photo[takenDates.length];
+        for (int i = 0; i < photos.length; i++) {
+            photos[i] = createEntity(em);
+            photos[i].setTitle("KEYSET");
+            photos[i].setTaken(takenDates[i]);
+            photoRepository.saveAndFlush(photos[i]);
+        }
+
+        // First page, latest first
+        String link = restPhotoMockMvc
+            .perform(get(ENTITY_API_URL + "?title.equals=KEYSET&size=2&sort=taken,desc&cursor="))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.[*].id").value(contains(photos[1].getId().intValue(), photos[2].getId().intValue())))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith("; rel=\"next\"");
+
+        // Second page, crossing from the photos with a capture date to those without
+        link =
+            restPhotoMockMvc
+                .perform(get(link.substring(link.indexOf('<') + 1, link.indexOf('>'))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].id").value(contains(photos[0].getId().intValue(), photos[4].getId().intValue())))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.LINK);
+        assertThat(link).endsWith("; rel=\"next\"");
+
+        // Last page, continuing after a photo without a capture date
+        restPhotoMockMvc
+            .perform(get(link.substring(link.indexOf('<') + 1, link.indexOf('>'))))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(HttpHeaders.LINK))
+            .andExpect(jsonPath("$.[*].id").value(contains(photos[3].getId().intValue())));
+    }
+
+    @Test
+    @Transactional
+    void getPhotosWithImageByCursorIsRejected() throws Exception {
+        restPhotoMockMvc.perform(get(ENTITY_API_URL + "?include=image&cursor=")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional
+    void getAllPhotosWithImage() throws Exception {
+        // Initialize the database
+        photoRepository.saveAndFlush(photo);
+
+        // Get all the photoList, legacy clients still receive the image
+        restPhotoMockMvc
+            .perform(get(ENTITY_API_URL + "?sort=id,desc&include=image"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(jsonPath("$.[*].id").value(hasItem(photo.getId().intValue())))
+            .andExpect(jsonPath("$.[*].title").value(hasItem(DEFAULT_TITLE)))
+            .andExpect(jsonPath("$.[*].image").value(hasItem(Base64Utils.encodeToString(DEFAULT_IMAGE))));
+    }
+
     @SuppressWarnings({ "unchecked" })
     void getAllPhotosWithEagerRelationshipsIsEnabled() throws Exception {
         when(photoServiceMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
@@ -283,6 +469,174 @@ class PhotoResourceIT {
             .andExpect(jsonPath("$.uploaded").value(DEFAULT_UPLOADED.toString()));
     }
 
+    @Test
+    @Transactional
+    void getPhotoContent() throws Exception {
+        // Initialize the database
+        photoRepository.saveAndFlush(photo);
+
+        // Get the raw image
+        restPhotoMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/content", photo.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(DEFAULT_IMAGE_CONTENT_TYPE))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"" + DEFAULT_IMAGE_KEY + "\""))
+            .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+            .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, DEFAULT_IMAGE_STORED_DATE.toEpochMilli()))
+            .andExpect(content().bytes(DEFAULT_IMAGE));
+    }
+
+    @Test
+    @Transactional
+    void getPhotoContentIfModifiedSinceAfterTheImageIsReplaced() throws Exception {
+        // Initialize the database
+        photoRepository.saveAndFlush(photo);
+
+        // The client already has the current image
+        restPhotoMockMvc
+            .perform(
+                get(ENTITY_API_URL_ID + "/content", photo.getId())
+                    .header(HttpHeaders.IF_MODIFIED_SINCE, DEFAULT_IMAGE_STORED_DATE.toEpochMilli())
+            )
+            .andExpect(status().isNotModified());
+
+        // Replace the image, keeping the upload date
+        PhotoDto partialUpdatedPhoto = new PhotoDto();
+        partialUpdatedPhoto.setId(photo.getId());
+        partialUpdatedPhoto.setImage(UPDATED_IMAGE);
+        partialUpdatedPhoto.setImageContentType(UPDATED_IMAGE_CONTENT_TYPE);
+        restPhotoMockMvc
+            .perform(
+                patch(ENTITY_API_URL_ID, photo.getId())
+                    .contentType("application/merge-patch+json")
+                    .content(TestUtil.convertObjectToJsonBytes(partialUpdatedPhoto))
+            )
+            .andExpect(status().isOk());
+
+        // The client revalidating by date gets the new image
+        restPhotoMockMvc
+            .perform(
+                get(ENTITY_API_URL_ID + "/content", photo.getId())
+                    .header(HttpHeaders.IF_MODIFIED_SINCE, DEFAULT_IMAGE_STORED_DATE.toEpochMilli())
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().bytes(UPDATED_IMAGE));
+    }
+
+    @Test
+    @Transactional
+    void getPhotoContentIfNoneMatch() throws Exception {
+        // Initialize the database
+        photoRepository.saveAndFlush(photo);
+
+        // The client already has the current image
+        restPhotoMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/content", photo.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"" + DEFAULT_IMAGE_KEY + "\""))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @Transactional
+    void getPhotoContentRange() throws Exception {
+        // Initialize the database with an image of several bytes
+        byte[] image = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        StoredBlob blob = blobStore.store(new ByteArrayInputStream(image));
+        photo.setImageKey(blob.getKey());
+        photo.setImageSize(blob.getSize());
+        photo.setImageChecksum(blob.getChecksum());
+        photoRepository.saveAndFlush(photo);
+
+        // Get the middle of the image
+        restPhotoMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/content", photo.getId()).header(HttpHeaders.RANGE, "bytes=2-5"))
+            .andExpect(status().isPartialContent())
+            .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/" + image.length))
+            .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+            .andExpect(content().bytes("2345".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    @Transactional
+    void getNonExistingPhotoContent() throws Exception {
+        // Get the raw image
+        restPhotoMockMvc.perform(get(ENTITY_API_URL_ID + "/content", Long.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    void getPhotoRendition() throws Exception {
+        // Initialize the database with a decodable 800x400 image
+        StoredBlob blob = blobStore.store(new ByteArrayInputStream(encodePng(800, 400)));
+        photo.setImageKey(blob.getKey());
+        photo.setImageSize(blob.getSize());
+        photo.setImageChecksum(blob.getChecksum());
+        photo.setImageContentType("image/png");
+        photoRepository.saveAndFlush(photo);
+
+        photoRenditionService.generateRenditions(photo.getId());
+
+        // Get the resized image
+        byte[] rendition = restPhotoMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/renditions/{size}", photo.getId(), 160))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("image/jpeg"))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(rendition));
+        assertThat(image.getWidth()).isEqualTo(160);
+        assertThat(image.getHeight()).isEqualTo(80);
+    }
+
+    @Test
+    @Transactional
+    void getPhotoRenditionAsWebp() throws Exception {
+        // Initialize the database with a decodable 800x400 image
+        StoredBlob blob = blobStore.store(new ByteArrayInputStream(encodePng(800, 400)));
+        photo.setImageKey(blob.getKey());
+        photo.setImageSize(blob.getSize());
+        photo.setImageChecksum(blob.getChecksum());
+        photo.setImageContentType("image/png");
+        photoRepository.saveAndFlush(photo);
+
+        photoRenditionService.generateRenditions(photo.getId());
+
+        // Get the resized image as WebP
+        byte[] rendition = restPhotoMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/renditions/{size}", photo.getId(), 160).header(HttpHeaders.ACCEPT, "image/webp,*/*"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("image/webp"))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(rendition));
+        assertThat(image.getWidth()).isEqualTo(160);
+        assertThat(image.getHeight()).isEqualTo(80);
+    }
+
+    @Test
+    @Transactional
+    void getPhotoRenditionNotGeneratedYet() throws Exception {
+        // Initialize the database
+        photoRepository.saveAndFlush(photo);
+
+        // The original is served until the rendition exists
+        restPhotoMockMvc
+            .perform(get(ENTITY_API_URL_ID + "/renditions/{size}", photo.getId(), 640))
+            .andExpect(status().isTemporaryRedirect())
+            .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost/api/photos/" + photo.getId() + "/content"));
+    }
+
+    @Test
+    @Transactional
+    void getPhotoRenditionWithUnsupportedSize() throws Exception {
+        // Initialize the database
+        photoRepository.saveAndFlush(photo);
+
+        restPhotoMockMvc.perform(get(ENTITY_API_URL_ID + "/renditions/{size}", photo.getId(), 123)).andExpect(status().isBadRequest());
+    }
+
     @Test
     @Transactional
     void getPhotosByIdFiltering() throws Exception {
@@ -741,7 +1095,7 @@ class PhotoResourceIT {
             .andExpect(jsonPath("$.[*].title").value(hasItem(DEFAULT_TITLE)))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION.toString())))
             .andExpect(jsonPath("$.[*].imageContentType").value(hasItem(DEFAULT_IMAGE_CONTENT_TYPE)))
-            .andExpect(jsonPath("$.[*].image").value(hasItem(Base64Utils.encodeToString(DEFAULT_IMAGE))))
+            .andExpect(jsonPath("$.[*].image").doesNotExist())
             .andExpect(jsonPath("$.[*].height").value(hasItem(DEFAULT_HEIGHT)))
             .andExpect(jsonPath("$.[*].width").value(hasItem(DEFAULT_WIDTH)))
             .andExpect(jsonPath("$.[*].taken").value(hasItem(DEFAULT_TAKEN.toString())))
@@ -795,13 +1149,13 @@ class PhotoResourceIT {
         em.detach(partialUpdatedPhoto);
         partialUpdatedPhoto.setTitle(UPDATED_TITLE);
         partialUpdatedPhoto.setDescription(UPDATED_DESCRIPTION);
-        partialUpdatedPhoto.setImage(UPDATED_IMAGE);
         partialUpdatedPhoto.setImageContentType(UPDATED_IMAGE_CONTENT_TYPE);
         partialUpdatedPhoto.setHeight(UPDATED_HEIGHT);
         partialUpdatedPhoto.setWidth(UPDATED_WIDTH);
         partialUpdatedPhoto.setTaken(UPDATED_TAKEN);
         partialUpdatedPhoto.setUploaded(UPDATED_UPLOADED);
         PhotoDto photoDto = photoMapper.toDto(partialUpdatedPhoto);
+        photoDto.setImage(UPDATED_IMAGE);
 
         restPhotoMockMvc
             .perform(
@@ -817,7 +1171,9 @@ class PhotoResourceIT {
         Photo testPhoto = photoList.get(photoList.size() - 1);
         assertThat(testPhoto.getTitle()).isEqualTo(UPDATED_TITLE);
         assertThat(testPhoto.getDescription()).isEqualTo(UPDATED_DESCRIPTION);
-        assertThat(testPhoto.getImage()).isEqualTo(UPDATED_IMAGE);
+        assertThat(testPhoto.getImageKey()).isEqualTo(UPDATED_IMAGE_KEY);
+        assertThat(testPhoto.getImageSize()).isEqualTo((long) UPDATED_IMAGE.length);
+        assertThat(blobStore.readAllBytes(UPDATED_IMAGE_KEY).orElseThrow()).isEqualTo(UPDATED_IMAGE);
         assertThat(testPhoto.getImageContentType()).isEqualTo(UPDATED_IMAGE_CONTENT_TYPE);
         assertThat(testPhoto.getHeight()).isEqualTo(UPDATED_HEIGHT);
         assertThat(testPhoto.getWidth()).isEqualTo(UPDATED_WIDTH);
@@ -825,7 +1181,9 @@ class PhotoResourceIT {
         assertThat(testPhoto.getUploaded()).isEqualTo(UPDATED_UPLOADED);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository).save(testPhoto);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.PHOTO, testPhoto.getId(), SearchIndexOperation.INDEX));
     }
 
     @Test
@@ -851,7 +1209,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeUpdate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -877,7 +1235,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeUpdate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -899,7 +1257,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeUpdate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -911,7 +1269,7 @@ class PhotoResourceIT {
         int databaseSizeBeforeUpdate = photoRepository.findAll().size();
 
         // Update the photo using partial update
-        Photo partialUpdatedPhoto = new Photo();
+        PhotoDto partialUpdatedPhoto = new PhotoDto();
         partialUpdatedPhoto.setId(photo.getId());
 
         partialUpdatedPhoto.setTitle(UPDATED_TITLE);
@@ -934,7 +1292,9 @@ class PhotoResourceIT {
         Photo testPhoto = photoList.get(photoList.size() - 1);
         assertThat(testPhoto.getTitle()).isEqualTo(UPDATED_TITLE);
         assertThat(testPhoto.getDescription()).isEqualTo(DEFAULT_DESCRIPTION);
-        assertThat(testPhoto.getImage()).isEqualTo(UPDATED_IMAGE);
+        assertThat(testPhoto.getImageKey()).isEqualTo(UPDATED_IMAGE_KEY);
+        assertThat(testPhoto.getImageSize()).isEqualTo((long) UPDATED_IMAGE.length);
+        assertThat(blobStore.readAllBytes(UPDATED_IMAGE_KEY).orElseThrow()).isEqualTo(UPDATED_IMAGE);
         assertThat(testPhoto.getImageContentType()).isEqualTo(UPDATED_IMAGE_CONTENT_TYPE);
         assertThat(testPhoto.getHeight()).isEqualTo(UPDATED_HEIGHT);
         assertThat(testPhoto.getWidth()).isEqualTo(DEFAULT_WIDTH);
@@ -951,7 +1311,7 @@ class PhotoResourceIT {
         int databaseSizeBeforeUpdate = photoRepository.findAll().size();
 
         // Update the photo using partial update
-        Photo partialUpdatedPhoto = new Photo();
+        PhotoDto partialUpdatedPhoto = new PhotoDto();
         partialUpdatedPhoto.setId(photo.getId());
 
         partialUpdatedPhoto.setTitle(UPDATED_TITLE);
@@ -977,7 +1337,9 @@ class PhotoResourceIT {
         Photo testPhoto = photoList.get(photoList.size() - 1);
         assertThat(testPhoto.getTitle()).isEqualTo(UPDATED_TITLE);
         assertThat(testPhoto.getDescription()).isEqualTo(UPDATED_DESCRIPTION);
-        assertThat(testPhoto.getImage()).isEqualTo(UPDATED_IMAGE);
+        assertThat(testPhoto.getImageKey()).isEqualTo(UPDATED_IMAGE_KEY);
+        assertThat(testPhoto.getImageSize()).isEqualTo((long) UPDATED_IMAGE.length);
+        assertThat(blobStore.readAllBytes(UPDATED_IMAGE_KEY).orElseThrow()).isEqualTo(UPDATED_IMAGE);
         assertThat(testPhoto.getImageContentType()).isEqualTo(UPDATED_IMAGE_CONTENT_TYPE);
         assertThat(testPhoto.getHeight()).isEqualTo(UPDATED_HEIGHT);
         assertThat(testPhoto.getWidth()).isEqualTo(UPDATED_WIDTH);
@@ -1008,7 +1370,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeUpdate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -1034,7 +1396,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeUpdate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -1056,7 +1418,7 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeUpdate);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(0)).save(photo);
+        verify(mockPhotoSearchRepository, times(0)).save(any());
     }
 
     @Test
@@ -1077,7 +1439,9 @@ class PhotoResourceIT {
         assertThat(photoList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the Photo in Elasticsearch
-        verify(mockPhotoSearchRepository, times(1)).deleteById(photo.getId());
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.PHOTO, photo.getId(), SearchIndexOperation.DELETE));
     }
 
     @Test
@@ -1087,7 +1451,7 @@ class PhotoResourceIT {
         // Initialize the database
         photoRepository.saveAndFlush(photo);
         when(mockPhotoSearchRepository.search(queryStringQuery("id:" + photo.getId()), PageRequest.of(0, 20)))
-            .thenReturn(new PageImpl<>(Collections.singletonList(photo), PageRequest.of(0, 1), 1));
+            .thenReturn(new PageImpl<>(Collections.singletonList(photoSearchMapper.toDocument(photo)), PageRequest.of(0, 1), 1));
 
         // Search the photo
         restPhotoMockMvc
@@ -1098,10 +1462,16 @@ class PhotoResourceIT {
             .andExpect(jsonPath("$.[*].title").value(hasItem(DEFAULT_TITLE)))
             .andExpect(jsonPath("$.[*].description").value(hasItem(DEFAULT_DESCRIPTION.toString())))
             .andExpect(jsonPath("$.[*].imageContentType").value(hasItem(DEFAULT_IMAGE_CONTENT_TYPE)))
-            .andExpect(jsonPath("$.[*].image").value(hasItem(Base64Utils.encodeToString(DEFAULT_IMAGE))))
+            .andExpect(jsonPath("$.[*].image").doesNotExist())
             .andExpect(jsonPath("$.[*].height").value(hasItem(DEFAULT_HEIGHT)))
             .andExpect(jsonPath("$.[*].width").value(hasItem(DEFAULT_WIDTH)))
             .andExpect(jsonPath("$.[*].taken").value(hasItem(DEFAULT_TAKEN.toString())))
             .andExpect(jsonPath("$.[*].uploaded").value(hasItem(DEFAULT_UPLOADED.toString())));
     }
+
+    private static byte[] encodePng(int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", png);
+        return png.toByteArray();
+    }
 }
@@ -0,0 +1,265 @@
+package io.susimsek.gallery.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import io.susimsek.gallery.IntegrationTest;
+import io.susimsek.gallery.config.ApplicationProperties;
+import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.PhotoUpload;
+import io.susimsek.gallery.repository.PhotoRepository;
+import io.susimsek.gallery.repository.PhotoUploadRepository;
+import io.susimsek.gallery.service.dto.PhotoUploadDto;
+import io.susimsek.gallery.web.rest.errors.ErrorConstants;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for the {@link PhotoUploadResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class PhotoUploadResourceIT {
+
+    private static final String ENTITY_API_URL = "/api/photo-uploads";
+    private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
+
+    private static final String DEFAULT_TITLE = "AAAAAAAAAA";
+
+    @Autowired
+    private PhotoUploadRepository photoUploadRepository;
+
+    @Autowired
+    private PhotoRepository photoRepository;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MockMvc restPhotoUploadMockMvc;
+
+    @Test
+    @Transactional
+    void uploadInChunksAndComplete() throws Exception {
+        int photosBefore = photoRepository.findAll().size();
+        byte[] png = encodePng(90, 60);
+        int half = png.length / 2;
+        String id = createUpload(png.length);
+
+        restPhotoUploadMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .header(PhotoUploadResource.UPLOAD_OFFSET, 0)
+                    .contentType(PhotoUploadResource.OFFSET_OCTET_STREAM_VALUE)
+                    .content(Arrays.copyOfRange(png, 0, half))
+            )
+            .andExpect(status().isNoContent())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, String.valueOf(half)));
+
+        restPhotoUploadMockMvc
+            .perform(head(ENTITY_API_URL_ID, id))
+            .andExpect(status().isOk())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, String.valueOf(half)))
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_LENGTH, String.valueOf(png.length)));
+
+        restPhotoUploadMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .header(PhotoUploadResource.UPLOAD_OFFSET, half)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .content(Arrays.copyOfRange(png, half, png.length))
+            )
+            .andExpect(status().isNoContent())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, String.valueOf(png.length)));
+
+        restPhotoUploadMockMvc
+            .perform(post(ENTITY_API_URL_ID + "/complete", id))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.title").value(DEFAULT_TITLE))
+            .andExpect(jsonPath("$.imageContentType").value("image/png"))
+            .andExpect(jsonPath("$.imageSize").value(png.length))
+            .andExpect(jsonPath("$.width").value(90))
+            .andExpect(jsonPath("$.height").value(60));
+
+        assertThat(photoUploadRepository.existsById(id)).isFalse();
+        assertThat(photoRepository.findAll()).hasSize(photosBefore + 1).extracting(Photo::getTitle).contains(DEFAULT_TITLE);
+    }
+
+    @Test
+    @Transactional
+    void appendAtWrongOffsetReturnsCurrentOffset() throws Exception {
+        String id = createUpload(100);
+
+        restPhotoUploadMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .header(PhotoUploadResource.UPLOAD_OFFSET, 10)
+                    .contentType(PhotoUploadResource.OFFSET_OCTET_STREAM_VALUE)
+                    .content(new byte[10])
+            )
+            .andExpect(status().isConflict())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, "0"))
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_UPLOAD_OFFSET_MISMATCH))
+            .andExpect(jsonPath("$.offset").value(0));
+    }
+
+    @Test
+    @Transactional
+    void appendPastLengthIsRejected() throws Exception {
+        String id = createUpload(10);
+
+        restPhotoUploadMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .header(PhotoUploadResource.UPLOAD_OFFSET, 0)
+                    .contentType(PhotoUploadResource.OFFSET_OCTET_STREAM_VALUE)
+                    .content(new byte[11])
+            )
+            .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    @Transactional
+    void completeIncompleteUploadIsRejected() throws Exception {
+        String id = createUpload(100);
+
+        restPhotoUploadMockMvc
+            .perform(post(ENTITY_API_URL_ID + "/complete", id))
+            .andExpect(status().isConflict())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, "0"));
+
+        assertThat(photoUploadRepository.existsById(id)).isTrue();
+    }
+
+    @Test
+    @Transactional
+    void completeUploadBeingCompletedIsRejected() throws Exception {
+        String id = createUpload(100);
+        PhotoUpload upload = photoUploadRepository.findById(id).orElseThrow();
+        upload.setOffset(100);
+        upload.setCompletingSince(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        int photosBefore = photoRepository.findAll().size();
+
+        restPhotoUploadMockMvc
+            .perform(post(ENTITY_API_URL_ID + "/complete", id))
+            .andExpect(status().isConflict())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, "100"));
+
+        assertThat(photoUploadRepository.existsById(id)).isTrue();
+        assertThat(photoRepository.findAll()).hasSize(photosBefore);
+    }
+
+    @Test
+    @Transactional
+    void appendPastTheBytesOnThisNodeReturnsTheirOffset() throws Exception {
+        String id = createUpload(100);
+        restPhotoUploadMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .header(PhotoUploadResource.UPLOAD_OFFSET, 0)
+                    .contentType(PhotoUploadResource.OFFSET_OCTET_STREAM_VALUE)
+                    .content(new byte[20])
+            )
+            .andExpect(status().isNoContent());
+        // the bytes up to 50 were received by another node
+        photoUploadRepository.findById(id).orElseThrow().setOffset(50);
+
+        restPhotoUploadMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, id)
+                    .header(PhotoUploadResource.UPLOAD_OFFSET, 50)
+                    .contentType(PhotoUploadResource.OFFSET_OCTET_STREAM_VALUE)
+                    .content(new byte[50])
+            )
+            .andExpect(status().isConflict())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, "20"));
+
+        assertThat(photoUploadRepository.findById(id).orElseThrow().getOffset()).isEqualTo(20);
+    }
+
+    @Test
+    @Transactional
+    void completeWithoutTheBytesOnThisNodeIsRejected() throws Exception {
+        String id = createUpload(100);
+        photoUploadRepository.findById(id).orElseThrow().setOffset(100);
+        int photosBefore = photoRepository.findAll().size();
+
+        restPhotoUploadMockMvc
+            .perform(post(ENTITY_API_URL_ID + "/complete", id))
+            .andExpect(status().isConflict())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, "0"));
+
+        PhotoUpload upload = photoUploadRepository.findById(id).orElseThrow();
+        assertThat(upload.getOffset()).isZero();
+        assertThat(upload.getCompletingSince()).isNull();
+        assertThat(photoRepository.findAll()).hasSize(photosBefore);
+    }
+
+    @Test
+    @Transactional
+    void createUploadLargerThanLimit() throws Exception {
+        PhotoUploadDto upload = PhotoUploadDto
+            .builder()
+            .title(DEFAULT_TITLE)
+            .length(applicationProperties.getUpload().getMaxSize().toBytes() + 1)
+            .build();
+
+        restPhotoUploadMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(upload)))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
+    @Test
+    @Transactional
+    void deleteUpload() throws Exception {
+        String id = createUpload(100);
+
+        restPhotoUploadMockMvc.perform(delete(ENTITY_API_URL_ID, id)).andExpect(status().isNoContent());
+
+        assertThat(photoUploadRepository.existsById(id)).isFalse();
+        restPhotoUploadMockMvc.perform(head(ENTITY_API_URL_ID, id)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Transactional
+    @WithMockUser("another-user")
+    void uploadsOfOtherUsersAreNotFound() throws Exception {
+        String id = createUpload(100);
+        photoUploadRepository.findById(id).orElseThrow().setOwner("user");
+
+        restPhotoUploadMockMvc.perform(get(ENTITY_API_URL_ID, id)).andExpect(status().isNotFound());
+    }
+
+    private String createUpload(long length) throws Exception {
+        PhotoUploadDto upload = PhotoUploadDto.builder().title(DEFAULT_TITLE).length(length).build();
+        String location = restPhotoUploadMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(upload)))
+            .andExpect(status().isCreated())
+            .andExpect(header().string(PhotoUploadResource.UPLOAD_OFFSET, "0"))
+            .andExpect(jsonPath("$.id").isNotEmpty())
+            .andReturn()
+            .getResponse()
+            .getHeader("Location");
+        return location.substring(location.lastIndexOf('/') + 1);
+    }
+
+    private static byte[] encodePng(int width, int height) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", png);
+        return png.toByteArray();
+    }
+}
@@ -1,6 +1,7 @@
 package io.susimsek.gallery.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.elasticsearch.index.query.QueryBuilders.queryStringQuery;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
@@ -9,7 +10,11 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import io.susimsek.gallery.IntegrationTest;
 import io.susimsek.gallery.domain.Photo;
+import io.susimsek.gallery.domain.SearchIndexOutbox;
 import io.susimsek.gallery.domain.Tag;
+import io.susimsek.gallery.domain.enumeration.SearchIndexEntityType;
+import io.susimsek.gallery.domain.enumeration.SearchIndexOperation;
+import io.susimsek.gallery.repository.SearchIndexOutboxRepository;
 import io.susimsek.gallery.repository.TagRepository;
 import io.susimsek.gallery.repository.search.TagSearchRepository;
 import io.susimsek.gallery.service.criteria.TagCriteria;
@@ -67,6 +72,9 @@ class TagResourceIT {
     @Autowired
     private TagSearchRepository mockTagSearchRepository;
 
+    @Autowired
+    private SearchIndexOutboxRepository searchIndexOutboxRepository;
+
     @Autowired
     private EntityManager em;
 
@@ -119,7 +127,9 @@ class TagResourceIT {
         assertThat(testTag.getName()).isEqualTo(DEFAULT_NAME);
 
         // Validate the Tag in Elasticsearch
-        verify(mockTagSearchRepository, times(1)).save(testTag);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.TAG, testTag.getId(), SearchIndexOperation.INDEX));
     }
 
     @Test
@@ -382,7 +392,9 @@ class TagResourceIT {
         assertThat(testTag.getName()).isEqualTo(UPDATED_NAME);
 
         // Validate the Tag in Elasticsearch
-        verify(mockTagSearchRepository).save(testTag);
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.TAG, testTag.getId(), SearchIndexOperation.INDEX));
     }
 
     @Test
@@ -607,7 +619,9 @@ class TagResourceIT {
         assertThat(tagList).hasSize(databaseSizeBeforeDelete - 1);
 
         // Validate the Tag in Elasticsearch
-        verify(mockTagSearchRepository, times(1)).deleteById(tag.getId());
+        assertThat(searchIndexOutboxRepository.findAll())
+            .extracting(SearchIndexOutbox::getEntityType, SearchIndexOutbox::getEntityId, SearchIndexOutbox::getOperation)
+            .contains(tuple(SearchIndexEntityType.TAG, tag.getId(), SearchIndexOperation.DELETE));
     }
 
     @Test
@@ -8,6 +8,8 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
@@ -64,6 +66,32 @@ public final class TestUtil {
         return byteArray;
     }
 
+    /**
+     * Hex encoded SHA-256 of the given bytes, as used for blob keys.
+     */
+    public static String sha256Hex(byte[] bytes) {
+        return digestHex("SHA-256", bytes);
+    }
+
+    /**
+     * Hex encoded MD5 of the given bytes, as used for blob checksums.
+     */
+    public static String md5Hex(byte[] bytes) {
+        return digestHex("MD5", bytes);
+    }
+
+    private static String digestHex(String algorithm, byte[] bytes) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance(algorithm).digest(bytes)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * A matcher that tests that the examined string represents the same instant as the reference datetime.
      */
@@ -4,11 +4,13 @@ import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.jayway.jsonpath.JsonPath;
 import io.susimsek.gallery.IntegrationTest;
 import io.susimsek.gallery.domain.User;
 import io.susimsek.gallery.repository.UserRepository;
@@ -84,6 +86,88 @@ class UserJWTControllerIT {
             .andExpect(header().string("Authorization", not(is(emptyString()))));
     }
 
+    @Test
+    @Transactional
+    void testLogoutRevokesTheToken() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-logout");
+        user.setEmail("user-jwt-controller-logout@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-logout");
+        login.setPassword("test");
+        String authorization = mockMvc
+            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("Authorization");
+        mockMvc.perform(get("/api/account").header("Authorization", authorization)).andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/logout").header("Authorization", authorization)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/account").header("Authorization", authorization)).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @Transactional
+    void testRefreshRotatesTheRefreshToken() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-refresh");
+        user.setEmail("user-jwt-controller-refresh@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+
+        userRepository.saveAndFlush(user);
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-refresh");
+        login.setPassword("test");
+        String refreshToken = JsonPath.read(
+            mockMvc
+                .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refresh_token").isNotEmpty())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(),
+            "$.refresh_token"
+        );
+
+        String next = JsonPath.read(
+            mockMvc
+                .perform(post("/api/authenticate/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshTokenJson(refreshToken)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id_token").isNotEmpty())
+                .andExpect(jsonPath("$.refresh_token", not(is(refreshToken))))
+                .andExpect(header().string("Authorization", not(nullValue())))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(),
+            "$.refresh_token"
+        );
+
+        // the first token used again: the family is revoked, the next token with it
+        mockMvc
+            .perform(post("/api/authenticate/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshTokenJson(refreshToken)))
+            .andExpect(status().isUnauthorized());
+        mockMvc
+            .perform(post("/api/authenticate/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshTokenJson(next)))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRefreshWithUnknownToken() throws Exception {
+        mockMvc
+            .perform(post("/api/authenticate/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshTokenJson("unknown")))
+            .andExpect(status().isUnauthorized())
+            .andExpect(jsonPath("$.id_token").doesNotExist());
+    }
+
     @Test
     void testAuthorizeFails() throws Exception {
         LoginVM login = new LoginVM();
@@ -95,4 +179,8 @@ class UserJWTControllerIT {
             .andExpect(jsonPath("$.id_token").doesNotExist())
             .andExpect(header().doesNotExist("Authorization"));
     }
+
+    private static String refreshTokenJson(String refreshToken) {
+        return "{\"refresh_token\":\"" + refreshToken + "\"}";
+    }
 }